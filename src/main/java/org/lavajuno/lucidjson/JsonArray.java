@@ -45,6 +45,21 @@ public class JsonArray extends JsonEntity {
         return new JsonArray(text, i);
     }
 
+    /**
+     * Deserializes a JSON array from UTF-8 bytes.
+     * Parses with JsonReader, so the input is not copied into a String first.
+     * @param input UTF-8 input
+     * @return Deserialized JSON array
+     * @throws JsonParseException if parsing fails;
+     */
+    public static JsonArray from(byte[] input) throws JsonParseException {
+        JsonReader reader = new JsonReader(input);
+        if(reader.next() != JsonToken.BEGIN_ARRAY) {
+            throw reader.error("Parsing array, expected a '['.");
+        }
+        return (JsonArray) readEntity(reader, JsonToken.BEGIN_ARRAY);
+    }
+
     /**
      * @param text JSON to parse
      * @param i Index of next character to parse
@@ -132,31 +147,8 @@ public class JsonArray extends JsonEntity {
     public ArrayList<JsonEntity> values() { return values; }
 
     @Override
-    protected String toJsonString(int indent) {
-        StringBuilder sb = new StringBuilder();
-        String pad_elem = " ".repeat(indent + 4);
-        String pad_close = " ".repeat(indent);
-        sb.append("[\n");
-        for(int i = 0; i < values.size(); i++) {
-            sb.append(pad_elem).append(values.get(i).toJsonString(indent + 4));
-            if(i < values.size() - 1) { sb.append(","); }
-            sb.append("\n");
-        }
-        sb.append(pad_close).append("]");
-        return sb.toString();
-    }
+    protected String toJsonString(int indent) { return JsonWriter.toString(this, true, indent); }
 
     @Override
-    public String toJsonString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        for(int i = 0; i < values.size() - 1; i++) {
-            sb.append(values.get(i).toJsonString()).append(",\n");
-        }
-        if(!values.isEmpty()) {
-            sb.append(values.get(values.size() - 1));
-        }
-        sb.append("]");
-        return sb.toString();
-    }
+    public String toJsonString() { return JsonWriter.toString(this, false, 0); }
 }
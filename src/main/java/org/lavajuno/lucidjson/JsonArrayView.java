@@ -0,0 +1,124 @@
+package org.lavajuno.lucidjson;
+
+import org.lavajuno.lucidjson.error.JsonParseException;
+
+/**
+ * Read-only view of an array in a JsonDocument.
+ * Elements are found by scanning the document's index, and are only decoded when accessed.
+ */
+@SuppressWarnings("unused")
+public class JsonArrayView {
+    private final JsonDocument document;
+    private final int token;
+
+    /**
+     * Constructs a JsonArrayView.
+     * @param document Document containing the array
+     * @param token Index of the array's BEGIN_ARRAY token
+     */
+    JsonArrayView(JsonDocument document, int token) {
+        this.document = document;
+        this.token = token;
+    }
+
+    /**
+     * Gets the number of elements in this array.
+     * @return Number of elements
+     */
+    public int size() {
+        int n = 0;
+        final int end = document.next(token);
+        for(int i = token + 1; i < end; i = document.next(i)) { n++; }
+        return n;
+    }
+
+    /**
+     * Gets the type of an element.
+     * @param index Index of the element
+     * @return BEGIN_OBJECT, BEGIN_ARRAY, STRING, NUMBER, TRUE, FALSE, or NULL
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public JsonToken getType(int index) throws IndexOutOfBoundsException {
+        return document.type(find(index));
+    }
+
+    /**
+     * Gets an element as a JsonEntity, building it (and everything it contains) from the input.
+     * @param index Index of the element
+     * @return The element
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public JsonEntity get(int index) throws JsonParseException, IndexOutOfBoundsException {
+        return document.materialize(find(index));
+    }
+
+    /**
+     * Gets an element that is an object.
+     * @param index Index of the element
+     * @return View of the element, or null if it is not an object
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public JsonObjectView getObject(int index) throws IndexOutOfBoundsException {
+        final int i = find(index);
+        return document.type(i) != JsonToken.BEGIN_OBJECT ? null : new JsonObjectView(document, i);
+    }
+
+    /**
+     * Gets an element that is an array.
+     * @param index Index of the element
+     * @return View of the element, or null if it is not an array
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public JsonArrayView getArray(int index) throws IndexOutOfBoundsException {
+        final int i = find(index);
+        return document.type(i) != JsonToken.BEGIN_ARRAY ? null : new JsonArrayView(document, i);
+    }
+
+    /**
+     * Gets an element that is a string.
+     * @param index Index of the element
+     * @return Value of the element, or null if it is not a string
+     * @throws JsonParseException If the string contains an invalid escape sequence
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public String getString(int index) throws JsonParseException, IndexOutOfBoundsException {
+        final int i = find(index);
+        return document.type(i) != JsonToken.STRING ? null : document.string(i);
+    }
+
+    /**
+     * Gets an element that is a number, as it appears in the input.
+     * @param index Index of the element
+     * @return Text of the element, or null if it is not a number
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    public String getNumber(int index) throws IndexOutOfBoundsException {
+        final int i = find(index);
+        return document.type(i) != JsonToken.NUMBER ? null : document.number(i);
+    }
+
+    /**
+     * Builds a JsonArray from this view.
+     * @return This array as a JsonArray
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    public JsonArray materialize() throws JsonParseException {
+        return (JsonArray) document.materialize(token);
+    }
+
+    /**
+     * Finds an element.
+     * @param index Index of the element
+     * @return Index of the element's token
+     * @throws IndexOutOfBoundsException If the index is larger than the size of the array
+     */
+    private int find(int index) throws IndexOutOfBoundsException {
+        final int end = document.next(token);
+        int i = token + 1;
+        for(int n = 0; i < end; n++, i = document.next(i)) {
+            if(n == index) { return i; }
+        }
+        throw new IndexOutOfBoundsException("Index " + index + " is out of bounds.");
+    }
+}
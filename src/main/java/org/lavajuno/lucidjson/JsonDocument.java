@@ -0,0 +1,246 @@
+package org.lavajuno.lucidjson;
+
+import org.lavajuno.lucidjson.error.JsonParseException;
+import org.lavajuno.lucidjson.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * A lazily parsed JSON document.
+ * The input is scanned once into a compact structural index: two ints per token,
+ * holding the token's type, its offset in the input, and either the end of its value
+ * or (for objects and arrays) the index of the token after its last member.
+ * JsonObjectView and JsonArrayView read members straight from the index and input,
+ * so values are only decoded when they are accessed, and nothing else is allocated.
+ * The input array is not copied, and must not be modified while the document is in use.
+ * Documents can be read by multiple threads at once.
+ */
+@SuppressWarnings("unused")
+public class JsonDocument {
+    /**
+     * Largest input that can be indexed (offsets are stored in 27 bits)
+     */
+    public static final int MAX_INPUT_SIZE = 1 << 27;
+
+    private static final int OFFSET_MASK = MAX_INPUT_SIZE - 1;
+    private static final int ESCAPED_FLAG = 1 << 27;
+    private static final int TYPE_SHIFT = 28;
+    private static final JsonToken[] TYPES = JsonToken.values();
+
+    private final byte[] input;
+    private final int[] index;
+    private final int size;
+
+    /**
+     * Constructs a JsonDocument.
+     * @param input Input array
+     * @param index Structural index
+     * @param size Number of tokens in the index
+     */
+    private JsonDocument(byte[] input, int[] index, int size) {
+        this.input = input;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * Indexes a JSON document.
+     * @param input UTF-8 JSON to parse
+     * @return Indexed document
+     * @throws JsonParseException If the input is not valid JSON
+     * @throws IllegalArgumentException If the input is larger than MAX_INPUT_SIZE
+     */
+    public static JsonDocument parse(byte[] input) throws JsonParseException, IllegalArgumentException {
+        return parse(input, 0, input.length);
+    }
+
+    /**
+     * Indexes a JSON document.
+     * @param input Array containing UTF-8 JSON to parse
+     * @param offset Index of the start of the JSON in the array
+     * @param length Length of the JSON in bytes
+     * @return Indexed document
+     * @throws JsonParseException If the input is not valid JSON
+     * @throws IllegalArgumentException If the input array is larger than MAX_INPUT_SIZE
+     */
+    public static JsonDocument parse(byte[] input, int offset, int length)
+            throws JsonParseException, IllegalArgumentException {
+        if(input.length > MAX_INPUT_SIZE) {
+            throw new IllegalArgumentException("Input is too large to index.");
+        }
+        final JsonReader reader = new JsonReader(input, offset, length);
+        int[] index = new int[Math.max(16, length / 4)];
+        int size = 0;
+        int[] open = new int[32];
+        int depth = 0;
+        JsonToken token;
+        while((token = reader.next()) != JsonToken.END_DOCUMENT) {
+            if(token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                // Point the container at the token after its last member
+                index[2 * open[--depth] + 1] = size;
+                continue;
+            }
+            if(depth == 0 && size > 0) { throw reader.error("Expected end of input."); }
+            if(2 * size + 2 > index.length) { index = Arrays.copyOf(index, index.length * 2); }
+            index[2 * size] = (token.ordinal() << TYPE_SHIFT) |
+                    (reader.valueEscaped() ? ESCAPED_FLAG : 0) |
+                    reader.valueStart();
+            index[2 * size + 1] = reader.valueEnd();
+            if(token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                if(depth == open.length) { open = Arrays.copyOf(open, open.length * 2); }
+                open[depth++] = size;
+            }
+            size++;
+        }
+        if(size == 0) { throw reader.error("Expected a value."); }
+        return new JsonDocument(input, index, size);
+    }
+
+    /**
+     * Gets the type of the root value.
+     * @return BEGIN_OBJECT, BEGIN_ARRAY, STRING, NUMBER, TRUE, FALSE, or NULL
+     */
+    public JsonToken getRootType() { return type(0); }
+
+    /**
+     * Gets the root value as an object.
+     * @return View of the root object
+     * @throws IllegalStateException If the root value is not an object
+     */
+    public JsonObjectView getRootObject() throws IllegalStateException {
+        if(type(0) != JsonToken.BEGIN_OBJECT) { throw new IllegalStateException("Root value is not an object."); }
+        return new JsonObjectView(this, 0);
+    }
+
+    /**
+     * Gets the root value as an array.
+     * @return View of the root array
+     * @throws IllegalStateException If the root value is not an array
+     */
+    public JsonArrayView getRootArray() throws IllegalStateException {
+        if(type(0) != JsonToken.BEGIN_ARRAY) { throw new IllegalStateException("Root value is not an array."); }
+        return new JsonArrayView(this, 0);
+    }
+
+    /**
+     * Builds a full JsonEntity tree from this document.
+     * @return The root value as a JsonEntity
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    public JsonEntity materialize() throws JsonParseException { return materialize(0); }
+
+    /**
+     * Gets the number of tokens in this document's index.
+     * @return Number of names and values in the document
+     */
+    public int getTokenCount() { return size; }
+
+    /**
+     * @param token Index of a token
+     * @return Type of the token
+     */
+    JsonToken type(int token) { return TYPES[index[2 * token] >>> TYPE_SHIFT]; }
+
+    /**
+     * @param token Index of a token
+     * @return Index of the token after this token's value (skipping members of objects and arrays)
+     */
+    int next(int token) {
+        final JsonToken type = type(token);
+        if(type == JsonToken.BEGIN_OBJECT || type == JsonToken.BEGIN_ARRAY) { return index[2 * token + 1]; }
+        return token + 1;
+    }
+
+    /**
+     * @param token Index of a NAME or STRING token
+     * @return Decoded value of the token
+     * @throws JsonParseException If the string contains an invalid escape sequence
+     */
+    String string(int token) throws JsonParseException {
+        final int start = index[2 * token] & OFFSET_MASK;
+        final int end = index[2 * token + 1];
+        if((index[2 * token] & ESCAPED_FLAG) == 0) {
+            return new String(input, start, end - start, StandardCharsets.UTF_8);
+        }
+        return StringUtils.unescape(input, start, end);
+    }
+
+    /**
+     * @param token Index of a NUMBER token
+     * @return Text of the number
+     */
+    String number(int token) {
+        final int start = index[2 * token] & OFFSET_MASK;
+        return new String(input, start, index[2 * token + 1] - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param token Index of a NUMBER token
+     * @return Value of the number as a long
+     * @throws NumberFormatException If the number is not an integer, or does not fit in a long
+     */
+    long longValue(int token) throws NumberFormatException {
+        return StringUtils.parseLong(input, index[2 * token] & OFFSET_MASK, index[2 * token + 1]);
+    }
+
+    /**
+     * Checks if a NAME or STRING token is equal to a string.
+     * Does not allocate when the token has no escape sequences and the string is ASCII.
+     * @param token Index of a NAME or STRING token
+     * @param s String to compare with
+     * @return True if the token's value is equal to the string
+     * @throws JsonParseException If the token contains an invalid escape sequence
+     */
+    boolean textEquals(int token, String s) throws JsonParseException {
+        final int start = index[2 * token] & OFFSET_MASK;
+        final int length = index[2 * token + 1] - start;
+        if((index[2 * token] & ESCAPED_FLAG) == 0 && length <= s.length()) {
+            if(length < s.length()) { return false; } // Decoding never makes a string longer
+            for(int i = 0; i < length; i++) {
+                final byte b = input[start + i];
+                if(b < 0 || s.charAt(i) >= 0x80) { return string(token).equals(s); }
+                if(b != s.charAt(i)) { return false; }
+            }
+            return true;
+        }
+        return string(token).equals(s);
+    }
+
+    /**
+     * Builds a JsonEntity from a value token and everything it contains.
+     * @param token Index of a value token
+     * @return JsonEntity for the value
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    JsonEntity materialize(int token) throws JsonParseException {
+        switch(type(token)) {
+            case BEGIN_OBJECT: {
+                TreeMap<String, JsonEntity> values = new TreeMap<>();
+                final int end = next(token);
+                for(int i = token + 1; i < end; i = next(i + 1)) {
+                    values.put(string(i), materialize(i + 1));
+                }
+                return new JsonObject(values);
+            }
+            case BEGIN_ARRAY: {
+                ArrayList<JsonEntity> values = new ArrayList<>();
+                final int end = next(token);
+                for(int i = token + 1; i < end; i = next(i)) { values.add(materialize(i)); }
+                return new JsonArray(values);
+            }
+            case STRING:
+                return new JsonString(string(token));
+            case NUMBER:
+                return new JsonNumber(number(token));
+            case TRUE:
+                return new JsonLiteral(true);
+            case FALSE:
+                return new JsonLiteral(false);
+            default:
+                return new JsonLiteral();
+        }
+    }
+}
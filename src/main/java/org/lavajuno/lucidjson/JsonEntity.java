@@ -4,6 +4,9 @@ import org.lavajuno.lucidjson.util.Index;
 import org.lavajuno.lucidjson.util.Pair;
 import org.lavajuno.lucidjson.error.JsonParseException;
 
+import java.util.ArrayList;
+import java.util.TreeMap;
+
 /**
  * Abstract representation of a single JSON entity.
  * Instances of JsonEntity can be objects, arrays, strings, numbers, or literals.
@@ -48,6 +51,46 @@ public abstract class JsonEntity {
         return new Pair<>(key, value);
     }
 
+    /**
+     * Constructs a single JsonEntity from the tokens of a JsonReader.
+     * @param reader Reader to take tokens from
+     * @param token The first token of the entity (already read from the reader)
+     * @return JsonEntity created from the tokens
+     * @throws JsonParseException If the tokens do not form a complete entity
+     */
+    protected static JsonEntity readEntity(JsonReader reader, JsonToken token) throws JsonParseException {
+        switch(token) {
+            case BEGIN_OBJECT: {
+                TreeMap<String, JsonEntity> values = new TreeMap<>();
+                while((token = reader.next()) == JsonToken.NAME) {
+                    String key = reader.getString();
+                    values.put(key, readEntity(reader, reader.next()));
+                }
+                if(token != JsonToken.END_OBJECT) { throw reader.error("Parsing object, expected a '}'."); }
+                return new JsonObject(values);
+            }
+            case BEGIN_ARRAY: {
+                ArrayList<JsonEntity> values = new ArrayList<>();
+                while((token = reader.next()) != JsonToken.END_ARRAY) {
+                    values.add(readEntity(reader, token));
+                }
+                return new JsonArray(values);
+            }
+            case STRING:
+                return new JsonString(reader.getString());
+            case NUMBER:
+                return new JsonNumber(reader.getNumber());
+            case TRUE:
+                return new JsonLiteral(true);
+            case FALSE:
+                return new JsonLiteral(false);
+            case NULL:
+                return new JsonLiteral();
+            default:
+                throw reader.error("Expected a value.");
+        }
+    }
+
     /**
      * @param c Character to check
      * @return True if the character is whitespace (space, tab, or newline)
@@ -35,6 +35,12 @@ public class JsonNumber extends JsonEntity {
      */
     public JsonNumber(double value) { this.value = Double.toString(value); }
 
+    /**
+     * Constructs a JsonNumber from a number that has already been validated.
+     * @param value Text of the number
+     */
+    JsonNumber(String value) { this.value = value; }
+
     /**
      * Constructs a JsonNumber from the input.
      * @param text JSON number
@@ -4,6 +4,7 @@ import org.lavajuno.lucidjson.util.Index;
 import org.lavajuno.lucidjson.util.Pair;
 import org.lavajuno.lucidjson.error.JsonParseException;
 
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.Collection;
 import java.util.Set;
@@ -48,6 +49,21 @@ public class JsonObject extends JsonEntity {
         return new JsonObject(text, i);
     }
 
+    /**
+     * Deserializes a JSON object from UTF-8 bytes.
+     * Parses with JsonReader, so the input is not copied into a String first.
+     * @param input UTF-8 input
+     * @return Deserialized JSON object
+     * @throws JsonParseException if parsing fails;
+     */
+    public static JsonObject from(byte[] input) throws JsonParseException {
+        JsonReader reader = new JsonReader(input);
+        if(reader.next() != JsonToken.BEGIN_OBJECT) {
+            throw reader.error("Parsing object, expected a '{'.");
+        }
+        return (JsonObject) readEntity(reader, JsonToken.BEGIN_OBJECT);
+    }
+
     /**
      * @param text JSON to parse
      * @param i Index of next character to parse
@@ -129,6 +145,12 @@ public class JsonObject extends JsonEntity {
      */
     public Collection<JsonEntity> values() { return values.values(); }
 
+    /**
+     * Gets the key-value pairs in this JsonObject
+     * @return This JsonObject's entries
+     */
+    Set<Map.Entry<String, JsonEntity>> entries() { return values.entrySet(); }
+
     /**
      * Gets ths size of this JsonObject
      * @return The number of entities contained by this JsonObject
@@ -136,36 +158,8 @@ public class JsonObject extends JsonEntity {
     public int size() { return values.size(); }
 
     @Override
-    protected String toJsonString(int indent) {
-        StringBuilder sb = new StringBuilder();
-        String pad_elem = " ".repeat(indent + 4);
-        String pad_close = " ".repeat(indent);
-        sb.append("{\n");
-        Set<String> keys = values.keySet();
-        int i = 0;
-        for(String j : keys) {
-            i++;
-            sb.append(pad_elem).append("\"").append(j).append("\": ");
-            sb.append(values.get(j).toJsonString(indent + 4));
-            if(i < keys.size()) { sb.append(","); }
-            sb.append("\n");
-        }
-        sb.append(pad_close).append("}");
-        return sb.toString();
-    }
+    protected String toJsonString(int indent) { return JsonWriter.toString(this, true, indent); }
 
     @Override
-    public String toJsonString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        Set<String> keys = values.keySet();
-        int i = 0;
-        for(String j : keys) {
-            i++;
-            sb.append("\"").append(j).append("\":").append(values.get(j).toJsonString());
-            if(i < keys.size()) { sb.append(","); }
-        }
-        sb.append("}");
-        return sb.toString();
-    }
+    public String toJsonString() { return JsonWriter.toString(this, false, 0); }
 }
@@ -0,0 +1,172 @@
+package org.lavajuno.lucidjson;
+
+import org.lavajuno.lucidjson.error.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of an object in a JsonDocument.
+ * Members are found by scanning the document's index, and are only decoded when accessed.
+ */
+@SuppressWarnings("unused")
+public class JsonObjectView {
+    private final JsonDocument document;
+    private final int token;
+
+    /**
+     * Constructs a JsonObjectView.
+     * @param document Document containing the object
+     * @param token Index of the object's BEGIN_OBJECT token
+     */
+    JsonObjectView(JsonDocument document, int token) {
+        this.document = document;
+        this.token = token;
+    }
+
+    /**
+     * Gets the number of members in this object.
+     * @return Number of members
+     */
+    public int size() {
+        int n = 0;
+        final int end = document.next(token);
+        for(int i = token + 1; i < end; i = document.next(i + 1)) { n++; }
+        return n;
+    }
+
+    /**
+     * Gets the keys of this object, in the order they appear in the input.
+     * @return This object's keys
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public List<String> keys() throws JsonParseException {
+        ArrayList<String> keys = new ArrayList<>();
+        final int end = document.next(token);
+        for(int i = token + 1; i < end; i = document.next(i + 1)) { keys.add(document.string(i)); }
+        return keys;
+    }
+
+    /**
+     * Checks if this object has a member with the given key.
+     * @param key Key to find
+     * @return True if the member exists
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public boolean has(String key) throws JsonParseException { return find(key) >= 0; }
+
+    /**
+     * Gets the type of the member with the given key.
+     * @param key Key of the member
+     * @return BEGIN_OBJECT, BEGIN_ARRAY, STRING, NUMBER, TRUE, FALSE, or NULL, or null if the member does not exist
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public JsonToken getType(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 ? null : document.type(i);
+    }
+
+    /**
+     * Gets a member as a JsonEntity, building it (and everything it contains) from the input.
+     * @param key Key of the member
+     * @return The member, or null if it does not exist
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    public JsonEntity get(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 ? null : document.materialize(i);
+    }
+
+    /**
+     * Gets a member that is an object.
+     * @param key Key of the member
+     * @return View of the member, or null if it does not exist or is not an object
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public JsonObjectView getObject(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 || document.type(i) != JsonToken.BEGIN_OBJECT ? null : new JsonObjectView(document, i);
+    }
+
+    /**
+     * Gets a member that is an array.
+     * @param key Key of the member
+     * @return View of the member, or null if it does not exist or is not an array
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public JsonArrayView getArray(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 || document.type(i) != JsonToken.BEGIN_ARRAY ? null : new JsonArrayView(document, i);
+    }
+
+    /**
+     * Gets a member that is a string.
+     * @param key Key of the member
+     * @return Value of the member, or null if it does not exist or is not a string
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    public String getString(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 || document.type(i) != JsonToken.STRING ? null : document.string(i);
+    }
+
+    /**
+     * Gets a member that is a number, as it appears in the input.
+     * @param key Key of the member
+     * @return Text of the member, or null if it does not exist or is not a number
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public String getNumber(String key) throws JsonParseException {
+        final int i = find(key);
+        return i < 0 || document.type(i) != JsonToken.NUMBER ? null : document.number(i);
+    }
+
+    /**
+     * Gets a member that is an integer, without allocating.
+     * @param key Key of the member
+     * @param fallback Value to return if the member does not exist or is not a number
+     * @return Value of the member, or the fallback
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     * @throws NumberFormatException If the member is not an integer, or does not fit in a long
+     */
+    public long getLong(String key, long fallback) throws JsonParseException, NumberFormatException {
+        final int i = find(key);
+        return i < 0 || document.type(i) != JsonToken.NUMBER ? fallback : document.longValue(i);
+    }
+
+    /**
+     * Gets a member that is a boolean.
+     * @param key Key of the member
+     * @return Value of the member, or null if it does not exist or is not a boolean
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    public Boolean getBoolean(String key) throws JsonParseException {
+        final int i = find(key);
+        if(i < 0) { return null; }
+        final JsonToken type = document.type(i);
+        return type == JsonToken.TRUE ? Boolean.TRUE : type == JsonToken.FALSE ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Builds a JsonObject from this view.
+     * @return This object as a JsonObject
+     * @throws JsonParseException If a string contains an invalid escape sequence
+     */
+    public JsonObject materialize() throws JsonParseException {
+        return (JsonObject) document.materialize(token);
+    }
+
+    /**
+     * Finds the value of the member with the given key.
+     * @param key Key to find
+     * @return Index of the member's value token, or -1 if it does not exist
+     * @throws JsonParseException If a key contains an invalid escape sequence
+     */
+    private int find(String key) throws JsonParseException {
+        final int end = document.next(token);
+        for(int i = token + 1; i < end; i = document.next(i + 1)) {
+            if(document.textEquals(i, key)) { return i + 1; }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,616 @@
+package org.lavajuno.lucidjson;
+
+import org.lavajuno.lucidjson.error.JsonParseException;
+import org.lavajuno.lucidjson.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull parser for UTF-8 JSON input.
+ * JsonReader returns one token at a time from next(), without building a tree.
+ * Input can be given all at once, or fed in chunks as it arrives with feed().
+ * When a token has not been fully received yet, next() returns NOT_AVAILABLE
+ * and leaves the reader unchanged, so it can be called again after more input is fed.
+ * Multiple top-level values may follow each other in the same input.
+ * Strings and numbers are only decoded when their value is requested.
+ */
+@SuppressWarnings("unused")
+public class JsonReader {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private static final byte[] TRUE_BYTES = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE_BYTES = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] NULL_BYTES = { 'n', 'u', 'l', 'l' };
+
+    /**
+     * Initial size of the input buffer for readers that are fed in chunks
+     */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean owns_buffer;
+    private boolean end_of_input;
+    private int discarded;
+
+    private int[] stack = new int[32];
+    private int depth;
+
+    private JsonToken token;
+    private int value_start;
+    private int value_end;
+    private boolean value_escaped;
+    private boolean scan_escaped;
+    private int skip_depth;
+
+    /**
+     * Constructs a JsonReader with no input. Input is given to it with feed().
+     */
+    public JsonReader() {
+        buf = new byte[INITIAL_BUFFER_SIZE];
+        owns_buffer = true;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Constructs a JsonReader over complete input. The input array is not copied.
+     * @param input UTF-8 JSON to parse
+     */
+    public JsonReader(byte[] input) { this(input, 0, input.length); }
+
+    /**
+     * Constructs a JsonReader over complete input. The input array is not copied.
+     * @param input Array containing UTF-8 JSON to parse
+     * @param offset Index of the start of the JSON in the array
+     * @param length Length of the JSON in bytes
+     */
+    public JsonReader(byte[] input, int offset, int length) { reset(input, offset, length); }
+
+    /**
+     * Resets this JsonReader to parse new complete input, so it can be reused.
+     * The input array is not copied.
+     * @param input Array containing UTF-8 JSON to parse
+     * @param offset Index of the start of the JSON in the array
+     * @param length Length of the JSON in bytes
+     */
+    public void reset(byte[] input, int offset, int length) {
+        buf = input;
+        pos = offset;
+        limit = offset + length;
+        owns_buffer = false;
+        end_of_input = true;
+        discarded = -offset;
+        depth = 0;
+        stack[depth++] = EMPTY_DOCUMENT;
+        token = null;
+        value_start = pos;
+        skip_depth = 0;
+    }
+
+    /**
+     * Feeds more input to this JsonReader.
+     * @param input Array containing the next chunk of UTF-8 JSON
+     * @param offset Index of the start of the chunk in the array
+     * @param length Length of the chunk in bytes
+     * @throws IllegalStateException If endInput() has already been called
+     */
+    public void feed(byte[] input, int offset, int length) throws IllegalStateException {
+        makeRoom(length);
+        System.arraycopy(input, offset, buf, limit, length);
+        limit += length;
+    }
+
+    /**
+     * Feeds more input to this JsonReader. Consumes all remaining bytes in the buffer.
+     * @param input Buffer containing the next chunk of UTF-8 JSON
+     * @throws IllegalStateException If endInput() has already been called
+     */
+    public void feed(ByteBuffer input) throws IllegalStateException {
+        final int length = input.remaining();
+        makeRoom(length);
+        input.get(buf, limit, length);
+        limit += length;
+    }
+
+    /**
+     * Signals that there is no more input.
+     * After this, incomplete tokens cause errors instead of NOT_AVAILABLE.
+     */
+    public void endInput() { end_of_input = true; }
+
+    /**
+     * Gets the nesting depth of the reader (0 at the top level).
+     * @return Number of objects and arrays that have been opened but not closed
+     */
+    public int getDepth() { return depth - 1; }
+
+    /**
+     * Gets the last token returned by next().
+     * @return The current token
+     */
+    public JsonToken getToken() { return token; }
+
+    /**
+     * Reads the next token.
+     * @return The next token, or NOT_AVAILABLE if more input is needed
+     * @throws JsonParseException If the input is not valid JSON
+     */
+    public JsonToken next() throws JsonParseException {
+        int p = skipSpace(pos);
+        pos = p; // Skipping whitespace never needs to be undone
+        if(p == limit) {
+            if(!end_of_input) { return JsonToken.NOT_AVAILABLE; }
+            if(depth == 1) { return setToken(JsonToken.END_DOCUMENT, p); }
+            throw error(p, "Reached end of input.");
+        }
+        int next_context;
+        final byte c = buf[p];
+        switch(stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                if(c == ']') { return close(p, JsonToken.END_ARRAY); }
+                next_context = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                if(c == ']') { return close(p, JsonToken.END_ARRAY); }
+                if(c != ',') { throw error(p, "Parsing array, expected a ','."); }
+                p = skipSpace(p + 1);
+                if(p == limit) { return needMore(p); }
+                next_context = NONEMPTY_ARRAY;
+                break;
+            case EMPTY_OBJECT:
+                if(c == '}') { return close(p, JsonToken.END_OBJECT); }
+                return readName(p);
+            case NONEMPTY_OBJECT:
+                if(c == '}') { return close(p, JsonToken.END_OBJECT); }
+                if(c != ',') { throw error(p, "Parsing object, expected a ','."); }
+                p = skipSpace(p + 1);
+                if(p == limit) { return needMore(p); }
+                return readName(p);
+            case DANGLING_NAME:
+                if(c != ':') { throw error(p, "Parsing pair, expected a ':'."); }
+                p = skipSpace(p + 1);
+                if(p == limit) { return needMore(p); }
+                next_context = NONEMPTY_OBJECT;
+                break;
+            default:
+                next_context = NONEMPTY_DOCUMENT;
+        }
+        return readValue(p, next_context);
+    }
+
+    /**
+     * Skips the next value, including everything nested inside it.
+     * If the next token is a name, the name and its value are skipped.
+     * If more input is needed, returns false. Calling skipValue() again
+     * after feeding more input will continue skipping where it left off.
+     * @return True if the value was skipped, false if more input is needed
+     * @throws JsonParseException If the input is not valid JSON
+     */
+    public boolean skipValue() throws JsonParseException {
+        while(true) {
+            final JsonToken t = next();
+            switch(t) {
+                case NOT_AVAILABLE:
+                    return false;
+                case END_DOCUMENT:
+                    skip_depth = 0;
+                    return true;
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    skip_depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    skip_depth--;
+                    break;
+                case NAME:
+                    continue;
+                default:
+                    break;
+            }
+            if(skip_depth <= 0) {
+                skip_depth = 0;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the value of the current NAME or STRING token.
+     * @return Decoded value of the token
+     * @throws JsonParseException If the string contains an invalid escape sequence
+     * @throws IllegalStateException If the current token is not a NAME or STRING
+     */
+    public String getString() throws JsonParseException, IllegalStateException {
+        if(token != JsonToken.NAME && token != JsonToken.STRING) {
+            throw new IllegalStateException("Current token is not a name or string.");
+        }
+        if(!value_escaped) {
+            return new String(buf, value_start, value_end - value_start, StandardCharsets.UTF_8);
+        }
+        return StringUtils.unescape(buf, value_start, value_end);
+    }
+
+    /**
+     * Checks if the current NAME or STRING token is equal to a string.
+     * Does not allocate when the token has no escape sequences and the string is ASCII.
+     * @param s String to compare with
+     * @return True if the token's value is equal to the string
+     * @throws JsonParseException If the token contains an invalid escape sequence
+     * @throws IllegalStateException If the current token is not a NAME or STRING
+     */
+    public boolean textEquals(String s) throws JsonParseException, IllegalStateException {
+        if(token != JsonToken.NAME && token != JsonToken.STRING) {
+            throw new IllegalStateException("Current token is not a name or string.");
+        }
+        final int length = value_end - value_start;
+        if(!value_escaped && length <= s.length()) {
+            if(length < s.length()) { return false; } // Decoding never makes a string longer
+            for(int i = 0; i < length; i++) {
+                final byte b = buf[value_start + i];
+                if(b < 0 || s.charAt(i) >= 0x80) { return getString().equals(s); }
+                if(b != s.charAt(i)) { return false; }
+            }
+            return true;
+        }
+        return getString().equals(s);
+    }
+
+    /**
+     * Gets the text of the current NUMBER token.
+     * @return The number as it appears in the input
+     * @throws IllegalStateException If the current token is not a NUMBER
+     */
+    public String getNumber() throws IllegalStateException {
+        checkNumber();
+        return new String(buf, value_start, value_end - value_start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the value of the current NUMBER token as a long, without allocating.
+     * @return Value of the number
+     * @throws NumberFormatException If the number is not an integer, or does not fit in a long
+     * @throws IllegalStateException If the current token is not a NUMBER
+     */
+    public long getLong() throws NumberFormatException, IllegalStateException {
+        checkNumber();
+        return StringUtils.parseLong(buf, value_start, value_end);
+    }
+
+    /**
+     * Gets the value of the current NUMBER token as an int, without allocating.
+     * @return Value of the number
+     * @throws NumberFormatException If the number is not an integer, or does not fit in an int
+     * @throws IllegalStateException If the current token is not a NUMBER
+     */
+    public int getInt() throws NumberFormatException, IllegalStateException {
+        final long value = getLong();
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Out of range: " + getNumber());
+        }
+        return (int) value;
+    }
+
+    /**
+     * Gets the value of the current NUMBER token as a double.
+     * @return Value of the number
+     * @throws IllegalStateException If the current token is not a NUMBER
+     */
+    public double getDouble() throws IllegalStateException {
+        return Double.parseDouble(getNumber());
+    }
+
+    /**
+     * Gets the value of the current TRUE or FALSE token.
+     * @return Value of the literal
+     * @throws IllegalStateException If the current token is not TRUE or FALSE
+     */
+    public boolean getBoolean() throws IllegalStateException {
+        if(token != JsonToken.TRUE && token != JsonToken.FALSE) {
+            throw new IllegalStateException("Current token is not a boolean.");
+        }
+        return token == JsonToken.TRUE;
+    }
+
+    /**
+     * Creates an exception for an error at the reader's current position.
+     * @param cause Description of the error
+     * @return Exception to throw
+     */
+    JsonParseException error(String cause) { return error(value_start, cause); }
+
+    /**
+     * Gets where the current token starts in the input array.
+     * For NAME and STRING tokens, this is the first byte after the opening quote.
+     * Only meaningful when the whole input was given to the constructor or reset().
+     * @return Index of the first byte of the current token's value
+     */
+    public int valueStart() { return value_start; }
+
+    /**
+     * Gets where the current token ends in the input array.
+     * For NAME and STRING tokens, this is the index of the closing quote.
+     * Only meaningful when the whole input was given to the constructor or reset().
+     * @return Index after the last byte of the current token's value
+     */
+    public int valueEnd() { return value_end; }
+
+    /**
+     * @return True if the current NAME or STRING token contains escape sequences
+     */
+    boolean valueEscaped() { return value_escaped; }
+
+    /**
+     * Reads a value token starting at the given index, committing the new context if it is complete.
+     * @param p Index of the first byte of the value
+     * @param next_context Context to move to once the value has been read
+     * @return The token that was read, or NOT_AVAILABLE
+     * @throws JsonParseException If the input is not a valid value
+     */
+    private JsonToken readValue(int p, int next_context) throws JsonParseException {
+        final byte c = buf[p];
+        switch(c) {
+            case '{':
+                stack[depth - 1] = next_context;
+                push(EMPTY_OBJECT);
+                pos = p + 1;
+                return setToken(JsonToken.BEGIN_OBJECT, p);
+            case '[':
+                stack[depth - 1] = next_context;
+                push(EMPTY_ARRAY);
+                pos = p + 1;
+                return setToken(JsonToken.BEGIN_ARRAY, p);
+            case '"': {
+                final int end = scanString(p);
+                if(end < 0) { return needMore(p); }
+                stack[depth - 1] = next_context;
+                return setValue(JsonToken.STRING, p + 1, end, end + 1);
+            }
+            case 't':
+                return readLiteral(p, next_context, TRUE_BYTES, JsonToken.TRUE);
+            case 'f':
+                return readLiteral(p, next_context, FALSE_BYTES, JsonToken.FALSE);
+            case 'n':
+                return readLiteral(p, next_context, NULL_BYTES, JsonToken.NULL);
+            default:
+                if(c != '-' && (c < '0' || c > '9')) { throw error(p, "Unexpected character."); }
+                int end = p;
+                while(end < limit && isNumber(buf[end])) { end++; }
+                if(end == limit && !end_of_input) { return JsonToken.NOT_AVAILABLE; }
+                if(!isValidNumber(p, end)) { throw error(p, "Parsing number, invalid number."); }
+                stack[depth - 1] = next_context;
+                return setValue(JsonToken.NUMBER, p, end, end);
+        }
+    }
+
+    /**
+     * Reads an object member name starting at the given index.
+     * @param p Index of the name's opening quote
+     * @return NAME, or NOT_AVAILABLE
+     * @throws JsonParseException If the input is not a valid name
+     */
+    private JsonToken readName(int p) throws JsonParseException {
+        if(buf[p] != '"') { throw error(p, "Parsing object, expected a '\"'."); }
+        final int end = scanString(p);
+        if(end < 0) { return needMore(p); }
+        stack[depth - 1] = DANGLING_NAME;
+        return setValue(JsonToken.NAME, p + 1, end, end + 1);
+    }
+
+    /**
+     * Reads a literal (true/false/null) starting at the given index.
+     * @param p Index of the first byte of the literal
+     * @param next_context Context to move to once the literal has been read
+     * @param expected Bytes of the literal
+     * @param type Token for the literal
+     * @return The literal's token, or NOT_AVAILABLE
+     * @throws JsonParseException If the input is not the expected literal
+     */
+    private JsonToken readLiteral(int p, int next_context, byte[] expected, JsonToken type)
+            throws JsonParseException {
+        final int available = Math.min(limit - p, expected.length);
+        for(int i = 0; i < available; i++) {
+            if(buf[p + i] != expected[i]) { throw error(p, "Parsing literal, unknown value"); }
+        }
+        if(available < expected.length) { return needMore(p); }
+        stack[depth - 1] = next_context;
+        pos = p + expected.length;
+        return setToken(type, p);
+    }
+
+    /**
+     * Closes the current object or array.
+     * @param p Index of the closing bracket
+     * @param type END_OBJECT or END_ARRAY
+     * @return The closing token
+     */
+    private JsonToken close(int p, JsonToken type) {
+        depth--;
+        pos = p + 1;
+        setToken(type, p);
+        value_end = p + 1;
+        return type;
+    }
+
+    /**
+     * Finds the closing quote of a string, and records whether it contains escape sequences.
+     * @param p Index of the opening quote
+     * @return Index of the closing quote, or -1 if the string has not been fully received
+     * @throws JsonParseException If the string contains an unescaped control character
+     */
+    private int scanString(int p) throws JsonParseException {
+        scan_escaped = false;
+        int i = p + 1;
+        while(i < limit) {
+            final byte b = buf[i];
+            if(b == '"') { return i; }
+            if(b == '\\') {
+                scan_escaped = true;
+                i += 2;
+                continue;
+            }
+            if(b >= 0 && b < 0x20) { throw error(i, "Parsing string, unescaped control character."); }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that the bytes between two indices are a valid JSON number.
+     * @param start Index of the first byte
+     * @param end Index after the last byte
+     * @return True if the number is valid
+     */
+    private boolean isValidNumber(int start, int end) {
+        int i = start;
+        if(i < end && buf[i] == '-') { i++; }
+        if(i == end) { return false; }
+        if(buf[i] == '0') {
+            i++;
+        } else {
+            if(!isDigit(buf[i])) { return false; }
+            while(i < end && isDigit(buf[i])) { i++; }
+        }
+        if(i < end && buf[i] == '.') {
+            i++;
+            if(i == end || !isDigit(buf[i])) { return false; }
+            while(i < end && isDigit(buf[i])) { i++; }
+        }
+        if(i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            if(i < end && (buf[i] == '+' || buf[i] == '-')) { i++; }
+            if(i == end || !isDigit(buf[i])) { return false; }
+            while(i < end && isDigit(buf[i])) { i++; }
+        }
+        return i == end;
+    }
+
+    /**
+     * @param b Byte to check
+     * @return True if the byte is an ASCII digit
+     */
+    private static boolean isDigit(byte b) { return b >= '0' && b <= '9'; }
+
+    /**
+     * @param b Byte to check
+     * @return True if the byte can be part of a JSON number
+     */
+    private static boolean isNumber(byte b) {
+        return isDigit(b) || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E';
+    }
+
+    /**
+     * Skips whitespace.
+     * @param p Index to start at
+     * @return Index of the first non-whitespace byte, or the limit
+     */
+    private int skipSpace(int p) {
+        while(p < limit) {
+            final byte b = buf[p];
+            if(b != ' ' && b != '\t' && b != '\n' && b != '\r') { break; }
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Handles a token that has not been fully received.
+     * @param p Index of the start of the token
+     * @return NOT_AVAILABLE
+     * @throws JsonParseException If there is no more input
+     */
+    private JsonToken needMore(int p) throws JsonParseException {
+        if(end_of_input) { throw error(p, "Reached end of input."); }
+        return JsonToken.NOT_AVAILABLE;
+    }
+
+    /**
+     * Sets the current token (for tokens without a value).
+     * @param type Token
+     * @param p Index of the token
+     * @return The token
+     */
+    private JsonToken setToken(JsonToken type, int p) {
+        token = type;
+        value_start = p;
+        value_end = p;
+        value_escaped = false;
+        return type;
+    }
+
+    /**
+     * Sets the current token (for tokens with a value), and moves past it.
+     * @param type Token
+     * @param start Index of the first byte of the value
+     * @param end Index after the last byte of the value
+     * @param next Index after the token
+     * @return The token
+     */
+    private JsonToken setValue(JsonToken type, int start, int end, int next) {
+        token = type;
+        value_start = start;
+        value_end = end;
+        value_escaped = scan_escaped && type != JsonToken.NUMBER;
+        pos = next;
+        return type;
+    }
+
+    /**
+     * @param context Context to push onto the stack
+     */
+    private void push(int context) {
+        if(depth == stack.length) { stack = Arrays.copyOf(stack, stack.length * 2); }
+        stack[depth++] = context;
+    }
+
+    /**
+     * @throws IllegalStateException If the current token is not a NUMBER
+     */
+    private void checkNumber() throws IllegalStateException {
+        if(token != JsonToken.NUMBER) { throw new IllegalStateException("Current token is not a number."); }
+    }
+
+    /**
+     * Makes room for more input, discarding input that has already been read.
+     * The current token's value is kept so it can still be read.
+     * @param length Number of bytes that need to fit
+     * @throws IllegalStateException If endInput() has already been called
+     */
+    private void makeRoom(int length) throws IllegalStateException {
+        if(end_of_input) { throw new IllegalStateException("Input has already ended."); }
+        if(owns_buffer && limit + length <= buf.length) { return; }
+        final int keep = Math.min(pos, value_start);
+        final int remaining = limit - keep;
+        byte[] target = buf;
+        if(!owns_buffer || remaining + length > buf.length) {
+            target = new byte[Math.max(INITIAL_BUFFER_SIZE, Integer.highestOneBit(remaining + length) << 1)];
+        }
+        System.arraycopy(buf, keep, target, 0, remaining);
+        buf = target;
+        owns_buffer = true;
+        discarded += keep;
+        pos -= keep;
+        limit -= keep;
+        value_start -= keep;
+        value_end -= keep;
+    }
+
+    /**
+     * Creates an exception for an error at the given index.
+     * @param p Index of the error
+     * @param cause Description of the error
+     * @return Exception to throw
+     */
+    private JsonParseException error(int p, String cause) {
+        return new JsonParseException(buf, p, limit, discarded + p, cause);
+    }
+}
@@ -0,0 +1,66 @@
+package org.lavajuno.lucidjson;
+
+/**
+ * The kinds of tokens returned by JsonReader.
+ */
+public enum JsonToken {
+    /**
+     * The start of an object ('{')
+     */
+    BEGIN_OBJECT,
+
+    /**
+     * The end of an object ('}')
+     */
+    END_OBJECT,
+
+    /**
+     * The start of an array ('[')
+     */
+    BEGIN_ARRAY,
+
+    /**
+     * The end of an array (']')
+     */
+    END_ARRAY,
+
+    /**
+     * The name of an object member
+     */
+    NAME,
+
+    /**
+     * A string value
+     */
+    STRING,
+
+    /**
+     * A number value
+     */
+    NUMBER,
+
+    /**
+     * The literal true
+     */
+    TRUE,
+
+    /**
+     * The literal false
+     */
+    FALSE,
+
+    /**
+     * The literal null
+     */
+    NULL,
+
+    /**
+     * The end of the input
+     */
+    END_DOCUMENT,
+
+    /**
+     * The next token has not been fully received yet. More input needs to be fed to the reader.
+     */
+    NOT_AVAILABLE
+}
@@ -0,0 +1,439 @@
+package org.lavajuno.lucidjson;
+
+import org.lavajuno.lucidjson.util.StringUtils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Streaming JSON serializer.
+ * JsonWriter writes JSON straight to an Appendable or OutputStream in a single pass,
+ * either value by value or from a JsonEntity tree, without building intermediate strings.
+ * Multiple top-level values may be written one after another (for example, one per line).
+ */
+@SuppressWarnings("unused")
+public class JsonWriter implements Flushable {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    /**
+     * Spaces to copy indentation from
+     */
+    private static final String SPACES = " ".repeat(64);
+
+    /**
+     * Number of spaces per indent level in pretty mode
+     */
+    private static final int INDENT = 4;
+
+    private final Appendable out;
+    private final boolean pretty;
+    private final int base_indent;
+    private int[] stack = new int[32];
+    private int depth;
+    private final char[] digits = new char[20];
+
+    /**
+     * Constructs a JsonWriter that writes minified JSON to an Appendable.
+     * @param out Where to write JSON
+     */
+    public JsonWriter(Appendable out) { this(out, false, 0); }
+
+    /**
+     * Constructs a JsonWriter that writes to an Appendable.
+     * @param out Where to write JSON
+     * @param pretty false to minify, true to use newlines and indents
+     */
+    public JsonWriter(Appendable out, boolean pretty) { this(out, pretty, 0); }
+
+    /**
+     * Constructs a JsonWriter that writes minified UTF-8 JSON to an OutputStream.
+     * Output is buffered, so flush() must be called when done.
+     * @param out Where to write JSON
+     */
+    public JsonWriter(OutputStream out) { this(new Utf8Appendable(out), false, 0); }
+
+    /**
+     * Constructs a JsonWriter that writes UTF-8 JSON to an OutputStream.
+     * Output is buffered, so flush() must be called when done.
+     * @param out Where to write JSON
+     * @param pretty false to minify, true to use newlines and indents
+     */
+    public JsonWriter(OutputStream out, boolean pretty) { this(new Utf8Appendable(out), pretty, 0); }
+
+    /**
+     * Constructs a JsonWriter that starts at the given indent.
+     * @param out Where to write JSON
+     * @param pretty false to minify, true to use newlines and indents
+     * @param base_indent Indent of the first value (pretty mode only)
+     */
+    JsonWriter(Appendable out, boolean pretty, int base_indent) {
+        this.out = out;
+        this.pretty = pretty;
+        this.base_indent = base_indent;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Serializes a JsonEntity to a String.
+     * @param entity Entity to serialize
+     * @param pretty false to minify, true to use newlines and indents
+     * @param indent Indent of the entity (pretty mode only)
+     * @return The entity as a JSON string
+     */
+    static String toString(JsonEntity entity, boolean pretty, int indent) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            new JsonWriter(sb, pretty, indent).write(entity);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Starts an object.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void beginObject() throws IOException, IllegalStateException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.append('{');
+    }
+
+    /**
+     * Ends the current object.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If there is no open object, or it is waiting for a value
+     */
+    public void endObject() throws IOException, IllegalStateException {
+        close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    /**
+     * Starts an array.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void beginArray() throws IOException, IllegalStateException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.append('[');
+    }
+
+    /**
+     * Ends the current array.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If there is no open array
+     */
+    public void endArray() throws IOException, IllegalStateException {
+        close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     * @param name Name of the member
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If there is no open object, or it is waiting for a value
+     */
+    public void name(String name) throws IOException, IllegalStateException {
+        final int context = stack[depth - 1];
+        if(context != EMPTY_OBJECT && context != NONEMPTY_OBJECT) {
+            throw new IllegalStateException("Names can only be written inside an object.");
+        }
+        if(context == NONEMPTY_OBJECT) { out.append(','); }
+        newline(depth - 1);
+        stack[depth - 1] = DANGLING_NAME;
+        out.append('"');
+        StringUtils.escape(name, out);
+        out.append(pretty ? "\": " : "\":");
+    }
+
+    /**
+     * Writes a string value.
+     * @param value Value to write (null writes a null literal)
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void value(String value) throws IOException, IllegalStateException {
+        if(value == null) {
+            nullValue();
+            return;
+        }
+        beforeValue();
+        out.append('"');
+        StringUtils.escape(value, out);
+        out.append('"');
+    }
+
+    /**
+     * Writes a number value.
+     * @param value Value to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void value(long value) throws IOException, IllegalStateException {
+        beforeValue();
+        if(value == Long.MIN_VALUE) {
+            out.append("-9223372036854775808"); // Cannot be negated
+            return;
+        }
+        int n = digits.length;
+        long v = Math.abs(value);
+        do {
+            digits[--n] = (char) ('0' + v % 10);
+            v /= 10;
+        } while(v != 0);
+        if(value < 0) { digits[--n] = '-'; }
+        for(; n < digits.length; n++) { out.append(digits[n]); }
+    }
+
+    /**
+     * Writes a number value.
+     * @param value Value to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     * @throws IllegalArgumentException If the value is NaN or infinite, which JSON cannot represent
+     */
+    public void value(double value) throws IOException, IllegalStateException, IllegalArgumentException {
+        if(!Double.isFinite(value)) {
+            throw new IllegalArgumentException("JSON numbers must be finite, got " + value + ".");
+        }
+        beforeValue();
+        out.append(Double.toString(value));
+    }
+
+    /**
+     * Writes a boolean value.
+     * @param value Value to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void value(boolean value) throws IOException, IllegalStateException {
+        beforeValue();
+        out.append(value ? "true" : "false");
+    }
+
+    /**
+     * Writes a null value.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void nullValue() throws IOException, IllegalStateException {
+        beforeValue();
+        out.append("null");
+    }
+
+    /**
+     * Writes a number value that has already been formatted as JSON.
+     * @param number JSON number to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void numberValue(CharSequence number) throws IOException, IllegalStateException {
+        beforeValue();
+        out.append(number);
+    }
+
+    /**
+     * Writes a value of any type that has already been encoded as JSON.
+     * The value is written as-is, and is not checked.
+     * @param json Encoded JSON value to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void rawValue(CharSequence json) throws IOException, IllegalStateException {
+        beforeValue();
+        out.append(json);
+    }
+
+    /**
+     * Writes a JsonEntity and everything it contains.
+     * @param entity Entity to write
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    public void write(JsonEntity entity) throws IOException, IllegalStateException {
+        if(entity instanceof JsonObject) {
+            beginObject();
+            for(Map.Entry<String, JsonEntity> i : ((JsonObject) entity).entries()) {
+                name(i.getKey());
+                write(i.getValue());
+            }
+            endObject();
+        } else if(entity instanceof JsonArray) {
+            beginArray();
+            for(JsonEntity i : ((JsonArray) entity).values()) { write(i); }
+            endArray();
+        } else if(entity instanceof JsonString) {
+            value(((JsonString) entity).value());
+        } else if(entity instanceof JsonNumber) {
+            numberValue(entity.toJsonString());
+        } else if(entity instanceof JsonLiteral) {
+            Boolean value = ((JsonLiteral) entity).value();
+            if(value == null) {
+                nullValue();
+            } else {
+                value(value.booleanValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown type of JsonEntity.");
+        }
+    }
+
+    /**
+     * Flushes buffered output to the underlying OutputStream (or Appendable, if it is Flushable).
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if(out instanceof Flushable) { ((Flushable) out).flush(); }
+    }
+
+    /**
+     * Writes a separator and indent before a value, and updates the current context.
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If a value cannot be written here
+     */
+    private void beforeValue() throws IOException, IllegalStateException {
+        switch(stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                newline(depth - 1);
+                break;
+            case NONEMPTY_ARRAY:
+                out.append(',');
+                newline(depth - 1);
+                break;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+            case NONEMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                throw new IllegalStateException("Expected a name before the value.");
+        }
+    }
+
+    /**
+     * Closes the current object or array.
+     * @param empty Context of an empty container of this type
+     * @param nonempty Context of a nonempty container of this type
+     * @param bracket Closing bracket
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If the current context is not this type of container
+     */
+    private void close(int empty, int nonempty, char bracket) throws IOException, IllegalStateException {
+        final int context = stack[depth - 1];
+        if(context != empty && context != nonempty) {
+            throw new IllegalStateException("Nothing to close with '" + bracket + "'.");
+        }
+        depth--;
+        if(context == nonempty) { newline(depth - 1); }
+        out.append(bracket);
+    }
+
+    /**
+     * In pretty mode, writes a newline and indent.
+     * @param level Nesting level to indent to
+     * @throws IOException If writing fails
+     */
+    private void newline(int level) throws IOException {
+        if(!pretty) { return; }
+        out.append('\n');
+        int spaces = base_indent + level * INDENT;
+        while(spaces > 0) {
+            final int n = Math.min(spaces, SPACES.length());
+            out.append(SPACES, 0, n);
+            spaces -= n;
+        }
+    }
+
+    /**
+     * @param context Context to push onto the stack
+     */
+    private void push(int context) {
+        if(depth == stack.length) { stack = Arrays.copyOf(stack, stack.length * 2); }
+        stack[depth++] = context;
+    }
+
+    /**
+     * Buffered Appendable that encodes characters as UTF-8 into an OutputStream.
+     */
+    private static class Utf8Appendable implements Appendable, Flushable {
+        private final OutputStream out;
+        private final byte[] buf = new byte[8192];
+        private int count;
+        private char high_surrogate;
+
+        Utf8Appendable(OutputStream out) { this.out = out; }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            for(int i = start; i < end; i++) { append(csq.charAt(i)); }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if(count > buf.length - 4) { flushBuffer(); }
+            if(high_surrogate != 0) {
+                final char high = high_surrogate;
+                high_surrogate = 0;
+                if(Character.isLowSurrogate(c)) {
+                    final int code_point = Character.toCodePoint(high, c);
+                    buf[count++] = (byte) (0xF0 | (code_point >> 18));
+                    buf[count++] = (byte) (0x80 | ((code_point >> 12) & 0x3F));
+                    buf[count++] = (byte) (0x80 | ((code_point >> 6) & 0x3F));
+                    buf[count++] = (byte) (0x80 | (code_point & 0x3F));
+                    return this;
+                }
+                buf[count++] = '?'; // Unpaired surrogate
+                if(count > buf.length - 4) { flushBuffer(); }
+            }
+            if(c < 0x80) {
+                buf[count++] = (byte) c;
+            } else if(c < 0x800) {
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c)) {
+                high_surrogate = c;
+            } else if(Character.isLowSurrogate(c)) {
+                buf[count++] = '?'; // Unpaired surrogate
+            } else {
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+}
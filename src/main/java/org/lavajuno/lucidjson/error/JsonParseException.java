@@ -1,5 +1,6 @@
 package org.lavajuno.lucidjson.error;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 
 public class JsonParseException extends ParseException {
@@ -7,6 +8,20 @@ public class JsonParseException extends ParseException {
         super(getMessage(text, pos, cause), pos);
     }
 
+    /**
+     * Constructs a JsonParseException for UTF-8 input.
+     * @param input Input being parsed
+     * @param pos Index of the error in the input array
+     * @param limit End of the valid input in the input array
+     * @param offset Index of the error in the whole document
+     * @param cause Description of the error
+     */
+    public JsonParseException(byte[] input, int pos, int limit, int offset, String cause) {
+        super("At index " + offset + " of input:\n-->" +
+                new String(input, pos, Math.max(0, Math.min(12, limit - pos)), StandardCharsets.UTF_8) +
+                "\n" + cause, offset);
+    }
+
     private static String getMessage(String text, int pos, String cause) {
         return "At index " + pos + " of input:\n-->" +
                 text.substring(pos, Math.min(pos + 12, text.length())) +
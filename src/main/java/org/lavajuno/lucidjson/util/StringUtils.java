@@ -2,53 +2,96 @@ package org.lavajuno.lucidjson.util;
 
 import org.lavajuno.lucidjson.error.JsonParseException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * StringUtils provides helper functions for working with strings
  * that are used by other classes.
  */
 public class StringUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Smallest code point that can be encoded in UTF-8 with each number of bytes (shorter forms are overlong)
+     */
+    private static final int[] MIN_CODE_POINT = { 0, 0, 0x80, 0x800, 0x10000 };
+
     /**
      * Escapes a string.
-     * Currently does not support unicode escapes (uXXXX)
+     * Returns the input without copying it if nothing needs to be escaped.
      * @param s String that may contain characters that need to be escaped
      * @return Escaped string
      */
     public static String escape(String s) {
-        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while(i < s.length() && !needsEscape(s.charAt(i))) { i++; }
+        if(i == s.length()) { return s; }
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        try {
+            escape(s, sb);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Escapes a string directly into an Appendable.
+     * Runs of characters that do not need to be escaped are appended in one call.
+     * @param s String that may contain characters that need to be escaped
+     * @param out Where to append the escaped string
+     * @throws IOException If appending fails
+     */
+    public static void escape(String s, Appendable out) throws IOException {
+        int run_start = 0;
         for(int i = 0; i < s.length(); i++) {
             char c = s.charAt(i);
+            if(!needsEscape(c)) { continue; }
+            if(i > run_start) { out.append(s, run_start, i); }
+            run_start = i + 1;
             switch(c) {
                 case '"':
-                    sb.append("\\\"");
+                    out.append("\\\"");
                     break;
                 case '\\':
-                    sb.append("\\\\");
+                    out.append("\\\\");
                     break;
                 case '\b':
-                    sb.append("\\b");
+                    out.append("\\b");
                     break;
                 case '\f':
-                    sb.append("\\f");
+                    out.append("\\f");
                     break;
                 case '\n':
-                    sb.append("\\n");
+                    out.append("\\n");
                     break;
                 case '\r':
-                    sb.append("\\r");
+                    out.append("\\r");
                     break;
                 case '\t':
-                    sb.append("\\t");
+                    out.append("\\t");
                     break;
                 default:
-                    sb.append(c);
+                    // Other control characters
+                    out.append("\\u00");
+                    out.append(HEX_DIGITS[c >> 4]);
+                    out.append(HEX_DIGITS[c & 0xF]);
             }
         }
-        return sb.toString();
+        if(run_start < s.length()) { out.append(s, run_start, s.length()); }
+    }
+
+    /**
+     * @param c Character to check
+     * @return True if the character needs to be escaped in a JSON string
+     */
+    private static boolean needsEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\';
     }
 
     /**
      * Unescapes a string.
-     * Currently does not support unicode escapes (uXXXX)
      * @param s String that may contain escape sequences
      * @return Unescaped strings
      * @throws JsonParseException If an invalid escape sequence is found
@@ -81,6 +124,20 @@ public class StringUtils {
                     case 't':
                         sb.append("\t");
                         break;
+                    case '/':
+                        sb.append('/');
+                        break;
+                    case 'u':
+                        if(i + 5 >= s.length()) {
+                            throw new JsonParseException(s, i, "Invalid escape sequence");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(s, i + 2, i + 6, 16));
+                        } catch(NumberFormatException e) {
+                            throw new JsonParseException(s, i, "Invalid escape sequence");
+                        }
+                        i += 4;
+                        break;
                     default:
                         throw new JsonParseException(s, i, "Invalid escape sequence");
                 }
@@ -92,4 +149,100 @@ public class StringUtils {
         }
         return sb.toString();
     }
+
+    /**
+     * Decodes and unescapes a UTF-8 JSON string (without its quotes).
+     * @param input Array containing the string
+     * @param start Index of the first byte of the string
+     * @param end Index after the last byte of the string
+     * @return Decoded string
+     * @throws JsonParseException If an invalid escape sequence is found
+     */
+    public static String unescape(byte[] input, int start, int end) throws JsonParseException {
+        // Decoding never produces more chars than there are bytes
+        final char[] chars = new char[end - start];
+        int n = 0;
+        int i = start;
+        while(i < end) {
+            final int b = input[i] & 0xFF;
+            if(b == '\\') {
+                if(i + 1 >= end) { throw new JsonParseException(input, i, end, i, "Invalid escape sequence"); }
+                switch(input[i + 1]) {
+                    case '"': chars[n++] = '"'; break;
+                    case '\\': chars[n++] = '\\'; break;
+                    case '/': chars[n++] = '/'; break;
+                    case 'b': chars[n++] = '\b'; break;
+                    case 'f': chars[n++] = '\f'; break;
+                    case 'n': chars[n++] = '\n'; break;
+                    case 'r': chars[n++] = '\r'; break;
+                    case 't': chars[n++] = '\t'; break;
+                    case 'u':
+                        if(i + 6 > end) { throw new JsonParseException(input, i, end, i, "Invalid escape sequence"); }
+                        int c = 0;
+                        for(int j = i + 2; j < i + 6; j++) {
+                            final int digit = Character.digit(input[j], 16);
+                            if(digit < 0) { throw new JsonParseException(input, i, end, i, "Invalid escape sequence"); }
+                            c = (c << 4) | digit;
+                        }
+                        chars[n++] = (char) c;
+                        i += 4;
+                        break;
+                    default:
+                        throw new JsonParseException(input, i, end, i, "Invalid escape sequence");
+                }
+                i += 2;
+            } else if(b < 0x80) {
+                chars[n++] = (char) b;
+                i++;
+            } else {
+                // Multi-byte UTF-8 sequence. Malformed sequences (bad lead or continuation bytes,
+                // overlong forms, surrogates, or code points above U+10FFFF) decode to U+FFFD,
+                // as they do when a string without escapes is decoded
+                final int length = b >= 0xF8 ? 0 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC2 ? 2 : 0;
+                int code_point = b & (0x7F >> length);
+                int j = 1;
+                while(j < length && i + j < end && (input[i + j] & 0xC0) == 0x80) {
+                    code_point = (code_point << 6) | (input[i + j] & 0x3F);
+                    j++;
+                }
+                if(length == 0 || j < length || code_point < MIN_CODE_POINT[length] || code_point > Character.MAX_CODE_POINT ||
+                        (code_point >= Character.MIN_SURROGATE && code_point <= Character.MAX_SURROGATE)) {
+                    chars[n++] = '\uFFFD';
+                    i += j;
+                    continue;
+                }
+                n += Character.toChars(code_point, chars, n);
+                i += length;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Parses a JSON integer from ASCII bytes without allocating.
+     * @param input Array containing the number
+     * @param start Index of the first byte of the number
+     * @param end Index after the last byte of the number
+     * @return Value of the number
+     * @throws NumberFormatException If the number is not an integer, or does not fit in a long
+     */
+    public static long parseLong(byte[] input, int start, int end) throws NumberFormatException {
+        int i = start;
+        final boolean negative = i < end && input[i] == '-';
+        if(negative) { i++; }
+        if(i == end) { throw new NumberFormatException("Not an integer."); }
+        long result = 0;
+        for(; i < end; i++) {
+            final int digit = input[i] - '0';
+            if(digit < 0 || digit > 9) { throw new NumberFormatException("Not an integer."); }
+            // Accumulate negatively so that Long.MIN_VALUE can be represented
+            if(result < (Long.MIN_VALUE + digit) / 10) { throw new NumberFormatException("Out of range."); }
+            result = result * 10 - digit;
+        }
+        if(!negative) {
+            if(result == Long.MIN_VALUE) { throw new NumberFormatException("Out of range."); }
+            result = -result;
+        }
+        return result;
+    }
 }
@@ -0,0 +1,415 @@
+package org.lavajuno.mirrorlog.archive;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * ArchiveReader reads archive files written by ArchiveWriter.
+ * Layout of an archive file (all integers are big-endian):
+ * - int magic
+ * - blocks, each made of its columns (timestamps, components, severities, messages) and a footer:
+ *   int count, long min_ts, long max_ts, byte severity_mask, int ts_length, int component_length,
+ *   int severity_length, int message_length, int message_raw_length, int n_components, int[] component_ids
+ * - component dictionary: int count, then (short length, UTF-8 bytes) for each component
+ * - block index: int count, then (long block_offset, long footer_offset) for each block
+ * - trailer: long dictionary_offset, long index_offset, int magic
+ * Scans check each block's footer first, and skip blocks that cannot contain a matching event.
+ * Callers that know which blocks they need (such as searches narrowed by an index) can
+ * pass a block mask to skip the rest.
+ * Within a block, the severity and component columns are decoded first, and the timestamp
+ * and message columns are only read if at least one event matches.
+ */
+public class ArchiveReader implements Closeable {
+    /**
+     * Receives events read from an archive.
+     */
+    public interface EventVisitor {
+        /**
+         * Visits a single event.
+         * @param timestamp When the event was received (ms since the epoch)
+         * @param component Component name, as it appears in the log (including padding)
+         * @param severity Severity of the event (0-3)
+         * @param message Message of the event
+         * @throws IOException If the visitor fails to handle the event
+         */
+        void visit(long timestamp, String component, int severity, String message) throws IOException;
+    }
+
+    /**
+     * Footer of a single block.
+     */
+    private static class Block {
+        long offset;
+        int count;
+        long min_ts;
+        long max_ts;
+        int severity_mask;
+        int ts_length;
+        int component_length;
+        int severity_length;
+        int message_length;
+        int message_raw_length;
+        int[] component_ids;
+    }
+
+    private final FileChannel channel;
+    private final String[] components;
+    private final Block[] blocks;
+
+    /**
+     * Opens an archive file, and reads its dictionary and block footers.
+     * @param path Path of the archive file
+     * @throws IOException If the file cannot be read or is not a valid archive
+     */
+    public ArchiveReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if(size < 24 || read(0, 4).getInt() != LogMap.ARCHIVE_MAGIC) {
+                throw new IOException("\"" + path + "\" is not an archive file.");
+            }
+            final ByteBuffer trailer = read(size - 20, 20);
+            final long dictionary_offset = trailer.getLong();
+            final long index_offset = trailer.getLong();
+            if(trailer.getInt() != LogMap.ARCHIVE_MAGIC || dictionary_offset > index_offset || index_offset > size - 24) {
+                throw new IOException("\"" + path + "\" is incomplete or corrupt.");
+            }
+
+            final ByteBuffer dictionary = read(dictionary_offset, (int) (index_offset - dictionary_offset));
+            components = new String[dictionary.getInt()];
+            for(int i = 0; i < components.length; i++) {
+                final byte[] bytes = new byte[dictionary.getShort() & 0xFFFF];
+                dictionary.get(bytes);
+                components[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            final ByteBuffer index = read(index_offset, (int) (size - 20 - index_offset));
+            blocks = new Block[index.getInt()];
+            for(int i = 0; i < blocks.length; i++) {
+                final long block_offset = index.getLong();
+                final long footer_offset = index.getLong();
+                blocks[i] = readFooter(block_offset, footer_offset);
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt archive file.");
+        }
+    }
+
+    /**
+     * Gets the number of events in the archive.
+     * @return Number of events
+     */
+    public long getEventCount() {
+        long n = 0;
+        for(Block i : blocks) { n += i.count; }
+        return n;
+    }
+
+    /**
+     * Gets when the earliest event in the archive was received.
+     * @return Timestamp (ms since the epoch), or Long.MAX_VALUE if the archive is empty
+     */
+    public long getStartTime() {
+        long t = Long.MAX_VALUE;
+        for(Block i : blocks) { t = Math.min(t, i.min_ts); }
+        return t;
+    }
+
+    /**
+     * Gets when the latest event in the archive was received.
+     * @return Timestamp (ms since the epoch), or Long.MIN_VALUE if the archive is empty
+     */
+    public long getEndTime() {
+        long t = Long.MIN_VALUE;
+        for(Block i : blocks) { t = Math.max(t, i.max_ts); }
+        return t;
+    }
+
+    /**
+     * Gets the number of blocks in the archive.
+     * @return Number of blocks
+     */
+    public int getBlockCount() { return blocks.length; }
+
+    /**
+     * Gets the names of the components in the archive (without padding).
+     * @return Sorted component names
+     */
+    public SortedSet<String> getComponentNames() {
+        TreeSet<String> names = new TreeSet<>();
+        for(String i : components) { names.add(i.stripTrailing()); }
+        return names;
+    }
+
+    /**
+     * Visits every event that matches a filter, in the order they were written.
+     * @param component_names Component names to match (without padding), or null to match all components
+     * @param severity_mask Severities to match, as a bitmask (bit n set for severity n)
+     * @param visitor Visitor to call for each matching event
+     * @throws IOException If the archive cannot be read, or the visitor fails
+     */
+    public void scan(Set<String> component_names, int severity_mask, EventVisitor visitor) throws IOException {
+        scan(component_names, severity_mask, null, visitor);
+    }
+
+    /**
+     * Visits every event in a set of blocks that matches a filter, in the order they were written.
+     * @param component_names Component names to match (without padding), or null to match all components
+     * @param severity_mask Severities to match, as a bitmask (bit n set for severity n)
+     * @param block_mask Blocks to read (indexed by block number), or null to read every block
+     * @param visitor Visitor to call for each matching event
+     * @throws IOException If the archive cannot be read, or the visitor fails
+     */
+    public void scan(Set<String> component_names, int severity_mask, boolean[] block_mask,
+                     EventVisitor visitor) throws IOException {
+        final boolean[] allowed = allowedComponents(component_names);
+        for(int i = 0; i < blocks.length; i++) {
+            if(block_mask != null && !block_mask[i]) { continue; }
+            scanBlock(blocks[i], allowed, severity_mask, visitor);
+        }
+    }
+
+    /**
+     * Counts the events that match a filter. Only the footer, severity and
+     * component columns are read; timestamps and messages are never decoded.
+     * @param component_names Component names to match (without padding), or null to match all components
+     * @param severity_mask Severities to match, as a bitmask (bit n set for severity n)
+     * @return Number of matching events
+     * @throws IOException If the archive cannot be read
+     */
+    public long count(Set<String> component_names, int severity_mask) throws IOException {
+        final boolean[] allowed = allowedComponents(component_names);
+        long n = 0;
+        for(Block block : blocks) {
+            if(!mayMatch(block, allowed, severity_mask)) { continue; }
+            if((severity_mask & 0xF) == 0xF && allowed == null) {
+                n += block.count;
+                continue;
+            }
+            final byte[] severity_column = read(block, 2);
+            final int[] ids = allowed == null ? null : decodeComponents(block, read(block, 1));
+            for(int i = 0; i < block.count; i++) {
+                if((severity_mask >>> severity(severity_column, i) & 1) != 0 && (ids == null || allowed[ids[i]])) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes every event that matches a filter in the text log layout.
+     * @param out Where to write the events
+     * @param component_names Component names to match (without padding), or null to match all components
+     * @param severity_mask Severities to match, as a bitmask (bit n set for severity n)
+     * @throws IOException If the archive cannot be read, or writing fails
+     */
+    public void export(Appendable out, Set<String> component_names, int severity_mask) throws IOException {
+        scan(component_names, severity_mask, null, textVisitor(out));
+    }
+
+    /**
+     * Writes every event in one block in the text log layout.
+     * @param block Number of the block (0 to getBlockCount() - 1)
+     * @param out Where to write the events
+     * @throws IOException If the archive cannot be read, or writing fails
+     */
+    public void exportBlock(int block, Appendable out) throws IOException {
+        scanBlock(blocks[block], null, 0b1111, textVisitor(out));
+    }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+
+    /**
+     * Visits every event in a block that matches a filter.
+     * @param block Block to read
+     * @param allowed Allowed component ids, or null if all components are allowed
+     * @param severity_mask Severities to match
+     * @param visitor Visitor to call for each matching event
+     * @throws IOException If the block cannot be read, or the visitor fails
+     */
+    private void scanBlock(Block block, boolean[] allowed, int severity_mask, EventVisitor visitor) throws IOException {
+        if(!mayMatch(block, allowed, severity_mask)) { return; }
+        final byte[] severity_column = read(block, 2);
+        final int[] ids = decodeComponents(block, read(block, 1));
+        final boolean[] match = new boolean[block.count];
+        boolean any = false;
+        for(int i = 0; i < block.count; i++) {
+            match[i] = (severity_mask >>> severity(severity_column, i) & 1) != 0 && (allowed == null || allowed[ids[i]]);
+            any |= match[i];
+        }
+        if(!any) { return; }
+
+        final byte[] ts_column = read(block, 0);
+        final byte[] message_column = ColumnCodec.inflate(read(block, 3), block.message_raw_length);
+        final int[] pos = new int[1];
+        final int[] ts_pos = new int[1];
+        long timestamp = 0;
+        for(int i = 0; i < block.count; i++) {
+            timestamp += ColumnCodec.unzigzag(ColumnCodec.readVarLong(ts_column, ts_pos));
+            final int length = (int) ColumnCodec.readVarLong(message_column, pos);
+            if(match[i]) {
+                visitor.visit(
+                        timestamp,
+                        components[ids[i]],
+                        severity(severity_column, i),
+                        new String(message_column, pos[0], length, StandardCharsets.UTF_8)
+                );
+            }
+            pos[0] += length;
+        }
+    }
+
+    /**
+     * Creates a visitor that writes events in the text log layout.
+     * @param out Where to write the events
+     * @return The visitor
+     */
+    private static EventVisitor textVisitor(Appendable out) {
+        final SimpleDateFormat date_format = new SimpleDateFormat(LogMap.LOG_DATE_PATTERN);
+        final Date date = new Date();
+        return (timestamp, component, severity, message) -> {
+            date.setTime(timestamp);
+            out.append(date_format.format(date));
+            out.append(switch(severity) {
+                case 1 -> LogMap.SEVERITY_WARN;
+                case 2 -> LogMap.SEVERITY_ERROR;
+                case 3 -> LogMap.SEVERITY_FATAL;
+                default -> LogMap.SEVERITY_INFO;
+            });
+            out.append(component).append(" : ").append(message).append('\n');
+        };
+    }
+
+    /**
+     * Checks a block's footer to see if it could contain matching events.
+     * @param block Block to check
+     * @param allowed Allowed component ids, or null if all components are allowed
+     * @param severity_mask Severities to match
+     * @return False if the block can be skipped
+     */
+    private static boolean mayMatch(Block block, boolean[] allowed, int severity_mask) {
+        if((block.severity_mask & severity_mask) == 0) { return false; }
+        if(allowed == null) { return true; }
+        for(int i : block.component_ids) {
+            if(allowed[i]) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Converts a set of component names to a table of allowed component ids.
+     * @param component_names Component names (without padding), or null to allow all components
+     * @return Table indexed by component id, or null if all components are allowed
+     */
+    private boolean[] allowedComponents(Set<String> component_names) {
+        if(component_names == null) { return null; }
+        final boolean[] allowed = new boolean[components.length];
+        for(int i = 0; i < components.length; i++) {
+            allowed[i] = component_names.contains(components[i].stripTrailing());
+        }
+        return allowed;
+    }
+
+    /**
+     * Decodes a block's component column.
+     * @param block Block the column belongs to
+     * @param column Encoded column
+     * @return Component id of each event
+     * @throws IOException If the column is corrupt
+     */
+    private int[] decodeComponents(Block block, byte[] column) throws IOException {
+        final int[] ids = new int[block.count];
+        final int[] pos = new int[1];
+        for(int i = 0; i < block.count; i++) {
+            final long id = ColumnCodec.readVarLong(column, pos);
+            if(id >= components.length) { throw new IOException("Corrupt component column."); }
+            ids[i] = (int) id;
+        }
+        return ids;
+    }
+
+    /**
+     * @param column Severity column
+     * @param i Index of the event
+     * @return Severity of the event
+     */
+    private static int severity(byte[] column, int i) { return (column[i >>> 2] >>> ((i & 3) * 2)) & 3; }
+
+    /**
+     * Reads one of a block's columns.
+     * @param block Block to read from
+     * @param column Column to read (0: timestamps, 1: components, 2: severities, 3: messages)
+     * @return Raw column
+     * @throws IOException If reading fails
+     */
+    private byte[] read(Block block, int column) throws IOException {
+        long offset = block.offset;
+        final int[] lengths = { block.ts_length, block.component_length, block.severity_length, block.message_length };
+        for(int i = 0; i < column; i++) { offset += lengths[i]; }
+        return read(offset, lengths[column]).array();
+    }
+
+    /**
+     * Reads a block's footer.
+     * @param block_offset Offset of the block's first column
+     * @param footer_offset Offset of the block's footer
+     * @return The block's footer
+     * @throws IOException If reading fails or the footer is corrupt
+     */
+    private Block readFooter(long block_offset, long footer_offset) throws IOException {
+        final ByteBuffer footer = read(footer_offset, 45);
+        final Block block = new Block();
+        block.offset = block_offset;
+        block.count = footer.getInt();
+        block.min_ts = footer.getLong();
+        block.max_ts = footer.getLong();
+        block.severity_mask = footer.get();
+        block.ts_length = footer.getInt();
+        block.component_length = footer.getInt();
+        block.severity_length = footer.getInt();
+        block.message_length = footer.getInt();
+        block.message_raw_length = footer.getInt();
+        final int n_components = footer.getInt();
+        if(block.count < 0 || block.count > LogMap.ARCHIVE_BLOCK_SIZE || n_components < 0 || n_components > components.length ||
+                block_offset + block.ts_length + block.component_length + block.severity_length + block.message_length != footer_offset) {
+            throw new IOException("Corrupt block footer.");
+        }
+        block.component_ids = new int[n_components];
+        final ByteBuffer ids = read(footer_offset + 45, 4 * n_components);
+        for(int i = 0; i < n_components; i++) {
+            block.component_ids[i] = ids.getInt();
+            if(block.component_ids[i] < 0 || block.component_ids[i] >= components.length) {
+                throw new IOException("Corrupt block footer.");
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Reads a range of the file.
+     * @param offset Offset to read from
+     * @param length Number of bytes to read
+     * @return Buffer containing the bytes, ready to be read
+     * @throws IOException If the range is past the end of the file
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if(length < 0) { throw new IOException("Corrupt archive file."); }
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        while(buf.hasRemaining()) {
+            if(channel.read(buf, offset + buf.position()) < 0) { throw new IOException("Unexpected end of archive file."); }
+        }
+        return buf.flip();
+    }
+}
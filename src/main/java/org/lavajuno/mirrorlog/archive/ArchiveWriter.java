@@ -0,0 +1,168 @@
+package org.lavajuno.mirrorlog.archive;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * ArchiveWriter writes events to an archive file.
+ * Events are collected into blocks of LogMap.ARCHIVE_BLOCK_SIZE events, and
+ * each block is stored as four columns followed by a footer:
+ * - timestamps, as zigzag variable-length deltas from the previous event
+ * - component ids (indexes into the file's component dictionary), as variable-length integers
+ * - severities, packed 2 bits each
+ * - messages, as variable-length lengths and UTF-8 bytes, compressed with Deflate
+ * The footer records the block's event count, time range, severities and components
+ * present, and column sizes, so that readers can skip blocks and columns they don't need.
+ * The file ends with the component dictionary, an index of block offsets, and a trailer.
+ * See ArchiveReader for the exact layout.
+ */
+public class ArchiveWriter implements Closeable {
+    private final DataOutputStream out;
+    private long position;
+
+    private final HashMap<String, Integer> component_ids = new HashMap<>();
+    private final ArrayList<String> components = new ArrayList<>();
+    private final ArrayList<long[]> block_offsets = new ArrayList<>();
+
+    private final long[] timestamps = new long[LogMap.ARCHIVE_BLOCK_SIZE];
+    private final int[] block_components = new int[LogMap.ARCHIVE_BLOCK_SIZE];
+    private final byte[] severities = new byte[LogMap.ARCHIVE_BLOCK_SIZE];
+    private final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    private int count;
+    private boolean closed;
+
+    /**
+     * Creates an archive file.
+     * @param path Path of the archive file (replaced if it already exists)
+     * @throws IOException If the file cannot be created
+     */
+    public ArchiveWriter(Path path) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 65536));
+        out.writeInt(LogMap.ARCHIVE_MAGIC);
+        position = 4;
+    }
+
+    /**
+     * Adds an event to the archive.
+     * @param timestamp When the event was received (ms since the epoch)
+     * @param component Component name, as it appears in the log (including padding)
+     * @param severity Severity of the event (0-3)
+     * @param message Message of the event
+     * @throws IOException If writing a finished block fails
+     */
+    public void add(long timestamp, String component, int severity, String message) throws IOException {
+        Integer id = component_ids.get(component);
+        if(id == null) {
+            id = components.size();
+            component_ids.put(component, id);
+            components.add(component);
+        }
+        timestamps[count] = timestamp;
+        block_components[count] = id;
+        severities[count] = (byte) (severity & 3);
+        final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ColumnCodec.writeVarLong(messages, bytes.length);
+        messages.write(bytes, 0, bytes.length);
+        count++;
+        if(count == LogMap.ARCHIVE_BLOCK_SIZE) { writeBlock(); }
+    }
+
+    /**
+     * Writes any remaining events, the component dictionary, the block index and the trailer,
+     * then closes the file.
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) { return; }
+        closed = true;
+        try {
+            if(count > 0) { writeBlock(); }
+            final long dictionary_offset = position;
+            out.writeInt(components.size());
+            position += 4;
+            for(String i : components) {
+                final byte[] bytes = i.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                position += 2 + bytes.length;
+            }
+            final long index_offset = position;
+            out.writeInt(block_offsets.size());
+            for(long[] i : block_offsets) {
+                out.writeLong(i[0]);
+                out.writeLong(i[1]);
+            }
+            out.writeLong(dictionary_offset);
+            out.writeLong(index_offset);
+            out.writeInt(LogMap.ARCHIVE_MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Encodes the current block's columns and footer, and writes them to the file.
+     * @throws IOException If writing fails
+     */
+    private void writeBlock() throws IOException {
+        final ByteArrayOutputStream ts_column = new ByteArrayOutputStream(count * 2);
+        final ByteArrayOutputStream component_column = new ByteArrayOutputStream(count);
+        final byte[] severity_column = new byte[(count + 3) / 4];
+        long previous = 0;
+        long min_ts = Long.MAX_VALUE;
+        long max_ts = Long.MIN_VALUE;
+        int severity_mask = 0;
+        final boolean[] present = new boolean[components.size()];
+        for(int i = 0; i < count; i++) {
+            ColumnCodec.writeVarLong(ts_column, ColumnCodec.zigzag(timestamps[i] - previous));
+            previous = timestamps[i];
+            min_ts = Math.min(min_ts, timestamps[i]);
+            max_ts = Math.max(max_ts, timestamps[i]);
+            ColumnCodec.writeVarLong(component_column, block_components[i]);
+            present[block_components[i]] = true;
+            severity_column[i >>> 2] |= (byte) (severities[i] << ((i & 3) * 2));
+            severity_mask |= 1 << severities[i];
+        }
+        final int messages_length = messages.size();
+        final byte[] message_column = ColumnCodec.deflate(messages.toByteArray(), messages_length);
+
+        final long block_offset = position;
+        out.write(ts_column.toByteArray());
+        out.write(component_column.toByteArray());
+        out.write(severity_column);
+        out.write(message_column);
+        position += ts_column.size() + component_column.size() + severity_column.length + message_column.length;
+
+        // Footer
+        final long footer_offset = position;
+        int n_present = 0;
+        for(boolean i : present) { if(i) { n_present++; } }
+        out.writeInt(count);
+        out.writeLong(min_ts);
+        out.writeLong(max_ts);
+        out.writeByte(severity_mask);
+        out.writeInt(ts_column.size());
+        out.writeInt(component_column.size());
+        out.writeInt(severity_column.length);
+        out.writeInt(message_column.length);
+        out.writeInt(messages_length);
+        out.writeInt(n_present);
+        for(int i = 0; i < present.length; i++) {
+            if(present[i]) { out.writeInt(i); }
+        }
+        position += 45 + 4L * n_present;
+        block_offsets.add(new long[] { block_offset, footer_offset });
+
+        count = 0;
+        messages.reset();
+        Arrays.fill(severities, (byte) 0);
+    }
+}
@@ -0,0 +1,182 @@
+package org.lavajuno.mirrorlog.archive;
+
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.index.IndexReader;
+import org.lavajuno.mirrorlog.index.Indexer;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Archiver converts text log files that are no longer being written to into archive files
+ * in the background. The archive is written to a temporary file and renamed into place, and
+ * the text file is only deleted once the archive is complete, so an interrupted conversion
+ * never loses events. Files with lines that do not match the text layout are left alone.
+ * When indexing is enabled, each finished archive is handed to the Indexer.
+ */
+public class Archiver extends Thread {
+    private static final String[] SEVERITY_HEADERS = {
+            LogMap.SEVERITY_INFO, LogMap.SEVERITY_WARN, LogMap.SEVERITY_ERROR, LogMap.SEVERITY_FATAL
+    };
+
+    private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+    private final HashSet<Path> queued = new HashSet<>();
+
+    /**
+     * Directories waiting to be scanned, and the file being written to in each (guarded by queued)
+     */
+    private final HashMap<Path, String> pending_directories = new HashMap<>();
+    private final SimpleDateFormat date_format = new SimpleDateFormat(LogMap.LOG_DATE_PATTERN);
+    private final Indexer indexer;
+
+    /**
+     * Constructs an Archiver.
+     * @param indexer Indexer to hand finished archives to
+     */
+    public Archiver(Indexer indexer) {
+        this.indexer = indexer;
+        setDaemon(true);
+        setName("Archiver");
+    }
+
+    /**
+     * Queues a directory to be scanned by the Archiver's thread, which will then queue every
+     * text log file in it for conversion, except for the one that is being written to.
+     * @param logs_path Directory of the log files (ending with '/')
+     * @param current_file File name of the log file that is being written to
+     */
+    public void submitDirectory(String logs_path, String current_file) {
+        final Path directory = Path.of(logs_path);
+        synchronized(queued) {
+            if(pending_directories.put(directory, current_file) != null) { return; } // Already queued
+        }
+        queue.add(directory);
+    }
+
+    /**
+     * Queues every text log file in a directory for conversion, except for the one that is being written to.
+     * @param directory Directory of the log files
+     * @param current_file File name of the log file that is being written to
+     */
+    private void scanDirectory(Path directory, String current_file) {
+        final File[] path_contents = directory.toFile().listFiles();
+        if(path_contents == null) { return; }
+        for(File i : path_contents) {
+            final String name = i.getName();
+            if(i.isFile() && name.endsWith(".log") && !name.equals(current_file) &&
+                    name.matches("^[0-9]{10}\\.log$")) {
+                submit(i.toPath());
+            }
+        }
+    }
+
+    /**
+     * Queues a text log file for conversion.
+     * @param log_file Path of the text log file
+     */
+    public void submit(Path log_file) {
+        synchronized(queued) {
+            if(!queued.add(log_file)) { return; }
+        }
+        queue.add(log_file);
+    }
+
+    /**
+     * Archiver's thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                final Path log_file = queue.take();
+                final String current_file;
+                synchronized(queued) { current_file = pending_directories.remove(log_file); }
+                if(current_file != null) {
+                    scanDirectory(log_file, current_file);
+                    continue;
+                }
+                try {
+                    convert(log_file);
+                } catch(IOException e) {
+                    System.err.println("Failed to archive \"" + log_file + "\". (" + e.getMessage() + ")");
+                } finally {
+                    synchronized(queued) { queued.remove(log_file); }
+                }
+            }
+        } catch(InterruptedException e) {
+            System.out.println("Stopped archiving log files.");
+        }
+    }
+
+    /**
+     * Converts a text log file into an archive file next to it, then deletes the text log file.
+     * @param log_file Path of the text log file
+     * @throws IOException If the file cannot be read or converted
+     */
+    public void convert(Path log_file) throws IOException {
+        if(!Files.exists(log_file)) { return; } // Already converted or cleaned up
+        final String name = log_file.getFileName().toString();
+        final String base = name.substring(0, name.lastIndexOf('.'));
+        final Path archive_file = log_file.resolveSibling(base + "." + LogMap.ARCHIVE_EXTENSION);
+        final Path temp_file = log_file.resolveSibling(base + "." + LogMap.ARCHIVE_EXTENSION + ".tmp");
+        try(BufferedReader in = Files.newBufferedReader(log_file, StandardCharsets.UTF_8);
+            ArchiveWriter out = new ArchiveWriter(temp_file)) {
+            String line;
+            int line_number = 0;
+            while((line = in.readLine()) != null) {
+                line_number++;
+                if(line.isEmpty()) { continue; }
+                if(!addLine(out, line)) {
+                    throw new IOException("Line " + line_number + " is not in the text log layout");
+                }
+            }
+        } catch(IOException e) {
+            Files.deleteIfExists(temp_file);
+            throw e;
+        }
+        Files.move(temp_file, archive_file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(log_file);
+        Files.deleteIfExists(IndexReader.indexPath(log_file));
+        if(ApplicationConfig.getInstance().isIndexEnabled()) { indexer.submit(archive_file); }
+    }
+
+    /**
+     * Parses a line in the text log layout and adds it to an archive.
+     * @param out Archive to add the event to
+     * @param line Line to parse
+     * @return False if the line is not in the text log layout
+     * @throws IOException If writing to the archive fails
+     */
+    private boolean addLine(ArchiveWriter out, String line) throws IOException {
+        final int date_length = LogMap.LOG_DATE_PATTERN.length();
+        if(line.length() < date_length) { return false; }
+        final long timestamp;
+        try {
+            timestamp = date_format.parse(line.substring(0, date_length)).getTime();
+        } catch(ParseException e) {
+            return false;
+        }
+        for(int severity = 0; severity < SEVERITY_HEADERS.length; severity++) {
+            if(!line.startsWith(SEVERITY_HEADERS[severity], date_length)) { continue; }
+            final int component_start = date_length + SEVERITY_HEADERS[severity].length();
+            // Component names cannot contain ':', so the first " : " ends the component
+            final int separator = line.indexOf(" : ", component_start);
+            if(separator < 0) { return false; }
+            out.add(timestamp, line.substring(component_start, separator), severity, line.substring(separator + 3));
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package org.lavajuno.mirrorlog.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ColumnCodec contains the encodings used by archive columns.
+ */
+final class ColumnCodec {
+    private ColumnCodec() {}
+
+    /**
+     * Writes an unsigned variable-length integer (7 bits per byte, low bits first).
+     * @param out Stream to write to
+     * @param value Value to write
+     */
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     * @param in Buffer to read from
+     * @param pos Position to read at (pos[0] is advanced past the value)
+     * @return Value that was read
+     * @throws IOException If the value is truncated or too long
+     */
+    static long readVarLong(byte[] in, int[] pos) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            if(pos[0] >= in.length) { throw new IOException("Truncated column."); }
+            final byte b = in[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) { return value; }
+        }
+        throw new IOException("Malformed variable-length integer.");
+    }
+
+    /**
+     * Maps a signed value to an unsigned one, so small negative values stay small.
+     * @param value Signed value
+     * @return Zigzag-encoded value
+     */
+    static long zigzag(long value) { return (value << 1) ^ (value >> 63); }
+
+    /**
+     * Reverses zigzag().
+     * @param value Zigzag-encoded value
+     * @return Signed value
+     */
+    static long unzigzag(long value) { return (value >>> 1) ^ -(value & 1); }
+
+    /**
+     * Compresses a column.
+     * @param data Column to compress
+     * @param length Length of the column
+     * @return Compressed column
+     */
+    static byte[] deflate(byte[] data, int length) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        final byte[] chunk = new byte[8192];
+        while(!deflater.finished()) {
+            final int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses a column.
+     * @param data Compressed column
+     * @param length Length of the column once decompressed
+     * @return Decompressed column
+     * @throws IOException If the column is corrupt
+     */
+    static byte[] inflate(byte[] data, int length) throws IOException {
+        final Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        final byte[] out = new byte[length];
+        try {
+            int n = 0;
+            while(n < length) {
+                final int read = inflater.inflate(out, n, length - n);
+                if(read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated message column.");
+                }
+                n += read;
+            }
+        } catch(DataFormatException e) {
+            throw new IOException("Corrupt message column.");
+        } finally {
+            inflater.end();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,60 @@
+package org.lavajuno.mirrorlog.client;
+
+/**
+ * ComponentLogger logs events for a single component through a MirrorLogClient.
+ * The component's name is encoded once, when the ComponentLogger is created.
+ * ComponentLoggers can be shared between threads.
+ */
+public class ComponentLogger {
+    private final MirrorLogClient client;
+    private final byte[] prefix;
+
+    /**
+     * Constructs a ComponentLogger. Use MirrorLogClient.getLogger() instead.
+     * @param client Client to log through
+     * @param prefix Encoded prefix of the component
+     */
+    ComponentLogger(MirrorLogClient client, byte[] prefix) {
+        this.client = client;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Logs an event.
+     * @param severity Severity of the event (0-3)
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     * @throws IllegalArgumentException If the severity is not valid
+     */
+    public boolean log(int severity, CharSequence message) throws IllegalArgumentException {
+        return client.log(prefix, severity, message);
+    }
+
+    /**
+     * Logs an event with severity 0 (INFO).
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     */
+    public boolean info(CharSequence message) { return client.log(prefix, 0, message); }
+
+    /**
+     * Logs an event with severity 1 (WARN).
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     */
+    public boolean warn(CharSequence message) { return client.log(prefix, 1, message); }
+
+    /**
+     * Logs an event with severity 2 (ERROR).
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     */
+    public boolean error(CharSequence message) { return client.log(prefix, 2, message); }
+
+    /**
+     * Logs an event with severity 3 (FATAL).
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     */
+    public boolean fatal(CharSequence message) { return client.log(prefix, 3, message); }
+}
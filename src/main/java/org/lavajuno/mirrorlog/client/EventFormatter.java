@@ -0,0 +1,107 @@
+package org.lavajuno.mirrorlog.client;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EventFormatter encodes events in MirrorLog's line protocol ("@component@severity message\n").
+ * Messages are encoded as UTF-8 straight into a StagingBuffer, so logging an event
+ * does not allocate. Line breaks in messages are replaced with spaces, since they
+ * would end the event early. Events longer than the server accepts are truncated,
+ * since the server disconnects clients that send longer lines.
+ */
+public class EventFormatter {
+    /**
+     * Longest event the server accepts (bytes, including the line break)
+     */
+    public static final int MAX_EVENT_LENGTH = LogMap.EVENT_BUFFER_SIZE + 1;
+
+    private EventFormatter() { }
+
+    /**
+     * Encodes the "@component@" prefix of events for a component.
+     * @param component_name Name of the component (1-128 characters of [0-9A-Za-z_ -])
+     * @return Encoded prefix
+     * @throws IllegalArgumentException If the component name is not valid
+     */
+    public static byte[] encodePrefix(String component_name) throws IllegalArgumentException {
+        if(component_name.isEmpty() || component_name.length() > 128) {
+            throw new IllegalArgumentException("Component names must be 1-128 characters long.");
+        }
+        for(int i = 0; i < component_name.length(); i++) {
+            final char c = component_name.charAt(i);
+            if(!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') ||
+                    c == '_' || c == ' ' || c == '-')) {
+                throw new IllegalArgumentException("\"" + component_name + "\" is not a valid component name.");
+            }
+        }
+        return ("@" + component_name + "@").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the length of an encoded event.
+     * @param prefix Encoded prefix of the event's component
+     * @param message Message of the event
+     * @return Length of the encoded event before truncation (bytes, including the line break)
+     */
+    public static int encodedLength(byte[] prefix, CharSequence message) {
+        int length = prefix.length + 2; // Severity and line break
+        final int n = message.length();
+        for(int i = 0; i < n; i++) {
+            final char c = message.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(message.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3; // Unpaired surrogates are replaced with '?'
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes an event into a StagingBuffer, truncating its message (at a character boundary)
+     * if the event would be longer than MAX_EVENT_LENGTH. The caller must have checked that
+     * there is room for min(encodedLength(prefix, message), MAX_EVENT_LENGTH) bytes.
+     * @param buffer Buffer to encode into
+     * @param prefix Encoded prefix of the event's component
+     * @param severity Severity of the event (0-3)
+     * @param message Message of the event
+     */
+    public static void encode(StagingBuffer buffer, byte[] prefix, int severity, CharSequence message) {
+        buffer.put(prefix);
+        buffer.put((byte) ('0' + severity));
+        int room = MAX_EVENT_LENGTH - prefix.length - 2; // Bytes left for the message
+        final int n = message.length();
+        for(int i = 0; i < n; i++) {
+            final char c = message.charAt(i);
+            final boolean pair = Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(message.charAt(i + 1));
+            room -= c < 0x80 || (Character.isSurrogate(c) && !pair) ? 1 : c < 0x800 ? 2 : pair ? 4 : 3;
+            if(room < 0) { break; }
+            if(c < 0x80) {
+                buffer.put(c == '\n' || c == '\r' ? (byte) ' ' : (byte) c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if(pair) {
+                final int code_point = Character.toCodePoint(c, message.charAt(++i));
+                buffer.put((byte) (0xF0 | (code_point >> 18)));
+                buffer.put((byte) (0x80 | ((code_point >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((code_point >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (code_point & 0x3F)));
+            } else if(Character.isSurrogate(c)) {
+                buffer.put((byte) '?'); // Unpaired surrogate
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '\n');
+    }
+}
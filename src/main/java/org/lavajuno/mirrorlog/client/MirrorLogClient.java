@@ -0,0 +1,282 @@
+package org.lavajuno.mirrorlog.client;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MirrorLogClient sends events to a MirrorLog server without blocking the threads that log them.
+ * Each logging thread encodes its events into its own StagingBuffer, without taking any locks.
+ * A background flusher thread drains every buffer, coalesces the events into large writes,
+ * and reconnects with exponential backoff when the connection is lost.
+ * When a thread's buffer is full, its events are dropped or it waits, depending on the OverflowPolicy.
+ * Events longer than the server accepts (4 KiB) are truncated and counted.
+ * Delivery is best-effort: events that were being written when the connection failed are resent
+ * after reconnecting, so the server may see some of them twice.
+ * <pre>
+ * MirrorLogClient client = new MirrorLogClient("localhost", 4001);
+ * ComponentLogger log = client.getLogger("Billing");
+ * log.info("Invoice created.");
+ * client.close();
+ * </pre>
+ */
+public class MirrorLogClient implements AutoCloseable {
+    private final InetSocketAddress address;
+    private final int buffer_size;
+    private final OverflowPolicy policy;
+    private final CopyOnWriteArrayList<StagingBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<StagingBuffer> local_buffer;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /*
+     * Only used by the flusher thread
+     */
+    private final byte[] write_buffer = new byte[LogMap.CLIENT_WRITE_BUFFER_SIZE];
+    private Socket socket;
+    private OutputStream out;
+    private int next_buffer;
+
+    /**
+     * Events dropped by threads whose buffers have been discarded
+     */
+    private volatile long retired_dropped;
+    private final AtomicLong truncated = new AtomicLong();
+    private volatile long bytes_sent;
+    private volatile long reconnects;
+
+    /**
+     * Constructs a MirrorLogClient with the default buffer size, that drops events when a buffer is full.
+     * @param host Host name or address of the server
+     * @param port Port of the server
+     */
+    public MirrorLogClient(String host, int port) {
+        this(host, port, LogMap.CLIENT_BUFFER_SIZE, OverflowPolicy.DROP);
+    }
+
+    /**
+     * Constructs a MirrorLogClient. The connection is made in the background,
+     * and events logged before it is made are buffered.
+     * @param host Host name or address of the server
+     * @param port Port of the server
+     * @param buffer_size Size of each logging thread's buffer (bytes, rounded up to a power of 2)
+     * @param policy What to do with events when a thread's buffer is full
+     */
+    public MirrorLogClient(String host, int port, int buffer_size, OverflowPolicy policy) {
+        address = InetSocketAddress.createUnresolved(host, port);
+        this.buffer_size = buffer_size;
+        this.policy = policy;
+        local_buffer = ThreadLocal.withInitial(() -> {
+            final StagingBuffer buffer = new StagingBuffer(Thread.currentThread(), this.buffer_size);
+            buffers.add(buffer);
+            return buffer;
+        });
+        flusher = new Thread(this::flush, "MirrorLogClient-" + host + ":" + port);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Gets a ComponentLogger, which logs events for a component without re-encoding its name each time.
+     * @param component_name Name of the component (1-128 characters of [0-9A-Za-z_ -])
+     * @return ComponentLogger for the component
+     * @throws IllegalArgumentException If the component name is not valid
+     */
+    public ComponentLogger getLogger(String component_name) throws IllegalArgumentException {
+        return new ComponentLogger(this, EventFormatter.encodePrefix(component_name));
+    }
+
+    /**
+     * Logs an event. Prefer getLogger() when logging many events for the same component.
+     * @param component_name Name of the component (1-128 characters of [0-9A-Za-z_ -])
+     * @param severity Severity of the event (0-3)
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     * @throws IllegalArgumentException If the component name or severity is not valid
+     */
+    public boolean log(String component_name, int severity, CharSequence message) throws IllegalArgumentException {
+        return log(EventFormatter.encodePrefix(component_name), severity, message);
+    }
+
+    /**
+     * Logs an event for an encoded component prefix.
+     * @param prefix Encoded prefix of the component
+     * @param severity Severity of the event (0-3)
+     * @param message Message of the event
+     * @return True if the event was buffered, false if it was dropped
+     * @throws IllegalArgumentException If the severity is not valid
+     */
+    boolean log(byte[] prefix, int severity, CharSequence message) throws IllegalArgumentException {
+        if(severity < 0 || severity > 3) { throw new IllegalArgumentException("Severity must be between 0 and 3."); }
+        final StagingBuffer buffer = local_buffer.get();
+        int length = EventFormatter.encodedLength(prefix, message);
+        if(length > EventFormatter.MAX_EVENT_LENGTH) {
+            length = EventFormatter.MAX_EVENT_LENGTH;
+            truncated.incrementAndGet();
+        }
+        if(closed || length > buffer.getCapacity()) {
+            buffer.drop();
+            return false;
+        }
+        while(!buffer.hasRoom(length)) {
+            if(policy == OverflowPolicy.DROP || closed) {
+                buffer.drop();
+                return false;
+            }
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        EventFormatter.encode(buffer, prefix, severity, message);
+        buffer.publish();
+        if(buffer.getUsed() > buffer.getCapacity() / 2) {
+            LockSupport.unpark(flusher); // Filling up, so don't wait for the flush interval
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of events whose messages were truncated because they were longer than the server accepts.
+     * @return Number of truncated events
+     */
+    public long getTruncatedCount() { return truncated.get(); }
+
+    /**
+     * Gets the number of events that were dropped because a buffer was full, or the client was closed.
+     * @return Number of dropped events
+     */
+    public long getDroppedCount() {
+        long n = retired_dropped;
+        for(StagingBuffer i : buffers) { n += i.getDropped(); }
+        return n;
+    }
+
+    /**
+     * @return Number of bytes written to the server
+     */
+    public long getBytesSent() { return bytes_sent; }
+
+    /**
+     * @return Number of times the client has reconnected after losing its connection
+     */
+    public long getReconnects() { return reconnects; }
+
+    /**
+     * Stops accepting events, and waits (up to a timeout) for buffered events to be sent.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(LogMap.CLIENT_CLOSE_TIMEOUT + LogMap.CLIENT_CONNECT_TIMEOUT);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The flusher thread. Drains the staging buffers and writes their events to the server.
+     */
+    private void flush() {
+        long backoff = LogMap.CLIENT_MIN_BACKOFF;
+        long close_deadline = Long.MAX_VALUE;
+        int pending = 0;
+        while(true) {
+            if(closed && close_deadline == Long.MAX_VALUE) {
+                close_deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LogMap.CLIENT_CLOSE_TIMEOUT);
+            }
+            if(System.nanoTime() > close_deadline) { break; }
+            if(out == null) {
+                try {
+                    connect();
+                    backoff = LogMap.CLIENT_MIN_BACKOFF;
+                } catch(IOException e) {
+                    if(closed) { break; } // Nowhere to send the remaining events
+                    // Wait between half and all of the backoff, so that many clients don't reconnect at once
+                    final long wait = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                    backoff = Math.min(backoff * 2, LogMap.CLIENT_MAX_BACKOFF);
+                    continue;
+                }
+            }
+            if(pending == 0) { pending = drain(); }
+            if(pending == 0) {
+                if(closed) { break; }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(LogMap.CLIENT_FLUSH_INTERVAL));
+                continue;
+            }
+            try {
+                out.write(write_buffer, 0, pending);
+                bytes_sent += pending;
+                pending = 0;
+            } catch(IOException e) {
+                disconnect(); // The pending events are sent again after reconnecting
+                reconnects++;
+            }
+        }
+        disconnect();
+    }
+
+    /**
+     * Moves as many whole events as fit from the staging buffers into the write buffer,
+     * and discards the buffers of threads that have exited.
+     * Each drain starts at the buffer after the one the last drain started at,
+     * so that threads registered later are not starved when the write buffer fills up.
+     * @return Number of bytes in the write buffer
+     */
+    private int drain() {
+        final StagingBuffer[] snapshot = buffers.toArray(new StagingBuffer[0]);
+        if(snapshot.length == 0) { return 0; }
+        final int start = next_buffer % snapshot.length;
+        next_buffer = start + 1;
+        int n = 0;
+        for(int i = 0; i < snapshot.length; i++) {
+            final StagingBuffer buffer = snapshot[(start + i) % snapshot.length];
+            n += buffer.drainTo(write_buffer, n);
+            if(!buffer.getOwner().isAlive() && buffer.isEmpty()) {
+                retired_dropped += buffer.getDropped();
+                buffers.remove(buffer);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Connects to the server.
+     * @throws IOException If the connection cannot be made
+     */
+    private void connect() throws IOException {
+        final Socket s = new Socket();
+        try {
+            s.setTcpNoDelay(true); // Writes are already coalesced
+            s.connect(new InetSocketAddress(address.getHostString(), address.getPort()), LogMap.CLIENT_CONNECT_TIMEOUT);
+            out = s.getOutputStream();
+        } catch(IOException e) {
+            s.close();
+            throw e;
+        }
+        socket = s;
+    }
+
+    /**
+     * Closes the connection to the server, if there is one.
+     */
+    private void disconnect() {
+        if(socket == null) { return; }
+        try {
+            socket.close();
+        } catch(IOException e) {
+            // Already broken
+        }
+        socket = null;
+        out = null;
+    }
+}
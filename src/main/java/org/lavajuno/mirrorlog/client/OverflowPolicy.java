@@ -0,0 +1,19 @@
+package org.lavajuno.mirrorlog.client;
+
+/**
+ * What a MirrorLogClient does with an event when the calling thread's buffer is full,
+ * which happens when events are logged faster than they can be sent, or while the
+ * client is disconnected.
+ */
+public enum OverflowPolicy {
+    /**
+     * The new event is dropped, and counted in MirrorLogClient.getDroppedCount().
+     * Logging never blocks.
+     */
+    DROP,
+
+    /**
+     * The calling thread waits until there is room for the event (or the client is closed).
+     */
+    BLOCK
+}
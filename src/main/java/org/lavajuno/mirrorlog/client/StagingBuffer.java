@@ -0,0 +1,139 @@
+package org.lavajuno.mirrorlog.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StagingBuffer is a single-producer, single-consumer ring buffer of encoded events.
+ * Each thread that logs through a MirrorLogClient gets its own StagingBuffer, so
+ * logging never takes a lock or contends with other threads. The thread writes
+ * whole events and publishes them, and the client's flusher thread drains them.
+ */
+public class StagingBuffer {
+    private final Thread owner;
+    private final byte[] buffer;
+    private final int mask;
+
+    /**
+     * Position up to which events have been drained (written by the flusher)
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Position up to which events have been published (written by the owner)
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /*
+     * Only used by the owner: the position of the event being written,
+     * and the last value of head that it saw.
+     */
+    private long position;
+    private long cached_head;
+
+    /**
+     * Number of events dropped because this buffer was full (written by the owner)
+     */
+    private volatile long dropped;
+
+    /**
+     * Constructs an empty StagingBuffer.
+     * @param owner Thread that writes to this buffer
+     * @param capacity Capacity of the buffer (bytes, rounded up to a power of 2)
+     */
+    public StagingBuffer(Thread owner, int capacity) {
+        this.owner = owner;
+        buffer = new byte[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+        mask = buffer.length - 1;
+    }
+
+    /**
+     * @return Thread that writes to this buffer
+     */
+    public Thread getOwner() { return owner; }
+
+    /**
+     * @return Capacity of this buffer (bytes)
+     */
+    public int getCapacity() { return buffer.length; }
+
+    /**
+     * Checks if there is room for an event. Only called by the owner.
+     * @param length Length of the event (bytes)
+     * @return True if the event fits
+     */
+    public boolean hasRoom(int length) {
+        if(position + length - cached_head <= buffer.length) { return true; }
+        cached_head = head.get();
+        return position + length - cached_head <= buffer.length;
+    }
+
+    /**
+     * Gets how much of this buffer is in use, as last seen by the owner. Only called by the owner.
+     * @return Bytes in use
+     */
+    public long getUsed() { return position - cached_head; }
+
+    /**
+     * Writes a byte of the current event. Only called by the owner.
+     * @param b Byte to write
+     */
+    public void put(byte b) { buffer[(int) (position++ & mask)] = b; }
+
+    /**
+     * Writes bytes of the current event. Only called by the owner.
+     * @param b Bytes to write
+     */
+    public void put(byte[] b) {
+        final int offset = (int) (position & mask);
+        final int first = Math.min(b.length, buffer.length - offset);
+        System.arraycopy(b, 0, buffer, offset, first);
+        System.arraycopy(b, first, buffer, 0, b.length - first);
+        position += b.length;
+    }
+
+    /**
+     * Makes the events written so far visible to the flusher. Only called by the owner.
+     */
+    public void publish() { tail.lazySet(position); }
+
+    /**
+     * Counts an event that was dropped. Only called by the owner.
+     */
+    public void drop() { dropped = dropped + 1; }
+
+    /**
+     * @return Number of events dropped because this buffer was full
+     */
+    public long getDropped() { return dropped; }
+
+    /**
+     * Checks if every published event has been drained.
+     * @return True if there is nothing to drain
+     */
+    public boolean isEmpty() { return head.get() == tail.get(); }
+
+    /**
+     * Moves published events into an array. Only whole events are moved.
+     * Only called by the flusher.
+     * @param dst Array to move events to
+     * @param offset Offset in the array to start at
+     * @return Number of bytes moved
+     */
+    public int drainTo(byte[] dst, int offset) {
+        final long h = head.get();
+        final long t = tail.get();
+        int n = (int) Math.min(t - h, dst.length - offset);
+        if(n == 0) { return 0; }
+        if(n < t - h) {
+            // Not everything fits, so stop after the last whole event
+            while(n > 0 && buffer[(int) ((h + n - 1) & mask)] != '\n') { n--; }
+            if(n == 0) { return 0; }
+        }
+        final int start = (int) (h & mask);
+        final int first = Math.min(n, buffer.length - start);
+        System.arraycopy(buffer, start, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, n - first);
+        head.lazySet(h + n);
+        return n;
+    }
+}
@@ -1,7 +1,12 @@
 package org.lavajuno.mirrorlog.config;
 
 import org.lavajuno.lucidjson.*;
+import org.lavajuno.mirrorlog.io.LogFormat;
+import org.lavajuno.mirrorlog.jfr.ConfigLoadEvent;
 import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.rules.Rule;
+import org.lavajuno.mirrorlog.rules.RuleSet;
+import org.lavajuno.mirrorlog.server.AddressFilter;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -12,51 +17,401 @@ import java.util.*;
 /**
  * ApplicationConfig loads and stores the program configuration, and
  * provides functionality for retrieving configuration values.
+ * Each instance is an immutable snapshot of the configuration file.
+ * The current snapshot is published through a volatile reference,
+ * so it can be swapped out at runtime when the file is reloaded.
  */
 @SuppressWarnings("unused")
-public class ApplicationConfig implements JsonSerializable {
-    private static ApplicationConfig instance;
+public class ApplicationConfig {
+    /**
+     * How events are split between log files
+     */
+    public enum OutputMode {
+        /**
+         * All events are written to the same log file
+         */
+        SINGLE,
+
+        /**
+         * Each component is written to its own log file
+         */
+        COMPONENT
+    }
 
-    private int threads;
-    private int port;
-    private int timeout;
-    private int revision;
-    private boolean restricted;
-    private Set<String> allowed_addresses;
-    private int component_pad;
-    private boolean log_to_file;
-    private int file_duration;
-    private int file_history;
+    private static volatile ApplicationConfig instance;
+
+    private final int threads;
+    private final int port;
+    private final int acceptors;
+    private final int backlog;
+    private final int timeout;
+    private final int handshake_timeout;
+    private final int ack_interval;
+    private final int revision;
+    private final boolean restricted;
+    private final Set<String> allowed_addresses;
+    private final AddressFilter address_filter;
+    private final boolean tls_enabled;
+    private final String tls_keystore;
+    private final String tls_keystore_password;
+    private final String tls_keystore_type;
+    private final int tls_session_cache_size;
+    private final int tls_session_timeout;
+    private final boolean unix_socket_enabled;
+    private final String unix_socket_path;
+    private final String unix_socket_permissions;
+    private final int component_pad;
+    private final boolean log_to_file;
+    private final int file_duration;
+    private final int file_history;
+    private final RuleSet rules;
+    private final OutputMode output_mode;
+    private final LogFormat format;
+    private final boolean archive;
+    private final boolean index_enabled;
+    private final int index_block_size;
+    private final double index_false_positive_rate;
+    private final boolean index_inverted;
+    private final int max_open_files;
+    private final boolean dedup_enabled;
+    private final int dedup_window;
+    private final int dedup_table_size;
+    private final boolean stats_enabled;
+    private final int stats_top_n;
+    private final int stats_log_interval;
+    private final boolean latency_enabled;
+    private final int latency_trace_interval;
+    private final int latency_trace_count;
+    private final boolean overload_enabled;
+    private final int overload_queue_limit;
+    private final int overload_latency_limit;
+    private final int overload_sample_rate;
 
     /**
-     * Gets the instance of ApplicationConfig. Will create it if it does not already exist.
-     * @return Instance of ApplicationConfig.
+     * Gets the current instance of ApplicationConfig. Will create it if it does not already exist.
+     * @return Current instance of ApplicationConfig.
      */
     public static ApplicationConfig getInstance() {
-        if(instance == null) { instance = new ApplicationConfig(); }
-        return instance;
+        ApplicationConfig config = instance;
+        if(config == null) {
+            synchronized(ApplicationConfig.class) {
+                config = instance;
+                if(config == null) {
+                    try {
+                        config = load();
+                    } catch(IOException | ParseException e) {
+                        throw new RuntimeException(e);
+                    }
+                    instance = config;
+                    System.out.println("Application configuration created:\n" + config.toJsonString(true));
+                }
+            }
+        }
+        return config;
     }
 
     /**
-     * Constructs ApplicationConfig.
-     * Loads program configuration from the specified configuration file,
-     * and stores the resulting configuration in the new instance.
-     * If reading or parsing the configuration fails, a runtime
-     * exception will be thrown.
+     * Loads a new configuration snapshot from the configuration file.
+     * The snapshot is validated, but is not published.
+     * @return The new configuration snapshot
+     * @throws IOException If the configuration file cannot be read
+     * @throws ParseException If the configuration file is not valid JSON
+     * @throws IllegalArgumentException If a configuration value is missing or invalid
      */
-    private ApplicationConfig() {
+    public static ApplicationConfig load() throws IOException, ParseException, IllegalArgumentException {
+        final ConfigLoadEvent event = new ConfigLoadEvent();
+        event.begin();
+        event.revision = -1;
         try {
-            JsonObject config = JsonObject.from(
-                    Files.readString(Path.of(LogMap.CONFIG_FILE_PATH))
-            );
-            this.fromJsonObject(config);
+            final ApplicationConfig config = parse();
+            event.revision = config.revision;
+            return config;
+        } catch(IOException | ParseException | IllegalArgumentException e) {
+            event.error = e.getMessage();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads, parses, and validates the configuration file.
+     * @return The new configuration snapshot
+     * @throws IOException If the configuration file cannot be read
+     * @throws ParseException If the configuration file is not valid JSON
+     * @throws IllegalArgumentException If a configuration value is missing or invalid
+     */
+    private static ApplicationConfig parse() throws IOException, ParseException, IllegalArgumentException {
+        return fromJsonObject(JsonObject.from(Files.readString(Path.of(LogMap.CONFIG_FILE_PATH))));
+    }
 
-        } catch(IOException | ParseException e) {
-            throw new RuntimeException(e);
+    /**
+     * Creates a configuration snapshot from a parsed configuration file, and validates it.
+     * The snapshot is not published.
+     * @param o Parsed configuration file
+     * @return The new configuration snapshot
+     * @throws IllegalArgumentException If a configuration value is missing or invalid
+     */
+    public static ApplicationConfig fromJsonObject(JsonObject o) throws IllegalArgumentException {
+        try {
+            return new ApplicationConfig(o);
+        } catch(ClassCastException | NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException("Configuration is missing a value or has a value of the wrong type.");
         }
-        System.out.println("Application configuration created:\n" + this.toJsonString(true));
     }
 
+    /**
+     * Publishes a configuration snapshot, replacing the current one.
+     * Settings that cannot change at runtime must match the current snapshot.
+     * @param config The new configuration snapshot
+     * @throws IllegalArgumentException If a setting that cannot change at runtime differs
+     */
+    public static synchronized void publish(ApplicationConfig config) throws IllegalArgumentException {
+        final ApplicationConfig current = getInstance();
+        if(config.threads != current.threads) {
+            throw new IllegalArgumentException("\"threads\" cannot be changed without a restart.");
+        }
+        if(config.port != current.port) {
+            throw new IllegalArgumentException("\"port\" cannot be changed without a restart.");
+        }
+        if(config.acceptors != current.acceptors) {
+            throw new IllegalArgumentException("\"acceptors\" cannot be changed without a restart.");
+        }
+        if(config.backlog != current.backlog) {
+            throw new IllegalArgumentException("\"backlog\" cannot be changed without a restart.");
+        }
+        if(config.tls_enabled != current.tls_enabled ||
+                !config.tls_keystore.equals(current.tls_keystore) ||
+                !config.tls_keystore_password.equals(current.tls_keystore_password) ||
+                !config.tls_keystore_type.equals(current.tls_keystore_type) ||
+                config.tls_session_cache_size != current.tls_session_cache_size ||
+                config.tls_session_timeout != current.tls_session_timeout) {
+            throw new IllegalArgumentException("\"tls\" cannot be changed without a restart.");
+        }
+        if(config.unix_socket_enabled != current.unix_socket_enabled ||
+                !config.unix_socket_path.equals(current.unix_socket_path) ||
+                !config.unix_socket_permissions.equals(current.unix_socket_permissions)) {
+            throw new IllegalArgumentException("\"unix_socket\" cannot be changed without a restart.");
+        }
+        if(config.log_to_file != current.log_to_file) {
+            throw new IllegalArgumentException("\"log_to_file\" cannot be changed without a restart.");
+        }
+        instance = config;
+    }
+
+    /**
+     * Constructs an ApplicationConfig from a parsed configuration file,
+     * and checks that all of its values are in range.
+     * @param o Parsed configuration file
+     * @throws IllegalArgumentException If a configuration value is out of range
+     */
+    private ApplicationConfig(JsonObject o) throws IllegalArgumentException {
+        revision = ((JsonNumber) o.get("revision")).toInt();
+
+        final JsonObject config_server = (JsonObject) o.get("server");
+        threads = ((JsonNumber) config_server.get("threads")).toInt();
+        port = ((JsonNumber) config_server.get("port")).toInt();
+        acceptors = config_server.get("acceptors") == null ?
+                LogMap.DEFAULT_ACCEPTORS : ((JsonNumber) config_server.get("acceptors")).toInt();
+        backlog = config_server.get("backlog") == null ?
+                LogMap.DEFAULT_BACKLOG : ((JsonNumber) config_server.get("backlog")).toInt();
+        timeout = ((JsonNumber) config_server.get("timeout")).toInt();
+        handshake_timeout = config_server.get("handshake_timeout") == null ?
+                LogMap.DEFAULT_HANDSHAKE_TIMEOUT : ((JsonNumber) config_server.get("handshake_timeout")).toInt();
+        ack_interval = config_server.get("ack_interval") == null ?
+                LogMap.DEFAULT_ACK_INTERVAL : ((JsonNumber) config_server.get("ack_interval")).toInt();
+        restricted = ((JsonLiteral) config_server.get("restricted")).value();
+        final Set<String> addrs = new TreeSet<>();
+        for(JsonEntity i : ((JsonArray) config_server.get("allowed_addresses")).values()) {
+            addrs.add(((JsonString) i).value());
+        }
+        allowed_addresses = Collections.unmodifiableSet(addrs);
+        address_filter = new AddressFilter(allowed_addresses);
+        final JsonObject config_tls = (JsonObject) config_server.get("tls");
+        if(config_tls == null) {
+            tls_enabled = false;
+            tls_keystore = "";
+            tls_keystore_password = "";
+            tls_keystore_type = LogMap.DEFAULT_TLS_KEYSTORE_TYPE;
+            tls_session_cache_size = LogMap.DEFAULT_TLS_SESSION_CACHE_SIZE;
+            tls_session_timeout = LogMap.DEFAULT_TLS_SESSION_TIMEOUT;
+        } else {
+            tls_enabled = ((JsonLiteral) config_tls.get("enabled")).value();
+            tls_keystore = ((JsonString) config_tls.get("keystore")).value();
+            tls_keystore_password = ((JsonString) config_tls.get("keystore_password")).value();
+            tls_keystore_type = config_tls.get("keystore_type") == null ?
+                    LogMap.DEFAULT_TLS_KEYSTORE_TYPE : ((JsonString) config_tls.get("keystore_type")).value();
+            tls_session_cache_size = config_tls.get("session_cache_size") == null ?
+                    LogMap.DEFAULT_TLS_SESSION_CACHE_SIZE : ((JsonNumber) config_tls.get("session_cache_size")).toInt();
+            tls_session_timeout = config_tls.get("session_timeout") == null ?
+                    LogMap.DEFAULT_TLS_SESSION_TIMEOUT : ((JsonNumber) config_tls.get("session_timeout")).toInt();
+        }
+        final JsonObject config_unix = (JsonObject) config_server.get("unix_socket");
+        if(config_unix == null) {
+            unix_socket_enabled = false;
+            unix_socket_path = LogMap.DEFAULT_UNIX_SOCKET_PATH;
+            unix_socket_permissions = LogMap.DEFAULT_UNIX_SOCKET_PERMISSIONS;
+        } else {
+            unix_socket_enabled = ((JsonLiteral) config_unix.get("enabled")).value();
+            unix_socket_path = config_unix.get("path") == null ?
+                    LogMap.DEFAULT_UNIX_SOCKET_PATH : ((JsonString) config_unix.get("path")).value();
+            unix_socket_permissions = config_unix.get("permissions") == null ?
+                    LogMap.DEFAULT_UNIX_SOCKET_PERMISSIONS : ((JsonString) config_unix.get("permissions")).value();
+        }
+
+        final JsonObject config_output = (JsonObject) o.get("output");
+        component_pad = ((JsonNumber) config_output.get("component_pad")).toInt();
+        log_to_file = ((JsonLiteral) config_output.get("log_to_file")).value();
+        file_duration = ((JsonNumber) config_output.get("file_duration")).toInt();
+        file_history = ((JsonNumber) config_output.get("file_history")).toInt();
+        final List<Rule> rule_list = new ArrayList<>();
+        if(config_output.get("rules") != null) {
+            for(JsonEntity i : ((JsonArray) config_output.get("rules")).values()) {
+                rule_list.add(Rule.fromJsonObject((JsonObject) i));
+            }
+        }
+        rules = new RuleSet(rule_list);
+        if(config_output.get("output_mode") == null) {
+            output_mode = OutputMode.SINGLE;
+        } else {
+            output_mode = switch(((JsonString) config_output.get("output_mode")).value()) {
+                case "single" -> OutputMode.SINGLE;
+                case "component" -> OutputMode.COMPONENT;
+                default -> throw new IllegalArgumentException("\"output_mode\" must be \"single\" or \"component\".");
+            };
+        }
+        format = config_output.get("format") == null ?
+                LogFormat.TEXT : LogFormat.fromName(((JsonString) config_output.get("format")).value());
+        archive = config_output.get("archive") != null && ((JsonLiteral) config_output.get("archive")).value();
+        final JsonObject config_index = (JsonObject) config_output.get("index");
+        if(config_index == null) {
+            index_enabled = false;
+            index_block_size = LogMap.DEFAULT_INDEX_BLOCK_SIZE;
+            index_false_positive_rate = LogMap.DEFAULT_INDEX_FALSE_POSITIVE_RATE;
+            index_inverted = false;
+        } else {
+            index_enabled = ((JsonLiteral) config_index.get("enabled")).value();
+            index_block_size = config_index.get("block_size") == null ?
+                    LogMap.DEFAULT_INDEX_BLOCK_SIZE : ((JsonNumber) config_index.get("block_size")).toInt();
+            index_false_positive_rate = config_index.get("false_positive_rate") == null ?
+                    LogMap.DEFAULT_INDEX_FALSE_POSITIVE_RATE : ((JsonNumber) config_index.get("false_positive_rate")).toDouble();
+            index_inverted = config_index.get("inverted") != null && ((JsonLiteral) config_index.get("inverted")).value();
+        }
+        max_open_files = config_output.get("max_open_files") == null ?
+                LogMap.DEFAULT_MAX_OPEN_FILES : ((JsonNumber) config_output.get("max_open_files")).toInt();
+        final JsonObject config_dedup = (JsonObject) config_output.get("dedup");
+        if(config_dedup == null) {
+            dedup_enabled = false;
+            dedup_window = LogMap.DEFAULT_DEDUP_WINDOW;
+            dedup_table_size = LogMap.DEFAULT_DEDUP_TABLE_SIZE;
+        } else {
+            dedup_enabled = ((JsonLiteral) config_dedup.get("enabled")).value();
+            dedup_window = ((JsonNumber) config_dedup.get("window")).toInt();
+            dedup_table_size = ((JsonNumber) config_dedup.get("table_size")).toInt();
+        }
+        final JsonObject config_stats = (JsonObject) config_output.get("stats");
+        if(config_stats == null) {
+            stats_enabled = false;
+            stats_top_n = LogMap.DEFAULT_STATS_TOP_N;
+            stats_log_interval = 0;
+        } else {
+            stats_enabled = ((JsonLiteral) config_stats.get("enabled")).value();
+            stats_top_n = config_stats.get("top_n") == null ?
+                    LogMap.DEFAULT_STATS_TOP_N : ((JsonNumber) config_stats.get("top_n")).toInt();
+            stats_log_interval = config_stats.get("log_interval") == null ?
+                    0 : ((JsonNumber) config_stats.get("log_interval")).toInt();
+        }
+        final JsonObject config_latency = (JsonObject) config_output.get("latency");
+        if(config_latency == null) {
+            latency_enabled = false;
+            latency_trace_interval = 0;
+            latency_trace_count = LogMap.DEFAULT_LATENCY_TRACE_COUNT;
+        } else {
+            latency_enabled = ((JsonLiteral) config_latency.get("enabled")).value();
+            latency_trace_interval = config_latency.get("trace_interval") == null ?
+                    0 : ((JsonNumber) config_latency.get("trace_interval")).toInt();
+            latency_trace_count = config_latency.get("trace_count") == null ?
+                    LogMap.DEFAULT_LATENCY_TRACE_COUNT : ((JsonNumber) config_latency.get("trace_count")).toInt();
+        }
+        final JsonObject config_overload = (JsonObject) config_output.get("overload");
+        if(config_overload == null) {
+            overload_enabled = false;
+            overload_queue_limit = LogMap.DEFAULT_OVERLOAD_QUEUE_LIMIT;
+            overload_latency_limit = LogMap.DEFAULT_OVERLOAD_LATENCY_LIMIT;
+            overload_sample_rate = LogMap.DEFAULT_OVERLOAD_SAMPLE_RATE;
+        } else {
+            overload_enabled = ((JsonLiteral) config_overload.get("enabled")).value();
+            overload_queue_limit = config_overload.get("queue_limit") == null ?
+                    LogMap.DEFAULT_OVERLOAD_QUEUE_LIMIT : ((JsonNumber) config_overload.get("queue_limit")).toInt();
+            overload_latency_limit = config_overload.get("latency_limit") == null ?
+                    LogMap.DEFAULT_OVERLOAD_LATENCY_LIMIT : ((JsonNumber) config_overload.get("latency_limit")).toInt();
+            overload_sample_rate = config_overload.get("sample_rate") == null ?
+                    LogMap.DEFAULT_OVERLOAD_SAMPLE_RATE : ((JsonNumber) config_overload.get("sample_rate")).toInt();
+        }
+
+        if(threads < 1) { throw new IllegalArgumentException("\"threads\" must be at least 1."); }
+        if(port < 1 || port > 65535) { throw new IllegalArgumentException("\"port\" must be between 1 and 65535."); }
+        if(acceptors < 1 || acceptors > LogMap.MAX_ACCEPTORS) {
+            throw new IllegalArgumentException("\"acceptors\" must be between 1 and " + LogMap.MAX_ACCEPTORS + ".");
+        }
+        if(backlog < 1) { throw new IllegalArgumentException("\"backlog\" must be at least 1."); }
+        if(timeout < 0) { throw new IllegalArgumentException("\"timeout\" cannot be negative."); }
+        if(handshake_timeout < 0) { throw new IllegalArgumentException("\"handshake_timeout\" cannot be negative."); }
+        if(ack_interval < 0) { throw new IllegalArgumentException("\"ack_interval\" cannot be negative."); }
+        if(tls_enabled && tls_keystore.isEmpty()) {
+            throw new IllegalArgumentException("\"tls.keystore\" must be set when TLS is enabled.");
+        }
+        if(tls_session_cache_size < 0) {
+            throw new IllegalArgumentException("\"tls.session_cache_size\" cannot be negative.");
+        }
+        if(tls_session_timeout < 0) { throw new IllegalArgumentException("\"tls.session_timeout\" cannot be negative."); }
+        if(unix_socket_path.isEmpty()) { throw new IllegalArgumentException("\"unix_socket.path\" cannot be empty."); }
+        if(!unix_socket_permissions.matches("^[r-][w-][x-][r-][w-][x-][r-][w-][x-]$")) {
+            throw new IllegalArgumentException("\"unix_socket.permissions\" must look like \"rw-rw----\".");
+        }
+        if(component_pad < 0) { throw new IllegalArgumentException("\"component_pad\" cannot be negative."); }
+        if(file_duration < 1) { throw new IllegalArgumentException("\"file_duration\" must be at least 1."); }
+        if(file_history < 0) { throw new IllegalArgumentException("\"file_history\" cannot be negative."); }
+        if(max_open_files < 1) { throw new IllegalArgumentException("\"max_open_files\" must be at least 1."); }
+        if(index_block_size < LogMap.MIN_INDEX_BLOCK_SIZE || index_block_size > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException(
+                    "\"index.block_size\" must be between " + LogMap.MIN_INDEX_BLOCK_SIZE + " and " + Integer.MAX_VALUE / 4 + "."
+            );
+        }
+        if(!(index_false_positive_rate > 0 && index_false_positive_rate < 1)) {
+            throw new IllegalArgumentException("\"index.false_positive_rate\" must be between 0 and 1.");
+        }
+        if(dedup_window < 1) { throw new IllegalArgumentException("\"dedup.window\" must be at least 1."); }
+        if(stats_top_n < 1 || stats_top_n > LogMap.MAX_STATS_TOP_N) {
+            throw new IllegalArgumentException("\"stats.top_n\" must be between 1 and " + LogMap.MAX_STATS_TOP_N + ".");
+        }
+        if(stats_log_interval < 0) { throw new IllegalArgumentException("\"stats.log_interval\" cannot be negative."); }
+        if(latency_trace_interval < 0) {
+            throw new IllegalArgumentException("\"latency.trace_interval\" cannot be negative.");
+        }
+        if(latency_trace_count < 1 || latency_trace_count > LogMap.MAX_LATENCY_TRACE_COUNT) {
+            throw new IllegalArgumentException(
+                    "\"latency.trace_count\" must be between 1 and " + LogMap.MAX_LATENCY_TRACE_COUNT + "."
+            );
+        }
+        if(overload_queue_limit < 1) { throw new IllegalArgumentException("\"overload.queue_limit\" must be at least 1."); }
+        if(overload_latency_limit < 1) {
+            throw new IllegalArgumentException("\"overload.latency_limit\" must be at least 1.");
+        }
+        if(overload_sample_rate < 1) { throw new IllegalArgumentException("\"overload.sample_rate\" must be at least 1."); }
+        if(dedup_table_size < 1 || dedup_table_size > LogMap.MAX_DEDUP_TABLE_SIZE) {
+            throw new IllegalArgumentException(
+                    "\"dedup.table_size\" must be between 1 and " + LogMap.MAX_DEDUP_TABLE_SIZE + "."
+            );
+        }
+    }
+
+    /**
+     * The revision of the configuration file
+     * @return The value of "revision"
+     */
+    public int getRevision() { return revision; }
+
     /**
      * The number of simultaneous connections the server will handle
      * @return The value of "threads"
@@ -70,11 +425,35 @@ public class ApplicationConfig implements JsonSerializable {
     public int getPort() { return port; }
 
     /**
-     * The socket timeout for inactive clients
+     * The number of threads accepting connections
+     * @return The value of "acceptors"
+     */
+    public int getAcceptors() { return acceptors; }
+
+    /**
+     * The length of the queue of connections waiting to be accepted (per listening socket)
+     * @return The value of "backlog"
+     */
+    public int getBacklog() { return backlog; }
+
+    /**
+     * How long clients can be inactive before they are disconnected (ms, 0 for no limit)
      * @return The value of "timeout"
      */
     public int getTimeout() { return timeout; }
 
+    /**
+     * How long new clients have to send their first event before they are disconnected (ms, 0 for no limit)
+     * @return The value of "handshake_timeout"
+     */
+    public int getHandshakeTimeout() { return handshake_timeout; }
+
+    /**
+     * How long acknowledgements for batches can be held back, so that one sync covers many batches (ms)
+     * @return The value of "ack_interval"
+     */
+    public int getAckInterval() { return ack_interval; }
+
     /**
      * Whether access is restricted to certain IP addresses
      * @return The value of "restricted"
@@ -82,11 +461,71 @@ public class ApplicationConfig implements JsonSerializable {
     public boolean isRestricted() { return restricted; }
 
     /**
-     * The list of allowed IP addresses
+     * The list of allowed IP addresses and CIDR ranges
      * @return The value of "allowed_addresses"
      */
     public Set<String> getAllowedAddresses() { return allowed_addresses; }
 
+    /**
+     * The compiled filter for the allowed addresses and CIDR ranges
+     * @return AddressFilter built from "allowed_addresses"
+     */
+    public AddressFilter getAddressFilter() { return address_filter; }
+
+    /**
+     * Whether clients must connect over TLS
+     * @return The value of "tls.enabled"
+     */
+    public boolean isTlsEnabled() { return tls_enabled; }
+
+    /**
+     * The path of the keystore containing the server's certificate and private key
+     * @return The value of "tls.keystore"
+     */
+    public String getTlsKeystore() { return tls_keystore; }
+
+    /**
+     * The password of the keystore and its private key
+     * @return The value of "tls.keystore_password"
+     */
+    public String getTlsKeystorePassword() { return tls_keystore_password; }
+
+    /**
+     * The type of the keystore
+     * @return The value of "tls.keystore_type"
+     */
+    public String getTlsKeystoreType() { return tls_keystore_type; }
+
+    /**
+     * How many TLS sessions are kept for resumption (0 for no limit)
+     * @return The value of "tls.session_cache_size"
+     */
+    public int getTlsSessionCacheSize() { return tls_session_cache_size; }
+
+    /**
+     * How long TLS sessions can be resumed for (s)
+     * @return The value of "tls.session_timeout"
+     */
+    public int getTlsSessionTimeout() { return tls_session_timeout; }
+
+    /**
+     * Whether the server also listens on a Unix domain socket
+     * @return The value of "unix_socket.enabled"
+     */
+    public boolean isUnixSocketEnabled() { return unix_socket_enabled; }
+
+    /**
+     * The path of the Unix domain socket
+     * @return The value of "unix_socket.path"
+     */
+    public String getUnixSocketPath() { return unix_socket_path; }
+
+    /**
+     * The file permissions of the Unix domain socket, which control who can connect to it
+     * @return The value of "unix_socket.permissions"
+     */
+    public String getUnixSocketPermissions() { return unix_socket_permissions; }
+
     /**
      * The length that component names should be padded to
      * @return The value of "component_pad"
@@ -111,22 +550,209 @@ public class ApplicationConfig implements JsonSerializable {
      */
     public int getFileHistory() { return file_history; }
 
-    @Override
+    /**
+     * The compiled routing and filtering rules
+     * @return RuleSet built from "rules"
+     */
+    public RuleSet getRules() { return rules; }
+
+    /**
+     * How events are split between log files
+     * @return The value of "output_mode"
+     */
+    public OutputMode getOutputMode() { return output_mode; }
+
+    /**
+     * The format that log files are written in (unless a routing rule overrides it)
+     * @return The value of "format"
+     */
+    public LogFormat getFormat() { return format; }
+
+    /**
+     * Whether old text log files should be converted to archive files
+     * @return The value of "archive"
+     */
+    public boolean isArchiveEnabled() { return archive; }
+
+    /**
+     * The maximum number of log files to keep open at once
+     * @return The value of "max_open_files"
+     */
+    public int getMaxOpenFiles() { return max_open_files; }
+
+    /**
+     * Whether old log files should be indexed for searching
+     * @return The value of "index.enabled"
+     */
+    public boolean isIndexEnabled() { return index_enabled; }
+
+    /**
+     * The number of bytes of a text log file covered by each block of its index
+     * @return The value of "index.block_size"
+     */
+    public int getIndexBlockSize() { return index_block_size; }
+
+    /**
+     * The false positive rate of each block's Bloom filter
+     * @return The value of "index.false_positive_rate"
+     */
+    public double getIndexFalsePositiveRate() { return index_false_positive_rate; }
+
+    /**
+     * Whether indexes also map each token to the blocks that contain it
+     * @return The value of "index.inverted"
+     */
+    public boolean isIndexInverted() { return index_inverted; }
+
+    /**
+     * Whether repeated events should be collapsed
+     * @return The value of "dedup.enabled"
+     */
+    public boolean isDedupEnabled() { return dedup_enabled; }
+
+    /**
+     * How long repeats of an event are collapsed before a summary is written (ms)
+     * @return The value of "dedup.window"
+     */
+    public int getDedupWindow() { return dedup_window; }
+
+    /**
+     * How many distinct events the dedup table can track at once
+     * @return The value of "dedup.table_size"
+     */
+    public int getDedupTableSize() { return dedup_table_size; }
+
+    /**
+     * Whether events are counted by component, client, and severity
+     * @return The value of "stats.enabled"
+     */
+    public boolean isStatsEnabled() { return stats_enabled; }
+
+    /**
+     * The number of busiest components and clients reported for each window
+     * @return The value of "stats.top_n"
+     */
+    public int getStatsTopN() { return stats_top_n; }
+
+    /**
+     * How often a summary of the event statistics is logged (ms, 0 to never log it)
+     * @return The value of "stats.log_interval"
+     */
+    public int getStatsLogInterval() { return stats_log_interval; }
+
+    /**
+     * Whether the latency of each event is traced from the socket read to the flush
+     * @return The value of "latency.enabled"
+     */
+    public boolean isLatencyEnabled() { return latency_enabled; }
+
+    /**
+     * How often the slowest traced events are logged (ms, 0 to never log them)
+     * @return The value of "latency.trace_interval"
+     */
+    public int getLatencyTraceInterval() { return latency_trace_interval; }
+
+    /**
+     * The number of slowest traced events logged each interval
+     * @return The value of "latency.trace_count"
+     */
+    public int getLatencyTraceCount() { return latency_trace_count; }
+
+    /**
+     * Whether low-severity events are shed when the output queue backs up
+     * @return The value of "overload.enabled"
+     */
+    public boolean isOverloadEnabled() { return overload_enabled; }
+
+    /**
+     * The number of queued events above which the server is overloaded
+     * @return The value of "overload.queue_limit"
+     */
+    public int getOverloadQueueLimit() { return overload_queue_limit; }
+
+    /**
+     * How long events can wait in the output queue before the server is overloaded (ms)
+     * @return The value of "overload.latency_limit"
+     */
+    public int getOverloadLatencyLimit() { return overload_latency_limit; }
+
+    /**
+     * The rate that events are sampled at while overloaded (1 in N are kept)
+     * @return The value of "overload.sample_rate"
+     */
+    public int getOverloadSampleRate() { return overload_sample_rate; }
+
+    /**
+     * Saves this configuration snapshot into a new JSON object, in the layout of the configuration file.
+     * The keystore password is masked.
+     * @return JSON object created from this snapshot
+     */
     public JsonObject toJsonObject() {
         JsonObject server = new JsonObject();
         server.put("threads", new JsonNumber(threads));
         server.put("port", new JsonNumber(port));
+        server.put("acceptors", new JsonNumber(acceptors));
+        server.put("backlog", new JsonNumber(backlog));
         server.put("timeout", new JsonNumber(timeout));
+        server.put("handshake_timeout", new JsonNumber(handshake_timeout));
+        server.put("ack_interval", new JsonNumber(ack_interval));
         server.put("restricted", new JsonLiteral(restricted));
         JsonArray addrs = new JsonArray();
         for(String i : allowed_addresses) { addrs.add(new JsonString(i)); }
         server.put("allowed_addresses", addrs);
+        JsonObject tls = new JsonObject();
+        tls.put("enabled", new JsonLiteral(tls_enabled));
+        tls.put("keystore", new JsonString(tls_keystore));
+        tls.put("keystore_password", new JsonString(tls_keystore_password.isEmpty() ? "" : "********"));
+        tls.put("keystore_type", new JsonString(tls_keystore_type));
+        tls.put("session_cache_size", new JsonNumber(tls_session_cache_size));
+        tls.put("session_timeout", new JsonNumber(tls_session_timeout));
+        server.put("tls", tls);
+        JsonObject unix_socket = new JsonObject();
+        unix_socket.put("enabled", new JsonLiteral(unix_socket_enabled));
+        unix_socket.put("path", new JsonString(unix_socket_path));
+        unix_socket.put("permissions", new JsonString(unix_socket_permissions));
+        server.put("unix_socket", unix_socket);
 
         JsonObject output = new JsonObject();
         output.put("component_pad", new JsonNumber(component_pad));
         output.put("log_to_file", new JsonLiteral(log_to_file));
         output.put("file_duration", new JsonNumber(file_duration));
         output.put("file_history", new JsonNumber(file_history));
+        JsonArray rule_array = new JsonArray();
+        for(Rule i : rules.getRules()) { rule_array.add(i.toJsonObject()); }
+        output.put("rules", rule_array);
+        output.put("output_mode", new JsonString(output_mode.name().toLowerCase()));
+        output.put("format", new JsonString(format.name().toLowerCase()));
+        output.put("archive", new JsonLiteral(archive));
+        JsonObject index = new JsonObject();
+        index.put("enabled", new JsonLiteral(index_enabled));
+        index.put("block_size", new JsonNumber(index_block_size));
+        index.put("false_positive_rate", new JsonNumber(index_false_positive_rate));
+        index.put("inverted", new JsonLiteral(index_inverted));
+        output.put("index", index);
+        output.put("max_open_files", new JsonNumber(max_open_files));
+        JsonObject dedup = new JsonObject();
+        dedup.put("enabled", new JsonLiteral(dedup_enabled));
+        dedup.put("window", new JsonNumber(dedup_window));
+        dedup.put("table_size", new JsonNumber(dedup_table_size));
+        output.put("dedup", dedup);
+        JsonObject stats = new JsonObject();
+        stats.put("enabled", new JsonLiteral(stats_enabled));
+        stats.put("top_n", new JsonNumber(stats_top_n));
+        stats.put("log_interval", new JsonNumber(stats_log_interval));
+        output.put("stats", stats);
+        JsonObject latency = new JsonObject();
+        latency.put("enabled", new JsonLiteral(latency_enabled));
+        latency.put("trace_interval", new JsonNumber(latency_trace_interval));
+        latency.put("trace_count", new JsonNumber(latency_trace_count));
+        output.put("latency", latency);
+        JsonObject overload = new JsonObject();
+        overload.put("enabled", new JsonLiteral(overload_enabled));
+        overload.put("queue_limit", new JsonNumber(overload_queue_limit));
+        overload.put("latency_limit", new JsonNumber(overload_latency_limit));
+        overload.put("sample_rate", new JsonNumber(overload_sample_rate));
+        output.put("overload", overload);
 
         JsonObject root = new JsonObject();
         root.put("revision", new JsonNumber(revision));
@@ -136,24 +762,10 @@ public class ApplicationConfig implements JsonSerializable {
         return root;
     }
 
-    @Override
-    public void fromJsonObject(JsonObject o) {
-        revision = ((JsonNumber) o.get("revision")).toInt();
-
-        final JsonObject config_server = (JsonObject) o.get("server");
-        threads = ((JsonNumber) config_server.get("threads")).toInt();
-        port = ((JsonNumber) config_server.get("port")).toInt();
-        timeout = ((JsonNumber) config_server.get("timeout")).toInt();
-        restricted = ((JsonLiteral) config_server.get("restricted")).value();
-        allowed_addresses = new TreeSet<>();
-        for(JsonEntity i : ((JsonArray) config_server.get("allowed_addresses")).values()) {
-            allowed_addresses.add(((JsonString) i).value());
-        }
-
-        final JsonObject config_output = (JsonObject) o.get("output");
-        component_pad = ((JsonNumber) config_output.get("component_pad")).toInt();
-        log_to_file = ((JsonLiteral) config_output.get("log_to_file")).value();
-        file_duration = ((JsonNumber) config_output.get("file_duration")).toInt();
-        file_history = ((JsonNumber) config_output.get("file_history")).toInt();
-    }
+    /**
+     * Serializes this configuration snapshot to a JSON string.
+     * @param pretty false to minify, true to use newlines and indents
+     * @return This snapshot as a JSON string
+     */
+    public String toJsonString(boolean pretty) { return toJsonObject().toJsonString(pretty); }
 }
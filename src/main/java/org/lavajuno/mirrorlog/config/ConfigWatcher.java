@@ -0,0 +1,107 @@
+package org.lavajuno.mirrorlog.config;
+
+import org.lavajuno.mirrorlog.io.OutputController;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.text.ParseException;
+
+/**
+ * ConfigWatcher watches the configuration file for changes, and reloads
+ * ApplicationConfig when it is modified. Invalid configurations are
+ * rejected and the current configuration is kept.
+ */
+public class ConfigWatcher extends Thread {
+    private final WatchService watch_service;
+    private final Path config_path;
+    private final OutputController outputController;
+
+    /**
+     * Constructs a ConfigWatcher.
+     * @param outputController OutputController to report reloads to
+     * @throws IOException If the configuration directory cannot be watched
+     */
+    public ConfigWatcher(OutputController outputController) throws IOException {
+        this.outputController = outputController;
+        config_path = Path.of(LogMap.CONFIG_FILE_PATH).toAbsolutePath();
+        watch_service = FileSystems.getDefault().newWatchService();
+        config_path.getParent().register(
+                watch_service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+        setDaemon(true);
+    }
+
+    /**
+     * ConfigWatcher's thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                WatchKey key = watch_service.take();
+                boolean changed = pollChanged(key);
+                if(!changed) { continue; }
+                // Editors often write a file in several steps, so wait for them to finish
+                Thread.sleep(LogMap.CONFIG_RELOAD_DELAY);
+                while((key = watch_service.poll()) != null) { pollChanged(key); }
+                reload();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            System.out.println("Stopped watching configuration file.");
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        try {
+            watch_service.close();
+        } catch(IOException e) {
+            System.err.println("Failed to close configuration watch service.");
+        }
+        super.interrupt();
+    }
+
+    /**
+     * Drains the events of a WatchKey and resets it.
+     * @param key WatchKey to drain
+     * @return True if any of the events were for the configuration file
+     */
+    private boolean pollChanged(WatchKey key) {
+        boolean changed = false;
+        for(WatchEvent<?> i : key.pollEvents()) {
+            if(config_path.getFileName().equals(i.context())) { changed = true; }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Loads, validates, and publishes the configuration file.
+     */
+    private void reload() {
+        try {
+            ApplicationConfig config = ApplicationConfig.load();
+            ApplicationConfig.publish(config);
+            outputController.submitEvent(
+                    "Log Server",
+                    0,
+                    "Configuration reloaded. (revision " + config.getRevision() + ")"
+            );
+        } catch(IOException e) {
+            outputController.submitEvent(
+                    "Log Server",
+                    2,
+                    "Failed to reload configuration. (IOException)"
+            );
+        } catch(ParseException | IllegalArgumentException e) {
+            outputController.submitEvent(
+                    "Log Server",
+                    2,
+                    "Rejected configuration change: " + e.getMessage().replace('\n', ' ')
+            );
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.lavajuno.mirrorlog.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * BloomFilter is a fixed-size set of token hashes that can report false positives,
+ * but never false negatives. The k bit positions of a hash are derived from its two
+ * 32-bit halves (h1 + i * h2), so each token is only hashed once.
+ */
+public class BloomFilter {
+    /**
+     * Largest number of hash functions a filter will use
+     */
+    private static final int MAX_HASHES = 16;
+
+    private final long[] bits;
+    private final int n_hashes;
+
+    /**
+     * Constructs an empty BloomFilter sized for a number of tokens and a false positive rate.
+     * @param n_tokens Number of distinct tokens that will be added
+     * @param false_positive_rate Chance that a token that was not added is reported as present
+     */
+    public BloomFilter(int n_tokens, double false_positive_rate) {
+        final int n = Math.max(n_tokens, 1);
+        final double n_bits = -n * Math.log(false_positive_rate) / (Math.log(2) * Math.log(2));
+        bits = new long[(int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) Math.ceil(n_bits / 64)))];
+        n_hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bits.length * 64.0 / n * Math.log(2))));
+    }
+
+    /**
+     * Constructs a BloomFilter from its bits.
+     * @param bits Bits of the filter
+     * @param n_hashes Number of hash functions
+     */
+    private BloomFilter(long[] bits, int n_hashes) {
+        this.bits = bits;
+        this.n_hashes = n_hashes;
+    }
+
+    /**
+     * Adds a token to this BloomFilter.
+     * @param hash Hash of the token (from Tokens.hash)
+     */
+    public void add(long hash) {
+        final long n_bits = bits.length * 64L;
+        final long h1 = (int) hash;
+        final long h2 = (int) (hash >>> 32);
+        for(int i = 0; i < n_hashes; i++) {
+            final long bit = Math.floorMod(h1 + i * h2, n_bits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks if a token may have been added to this BloomFilter.
+     * @param hash Hash of the token (from Tokens.hash)
+     * @return False if the token was definitely not added
+     */
+    public boolean mightContain(long hash) {
+        final long n_bits = bits.length * 64L;
+        final long h1 = (int) hash;
+        final long h2 = (int) (hash >>> 32);
+        for(int i = 0; i < n_hashes; i++) {
+            final long bit = Math.floorMod(h1 + i * h2, n_bits);
+            if((bits[(int) (bit >>> 6)] & 1L << bit) == 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of bytes this BloomFilter takes up in an index file.
+     * @return Size of the filter (bytes)
+     */
+    public int getSize() { return 5 + bits.length * 8; }
+
+    /**
+     * Writes this BloomFilter to an index file.
+     * @param out Where to write the filter
+     * @throws IOException If writing fails
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(n_hashes);
+        out.writeInt(bits.length);
+        for(long i : bits) { out.writeLong(i); }
+    }
+
+    /**
+     * Reads a BloomFilter written by write().
+     * @param in Buffer positioned at the start of the filter
+     * @return The BloomFilter
+     * @throws IOException If the filter is corrupt
+     */
+    public static BloomFilter read(ByteBuffer in) throws IOException {
+        final int n_hashes = in.get();
+        final int n_words = in.getInt();
+        if(n_hashes < 1 || n_hashes > MAX_HASHES || n_words < 1 || n_words > in.remaining() / 8) {
+            throw new IOException("Corrupt Bloom filter.");
+        }
+        final long[] bits = new long[n_words];
+        in.asLongBuffer().get(bits);
+        in.position(in.position() + n_words * 8);
+        return new BloomFilter(bits, n_hashes);
+    }
+}
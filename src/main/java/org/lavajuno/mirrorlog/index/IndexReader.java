@@ -0,0 +1,174 @@
+package org.lavajuno.mirrorlog.index;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * IndexReader reads index files written by IndexWriter, and finds the blocks of a
+ * log file that may contain a set of tokens. An index is only used while the size
+ * of its log file matches the size that was indexed.
+ */
+public class IndexReader {
+    private final long source_size;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final BloomFilter[] filters;
+    private final long[] token_hashes;
+    private final int[] posting_ends;
+    private final byte[] postings;
+
+    /**
+     * Reads an index file.
+     * @param index_file Path of the index file
+     * @throws IOException If the file cannot be read or is not a valid index
+     */
+    public IndexReader(Path index_file) throws IOException {
+        final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(index_file));
+        try {
+            if(in.remaining() < 32 || in.getInt() != LogMap.INDEX_MAGIC ||
+                    in.getInt(in.limit() - 4) != LogMap.INDEX_MAGIC) {
+                throw new IOException("\"" + index_file + "\" is not an index file.");
+            }
+            source_size = in.getLong();
+            in.getInt(); // Block size
+            final int block_count = in.getInt(in.limit() - 16);
+            final long inverted_offset = in.getLong(in.limit() - 12);
+            if(block_count < 0 || block_count > in.remaining() / 17) { throw new IOException("Corrupt index file."); }
+            offsets = new long[block_count];
+            lengths = new int[block_count];
+            filters = new BloomFilter[block_count];
+            for(int i = 0; i < block_count; i++) {
+                offsets[i] = in.getLong();
+                lengths[i] = in.getInt();
+                filters[i] = BloomFilter.read(in);
+            }
+            if(inverted_offset < 0) {
+                token_hashes = null;
+                posting_ends = null;
+                postings = null;
+            } else {
+                if(inverted_offset != in.position()) { throw new IOException("Corrupt index file."); }
+                final int n_tokens = in.getInt();
+                if(n_tokens < 0 || n_tokens > in.remaining() / 12) { throw new IOException("Corrupt index file."); }
+                token_hashes = new long[n_tokens];
+                posting_ends = new int[n_tokens];
+                for(int i = 0; i < n_tokens; i++) { token_hashes[i] = in.getLong(); }
+                for(int i = 0; i < n_tokens; i++) { posting_ends[i] = in.getInt(); }
+                postings = new byte[in.getInt()];
+                in.get(postings);
+            }
+        } catch(BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt index file.");
+        }
+    }
+
+    /**
+     * Gets the path of the index file for a log file.
+     * @param source Path of the log file
+     * @return Path of its index file ("<name>.idx")
+     */
+    public static Path indexPath(Path source) {
+        return source.resolveSibling(source.getFileName() + "." + LogMap.INDEX_EXTENSION);
+    }
+
+    /**
+     * Checks if a log file has an index that is up-to-date. Only the index's header is read.
+     * @param source Path of the log file
+     * @return True if the index exists and matches the log file's current size
+     * @throws IOException If either file cannot be read
+     */
+    public static boolean isCurrent(Path source) throws IOException {
+        try(DataInputStream in = new DataInputStream(Files.newInputStream(indexPath(source)))) {
+            return in.readInt() == LogMap.INDEX_MAGIC && in.readLong() == Files.size(source);
+        } catch(NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the size of the log file when it was indexed.
+     * @return Size of the log file (bytes)
+     */
+    public long getSourceSize() { return source_size; }
+
+    /**
+     * Gets the number of blocks in the index.
+     * @return Number of blocks
+     */
+    public int getBlockCount() { return offsets.length; }
+
+    /**
+     * Gets where a block starts in the log file.
+     * @param block Number of the block
+     * @return Offset of the block (bytes), or the block's number for archives
+     */
+    public long getBlockOffset(int block) { return offsets[block]; }
+
+    /**
+     * Gets the length of a block.
+     * @param block Number of the block
+     * @return Length of the block's text (bytes)
+     */
+    public int getBlockLength(int block) { return lengths[block]; }
+
+    /**
+     * Checks if the index has an inverted index.
+     * @return True if blocks are found through the inverted index instead of the Bloom filters
+     */
+    public boolean isInverted() { return token_hashes != null; }
+
+    /**
+     * Finds the blocks that may contain every one of a set of tokens.
+     * With an inverted index, the result is exact (apart from hash collisions).
+     * Otherwise, each block's Bloom filter is checked, and blocks may be false positives.
+     * @param hashes Hashes of the tokens (from Tokens.required)
+     * @return Blocks that must be searched, indexed by block number
+     * @throws IOException If the inverted index is corrupt
+     */
+    public boolean[] candidates(long[] hashes) throws IOException {
+        final boolean[] blocks = new boolean[offsets.length];
+        Arrays.fill(blocks, true);
+        if(hashes.length == 0) { return blocks; }
+        if(token_hashes != null) {
+            for(long hash : hashes) {
+                final boolean[] found = new boolean[offsets.length];
+                final int i = Arrays.binarySearch(token_hashes, hash);
+                if(i >= 0) {
+                    int pos = i == 0 ? 0 : posting_ends[i - 1];
+                    int block = 0;
+                    while(pos < posting_ends[i]) {
+                        int delta = 0;
+                        for(int shift = 0; ; shift += 7) {
+                            if(pos >= postings.length || shift > 28) { throw new IOException("Corrupt index file."); }
+                            final byte b = postings[pos++];
+                            delta |= (b & 0x7F) << shift;
+                            if(b >= 0) { break; }
+                        }
+                        block += delta;
+                        if(block >= found.length) { throw new IOException("Corrupt index file."); }
+                        found[block] = true;
+                    }
+                }
+                for(int j = 0; j < blocks.length; j++) { blocks[j] &= found[j]; }
+            }
+            return blocks;
+        }
+        for(int i = 0; i < blocks.length; i++) {
+            for(long hash : hashes) {
+                if(!filters[i].mightContain(hash)) {
+                    blocks[i] = false;
+                    break;
+                }
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,272 @@
+package org.lavajuno.mirrorlog.index;
+
+import org.lavajuno.mirrorlog.archive.ArchiveReader;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * IndexWriter builds the index of a log file that is no longer being written to.
+ * The file is split into blocks: runs of whole lines of at least "block_size" bytes for
+ * text and NDJSON files, or the file's own blocks for archives (indexed as their text
+ * layout). Each block gets a Bloom filter of its tokens, and optionally the whole file
+ * gets an inverted index that maps each token to the blocks that contain it.
+ * Layout of an index file (all integers are big-endian):
+ * - header: int magic, long source_size, int block_size
+ * - blocks: long offset (block number for archives), int length, byte n_hashes, int n_words, long[] bits
+ * - inverted index (optional): int n_tokens, long[] token_hashes (sorted), int[] posting_ends,
+ *   int postings_length, then the block numbers of each token as varint deltas
+ * - trailer: int block_count, long inverted_offset (-1 if there is no inverted index), int magic
+ */
+public class IndexWriter {
+    /**
+     * Open-addressing set of token hashes, reused for every block.
+     */
+    private static class TokenSet {
+        private long[] table = new long[1024];
+        private int size;
+
+        /**
+         * Adds a token to the set.
+         * @param hash Hash of the token (never 0)
+         */
+        void add(long hash) {
+            if(size * 2 >= table.length) { grow(); }
+            int i = (int) (hash ^ hash >>> 32) & (table.length - 1);
+            while(table[i] != 0) {
+                if(table[i] == hash) { return; }
+                i = (i + 1) & (table.length - 1);
+            }
+            table[i] = hash;
+            size++;
+        }
+
+        /**
+         * @return Every token in the set, sorted
+         */
+        long[] toSortedArray() {
+            final long[] hashes = new long[size];
+            int n = 0;
+            for(long i : table) {
+                if(i != 0) { hashes[n++] = i; }
+            }
+            Arrays.sort(hashes);
+            return hashes;
+        }
+
+        /**
+         * Removes every token from the set.
+         */
+        void clear() {
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+
+        /**
+         * Doubles the size of the table.
+         */
+        private void grow() {
+            final long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for(long i : old) {
+                if(i != 0) { add(i); }
+            }
+        }
+    }
+
+    private final DataOutputStream out;
+    private final double false_positive_rate;
+    private final TokenSet tokens = new TokenSet();
+    private final ArrayList<long[]> block_tokens;
+    private int block_count;
+
+    /**
+     * Number of bytes written to the index so far
+     */
+    private long written = 16;
+
+    /**
+     * Constructs an IndexWriter.
+     * @param out Where to write the index
+     * @param false_positive_rate False positive rate of each block's Bloom filter
+     * @param inverted True to also write an inverted index
+     */
+    private IndexWriter(DataOutputStream out, double false_positive_rate, boolean inverted) {
+        this.out = out;
+        this.false_positive_rate = false_positive_rate;
+        block_tokens = inverted ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Builds the index of a log file (".log", ".ndjson", or archive).
+     * @param source Path of the log file
+     * @param index_file Where to write the index
+     * @param block_size Number of bytes of a text or NDJSON file covered by each block
+     * @param false_positive_rate False positive rate of each block's Bloom filter
+     * @param inverted True to also write an inverted index
+     * @throws IOException If the log file cannot be read, or the index cannot be written
+     */
+    public static void write(Path source, Path index_file, int block_size, double false_positive_rate,
+                             boolean inverted) throws IOException {
+        final long source_size = Files.size(source);
+        final boolean archive = source.getFileName().toString().endsWith("." + LogMap.ARCHIVE_EXTENSION);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index_file), 65536))) {
+            final IndexWriter writer = new IndexWriter(out, false_positive_rate, inverted);
+            out.writeInt(LogMap.INDEX_MAGIC);
+            out.writeLong(source_size);
+            out.writeInt(block_size);
+            if(archive) {
+                writer.addArchiveBlocks(source);
+            } else {
+                writer.addTextBlocks(source, block_size);
+            }
+            final long inverted_offset = inverted ? writer.written : -1;
+            if(inverted) { writer.writeInverted(); }
+            out.writeInt(writer.block_count);
+            out.writeLong(inverted_offset);
+            out.writeInt(LogMap.INDEX_MAGIC);
+        }
+        if(Files.size(source) != source_size) { throw new IOException("File changed while it was being indexed"); }
+    }
+
+    /**
+     * Splits a text or NDJSON file into blocks of whole lines, and adds each one to the index.
+     * @param source Path of the file
+     * @param block_size Smallest number of bytes in a block (except for the last one)
+     * @throws IOException If reading or writing fails
+     */
+    private void addTextBlocks(Path source, int block_size) throws IOException {
+        byte[] buf = new byte[block_size * 2];
+        int length = 0;
+        long offset = 0;
+        boolean eof = false;
+        try(InputStream in = Files.newInputStream(source)) {
+            while(true) {
+                if(!eof && length < buf.length) {
+                    length += in.readNBytes(buf, length, buf.length - length);
+                    eof = length < buf.length;
+                }
+                if(length == 0) { break; }
+                int end = -1;
+                for(int i = Math.min(block_size, length) - 1; i < length; i++) {
+                    if(buf[i] == '\n') {
+                        end = i + 1;
+                        break;
+                    }
+                }
+                if(end < 0) {
+                    if(!eof) {
+                        // A single line is longer than the buffer
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                        continue;
+                    }
+                    end = length;
+                }
+                addBlock(offset, buf, end);
+                System.arraycopy(buf, end, buf, 0, length - end);
+                length -= end;
+                offset += end;
+            }
+        }
+    }
+
+    /**
+     * Adds each block of an archive to the index, using the text layout of its events.
+     * @param source Path of the archive
+     * @throws IOException If reading or writing fails
+     */
+    private void addArchiveBlocks(Path source) throws IOException {
+        try(ArchiveReader reader = new ArchiveReader(source)) {
+            final StringBuilder text = new StringBuilder();
+            for(int i = 0; i < reader.getBlockCount(); i++) {
+                text.setLength(0);
+                reader.exportBlock(i, text);
+                final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                addBlock(i, bytes, bytes.length);
+            }
+        }
+    }
+
+    /**
+     * Writes a block's Bloom filter, and remembers its tokens for the inverted index.
+     * @param offset Offset of the block in the file (or its block number for archives)
+     * @param bytes UTF-8 text of the block
+     * @param length Number of bytes in the block
+     * @throws IOException If writing fails
+     */
+    private void addBlock(long offset, byte[] bytes, int length) throws IOException {
+        tokens.clear();
+        Tokens.forEach(bytes, 0, length, tokens::add);
+        final long[] hashes = tokens.toSortedArray();
+        final BloomFilter filter = new BloomFilter(hashes.length, false_positive_rate);
+        for(long i : hashes) { filter.add(i); }
+        out.writeLong(offset);
+        out.writeInt(length);
+        filter.write(out);
+        written += 12 + filter.getSize();
+        if(block_tokens != null) { block_tokens.add(hashes); }
+        block_count++;
+    }
+
+    /**
+     * Merges the sorted tokens of every block into an inverted index, and writes it.
+     * @throws IOException If writing fails
+     */
+    private void writeInverted() throws IOException {
+        // Cursors are (block, position), ordered by the token they point to and then by block
+        final PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> {
+            final int c = Long.compare(block_tokens.get(a[0])[a[1]], block_tokens.get(b[0])[b[1]]);
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for(int i = 0; i < block_tokens.size(); i++) {
+            if(block_tokens.get(i).length > 0) { cursors.add(new int[] { i, 0 }); }
+        }
+        long[] hashes = new long[1024];
+        int[] ends = new int[1024];
+        int n_tokens = 0;
+        final ByteArrayOutputStream postings = new ByteArrayOutputStream();
+        int last_block = 0;
+        while(!cursors.isEmpty()) {
+            final int[] cursor = cursors.poll();
+            final long[] block = block_tokens.get(cursor[0]);
+            final long hash = block[cursor[1]];
+            if(n_tokens == 0 || hashes[n_tokens - 1] != hash) {
+                if(n_tokens == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, n_tokens * 2);
+                    ends = Arrays.copyOf(ends, n_tokens * 2);
+                }
+                hashes[n_tokens++] = hash;
+                last_block = 0;
+            }
+            writeVarInt(postings, cursor[0] - last_block);
+            last_block = cursor[0];
+            ends[n_tokens - 1] = postings.size();
+            if(++cursor[1] < block.length) { cursors.add(cursor); }
+        }
+        out.writeInt(n_tokens);
+        for(int i = 0; i < n_tokens; i++) { out.writeLong(hashes[i]); }
+        for(int i = 0; i < n_tokens; i++) { out.writeInt(ends[i]); }
+        out.writeInt(postings.size());
+        postings.writeTo(out);
+    }
+
+    /**
+     * Writes a non-negative int as a varint (7 bits per byte, high bit set on every byte but the last).
+     * @param out Where to write the value
+     * @param value Value to write
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
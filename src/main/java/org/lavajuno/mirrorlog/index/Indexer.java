@@ -0,0 +1,136 @@
+package org.lavajuno.mirrorlog.index;
+
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Indexer builds index files for log files that are no longer being written to, in the
+ * background, so that the OutputController never waits on it. The index is written to a
+ * temporary file and renamed into place. Log files whose index is already up-to-date are skipped.
+ */
+public class Indexer extends Thread {
+    private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+    private final HashSet<Path> queued = new HashSet<>();
+
+    /**
+     * Directories waiting to be scanned, and the file being written to in each (guarded by queued)
+     */
+    private final HashMap<Path, String> pending_directories = new HashMap<>();
+
+    /**
+     * Constructs an Indexer.
+     */
+    public Indexer() {
+        setDaemon(true);
+        setName("Indexer");
+    }
+
+    /**
+     * Queues a directory to be scanned by the Indexer's thread, which will then queue every
+     * log file in it for indexing, except for the one that is being written to.
+     * @param logs_path Directory of the log files (ending with '/')
+     * @param current_file File name of the log file that is being written to
+     */
+    public void submitDirectory(String logs_path, String current_file) {
+        final Path directory = Path.of(logs_path);
+        synchronized(queued) {
+            if(pending_directories.put(directory, current_file) != null) { return; } // Already queued
+        }
+        queue.add(directory);
+    }
+
+    /**
+     * Queues every log file in a directory for indexing, except for the one that is being written to.
+     * When archiving is enabled, text log files are left for the Archiver, which queues their archives instead.
+     * @param directory Directory of the log files
+     * @param current_file File name of the log file that is being written to
+     */
+    private void scanDirectory(Path directory, String current_file) {
+        final File[] path_contents = directory.toFile().listFiles();
+        if(path_contents == null) { return; }
+        final boolean archive = ApplicationConfig.getInstance().isArchiveEnabled();
+        for(File i : path_contents) {
+            final String name = i.getName();
+            if(!i.isFile() || name.equals(current_file) ||
+                    !name.matches("^[0-9]{10}\\.(log|ndjson|" + LogMap.ARCHIVE_EXTENSION + ")$")) {
+                continue;
+            }
+            if(archive && name.endsWith(".log")) { continue; }
+            submit(i.toPath());
+        }
+    }
+
+    /**
+     * Queues a log file for indexing.
+     * @param log_file Path of the log file
+     */
+    public void submit(Path log_file) {
+        synchronized(queued) {
+            if(!queued.add(log_file)) { return; }
+        }
+        queue.add(log_file);
+    }
+
+    /**
+     * Indexer's thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                final Path log_file = queue.take();
+                final String current_file;
+                synchronized(queued) { current_file = pending_directories.remove(log_file); }
+                if(current_file != null) {
+                    scanDirectory(log_file, current_file);
+                    continue;
+                }
+                try {
+                    index(log_file);
+                } catch(IOException e) {
+                    System.err.println("Failed to index \"" + log_file + "\". (" + e.getMessage() + ")");
+                } finally {
+                    synchronized(queued) { queued.remove(log_file); }
+                }
+            }
+        } catch(InterruptedException e) {
+            System.out.println("Stopped indexing log files.");
+        }
+    }
+
+    /**
+     * Builds the index of a log file, unless it already has an up-to-date index.
+     * @param log_file Path of the log file
+     * @throws IOException If the file cannot be read or indexed
+     */
+    public void index(Path log_file) throws IOException {
+        if(!Files.exists(log_file) || IndexReader.isCurrent(log_file)) { return; }
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final Path index_file = IndexReader.indexPath(log_file);
+        final Path temp_file = index_file.resolveSibling(index_file.getFileName() + ".tmp");
+        try {
+            IndexWriter.write(
+                    log_file,
+                    temp_file,
+                    config.getIndexBlockSize(),
+                    config.getIndexFalsePositiveRate(),
+                    config.isIndexInverted()
+            );
+        } catch(IOException e) {
+            Files.deleteIfExists(temp_file);
+            throw e;
+        }
+        Files.move(temp_file, index_file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if(!Files.exists(log_file)) { Files.deleteIfExists(index_file); } // Cleaned up while it was being indexed
+    }
+}
@@ -0,0 +1,111 @@
+package org.lavajuno.mirrorlog.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tokens splits log lines into the tokens that are indexed.
+ * A token is a run of letters, digits, '_', and non-ASCII characters. ASCII letters
+ * are folded to lower case, so the same index serves case-sensitive and case-insensitive
+ * searches. Tokens are hashed straight from the UTF-8 bytes of a line, without decoding it.
+ */
+public class Tokens {
+    /**
+     * Receives the hash of each token in a line.
+     */
+    public interface TokenVisitor {
+        /**
+         * Visits a single token.
+         * @param hash Hash of the token
+         */
+        void visit(long hash);
+    }
+
+    /**
+     * Checks if a byte can be part of a token.
+     * @param b Byte to check (from UTF-8 text)
+     * @return True for letters, digits, '_', and any byte of a multi-byte character
+     */
+    public static boolean isTokenByte(int b) {
+        return (b & 0x80) != 0 || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_';
+    }
+
+    /**
+     * Checks if a character can be part of a token.
+     * @param c Character to check
+     * @return True for letters, digits, '_', and any non-ASCII character
+     */
+    public static boolean isTokenChar(char c) { return c >= 0x80 || isTokenByte(c); }
+
+    /**
+     * Hashes a token (64-bit FNV-1a, then mixed so that every bit depends on every byte).
+     * @param bytes UTF-8 bytes containing the token
+     * @param start Index of the token's first byte
+     * @param end Index after the token's last byte
+     * @return Hash of the token (never 0)
+     */
+    public static long hash(byte[] bytes, int start, int end) {
+        long h = 0xCBF29CE484222325L;
+        for(int i = start; i < end; i++) {
+            int b = bytes[i] & 0xFF;
+            if(b >= 'A' && b <= 'Z') { b += 'a' - 'A'; }
+            h = (h ^ b) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Visits the hash of every token in a range of UTF-8 text.
+     * @param bytes UTF-8 text
+     * @param start Index to start at
+     * @param end Index to stop at
+     * @param visitor Visitor to call for each token
+     */
+    public static void forEach(byte[] bytes, int start, int end, TokenVisitor visitor) {
+        int token_start = -1;
+        for(int i = start; i < end; i++) {
+            if(isTokenByte(bytes[i])) {
+                if(token_start < 0) { token_start = i; }
+            } else if(token_start >= 0) {
+                visitor.visit(hash(bytes, token_start, i));
+                token_start = -1;
+            }
+        }
+        if(token_start >= 0) { visitor.visit(hash(bytes, token_start, end)); }
+    }
+
+    /**
+     * Gets the hashes of the tokens that every line matching a query must contain.
+     * A token at the start or end of a substring query may only be part of a longer
+     * token in the line, so it is left out unless the query matches whole words.
+     * @param query Query to search for
+     * @param whole_words True if the query only matches at token boundaries
+     * @param ascii_only True to leave out tokens with non-ASCII characters
+     *                   (whose case is not folded, so they cannot serve a case-insensitive search)
+     * @return Hashes of the required tokens (empty if the index cannot narrow the search)
+     */
+    public static long[] required(String query, boolean whole_words, boolean ascii_only) {
+        final byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        long[] hashes = new long[0];
+        int token_start = -1;
+        for(int i = 0; i <= bytes.length; i++) {
+            if(i < bytes.length && isTokenByte(bytes[i])) {
+                if(token_start < 0) { token_start = i; }
+                continue;
+            }
+            if(token_start < 0) { continue; }
+            final boolean complete = whole_words || (token_start > 0 && i < bytes.length);
+            boolean ascii = true;
+            for(int j = token_start; j < i; j++) { ascii &= bytes[j] >= 0; }
+            if(complete && (ascii || !ascii_only)) {
+                hashes = Arrays.copyOf(hashes, hashes.length + 1);
+                hashes[hashes.length - 1] = hash(bytes, token_start, i);
+            }
+            token_start = -1;
+        }
+        return hashes;
+    }
+}
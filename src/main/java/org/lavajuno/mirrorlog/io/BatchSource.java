@@ -0,0 +1,37 @@
+package org.lavajuno.mirrorlog.io;
+
+/**
+ * BatchSource is a connection that submits events in numbered batches, and is
+ * told by the OutputController when each batch has been durably written.
+ * None of the methods may block, since they are called by the OutputController thread
+ * and by the threads submitting events.
+ */
+public interface BatchSource {
+    /**
+     * Called when every event up to and including the end of a batch has been durably written.
+     * @param sequence Sequence number of the batch
+     */
+    void acknowledge(long sequence);
+
+    /**
+     * Called when events up to the end of a batch may have been lost to a write error.
+     * The batch will never be acknowledged, so the source should make its client resend it.
+     * @param sequence Sequence number of the batch
+     */
+    void fail(long sequence);
+
+    /**
+     * Checks if this source has ended a batch. Events from sources that use batches are
+     * never shed while the server is overloaded, since acknowledging a batch promises that
+     * every event in it was written.
+     * @return True if this source has ended at least one batch
+     */
+    boolean isBatched();
+
+    /**
+     * Called when an event from this source was shed while the server was overloaded.
+     * Events can only be shed before the source's first batch ends, so if it does end a batch,
+     * that batch must fail instead of being acknowledged.
+     */
+    void shed();
+}
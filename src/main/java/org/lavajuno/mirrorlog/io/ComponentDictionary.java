@@ -0,0 +1,174 @@
+package org.lavajuno.mirrorlog.io;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ComponentDictionary maps component names to small int ids, so that each
+ * distinct component name is only stored once. Lookups that find an existing
+ * component do not lock or allocate. The dictionary holds at most
+ * LogMap.COMPONENT_DICTIONARY_SIZE components, and ids are never reused;
+ * once it is full, lookups for new components return NO_ID.
+ * Component names only contain ASCII characters, so a name's chars and bytes are the same.
+ */
+public class ComponentDictionary {
+    /**
+     * Returned for components that are not in the dictionary, and could not be added
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * A single component.
+     */
+    private static class Entry {
+        final int id;
+        final int hash;
+        final String name;
+        final byte[] bytes;
+
+        /**
+         * The padded name, and the length it was padded to (replaced if component_pad changes)
+         */
+        volatile Padded padded;
+
+        Entry(int id, int hash, String name) {
+            this.id = id;
+            this.hash = hash;
+            this.name = name;
+            this.bytes = name.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * A component name padded to a given length, as bytes.
+     */
+    private static class Padded {
+        final int pad;
+        final byte[] bytes;
+
+        Padded(int pad, byte[] name) {
+            this.pad = pad;
+            this.bytes = Arrays.copyOf(name, Math.max(pad, name.length));
+            Arrays.fill(bytes, name.length, bytes.length, (byte) ' ');
+        }
+    }
+
+    private static final ComponentDictionary instance = new ComponentDictionary(LogMap.COMPONENT_DICTIONARY_SIZE);
+
+    private final AtomicReferenceArray<Entry> table;
+    private final Entry[] by_id;
+    private final int mask;
+    private int size;
+
+    /**
+     * Gets the shared ComponentDictionary.
+     * @return The ComponentDictionary
+     */
+    public static ComponentDictionary getInstance() { return instance; }
+
+    /**
+     * Constructs an empty ComponentDictionary.
+     * @param capacity Maximum number of components
+     */
+    ComponentDictionary(int capacity) {
+        int table_size = 1;
+        while(table_size < capacity * 2) { table_size <<= 1; } // Keep the table at most half full
+        table = new AtomicReferenceArray<>(table_size);
+        by_id = new Entry[capacity];
+        mask = table_size - 1;
+    }
+
+    /**
+     * Finds the id of a component, adding it if it is new.
+     * @param input Buffer containing the component name (ASCII)
+     * @param offset Start of the component name
+     * @param length Length of the component name
+     * @return Id of the component, or NO_ID if the dictionary is full
+     */
+    public int lookup(byte[] input, int offset, int length) {
+        int h = 0;
+        for(int i = 0; i < length; i++) { h = 31 * h + input[offset + i]; }
+        final int hash = h;
+        for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            final Entry entry = table.get(slot);
+            if(entry == null) { break; }
+            if(entry.hash == hash && Arrays.equals(entry.bytes, 0, entry.bytes.length, input, offset, offset + length)) {
+                return entry.id;
+            }
+        }
+        return insert(hash, new String(input, offset, length, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Finds the id of a component, adding it if it is new.
+     * @param name Component name
+     * @return Id of the component, or NO_ID if the dictionary is full
+     */
+    public int lookup(String name) {
+        final int hash = name.hashCode(); // Same as the hash of the bytes, since names are ASCII
+        for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            final Entry entry = table.get(slot);
+            if(entry == null) { break; }
+            if(entry.hash == hash && entry.name.equals(name)) { return entry.id; }
+        }
+        return insert(hash, name);
+    }
+
+    /**
+     * Gets the name of a component.
+     * @param id Id of the component
+     * @return Component name
+     */
+    public String getName(int id) { return by_id[id].name; }
+
+    /**
+     * Gets the name of a component, padded with spaces, as bytes.
+     * The padded name is cached until it is requested with a different length.
+     * @param id Id of the component
+     * @param pad Length to pad the name to
+     * @return Padded component name (ASCII)
+     */
+    public byte[] getPaddedBytes(int id, int pad) {
+        final Entry entry = by_id[id];
+        Padded padded = entry.padded;
+        if(padded == null || padded.pad != pad) {
+            padded = new Padded(pad, entry.bytes);
+            entry.padded = padded;
+        }
+        return padded.bytes;
+    }
+
+    /**
+     * Gets the number of components in the dictionary.
+     * @return Number of components
+     */
+    public synchronized int size() { return size; }
+
+    /**
+     * Adds a component, unless another thread added it first.
+     * @param hash Hash of the component name
+     * @param name Component name
+     * @return Id of the component, or NO_ID if the dictionary is full
+     */
+    private synchronized int insert(int hash, String name) {
+        int slot = spread(hash) & mask;
+        for(Entry entry; (entry = table.get(slot)) != null; slot = (slot + 1) & mask) {
+            if(entry.hash == hash && entry.name.equals(name)) { return entry.id; }
+        }
+        if(size == by_id.length) { return NO_ID; }
+        final Entry entry = new Entry(size, hash, name);
+        by_id[size] = entry;
+        size++;
+        table.set(slot, entry); // Publishes the entry (and its by_id slot) to lock-free readers
+        return entry.id;
+    }
+
+    /**
+     * @param hash Hash to spread
+     * @return Hash with its high bits mixed into its low bits
+     */
+    private static int spread(int hash) { return hash ^ (hash >>> 16); }
+}
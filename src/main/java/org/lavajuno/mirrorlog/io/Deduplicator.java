@@ -0,0 +1,159 @@
+package org.lavajuno.mirrorlog.io;
+
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Deduplicator collapses repeated events before they are written.
+ * Events are hashed by (component, severity, message, attributes) into a fixed-size table.
+ * The first copy of an event is written, and repeats within the dedup window
+ * are counted instead. When the window ends (or the entry is pushed out of the
+ * table by a different event), a "Last message repeated N times." event is written.
+ * Memory use is bounded by the table size, however many distinct events there are.
+ * Deduplicator is only used by the OutputController thread, so it is not thread-safe.
+ */
+public class Deduplicator {
+    /**
+     * A single entry in the dedup table.
+     */
+    private static class Entry {
+        final int hash;
+        final LogEvent event;
+        long window_start;
+        long last_seen;
+        int repeats;
+
+        Entry(int hash, LogEvent event) {
+            this.hash = hash;
+            this.event = event;
+            this.window_start = event.getTimestamp();
+            this.last_seen = window_start;
+        }
+    }
+
+    private final Entry[] table;
+    private final int mask;
+    private final Consumer<LogEvent> writer;
+    private long last_sweep;
+
+    /**
+     * Constructs a Deduplicator.
+     * @param table_size Number of entries in the table (rounded up to a power of two)
+     * @param writer Where to write "repeated" summary events
+     */
+    public Deduplicator(int table_size, Consumer<LogEvent> writer) {
+        int size = Integer.highestOneBit(Math.max(1, table_size - 1)) << 1;
+        table = new Entry[size];
+        mask = size - 1;
+        this.writer = writer;
+        last_sweep = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the number of entries in this Deduplicator's table.
+     * @return Table size
+     */
+    public int getTableSize() { return table.length; }
+
+    /**
+     * Checks an event against the table.
+     * @param event Event to check
+     * @return True if the event should be written, false if it was counted as a repeat
+     */
+    public boolean accept(LogEvent event) {
+        final long now = event.getTimestamp();
+        final long window = ApplicationConfig.getInstance().getDedupWindow();
+        if(now - last_sweep >= LogMap.DEDUP_SWEEP_INTERVAL) { sweep(now); }
+
+        final int hash = hash(event);
+        final int slot = hash & mask;
+        final Entry entry = table[slot];
+        if(entry != null && entry.hash == hash && isRepeat(entry.event, event)) {
+            if(now - entry.window_start < window) {
+                entry.repeats++;
+                entry.last_seen = now;
+                return false;
+            }
+            // Window is over, so summarize it and start a new one with this event
+            summarize(entry);
+            entry.window_start = now;
+            entry.last_seen = now;
+            return true;
+        }
+        if(entry != null) { summarize(entry); }
+        table[slot] = new Entry(hash, event);
+        return true;
+    }
+
+    /**
+     * Writes summaries for (and removes) entries whose window has ended.
+     * @param now Current time (ms)
+     */
+    public void sweep(long now) {
+        final long window = ApplicationConfig.getInstance().getDedupWindow();
+        for(int i = 0; i < table.length; i++) {
+            if(table[i] != null && now - table[i].window_start >= window) {
+                summarize(table[i]);
+                table[i] = null;
+            }
+        }
+        last_sweep = now;
+    }
+
+    /**
+     * Writes summaries for all entries and clears the table.
+     */
+    public void drain() {
+        for(int i = 0; i < table.length; i++) {
+            if(table[i] != null) {
+                summarize(table[i]);
+                table[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Writes a summary for an entry if it has counted any repeats, and resets its count.
+     * @param entry Entry to summarize
+     */
+    private void summarize(Entry entry) {
+        if(entry.repeats == 0) { return; }
+        writer.accept(new LogEvent(
+                entry.event.getComponentName(),
+                entry.event.getSeverity(),
+                "Last message repeated " + entry.repeats + " times.",
+                entry.event.getAttributes(),
+                entry.event.getClientAddress(),
+                entry.event.getRule(),
+                entry.last_seen
+        ));
+        entry.repeats = 0;
+    }
+
+    /**
+     * @param event Event to hash
+     * @return Hash of the event's component, severity, message, and attributes
+     */
+    private static int hash(LogEvent event) {
+        int h = event.getComponentName().hashCode();
+        h = h * 31 + event.getSeverity();
+        h = h * 31 + event.getMessage().hashCode();
+        h = h * 31 + Objects.hashCode(event.getAttributes());
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param a First event
+     * @param b Second event
+     * @return True if the events have the same component, severity, message, and attributes
+     */
+    private static boolean isRepeat(LogEvent a, LogEvent b) {
+        return a.getSeverity() == b.getSeverity() &&
+                a.getComponentName().equals(b.getComponentName()) &&
+                a.getMessage().equals(b.getMessage()) &&
+                Objects.equals(a.getAttributes(), b.getAttributes());
+    }
+}
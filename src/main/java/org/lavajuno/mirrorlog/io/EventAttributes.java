@@ -0,0 +1,92 @@
+package org.lavajuno.mirrorlog.io;
+
+import java.util.Arrays;
+
+/**
+ * EventAttributes stores the attributes of a structured event.
+ * Keys and values are kept in a single flat array (key, value, key, value, ...),
+ * and a bit mask records which values are raw JSON (numbers, booleans, null,
+ * objects, and arrays) rather than strings, so that they can be written back out
+ * exactly as they were received.
+ */
+public class EventAttributes {
+    /**
+     * Keys and values, alternating
+     */
+    private final String[] entries;
+
+    /**
+     * Bit i is set if the value of attribute i is raw JSON
+     */
+    private final long raw;
+
+    /**
+     * Constructs an EventAttributes.
+     * @param entries Keys and values, alternating (copied)
+     * @param size Number of attributes (half the number of used entries)
+     * @param raw Bit i is set if the value of attribute i is raw JSON
+     * @throws IllegalArgumentException If there are more than 64 attributes
+     */
+    public EventAttributes(String[] entries, int size, long raw) throws IllegalArgumentException {
+        if(size > 64) { throw new IllegalArgumentException("Too many attributes."); }
+        this.entries = Arrays.copyOf(entries, size * 2);
+        this.raw = raw;
+    }
+
+    /**
+     * Gets the number of attributes.
+     * @return Number of attributes
+     */
+    public int size() { return entries.length / 2; }
+
+    /**
+     * Gets the key of an attribute.
+     * @param index Index of the attribute
+     * @return Key of the attribute
+     */
+    public String getKey(int index) { return entries[index * 2]; }
+
+    /**
+     * Gets the value of an attribute.
+     * @param index Index of the attribute
+     * @return Value of the attribute (decoded if it is a string, raw JSON otherwise)
+     */
+    public String getValue(int index) { return entries[index * 2 + 1]; }
+
+    /**
+     * Checks if the value of an attribute is raw JSON.
+     * @param index Index of the attribute
+     * @return True if the value is raw JSON, false if it is a string
+     */
+    public boolean isRaw(int index) { return (raw >>> index & 1) != 0; }
+
+    /**
+     * Appends the attributes as text ("{key=value, key=value}") to a StringBuilder.
+     * @param sb StringBuilder to append to
+     */
+    public void appendTo(StringBuilder sb) {
+        sb.append('{');
+        for(int i = 0; i < entries.length; i += 2) {
+            if(i > 0) { sb.append(", "); }
+            sb.append(entries[i]).append('=').append(entries[i + 1]);
+        }
+        sb.append('}');
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof EventAttributes)) { return false; }
+        final EventAttributes other = (EventAttributes) o;
+        return raw == other.raw && Arrays.equals(entries, other.entries);
+    }
+
+    @Override
+    public int hashCode() { return Arrays.hashCode(entries) * 31 + Long.hashCode(raw); }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+}
@@ -1,17 +1,22 @@
 package org.lavajuno.mirrorlog.io;
 
 import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.latency.EventTrace;
 import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.rules.Rule;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 /**
  * LogEvent stores a single log event and provides functionality to
  * convert it to a string to be printed to the console or a file.
+ * A LogEvent can also be a batch end marker, which is queued behind a batch
+ * of events so that the OutputController knows when the batch has been written.
  */
 public class LogEvent {
     /**
-     * The length to pad component names to
+     * The length to pad component names to (read from the configuration snapshot at creation)
      */
     private final int COMPONENT_PAD;
 
@@ -20,6 +25,11 @@ public class LogEvent {
      */
     private final String component_name;
 
+    /**
+     * The id of this LogEvent's component in the ComponentDictionary (NO_ID if it has none)
+     */
+    private final int component_id;
+
     /**
      * The message for this LogEvent
      */
@@ -30,26 +40,244 @@ public class LogEvent {
      */
     private final int severity;
 
+    /**
+     * The attributes of this LogEvent (null if it has none)
+     */
+    private final EventAttributes attributes;
+
+    /**
+     * The address of the client that sent this LogEvent (null if it was created by the server)
+     */
+    private final String client_address;
+
+    /**
+     * The rule that matched this LogEvent (null if no rule matched)
+     */
+    private final Rule rule;
+
+    /**
+     * When this LogEvent was received (ms since the epoch)
+     */
+    private final long timestamp;
+
+    /**
+     * The connection whose batch ends at this LogEvent (null unless this is a batch end marker)
+     */
+    private final BatchSource batch_source;
+
+    /**
+     * The sequence number of the batch that ends at this LogEvent
+     */
+    private final long batch_sequence;
+
+    /**
+     * When this LogEvent reached each stage of the server (null unless latency tracing is enabled)
+     */
+    private final EventTrace trace;
+
+    /**
+     * The connection that sent this LogEvent (null if the server created it)
+     */
+    private final BatchSource source;
+
     /**
      * Instantiates a LogEvent.
      * @param component_name The component name to be logged
      * @param severity The severity of the event
      * @param message The message to be logged
+     * @param rule The rule that matched this event, or null if no rule matched
      */
-    public LogEvent(String component_name, int severity, String message) {
-        this.component_name = component_name;
+    public LogEvent(String component_name, int severity, String message, Rule rule) {
+        this(component_name, severity, message, null, null, rule, System.currentTimeMillis());
+    }
+
+    /**
+     * Instantiates a LogEvent with the given timestamp.
+     * @param component_name The component name to be logged
+     * @param severity The severity of the event
+     * @param message The message to be logged
+     * @param rule The rule that matched this event, or null if no rule matched
+     * @param timestamp When the event was received (ms since the epoch)
+     */
+    public LogEvent(String component_name, int severity, String message, Rule rule, long timestamp) {
+        this(component_name, severity, message, null, null, rule, timestamp);
+    }
+
+    /**
+     * Instantiates a LogEvent with attributes, a client address, and the given timestamp.
+     * @param component_name The component name to be logged
+     * @param severity The severity of the event
+     * @param message The message to be logged
+     * @param attributes The attributes of the event, or null if it has none
+     * @param client_address The address of the client that sent the event, or null if the server created it
+     * @param rule The rule that matched this event, or null if no rule matched
+     * @param timestamp When the event was received (ms since the epoch)
+     */
+    public LogEvent(String component_name, int severity, String message,
+                    EventAttributes attributes, String client_address, Rule rule, long timestamp) {
+        this(component_name, severity, message, attributes, client_address, rule, timestamp, null, null);
+    }
+
+    /**
+     * Instantiates a LogEvent from a connection, whose latency may be traced.
+     * @param component_name The component name to be logged
+     * @param severity The severity of the event
+     * @param message The message to be logged
+     * @param attributes The attributes of the event, or null if it has none
+     * @param client_address The address of the client that sent the event, or null if the server created it
+     * @param rule The rule that matched this event, or null if no rule matched
+     * @param timestamp When the event was received (ms since the epoch)
+     * @param trace Trace of the event's latency, or null if it is not being traced
+     * @param source The connection that sent the event, or null if the server created it
+     */
+    public LogEvent(String component_name, int severity, String message, EventAttributes attributes,
+                    String client_address, Rule rule, long timestamp, EventTrace trace, BatchSource source) {
+        final ComponentDictionary components = ComponentDictionary.getInstance();
+        this.component_id = components.lookup(component_name);
+        // Share the dictionary's copy of the name, so that each event doesn't keep its own
+        this.component_name = component_id == ComponentDictionary.NO_ID ? component_name : components.getName(component_id);
         this.severity = severity;
         this.message = message;
+        this.attributes = attributes;
+        this.client_address = client_address;
+        this.rule = rule;
+        this.timestamp = timestamp;
         this.COMPONENT_PAD = ApplicationConfig.getInstance().getComponentPad();
+        this.batch_source = null;
+        this.batch_sequence = 0;
+        this.trace = trace;
+        this.source = source;
+    }
+
+    /**
+     * Instantiates a batch end marker.
+     * @param batch_source The connection that sent the batch
+     * @param batch_sequence The sequence number of the batch
+     */
+    private LogEvent(BatchSource batch_source, long batch_sequence) {
+        this.component_id = ComponentDictionary.NO_ID;
+        this.component_name = null;
+        this.severity = 0;
+        this.message = null;
+        this.attributes = null;
+        this.client_address = null;
+        this.rule = null;
+        this.timestamp = 0;
+        this.COMPONENT_PAD = 0;
+        this.batch_source = batch_source;
+        this.batch_sequence = batch_sequence;
+        this.trace = null;
+        this.source = null;
     }
 
+    /**
+     * Creates a marker for the end of a batch. Markers are never written,
+     * and only tell the OutputController that every event before them has been processed.
+     * @param batch_source The connection that sent the batch
+     * @param batch_sequence The sequence number of the batch
+     * @return Batch end marker
+     */
+    public static LogEvent batchEnd(BatchSource batch_source, long batch_sequence) {
+        return new LogEvent(batch_source, batch_sequence);
+    }
+
+    /**
+     * Checks if this LogEvent is a batch end marker.
+     * @return True if this LogEvent marks the end of a batch
+     */
+    public boolean isBatchEnd() { return batch_source != null; }
+
+    /**
+     * Gets the connection whose batch ends at this marker.
+     * @return Source of the batch, or null if this LogEvent is not a batch end marker
+     */
+    public BatchSource getBatchSource() { return batch_source; }
+
+    /**
+     * Gets the sequence number of the batch that ends at this marker.
+     * @return Sequence number of the batch
+     */
+    public long getBatchSequence() { return batch_sequence; }
+
+    /**
+     * Gets the latency trace of this LogEvent.
+     * @return Trace of the event's latency, or null if it is not being traced
+     */
+    public EventTrace getTrace() { return trace; }
+
+    /**
+     * Gets the component name of this LogEvent.
+     * @return Component name
+     */
+    public String getComponentName() { return component_name; }
+
+    /**
+     * Gets the id of this LogEvent's component.
+     * @return Id in the ComponentDictionary, or ComponentDictionary.NO_ID if the dictionary was full
+     */
+    public int getComponentId() { return component_id; }
+
+    /**
+     * Gets the component name of this LogEvent padded to the configured length, as bytes.
+     * @return Padded component name (ASCII)
+     */
+    public byte[] getPaddedComponentBytes() {
+        if(component_id != ComponentDictionary.NO_ID) {
+            return ComponentDictionary.getInstance().getPaddedBytes(component_id, COMPONENT_PAD);
+        }
+        return (component_name + " ".repeat(Math.max(0, COMPONENT_PAD - component_name.length())))
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the severity of this LogEvent.
+     * @return Severity (0-3)
+     */
+    public int getSeverity() { return severity; }
+
+    /**
+     * Gets the message of this LogEvent.
+     * @return Message
+     */
+    public String getMessage() { return message; }
+
+    /**
+     * Gets the attributes of this LogEvent.
+     * @return Attributes, or null if this LogEvent has none
+     */
+    public EventAttributes getAttributes() { return attributes; }
+
+    /**
+     * Gets the address of the client that sent this LogEvent.
+     * @return Client address, or null if this LogEvent was created by the server
+     */
+    public String getClientAddress() { return client_address; }
+
+    /**
+     * Gets the connection that sent this LogEvent.
+     * @return Connection that sent this LogEvent, or null if it was created by the server
+     */
+    public BatchSource getSource() { return source; }
+
+    /**
+     * Gets when this LogEvent was received.
+     * @return Timestamp (ms since the epoch)
+     */
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Gets the rule that matched this LogEvent.
+     * @return The matching rule, or null if no rule matched
+     */
+    public Rule getRule() { return rule; }
+
     /**
      * Like toString, but with colored status indicators.
      * @return This LogEvent as a string.
      */
     public String toPrettyString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(LogMap.LOG_DATE_FORMAT.format(new Date()));
+        sb.append(LogMap.LOG_DATE_FORMAT.format(new Date(timestamp)));
         switch(severity) {
             case 1:
                 sb.append(LogMap.SEVERITY_WARN_PRETTY);
@@ -68,13 +296,17 @@ public class LogEvent {
         sb.append(" ".repeat(Math.max(0, COMPONENT_PAD - component_name.length())));
         sb.append(" : ");
         sb.append(message);
+        if(attributes != null) {
+            sb.append(' ');
+            attributes.appendTo(sb);
+        }
         return sb.toString();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(LogMap.LOG_DATE_FORMAT.format(new Date()));
+        sb.append(LogMap.LOG_DATE_FORMAT.format(new Date(timestamp)));
         switch(severity) {
             case 1:
                 sb.append(LogMap.SEVERITY_WARN);
@@ -93,6 +325,10 @@ public class LogEvent {
         sb.append(" ".repeat(Math.max(0, COMPONENT_PAD - component_name.length())));
         sb.append(" : ");
         sb.append(message);
+        if(attributes != null) {
+            sb.append(' ');
+            attributes.appendTo(sb);
+        }
         return sb.toString();
     }
 }
@@ -1,11 +1,17 @@
 package org.lavajuno.mirrorlog.io;
 
+import org.lavajuno.lucidjson.JsonWriter;
 import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.jfr.LogCleanupEvent;
+import org.lavajuno.mirrorlog.main.LogMap;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collections;
@@ -14,54 +20,289 @@ import java.util.Vector;
 
 /**
  * LogFile handles creating, writing to, and deleting log files for OutputController.
+ * Events are collected in a write buffer, which is written to the file's channel
+ * when it fills up or when flush() is called. Events are written either as text
+ * (like the console) or as NDJSON, which is encoded straight into the write buffer.
+ * sync() additionally forces written events to the storage device, and reports
+ * whether any events were lost to write errors since the last sync.
  */
 public class LogFile {
-    private static final String LOGS_PATH = "logs/";
+    /**
+     * The directory that the main log files are kept in
+     */
+    public static final String LOGS_PATH = "logs/";
+
+    /**
+     * The directory that per-component log directories are kept in
+     */
+    public static final String COMPONENT_LOGS_PATH = LOGS_PATH + "components/";
+
     private static final SimpleDateFormat FILE_DATE_FORMAT = new SimpleDateFormat("yyyyMMddHH");
     private final long DATE_EXPIRY;
-    private final FileWriter log_file_writer;
-    private final PrintWriter log_print_writer;
+    private final String file_name;
+    private final FileChannel log_channel;
+    private final ByteBuffer write_buffer;
+    private final LogFormat format;
+    private final BufferAppendable out;
+    private long date_second = Long.MIN_VALUE;
+    private byte[] date_bytes;
+    private JsonWriter json_writer;
+    private boolean closed;
+    private boolean synced = true;
+    private boolean failed;
 
     /**
-     * Constructs a LogFile.
+     * Constructs a text LogFile in the main log directory.
      * Creates new files and cleans up old ones if needed.
      * @throws IOException Passes along IOExceptions from file accessors
      */
-    public LogFile() throws IOException {
-        final String DATE_TAG = FILE_DATE_FORMAT.format(new Date());
+    public LogFile() throws IOException { this(LOGS_PATH, LogFormat.TEXT); }
+
+    /**
+     * Constructs a text LogFile in the given directory.
+     * Creates new files and cleans up old ones if needed.
+     * @param logs_path Directory to keep the log files in (ending with '/')
+     * @throws IOException Passes along IOExceptions from file accessors
+     */
+    public LogFile(String logs_path) throws IOException { this(logs_path, LogFormat.TEXT); }
+
+    /**
+     * Constructs a LogFile in the given directory and format.
+     * Creates new files and cleans up old ones if needed.
+     * @param logs_path Directory to keep the log files in (ending with '/')
+     * @param format Format to write events in
+     * @throws IOException Passes along IOExceptions from file accessors
+     */
+    public LogFile(String logs_path, LogFormat format) throws IOException { this(logs_path, format, true); }
+
+    /**
+     * Constructs a LogFile in the given directory and format, creating the file if needed.
+     * @param logs_path Directory to keep the log files in (ending with '/')
+     * @param format Format to write events in
+     * @param cleanup True to clean up old log files in the directory first
+     * @throws IOException Passes along IOExceptions from file accessors
+     */
+    public LogFile(String logs_path, LogFormat format, boolean cleanup) throws IOException {
+        this.format = format;
         final Calendar calendar = Calendar.getInstance();
         calendar.set(Calendar.MINUTE, 0);
         calendar.set(Calendar.SECOND, 0);
         calendar.add(Calendar.HOUR, ApplicationConfig.getInstance().getFileDuration());
         DATE_EXPIRY = Long.parseLong(FILE_DATE_FORMAT.format(calendar.getTime()));
-        cleanupLogs(LOGS_PATH, ApplicationConfig.getInstance().getFileHistory());
+        if(cleanup) { cleanupLogs(logs_path, ApplicationConfig.getInstance().getFileHistory()); }
+
+        Files.createDirectories(Paths.get(logs_path));
+        file_name = currentFileName(format);
+        final String FILE_PATH = logs_path + file_name;
+        log_channel = FileChannel.open(
+                Paths.get(FILE_PATH),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+        );
+        write_buffer = ByteBuffer.allocate(LogMap.FILE_BUFFER_SIZE);
+        out = new BufferAppendable();
+        json_writer = format == LogFormat.NDJSON ? new JsonWriter(out) : null;
+    }
 
-        Files.createDirectories(Paths.get(LOGS_PATH));
-        final String FILE_PATH = LOGS_PATH + DATE_TAG + ".log";
-        log_file_writer = new FileWriter(FILE_PATH, StandardCharsets.UTF_8, true);
-        log_print_writer = new PrintWriter(log_file_writer, true);
+    /**
+     * Gets the name of the file that a LogFile opened now would write to.
+     * @param format Format of the LogFile
+     * @return File name (without the directory)
+     */
+    public static String currentFileName(LogFormat format) {
+        return FILE_DATE_FORMAT.format(new Date()) + "." + format.getExtension();
     }
 
+    /**
+     * Gets the name of this LogFile's file.
+     * @return File name (without the directory)
+     */
+    public String getFileName() { return file_name; }
+
+    /**
+     * Gets the format of this LogFile.
+     * @return Format that events are written in
+     */
+    public LogFormat getFormat() { return format; }
+
     /**
      * Prints a log event to the file.
      * @param event Log event to print
      */
     public void print(LogEvent event) {
-        log_print_writer.println(event);
+        if(format == LogFormat.NDJSON) {
+            printJson(event);
+            return;
+        }
+        try {
+            // Same layout as LogEvent.toString(), encoded straight into the write buffer
+            final long second = Math.floorDiv(event.getTimestamp(), 1000);
+            if(second != date_second) {
+                date_second = second;
+                date_bytes = LogMap.LOG_DATE_FORMAT.format(new Date(event.getTimestamp()))
+                        .getBytes(StandardCharsets.US_ASCII);
+            }
+            putBytes(date_bytes);
+            out.append(switch(event.getSeverity()) {
+                case 1 -> LogMap.SEVERITY_WARN;
+                case 2 -> LogMap.SEVERITY_ERROR;
+                case 3 -> LogMap.SEVERITY_FATAL;
+                default -> LogMap.SEVERITY_INFO;
+            });
+            putBytes(event.getPaddedComponentBytes());
+            out.append(" : ");
+            out.append(event.getMessage());
+            if(event.getAttributes() != null) {
+                out.append(' ');
+                out.append(event.getAttributes().toString());
+            }
+            out.append('\n');
+        } catch(IOException e) {
+            System.err.println("Failed to write to log file.");
+            failed = true;
+        }
     }
 
     /**
-     * Flushes output buffers and closes the file.
+     * Copies bytes into the write buffer, writing the buffer out to the file whenever it fills up.
+     * @param bytes Bytes to copy
+     * @throws IOException If writing to the file fails
+     */
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while(offset < bytes.length) {
+            if(!write_buffer.hasRemaining()) { flush(); }
+            final int n = Math.min(write_buffer.remaining(), bytes.length - offset);
+            write_buffer.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Prints a log event to the file as a single line of JSON.
+     * The event is encoded directly into the write buffer, without building a JSON tree.
+     * @param event Log event to print
+     */
+    private void printJson(LogEvent event) {
+        try {
+            json_writer.beginObject();
+            json_writer.name("timestamp");
+            json_writer.value(event.getTimestamp());
+            json_writer.name("component");
+            json_writer.value(event.getComponentName());
+            json_writer.name("severity");
+            json_writer.value(event.getSeverity());
+            json_writer.name("message");
+            json_writer.value(event.getMessage());
+            if(event.getClientAddress() != null) {
+                json_writer.name("client");
+                json_writer.value(event.getClientAddress());
+            }
+            final EventAttributes attributes = event.getAttributes();
+            if(attributes != null) {
+                json_writer.name("attributes");
+                json_writer.beginObject();
+                for(int i = 0; i < attributes.size(); i++) {
+                    json_writer.name(attributes.getKey(i));
+                    if(attributes.isRaw(i)) {
+                        json_writer.rawValue(attributes.getValue(i));
+                    } else {
+                        json_writer.value(attributes.getValue(i));
+                    }
+                }
+                json_writer.endObject();
+            }
+            json_writer.endObject();
+            out.append('\n');
+        } catch(IOException e) {
+            System.err.println("Failed to write to log file.");
+            failed = true;
+            json_writer = new JsonWriter(out); // Start the next event from a clean state
+        }
+    }
+
+    /**
+     * Checks if this LogFile has buffered events that have not been written to the file.
+     * @return True if there are buffered events
+     */
+    public boolean isDirty() { return write_buffer.position() > 0; }
+
+    /**
+     * Writes buffered events to the file.
+     * @throws IOException If writing to the file fails
+     */
+    public void flush() throws IOException {
+        if(closed) { return; }
+        write_buffer.flip();
+        if(write_buffer.hasRemaining()) { synced = false; }
+        try {
+            while(write_buffer.hasRemaining()) { log_channel.write(write_buffer); }
+        } catch(IOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            write_buffer.clear();
+        }
+    }
+
+    /**
+     * Writes buffered events to the file, and forces them to the storage device.
+     * @throws IOException If writing or forcing fails, or if events were lost since the last sync
+     */
+    public void sync() throws IOException {
+        if(closed) { return; }
+        flush();
+        if(!synced) {
+            try {
+                log_channel.force(false);
+            } catch(IOException e) {
+                failed = true;
+                throw e;
+            }
+            synced = true;
+        }
+        if(failed) {
+            failed = false;
+            throw new IOException("Events were lost since the last sync.");
+        }
+    }
+
+    /**
+     * Checks if events were lost to write errors since the last sync.
+     * @return True if events were lost
+     */
+    public boolean hasFailed() { return failed; }
+
+    /**
+     * Flushes output buffers, forces them to the storage device, and closes the file.
      */
     public void close() {
+        if(closed) { return; }
         try {
-            log_print_writer.flush();
-            log_file_writer.flush();
-            log_print_writer.close();
-            log_file_writer.close();
+            flush();
+            if(!synced) { log_channel.force(false); }
+            log_channel.close();
         } catch(IOException e) {
             System.err.println("Failed to close log file writer.");
+            failed = true;
         }
+        closed = true;
+    }
+
+    /**
+     * Converts a component name to a name that is safe to use as a file name.
+     * @param component_name Component name to convert
+     * @return Component name with anything other than letters, numbers, '-' and '_' replaced by '_'
+     */
+    public static String toFileName(String component_name) {
+        StringBuilder sb = new StringBuilder(component_name.length());
+        for(int i = 0; i < component_name.length(); i++) {
+            char c = component_name.charAt(i);
+            boolean safe = (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '-';
+            sb.append(safe ? c : '_');
+        }
+        return sb.toString();
     }
 
     /**
@@ -73,35 +314,104 @@ public class LogFile {
     }
 
     /**
-     * Cleans up old logs
+     * Cleans up old logs (in any format, including archives)
      * @param path Path to log directory
      * @param max_logs Amount of log files to keep
      */
     public void cleanupLogs(String path, int max_logs) {
+        final LogCleanupEvent event = new LogCleanupEvent();
+        event.begin();
         File[] path_contents = new File(path).listFiles();
         if(path_contents == null || path_contents.length == 0) { return; }
-        Vector<String> path_datetags = new Vector<>();
-        String filename;
+        Vector<String> path_logs = new Vector<>();
         for(File i : path_contents) {
-            if(i.isFile()) {
-                filename = i.getName().split("\\.", 2)[0];
-                try {
-                    Integer.parseInt(filename);
-                } catch(NumberFormatException e) {
-                    path_datetags.add(filename);
-                }
-            }
+            if(i.isFile() && isLogFileName(i.getName())) { path_logs.add(i.getName()); }
         }
-        int n_extra_logs = path_datetags.size() - max_logs;
+        int n_extra_logs = path_logs.size() - max_logs;
         if(n_extra_logs > 0) {
-            Collections.sort(path_datetags);
+            Collections.sort(path_logs); // File names start with their date tag
             for(int i = 0; i < n_extra_logs; i++) {
                 try {
-                    Files.delete(Paths.get(LOGS_PATH + path_datetags.get(i) + ".log"));
+                    Files.delete(Paths.get(path + path_logs.get(i)));
+                    Files.deleteIfExists(Paths.get(path + path_logs.get(i) + "." + LogMap.INDEX_EXTENSION));
+                    event.filesDeleted++;
                 } catch(IOException e) {
-                    System.err.println("Failed to delete old log \"" + path_datetags.get(i) + ".log\".");
+                    System.err.println("Failed to delete old log \"" + path_logs.get(i) + "\".");
+                }
+            }
+        }
+        if(event.shouldCommit()) {
+            event.directory = path;
+            event.filesFound = path_logs.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks if a file name is the name of a log file ("[date tag].[format or archive extension]").
+     * @param filename File name to check
+     * @return True if the file is a log file
+     */
+    private static boolean isLogFileName(String filename) {
+        final String[] fragments = filename.split("\\.", 2);
+        if(fragments.length != 2 || !fragments[0].matches("^[0-9]{10}$")) { return false; }
+        if(fragments[1].equals(LogMap.ARCHIVE_EXTENSION)) { return true; }
+        for(LogFormat i : LogFormat.values()) {
+            if(i.getExtension().equals(fragments[1])) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Appendable that encodes characters as UTF-8 straight into the write buffer,
+     * writing the buffer out to the file whenever it fills up.
+     */
+    private class BufferAppendable implements Appendable {
+        private char high_surrogate;
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            for(int i = start; i < end; i++) { append(csq.charAt(i)); }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if(write_buffer.remaining() < 4) { flush(); }
+            if(high_surrogate != 0) {
+                final char high = high_surrogate;
+                high_surrogate = 0;
+                if(Character.isLowSurrogate(c)) {
+                    final int code_point = Character.toCodePoint(high, c);
+                    write_buffer.put((byte) (0xF0 | (code_point >> 18)));
+                    write_buffer.put((byte) (0x80 | ((code_point >> 12) & 0x3F)));
+                    write_buffer.put((byte) (0x80 | ((code_point >> 6) & 0x3F)));
+                    write_buffer.put((byte) (0x80 | (code_point & 0x3F)));
+                    return this;
                 }
+                write_buffer.put((byte) '?'); // Unpaired surrogate
+                if(write_buffer.remaining() < 4) { flush(); }
+            }
+            if(c < 0x80) {
+                write_buffer.put((byte) c);
+            } else if(c < 0x800) {
+                write_buffer.put((byte) (0xC0 | (c >> 6)));
+                write_buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c)) {
+                high_surrogate = c;
+            } else if(Character.isLowSurrogate(c)) {
+                write_buffer.put((byte) '?'); // Unpaired surrogate
+            } else {
+                write_buffer.put((byte) (0xE0 | (c >> 12)));
+                write_buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                write_buffer.put((byte) (0x80 | (c & 0x3F)));
             }
+            return this;
         }
     }
 }
@@ -0,0 +1,175 @@
+package org.lavajuno.mirrorlog.io;
+
+import org.lavajuno.mirrorlog.archive.Archiver;
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.index.Indexer;
+import org.lavajuno.mirrorlog.jfr.LogFileOpenEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LogFilePool keeps a bounded set of open LogFiles, keyed by the directory they are kept in.
+ * When more than "max_open_files" are open, the least recently used file is flushed and
+ * closed, so that writing to many directories does not run out of file descriptors.
+ * Old log files in a directory are only cleaned up when it moves on to a new file (or is first
+ * used), not when a file that was closed to make room is reopened. At the same time, when
+ * archiving is enabled, the directory is handed to the Archiver to convert its older text
+ * log files, and likewise to the Indexer when indexing is enabled. Both scan the directory
+ * on their own threads.
+ * sync() makes every event printed so far durable, and reports if any were lost.
+ * LogFilePool is only used by the OutputController thread, so it is not thread-safe.
+ */
+public class LogFilePool {
+    private final LinkedHashMap<String, LogFile> open_files;
+    private final ArrayList<LogFile> dirty_files;
+
+    /**
+     * Name of the file that each directory was last writing to
+     */
+    private final HashMap<String, String> current_names = new HashMap<>();
+    private final Archiver archiver;
+    private final Indexer indexer;
+
+    /**
+     * True if events were lost to write errors since the last sync
+     */
+    private boolean lost_events;
+
+    /**
+     * Constructs an empty LogFilePool.
+     * @param archiver Archiver to hand old text log files to
+     * @param indexer Indexer to hand old log files to
+     */
+    public LogFilePool(Archiver archiver, Indexer indexer) {
+        this.archiver = archiver;
+        this.indexer = indexer;
+        open_files = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LogFile> eldest) {
+                if(size() > ApplicationConfig.getInstance().getMaxOpenFiles()) {
+                    close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        dirty_files = new ArrayList<>();
+    }
+
+    /**
+     * Gets the current LogFile for a directory. Opens a new one if the directory
+     * does not have an open LogFile, if its current LogFile has expired, or if
+     * its current LogFile is in a different format.
+     * @param logs_path Directory of the LogFile (ending with '/')
+     * @param format Format of the LogFile
+     * @return Open LogFile for the directory, or null if it could not be created
+     */
+    public LogFile get(String logs_path, LogFormat format) {
+        LogFile log_file = open_files.get(logs_path);
+        if(log_file == null || log_file.isExpired() || log_file.getFormat() != format) {
+            final LogFileOpenEvent event = new LogFileOpenEvent();
+            event.begin();
+            event.directory = logs_path;
+            event.reason = log_file == null ? "new" : log_file.getFormat() != format ? "format changed" : "expired";
+            if(log_file != null) {
+                open_files.remove(logs_path);
+                close(log_file);
+            }
+            final boolean rotated = !LogFile.currentFileName(format).equals(current_names.get(logs_path));
+            try {
+                log_file = new LogFile(logs_path, format, rotated);
+            } catch(IOException e) {
+                System.err.println("Failed to create new log file in \"" + logs_path + "\"!");
+                lost_events = true;
+                event.commit();
+                return null;
+            }
+            event.fileName = log_file.getFileName();
+            event.commit();
+            open_files.put(logs_path, log_file);
+            current_names.put(logs_path, log_file.getFileName());
+            if(!rotated) { return log_file; }
+            if(format == LogFormat.TEXT && ApplicationConfig.getInstance().isArchiveEnabled()) {
+                archiver.submitDirectory(logs_path, log_file.getFileName());
+            }
+            if(ApplicationConfig.getInstance().isIndexEnabled()) {
+                indexer.submitDirectory(logs_path, log_file.getFileName());
+            }
+        }
+        return log_file;
+    }
+
+    /**
+     * Prints an event to the current LogFile for a directory.
+     * @param logs_path Directory of the LogFile (ending with '/')
+     * @param format Format of the LogFile
+     * @param event Event to print
+     */
+    public void print(String logs_path, LogFormat format, LogEvent event) {
+        final LogFile log_file = get(logs_path, format);
+        if(log_file == null) { return; }
+        if(!log_file.isDirty()) { dirty_files.add(log_file); }
+        log_file.print(event);
+    }
+
+    /**
+     * Writes buffered events in every open LogFile to disk.
+     */
+    public void flush() {
+        for(LogFile i : dirty_files) {
+            try {
+                i.flush();
+            } catch(IOException e) {
+                System.err.println("Failed to write to log file.");
+                lost_events = true;
+            }
+        }
+        dirty_files.clear();
+    }
+
+    /**
+     * Writes buffered events in every open LogFile to disk, and forces them to the storage device.
+     * @return True if every event printed since the last sync is now durable,
+     *         false if some were lost to write errors
+     */
+    public boolean sync() {
+        flush();
+        for(LogFile i : open_files.values()) {
+            try {
+                i.sync();
+            } catch(IOException e) {
+                System.err.println("Failed to sync log file.");
+                lost_events = true;
+            }
+        }
+        final boolean ok = !lost_events;
+        lost_events = false;
+        return ok;
+    }
+
+    /**
+     * Closes a LogFile, recording whether any of its events were lost.
+     * @param log_file LogFile to close
+     */
+    private void close(LogFile log_file) {
+        log_file.close();
+        if(log_file.hasFailed()) { lost_events = true; }
+    }
+
+    /**
+     * Flushes and closes every open LogFile.
+     */
+    public void closeAll() {
+        Iterator<LogFile> i = open_files.values().iterator();
+        while(i.hasNext()) {
+            i.next().close();
+            i.remove();
+        }
+        dirty_files.clear();
+    }
+}
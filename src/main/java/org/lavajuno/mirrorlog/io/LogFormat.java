@@ -0,0 +1,40 @@
+package org.lavajuno.mirrorlog.io;
+
+/**
+ * LogFormat lists the formats that a LogFile can write events in.
+ */
+public enum LogFormat {
+    /**
+     * Human-readable lines, as printed to the console (".log" files)
+     */
+    TEXT("log"),
+
+    /**
+     * One JSON object per line (".ndjson" files)
+     */
+    NDJSON("ndjson");
+
+    private final String extension;
+
+    LogFormat(String extension) { this.extension = extension; }
+
+    /**
+     * Gets the file extension used for this format.
+     * @return File extension (without the '.')
+     */
+    public String getExtension() { return extension; }
+
+    /**
+     * Parses a LogFormat from its name in the configuration file.
+     * @param name Name of the format ("text" or "ndjson")
+     * @return The matching LogFormat
+     * @throws IllegalArgumentException If the name does not match any format
+     */
+    public static LogFormat fromName(String name) throws IllegalArgumentException {
+        return switch(name) {
+            case "text" -> TEXT;
+            case "ndjson" -> NDJSON;
+            default -> throw new IllegalArgumentException("Unknown log format \"" + name + "\".");
+        };
+    }
+}
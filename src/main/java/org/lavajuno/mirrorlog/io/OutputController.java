@@ -1,27 +1,81 @@
 package org.lavajuno.mirrorlog.io;
 
+import org.lavajuno.mirrorlog.archive.Archiver;
 import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.index.Indexer;
+import org.lavajuno.mirrorlog.jfr.BatchSyncEvent;
+import org.lavajuno.mirrorlog.jfr.OutputDrainEvent;
+import org.lavajuno.mirrorlog.jfr.QueueDepthEvent;
+import org.lavajuno.mirrorlog.latency.EventTrace;
+import org.lavajuno.mirrorlog.latency.LatencyTracker;
+import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.rules.Rule;
+import org.lavajuno.mirrorlog.rules.RuleAction;
+import org.lavajuno.mirrorlog.stats.EventStats;
+
+import jdk.jfr.FlightRecorder;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OutputController queues log entries from multiple ServerThreads
  * and handles printing them to the console as well as writing them to files.
+ * Clients using acknowledged batches queue a marker behind each batch. Once a
+ * marker is reached, the log files are synced within "ack_interval", and then
+ * every batch that ended before the sync is acknowledged at once.
+ * When overload protection is enabled, the OverloadController sheds low-severity
+ * events both before they are queued and after, while the queue is backed up.
+ * Events from the server itself (level changes and summaries) skip the queue and are never shed.
+ * When statistics are enabled, every submitted event is counted by EventStats before
+ * rules and overload shedding are applied, and a summary can be logged periodically.
+ * When latency tracing is enabled, events from clients carry an EventTrace that is
+ * stamped as they are dequeued and written. Written events wait until the next flush,
+ * and are then recorded by the LatencyTracker all at once.
+ * Busy periods, batch syncs, and the queue depth are also recorded as JFR events,
+ * which are disabled unless a recording enables them (see configs/mirrorlog.jfc).
  */
 public class OutputController extends Thread {
     private final BlockingQueue<LogEvent> output_queue;
-    private LogFile logFile;
+    private final LogFilePool log_files;
+    private final Archiver archiver;
+    private final Indexer indexer;
+    private final OverloadController overload = new OverloadController();
+    private final String[] component_paths = new String[LogMap.COMPONENT_DICTIONARY_SIZE];
     private final boolean LOG_TO_FILE;
+    private final ArrayList<LogEvent> pending_batches = new ArrayList<>();
+    private long next_sync;
+    private Deduplicator deduplicator;
+    private volatile EventStats stats;
+    private long next_stats_report;
+    private final ArrayList<LogEvent> pending_traces = new ArrayList<>();
+    private LatencyTracker latency;
+    private long next_latency_report;
+    private OutputDrainEvent drain;
+    private int dedup_table_size;
 
     /**
      * Constructs an OutputController.
      */
     public OutputController() throws IOException {
         output_queue = new LinkedBlockingQueue<>();
+        indexer = new Indexer();
+        archiver = new Archiver(indexer);
+        log_files = new LogFilePool(archiver, indexer);
         LOG_TO_FILE = ApplicationConfig.getInstance().getLogToFile();
-        if(LOG_TO_FILE) { logFile = new LogFile(); }
+        FlightRecorder.addPeriodicEvent(QueueDepthEvent.class, () -> {
+            final QueueDepthEvent event = new QueueDepthEvent();
+            event.queueDepth = output_queue.size();
+            event.queueDelay = overload.getQueueDelay();
+            event.admissionLevel = overload.getLevel();
+            event.commit();
+        });
+        if(LOG_TO_FILE && log_files.get(LogFile.LOGS_PATH, ApplicationConfig.getInstance().getFormat()) == null) {
+            throw new IOException("Failed to create log file.");
+        }
     }
 
     /**
@@ -31,7 +85,64 @@ public class OutputController extends Thread {
      * @param message Message to be logged
      */
     public void submitEvent(String component_name, int severity, String message) {
-        output_queue.add(new LogEvent(component_name, severity, message));
+        submitEvent(component_name, severity, message, null, null);
+    }
+
+    /**
+     * Submits an event from a client to be logged
+     * @param component_name Component name of the log event
+     * @param severity Severity of the log event
+     * @param message Message to be logged
+     * @param attributes Attributes of the log event, or null if it has none
+     * @param client_address Address of the client that sent the log event
+     */
+    public void submitEvent(String component_name, int severity, String message,
+                            EventAttributes attributes, String client_address) {
+        submitEvent(component_name, severity, message, attributes, client_address, 0, null);
+    }
+
+    /**
+     * Submits an event from a client to be logged, and traces its latency if read_nanos is set
+     * @param component_name Component name of the log event
+     * @param severity Severity of the log event
+     * @param message Message to be logged
+     * @param attributes Attributes of the log event, or null if it has none
+     * @param client_address Address of the client that sent the log event
+     * @param read_nanos When the read that delivered the event finished (System.nanoTime()), or 0 to not trace it
+     * @param source Connection that sent the event, or null if it was not sent by a connection
+     */
+    public void submitEvent(String component_name, int severity, String message, EventAttributes attributes,
+                            String client_address, long read_nanos, BatchSource source) {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final EventStats event_stats = stats;
+        if(event_stats != null && config.isStatsEnabled()) {
+            // Count events before they can be dropped or shed, so that floods still show up
+            event_stats.record(component_name, client_address, severity);
+        }
+        final Rule rule = config.getRules().match(component_name, severity);
+        if(rule != null) {
+            // Filter events before they are queued so dropped events cost as little as possible
+            if(rule.getAction() == RuleAction.DROP) { return; }
+            if(rule.getAction() == RuleAction.SAMPLE && !rule.sample()) { return; }
+        }
+        if((source == null || !source.isBatched()) && !overload.admit(severity)) {
+            if(source != null) { source.shed(); }
+            return;
+        }
+        output_queue.add(new LogEvent(
+                component_name, severity, message, attributes, client_address, rule, System.currentTimeMillis(),
+                read_nanos == 0 ? null : new EventTrace(read_nanos, System.nanoTime()), source
+        ));
+    }
+
+    /**
+     * Submits the end of a batch. The batch's source is notified once every event
+     * it submitted before this has been durably written.
+     * @param source Connection that sent the batch
+     * @param sequence Sequence number of the batch
+     */
+    public void submitBatchEnd(BatchSource source, long sequence) {
+        output_queue.add(LogEvent.batchEnd(source, sequence));
     }
 
     /**
@@ -40,35 +151,271 @@ public class OutputController extends Thread {
     @Override
     public void run() {
         LogEvent event = null; /* needs to be initialized for exception handler */
+        archiver.start();
+        indexer.start();
         try {
             while(true) {
-                event = output_queue.take();
-                write(event);
+                event = output_queue.poll();
+                if(event == null) {
+                    // Queue is empty, so write out buffered events before waiting
+                    log_files.flush();
+                    completeTraces();
+                    if(drain != null) {
+                        drain.commit();
+                        drain = null;
+                    }
+                    event = output_queue.poll(getIdleWait(), TimeUnit.MILLISECONDS);
+                    if(event == null) {
+                        // Still idle, so write summaries for any dedup windows that have ended
+                        if(deduplicator != null) { deduplicator.sweep(System.currentTimeMillis()); }
+                        if(!pending_batches.isEmpty() && System.currentTimeMillis() >= next_sync) { syncBatches(); }
+                        checkOverload(System.currentTimeMillis());
+                        checkStats(System.currentTimeMillis());
+                        checkLatency(System.currentTimeMillis());
+                        continue;
+                    }
+                }
+                if(drain != null) {
+                    drain.events++;
+                } else {
+                    final OutputDrainEvent started = new OutputDrainEvent();
+                    if(started.isEnabled()) {
+                        started.begin();
+                        started.queueDepth = output_queue.size() + 1;
+                        started.events = 1;
+                        drain = started;
+                    }
+                }
+                if(event.isBatchEnd()) {
+                    if(pending_batches.isEmpty()) {
+                        next_sync = System.currentTimeMillis() + ApplicationConfig.getInstance().getAckInterval();
+                    }
+                    pending_batches.add(event);
+                } else {
+                    if(event.getTrace() != null) { event.getTrace().markDequeued(System.nanoTime()); }
+                    final long now = System.currentTimeMillis();
+                    overload.recordDelay(now - event.getTimestamp());
+                    checkOverload(now);
+                    checkStats(now);
+                    checkLatency(now);
+                    if(admitQueued(event)) { process(event); }
+                }
+                if(!pending_batches.isEmpty() && System.currentTimeMillis() >= next_sync) { syncBatches(); }
             }
         } catch(InterruptedException e) {
             System.out.println("Flushing output queue...");
-            while((event = output_queue.poll()) != null) { write(event); }
+            while((event = output_queue.poll()) != null) {
+                if(!event.isBatchEnd()) { process(event); }
+            }
+            if(deduplicator != null) { deduplicator.drain(); }
             System.out.println("Writing to log file...");
-            logFile.close();
+            log_files.closeAll();
+            archiver.interrupt();
+            indexer.interrupt();
+        }
+    }
+
+    /**
+     * Checks if a queued event should still be written. Events from connections that use
+     * acknowledged batches are never shed, and connections are told when their events are.
+     * @param event Event taken from the queue
+     * @return True if the event should be written, false if it is shed
+     */
+    private boolean admitQueued(LogEvent event) {
+        final BatchSource source = event.getSource();
+        if(source != null && source.isBatched()) { return true; }
+        if(overload.admitQueued(event)) { return true; }
+        if(source != null) { source.shed(); }
+        return false;
+    }
+
+    /**
+     * Lets the OverloadController change the admission level, and announces any change.
+     * @param now Current time (ms since the epoch)
+     */
+    private void checkOverload(long now) {
+        final String announcement = overload.check(now, output_queue.size());
+        if(announcement != null) {
+            announce(1, announcement, now);
         }
     }
 
+    /**
+     * Merges the events counted by submitting threads into EventStats, and logs a summary
+     * of the event statistics every "log_interval". EventStats is created the first time
+     * statistics are enabled, and recreated if "top_n" changes.
+     * @param now Current time (ms since the epoch)
+     */
+    private void checkStats(long now) {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        if(!config.isStatsEnabled()) {
+            next_stats_report = 0;
+            return;
+        }
+        if(stats == null || stats.getTopN() != config.getStatsTopN()) { stats = new EventStats(config.getStatsTopN()); }
+        stats.flush(now);
+        final int interval = config.getStatsLogInterval();
+        if(interval == 0) {
+            next_stats_report = 0;
+            return;
+        }
+        if(next_stats_report == 0) { next_stats_report = now + interval; }
+        if(now < next_stats_report) { return; }
+        next_stats_report = now + interval;
+        for(String i : stats.report(now, interval)) { announce(0, i, now); }
+    }
+
+    /**
+     * Records every written event that is waiting for a flush, once the log files have been flushed.
+     * The LatencyTracker is created the first time there are events to record.
+     */
+    private void completeTraces() {
+        if(pending_traces.isEmpty()) { return; }
+        final long now = System.nanoTime();
+        for(LogEvent i : pending_traces) { i.getTrace().markFlushed(now); }
+        if(latency == null) { latency = new LatencyTracker(); }
+        latency.record(pending_traces, ApplicationConfig.getInstance().getLatencyTraceInterval() == 0 ?
+                0 : ApplicationConfig.getInstance().getLatencyTraceCount());
+        pending_traces.clear();
+    }
+
+    /**
+     * Logs the slowest traced events every "trace_interval".
+     * @param now Current time (ms since the epoch)
+     */
+    private void checkLatency(long now) {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final int interval = config.getLatencyTraceInterval();
+        if(latency == null || !config.isLatencyEnabled() || interval == 0) {
+            next_latency_report = 0;
+            return;
+        }
+        if(next_latency_report == 0) { next_latency_report = now + interval; }
+        if(now < next_latency_report) { return; }
+        next_latency_report = now + interval;
+        for(String i : latency.report(interval)) { announce(0, i, now); }
+    }
+
+    /**
+     * Gets how long to wait for new events while the queue is empty.
+     * @return Time to wait (ms)
+     */
+    private long getIdleWait() {
+        if(pending_batches.isEmpty()) { return LogMap.DEDUP_SWEEP_INTERVAL; }
+        return Math.max(0, Math.min(LogMap.DEDUP_SWEEP_INTERVAL, next_sync - System.currentTimeMillis()));
+    }
+
+    /**
+     * Syncs the log files, then acknowledges every pending batch
+     * (or fails them, if events were lost since the last sync).
+     */
+    private void syncBatches() {
+        final BatchSyncEvent event = new BatchSyncEvent();
+        event.begin();
+        final boolean synced = !LOG_TO_FILE || log_files.sync();
+        for(LogEvent i : pending_batches) {
+            if(synced) {
+                i.getBatchSource().acknowledge(i.getBatchSequence());
+            } else {
+                i.getBatchSource().fail(i.getBatchSequence());
+            }
+        }
+        event.batches = pending_batches.size();
+        event.synced = synced;
+        event.commit();
+        pending_batches.clear();
+        completeTraces();
+    }
+
+    /**
+     * Writes an event from the server itself. It skips the output queue, so the
+     * OverloadController never sheds it, even while informational events are being dropped.
+     * Called by the OutputController thread.
+     * @param severity Severity of the event
+     * @param message Message to be logged
+     * @param now Current time (ms since the epoch)
+     */
+    private void announce(int severity, String message, long now) {
+        process(new LogEvent("Log Server", severity, message, null, null, null, now));
+    }
+
+    /**
+     * Passes an event through the dedup stage (if it is enabled), then writes it.
+     * @param event LogEvent to process
+     */
+    private void process(LogEvent event) {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        if(!config.isDedupEnabled()) {
+            if(deduplicator != null) {
+                deduplicator.drain();
+                deduplicator = null;
+            }
+            write(event);
+            return;
+        }
+        if(deduplicator == null || dedup_table_size != config.getDedupTableSize()) {
+            // Dedup was just enabled or resized
+            if(deduplicator != null) { deduplicator.drain(); }
+            dedup_table_size = config.getDedupTableSize();
+            deduplicator = new Deduplicator(dedup_table_size, this::write);
+        }
+        if(deduplicator.accept(event)) { write(event); }
+    }
+
     /**
      * Writes an event to the log.
      * @param event LogEvent to write to the log.
      */
     private void write(LogEvent event) {
-        if(LOG_TO_FILE) {
-            if(logFile.isExpired()) {
-                logFile.close();
-                try {
-                    logFile = new LogFile();
-                } catch(IOException e) {
-                    System.err.println("Failed to create new log file!");
-                }
-            }
-            logFile.print(event);
+        final Rule rule = event.getRule();
+        if(LOG_TO_FILE && (rule == null || rule.getAction() != RuleAction.CONSOLE)) {
+            log_files.print(getLogsPath(event), getFormat(event), event);
         }
+        final EventTrace trace = event.getTrace();
+        if(trace != null) { trace.markRendered(System.nanoTime()); }
         System.out.println(event.toPrettyString());
+        if(trace != null) {
+            trace.markWritten(System.nanoTime());
+            pending_traces.add(event);
+            if(pending_traces.size() >= LogMap.MAX_PENDING_TRACES) {
+                // Don't let traced events pile up while the queue never empties
+                log_files.flush();
+                completeTraces();
+            }
+        }
+    }
+
+    /**
+     * Gets the format that an event should be written in.
+     * @param event Event to get the format for
+     * @return Format of the event's log file
+     */
+    private static LogFormat getFormat(LogEvent event) {
+        final Rule rule = event.getRule();
+        if(rule != null && rule.getFormat() != null) { return rule.getFormat(); }
+        return ApplicationConfig.getInstance().getFormat();
+    }
+
+    /**
+     * Gets the directory that an event should be written to.
+     * @param event Event to get the directory for
+     * @return Directory of the event's log file (ending with '/')
+     */
+    private String getLogsPath(LogEvent event) {
+        final Rule rule = event.getRule();
+        if(rule != null && rule.getAction() == RuleAction.ROUTE) {
+            return LogFile.LOGS_PATH + rule.getTarget() + "/";
+        }
+        if(ApplicationConfig.getInstance().getOutputMode() == ApplicationConfig.OutputMode.COMPONENT) {
+            final int id = event.getComponentId();
+            if(id == ComponentDictionary.NO_ID) {
+                return LogFile.COMPONENT_LOGS_PATH + LogFile.toFileName(event.getComponentName()) + "/";
+            }
+            if(component_paths[id] == null) { // Cache the path so it is only built once per component
+                component_paths[id] = LogFile.COMPONENT_LOGS_PATH + LogFile.toFileName(event.getComponentName()) + "/";
+            }
+            return component_paths[id];
+        }
+        return LogFile.LOGS_PATH;
     }
 }
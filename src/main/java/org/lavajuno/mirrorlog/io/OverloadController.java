@@ -0,0 +1,186 @@
+package org.lavajuno.mirrorlog.io;
+
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.metrics.Metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OverloadController sheds low-severity events when the OutputController falls behind,
+ * so that ERROR and FATAL events are still written promptly. It watches the depth of the
+ * output queue and how long events wait in it, and raises the admission level one step
+ * at a time while either is over its limit. Once both have stayed well under their limits
+ * for a while, it lowers the level one step at a time. ERROR and FATAL events are never shed.
+ * New events are checked by admit() before they are queued. Events that were queued before
+ * the level was raised are checked again by admitQueued(), so that a backlog of INFO events
+ * is skipped instead of written.
+ */
+public class OverloadController implements OverloadControllerMXBean {
+    /**
+     * Admission levels, from least to most restrictive
+     */
+    public enum Level {
+        /**
+         * Every event is admitted
+         */
+        NORMAL,
+
+        /**
+         * One in "sample_rate" INFO events is admitted
+         */
+        SAMPLE_INFO,
+
+        /**
+         * INFO events are dropped
+         */
+        DROP_INFO,
+
+        /**
+         * INFO events are dropped, and one in "sample_rate" WARN events is admitted
+         */
+        SAMPLE_WARN
+    }
+
+    private static final Level[] LEVELS = Level.values();
+
+    private volatile Level level = Level.NORMAL;
+    private final LongAdder shed_events = new LongAdder();
+    private volatile int queue_depth;
+    private volatile long queue_delay;
+    private volatile long transitions;
+
+    /*
+     * Only used by the OutputController thread
+     */
+    private long last_delay;
+    private long next_check;
+    private long calm_since = -1;
+
+    /**
+     * Constructs an OverloadController and registers its metrics.
+     */
+    public OverloadController() {
+        Metrics.register("Overload", this);
+    }
+
+    /**
+     * Checks if a new event should be queued. Called by the threads submitting events.
+     * @param severity Severity of the event
+     * @return True if the event should be queued, false if it is shed
+     */
+    public boolean admit(int severity) {
+        final Level current = level;
+        if(current == Level.NORMAL || severity >= 2) { return true; }
+        final boolean admitted = switch(current) {
+            case SAMPLE_INFO -> severity > 0 || sample();
+            case DROP_INFO -> severity > 0;
+            default -> severity == 1 && sample();
+        };
+        if(!admitted) { shed_events.increment(); }
+        return admitted;
+    }
+
+    /**
+     * Checks if a queued event should still be written. Only events that the current level
+     * drops outright are shed here, since sampled events were already sampled by admit().
+     * Called by the OutputController thread.
+     * @param event Event taken from the queue
+     * @return True if the event should be written, false if it is shed
+     */
+    public boolean admitQueued(LogEvent event) {
+        if(event.getSeverity() == 0 && level.compareTo(Level.DROP_INFO) >= 0) {
+            shed_events.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records how long the event just taken from the queue waited in it.
+     * The most recent delay is used (rather than the longest), so that a backlog
+     * that has already been shed doesn't keep raising the level.
+     * Called by the OutputController thread.
+     * @param delay Time the event waited (ms)
+     */
+    public void recordDelay(long delay) { last_delay = delay; }
+
+    /**
+     * Checks whether the admission level should change, if it is time to.
+     * Called by the OutputController thread.
+     * @param now Current time (ms since the epoch)
+     * @param depth Current depth of the output queue
+     * @return Announcement of the new level if it changed, otherwise null
+     */
+    public String check(long now, int depth) {
+        if(now < next_check) { return null; }
+        next_check = now + LogMap.OVERLOAD_CHECK_INTERVAL;
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final long delay = last_delay;
+        last_delay = 0; // An empty queue has no delay
+        queue_depth = depth;
+        queue_delay = delay;
+
+        final Level current = level;
+        if(!config.isOverloadEnabled()) {
+            if(current == Level.NORMAL) { return null; }
+            return transition(Level.NORMAL, depth, delay);
+        }
+        if(depth > config.getOverloadQueueLimit() || delay > config.getOverloadLatencyLimit()) {
+            calm_since = -1;
+            if(current.ordinal() == LEVELS.length - 1) { return null; }
+            return transition(LEVELS[current.ordinal() + 1], depth, delay);
+        }
+        if(depth > config.getOverloadQueueLimit() / 4 || delay > config.getOverloadLatencyLimit() / 4) {
+            calm_since = -1; // Not overloaded, but not calm enough to recover either
+            return null;
+        }
+        if(current == Level.NORMAL) { return null; }
+        if(calm_since == -1) {
+            calm_since = now;
+            return null;
+        }
+        if(now - calm_since < LogMap.OVERLOAD_RECOVERY_DELAY) { return null; }
+        calm_since = now; // Stay calm for another delay before stepping down again
+        return transition(LEVELS[current.ordinal() - 1], depth, delay);
+    }
+
+    /**
+     * Changes the admission level.
+     * @param next New level
+     * @param depth Current depth of the output queue
+     * @param delay Most recent queue delay (ms)
+     * @return Announcement of the new level
+     */
+    private String transition(Level next, int depth, long delay) {
+        final Level previous = level;
+        level = next;
+        transitions = transitions + 1;
+        return (next.compareTo(previous) > 0 ? "Overloaded, admission level raised to " : "Admission level lowered to ") +
+                next + ". (queue " + depth + " events, delay " + delay + " ms)";
+    }
+
+    /**
+     * Decides whether to admit a sampled event.
+     * @return True for one in "sample_rate" calls (on average)
+     */
+    private static boolean sample() {
+        return ThreadLocalRandom.current().nextInt(ApplicationConfig.getInstance().getOverloadSampleRate()) == 0;
+    }
+
+    @Override
+    public String getLevel() { return level.name(); }
+
+    @Override
+    public int getQueueDepth() { return queue_depth; }
+
+    @Override
+    public long getQueueDelay() { return queue_delay; }
+
+    @Override
+    public long getShedEvents() { return shed_events.sum(); }
+
+    @Override
+    public long getTransitions() { return transitions; }
+}
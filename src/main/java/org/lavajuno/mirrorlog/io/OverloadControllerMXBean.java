@@ -0,0 +1,31 @@
+package org.lavajuno.mirrorlog.io;
+
+/**
+ * Overload statistics exposed through JMX.
+ */
+public interface OverloadControllerMXBean {
+    /**
+     * @return Current admission level (NORMAL, SAMPLE_INFO, DROP_INFO, or SAMPLE_WARN)
+     */
+    String getLevel();
+
+    /**
+     * @return Number of events in the output queue at the last check
+     */
+    int getQueueDepth();
+
+    /**
+     * @return How long the most recently dequeued event had waited in the output queue, at the last check (ms)
+     */
+    long getQueueDelay();
+
+    /**
+     * @return Number of events shed since the server started
+     */
+    long getShedEvents();
+
+    /**
+     * @return Number of times the admission level has changed since the server started
+     */
+    long getTransitions();
+}
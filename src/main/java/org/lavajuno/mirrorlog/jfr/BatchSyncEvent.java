@@ -0,0 +1,32 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a sync of the log files for acknowledged batches, including the acknowledgements.
+ */
+@Name("org.lavajuno.mirrorlog.BatchSync")
+@Label("Batch Sync")
+@Category({ "MirrorLog", "Output" })
+@Description("The log files were synced and pending batches were acknowledged")
+@Enabled(false)
+@StackTrace(false)
+public class BatchSyncEvent extends Event {
+    /**
+     * Batches acknowledged (or failed) by the sync
+     */
+    @Label("Batches")
+    public int batches;
+
+    /**
+     * False if events were lost and the batches were failed
+     */
+    @Label("Synced")
+    public boolean synced;
+}
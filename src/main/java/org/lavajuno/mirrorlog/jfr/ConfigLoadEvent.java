@@ -0,0 +1,32 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans reading, parsing, and validating the configuration file.
+ */
+@Name("org.lavajuno.mirrorlog.ConfigLoad")
+@Label("Configuration Load")
+@Category({ "MirrorLog", "Configuration" })
+@Description("The configuration file was loaded")
+@Enabled(false)
+@StackTrace(false)
+public class ConfigLoadEvent extends Event {
+    /**
+     * Revision of the loaded configuration, or -1 if it could not be loaded
+     */
+    @Label("Revision")
+    public int revision;
+
+    /**
+     * Why the configuration could not be loaded, or null if it was loaded
+     */
+    @Label("Error")
+    public String error;
+}
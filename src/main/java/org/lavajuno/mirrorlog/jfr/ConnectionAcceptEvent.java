@@ -0,0 +1,32 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when an Acceptor accepts a connection, before it is handed to the thread pool.
+ */
+@Name("org.lavajuno.mirrorlog.ConnectionAccept")
+@Label("Connection Accept")
+@Category({ "MirrorLog", "Server" })
+@Description("A client connection was accepted")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionAcceptEvent extends Event {
+    /**
+     * Address of the client
+     */
+    @Label("Client Address")
+    public String clientAddress;
+
+    /**
+     * False if the firewall rejected the client
+     */
+    @Label("Allowed")
+    public boolean allowed;
+}
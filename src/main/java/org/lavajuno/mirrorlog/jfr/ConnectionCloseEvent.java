@@ -0,0 +1,54 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded when a client connection ends, for any reason.
+ */
+@Name("org.lavajuno.mirrorlog.ConnectionClose")
+@Label("Connection Close")
+@Category({ "MirrorLog", "Server" })
+@Description("A client connection was closed")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionCloseEvent extends Event {
+    /**
+     * Address of the client
+     */
+    @Label("Client Address")
+    public String clientAddress;
+
+    /**
+     * How long the client was connected (ms)
+     */
+    @Label("Connected For")
+    @Timespan(Timespan.MILLISECONDS)
+    public long connectedFor;
+
+    /**
+     * Bytes received from the client
+     */
+    @Label("Bytes Received")
+    @DataAmount
+    public long bytesReceived;
+
+    /**
+     * Events received from the client
+     */
+    @Label("Events Received")
+    public long eventsReceived;
+
+    /**
+     * Malformed events received from the client
+     */
+    @Label("Bad Events")
+    public long badEvents;
+}
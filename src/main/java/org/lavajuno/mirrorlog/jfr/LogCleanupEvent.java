@@ -0,0 +1,38 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a cleanup of old logs in a directory.
+ */
+@Name("org.lavajuno.mirrorlog.LogCleanup")
+@Label("Log Cleanup")
+@Category({ "MirrorLog", "Files" })
+@Description("Old logs were cleaned up")
+@Enabled(false)
+@StackTrace(false)
+public class LogCleanupEvent extends Event {
+    /**
+     * Directory that was cleaned up
+     */
+    @Label("Directory")
+    public String directory;
+
+    /**
+     * Log files found in the directory
+     */
+    @Label("Files Found")
+    public int filesFound;
+
+    /**
+     * Log files deleted
+     */
+    @Label("Files Deleted")
+    public int filesDeleted;
+}
@@ -0,0 +1,39 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans opening a new log file, including closing the file it replaces
+ * and cleaning up old logs in its directory.
+ */
+@Name("org.lavajuno.mirrorlog.LogFileOpen")
+@Label("Log File Open")
+@Category({ "MirrorLog", "Files" })
+@Description("A log file was created or rotated")
+@Enabled(false)
+@StackTrace(false)
+public class LogFileOpenEvent extends Event {
+    /**
+     * Directory of the log file
+     */
+    @Label("Directory")
+    public String directory;
+
+    /**
+     * Name of the new file, or null if it could not be created
+     */
+    @Label("File Name")
+    public String fileName;
+
+    /**
+     * Why the file was opened: "new", "expired" (rotation), or "format changed"
+     */
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,33 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans one busy period of the OutputController: from the first event dequeued after
+ * the queue was empty, until the queue is empty again and the log files are flushed.
+ */
+@Name("org.lavajuno.mirrorlog.OutputDrain")
+@Label("Output Drain")
+@Category({ "MirrorLog", "Output" })
+@Description("The output queue was drained and the log files were flushed")
+@Enabled(false)
+@StackTrace(false)
+public class OutputDrainEvent extends Event {
+    /**
+     * Events in the queue when the drain started
+     */
+    @Label("Queue Depth")
+    public int queueDepth;
+
+    /**
+     * Events dequeued during the drain (including ones queued after it started)
+     */
+    @Label("Events")
+    public long events;
+}
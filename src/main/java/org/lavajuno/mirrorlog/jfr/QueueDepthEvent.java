@@ -0,0 +1,42 @@
+package org.lavajuno.mirrorlog.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded periodically with the state of the output queue.
+ */
+@Name("org.lavajuno.mirrorlog.QueueDepth")
+@Label("Output Queue Depth")
+@Category({ "MirrorLog", "Output" })
+@Description("Depth of the output queue and the overload admission level")
+@Enabled(false)
+@Period("1 s")
+@StackTrace(false)
+public class QueueDepthEvent extends Event {
+    /**
+     * Events waiting in the output queue
+     */
+    @Label("Queue Depth")
+    public int queueDepth;
+
+    /**
+     * How long the last dequeued event waited in the queue (ms)
+     */
+    @Label("Queue Delay")
+    @Timespan(Timespan.MILLISECONDS)
+    public long queueDelay;
+
+    /**
+     * Current admission level of the OverloadController
+     */
+    @Label("Admission Level")
+    public String admissionLevel;
+}
@@ -0,0 +1,66 @@
+package org.lavajuno.mirrorlog.latency;
+
+/**
+ * EventTrace records when an event reached each stage of the server, from the socket
+ * read that delivered it to the flush that wrote it out of the log file's buffer.
+ * Times are from System.nanoTime(). Each stage is set by the only thread that handles
+ * the event at that point, so EventTrace needs no synchronization of its own.
+ */
+public class EventTrace {
+    /**
+     * Names of the stages between each pair of consecutive times, in order
+     */
+    public static final String[] STAGES = { "parse", "queue", "file", "console", "flush" };
+
+    /**
+     * Time of each stage boundary: read, enqueued, dequeued, rendered, written, flushed
+     */
+    private final long[] times = new long[STAGES.length + 1];
+
+    /**
+     * Constructs an EventTrace for an event that was just queued.
+     * @param read_nanos When the socket read that delivered the event finished
+     * @param enqueue_nanos When the event was queued for output
+     */
+    public EventTrace(long read_nanos, long enqueue_nanos) {
+        times[0] = read_nanos;
+        times[1] = enqueue_nanos;
+    }
+
+    /**
+     * Records that the OutputController took the event off the queue.
+     * @param nanos Current time (System.nanoTime())
+     */
+    public void markDequeued(long nanos) { times[2] = nanos; }
+
+    /**
+     * Records that the event was rendered into its log file's buffer.
+     * @param nanos Current time (System.nanoTime())
+     */
+    public void markRendered(long nanos) { times[3] = nanos; }
+
+    /**
+     * Records that the event was written to the console.
+     * @param nanos Current time (System.nanoTime())
+     */
+    public void markWritten(long nanos) { times[4] = nanos; }
+
+    /**
+     * Records that the event's log file buffer was flushed.
+     * @param nanos Current time (System.nanoTime())
+     */
+    public void markFlushed(long nanos) { times[5] = nanos; }
+
+    /**
+     * Gets how long the event spent in a stage.
+     * @param stage Index of the stage (in STAGES)
+     * @return Time spent in the stage (ns)
+     */
+    public long getStage(int stage) { return Math.max(0, times[stage + 1] - times[stage]); }
+
+    /**
+     * Gets how long the event took from the socket read to the flush.
+     * @return Total time (ns)
+     */
+    public long getTotal() { return Math.max(0, times[times.length - 1] - times[0]); }
+}
@@ -0,0 +1,89 @@
+package org.lavajuno.mirrorlog.latency;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram counts latencies in log-linear buckets: each power of two is split
+ * into 8 buckets, so every recorded value is known to within 12.5%, from nanoseconds
+ * to hours, in a fixed 4 KiB table. LatencyHistogram is not thread-safe.
+ */
+public class LatencyHistogram {
+    /**
+     * Number of buckets each power of two is split into (as a power of two)
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS];
+    private long count;
+    private long max;
+
+    /**
+     * Records a latency.
+     * @param nanos Latency (ns)
+     */
+    public void record(long nanos) {
+        counts[bucket(Math.max(0, nanos))]++;
+        count++;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     * @return Number of latencies
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Gets the highest latency recorded.
+     * @return Highest latency (ns)
+     */
+    public long getMax() { return max; }
+
+    /**
+     * Gets a percentile of the recorded latencies.
+     * @param percentile Percentile to get (0-100)
+     * @return Upper bound of the bucket the percentile falls in (ns), or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if(count == 0) { return 0; }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank) { return Math.min(max, upperBound(i)); }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets every recorded latency.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    /**
+     * Finds the bucket that a value falls in.
+     * @param value Value to find (not negative)
+     * @return Index of the bucket
+     */
+    private static int bucket(long value) {
+        if(value < (1 << SUB_BUCKET_BITS)) { return (int) value; }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & ((1 << SUB_BUCKET_BITS) - 1));
+    }
+
+    /**
+     * Gets the highest value that falls in a bucket.
+     * @param bucket Index of the bucket
+     * @return Highest value in the bucket
+     */
+    private static long upperBound(int bucket) {
+        if(bucket < (1 << SUB_BUCKET_BITS)) { return bucket; }
+        final int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        final long sub = (bucket & ((1 << SUB_BUCKET_BITS) - 1)) | (1 << SUB_BUCKET_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+}
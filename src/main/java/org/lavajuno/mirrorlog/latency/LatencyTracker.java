@@ -0,0 +1,123 @@
+package org.lavajuno.mirrorlog.latency;
+
+import org.lavajuno.mirrorlog.io.LogEvent;
+import org.lavajuno.mirrorlog.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * LatencyTracker records how long traced events spent in each stage of the server:
+ *  - parse: from the socket read to the event being queued
+ *  - queue: waiting in the output queue
+ *  - file: rendering the event into its log file's buffer
+ *  - console: printing the event to the console
+ *  - flush: waiting for the log file's buffer to be flushed
+ * Each stage, and the whole path, has its own histogram. LatencyTracker also keeps
+ * the slowest events since the last report, so that they can be logged with the time
+ * they spent in each stage. Events are recorded by the OutputController thread,
+ * and can be queried at any time through JMX.
+ */
+public class LatencyTracker implements LatencyTrackerMXBean {
+    /**
+     * One of the slowest events since the last report.
+     */
+    private static class Sample {
+        final String component_name;
+        final String client_address;
+        final long total;
+        final long[] stages = new long[EventTrace.STAGES.length];
+
+        /**
+         * Constructs a Sample from a traced event.
+         * @param event Event that was traced
+         */
+        Sample(LogEvent event) {
+            component_name = event.getComponentName();
+            client_address = event.getClientAddress();
+            total = event.getTrace().getTotal();
+            for(int i = 0; i < stages.length; i++) { stages[i] = event.getTrace().getStage(i); }
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[EventTrace.STAGES.length + 1];
+    private final PriorityQueue<Sample> slowest = new PriorityQueue<>(Comparator.comparingLong((Sample s) -> s.total));
+
+    /**
+     * Constructs a LatencyTracker and registers its metrics.
+     */
+    public LatencyTracker() {
+        for(int i = 0; i < histograms.length; i++) { histograms[i] = new LatencyHistogram(); }
+        Metrics.register("Latency", this);
+    }
+
+    /**
+     * Records the latencies of traced events that have just been flushed.
+     * @param events Events to record (each with a complete trace)
+     * @param trace_count Number of slowest events to keep for the next report (0 to keep none)
+     */
+    public synchronized void record(List<LogEvent> events, int trace_count) {
+        for(LogEvent event : events) {
+            final EventTrace trace = event.getTrace();
+            for(int i = 0; i < EventTrace.STAGES.length; i++) { histograms[i].record(trace.getStage(i)); }
+            final long total = trace.getTotal();
+            histograms[EventTrace.STAGES.length].record(total);
+            if(trace_count == 0) { continue; }
+            if(slowest.size() < trace_count) {
+                slowest.add(new Sample(event));
+            } else if(total > slowest.peek().total) {
+                slowest.poll();
+                slowest.add(new Sample(event));
+            }
+        }
+    }
+
+    /**
+     * Describes the slowest events since the last report, and forgets them.
+     * @param interval Time since the last report (ms)
+     * @return Lines to log (slowest first), or an empty list if no events were traced
+     */
+    public synchronized List<String> report(long interval) {
+        final ArrayList<Sample> samples = new ArrayList<>(slowest);
+        slowest.clear();
+        samples.sort(Comparator.comparingLong((Sample s) -> s.total).reversed());
+        final ArrayList<String> lines = new ArrayList<>();
+        for(Sample i : samples) {
+            final StringBuilder sb = new StringBuilder("Slow event in the last ").append(interval).append(" ms: ");
+            sb.append(i.component_name.stripTrailing());
+            if(i.client_address != null) { sb.append(" from ").append(i.client_address); }
+            sb.append(" took ").append(toMillis(i.total)).append(" ms (");
+            for(int j = 0; j < i.stages.length; j++) {
+                if(j > 0) { sb.append(", "); }
+                sb.append(EventTrace.STAGES[j]).append(' ').append(toMillis(i.stages[j]));
+            }
+            lines.add(sb.append(')').toString());
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized List<StageLatency> getStages() {
+        final ArrayList<StageLatency> stages = new ArrayList<>();
+        for(int i = 0; i < EventTrace.STAGES.length; i++) { stages.add(StageLatency.of(EventTrace.STAGES[i], histograms[i])); }
+        stages.add(StageLatency.of("total", histograms[EventTrace.STAGES.length]));
+        return stages;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for(LatencyHistogram i : histograms) { i.clear(); }
+        slowest.clear();
+    }
+
+    /**
+     * Formats a latency in milliseconds, to the microsecond.
+     * @param nanos Latency (ns)
+     * @return Latency (ms), with 3 decimal places
+     */
+    private static String toMillis(long nanos) {
+        return String.format("%d.%03d", nanos / 1000000, nanos / 1000 % 1000);
+    }
+}
@@ -0,0 +1,20 @@
+package org.lavajuno.mirrorlog.latency;
+
+import java.util.List;
+
+/**
+ * Event latency metrics exposed through JMX.
+ * Latencies are measured from the socket read that delivered each event
+ * to the flush that wrote it out of its log file's buffer.
+ */
+public interface LatencyTrackerMXBean {
+    /**
+     * @return Latencies of each stage (parse, queue, file, console, flush), then of the whole path (total)
+     */
+    List<StageLatency> getStages();
+
+    /**
+     * Forgets every recorded latency.
+     */
+    void reset();
+}
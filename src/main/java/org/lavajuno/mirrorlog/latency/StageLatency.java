@@ -0,0 +1,85 @@
+package org.lavajuno.mirrorlog.latency;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * StageLatency is a snapshot of the latencies recorded for one stage of the server.
+ * Latencies are in microseconds, and percentiles are accurate to within 12.5%.
+ */
+public class StageLatency {
+    private final String stage;
+    private final long count;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    /**
+     * Constructs a StageLatency.
+     * @param stage Name of the stage
+     * @param count Number of events recorded
+     * @param p50 Median latency (us)
+     * @param p90 90th percentile latency (us)
+     * @param p99 99th percentile latency (us)
+     * @param p999 99.9th percentile latency (us)
+     * @param max Highest latency (us)
+     */
+    @ConstructorParameters({ "stage", "count", "p50", "p90", "p99", "p999", "max" })
+    public StageLatency(String stage, long count, long p50, long p90, long p99, long p999, long max) {
+        this.stage = stage;
+        this.count = count;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Constructs a StageLatency from a histogram.
+     * @param stage Name of the stage
+     * @param histogram Latencies recorded for the stage
+     * @return Snapshot of the histogram
+     */
+    static StageLatency of(String stage, LatencyHistogram histogram) {
+        return new StageLatency(stage, histogram.getCount(), histogram.getPercentile(50) / 1000,
+                histogram.getPercentile(90) / 1000, histogram.getPercentile(99) / 1000,
+                histogram.getPercentile(99.9) / 1000, histogram.getMax() / 1000);
+    }
+
+    /**
+     * @return Name of the stage
+     */
+    public String getStage() { return stage; }
+
+    /**
+     * @return Number of events recorded
+     */
+    public long getCount() { return count; }
+
+    /**
+     * @return Median latency (us)
+     */
+    public long getP50() { return p50; }
+
+    /**
+     * @return 90th percentile latency (us)
+     */
+    public long getP90() { return p90; }
+
+    /**
+     * @return 99th percentile latency (us)
+     */
+    public long getP99() { return p99; }
+
+    /**
+     * @return 99.9th percentile latency (us)
+     */
+    public long getP999() { return p999; }
+
+    /**
+     * @return Highest latency (us)
+     */
+    public long getMax() { return max; }
+}
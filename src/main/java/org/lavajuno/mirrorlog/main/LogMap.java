@@ -13,20 +13,310 @@ public class LogMap {
      */
     public static final String CONFIG_FILE_PATH = "configs/mirrorlog.conf.json";
 
+    /**
+     * How long ConfigWatcher should wait for writes to the config file to settle before reloading it (ms)
+     */
+    public static final int CONFIG_RELOAD_DELAY = 250;
+
     /**
      * How long ServerController should wait for OutputController to shut down (ms)
      */
     public static final int IO_SHUTDOWN_TIMEOUT = 5000;
 
+    /**
+     * Default number of threads accepting connections
+     */
+    public static final int DEFAULT_ACCEPTORS = 1;
+
+    /**
+     * Largest allowed number of threads accepting connections
+     */
+    public static final int MAX_ACCEPTORS = 64;
+
+    /**
+     * Default length of the queue of connections waiting to be accepted
+     */
+    public static final int DEFAULT_BACKLOG = 50;
+
+    /**
+     * How long ServerController should wait for connections to close when shutting down (ms)
+     */
+    public static final int CONNECTION_SHUTDOWN_TIMEOUT = 2000;
+
+    /**
+     * Largest number of threads used to close connections when shutting down
+     */
+    public static final int CONNECTION_SHUTDOWN_THREADS = 16;
+
+    /**
+     * How often the TimingWheel checks for idle connections (ms)
+     */
+    public static final int TIMING_WHEEL_TICK = 100;
+
+    /**
+     * Number of buckets in the TimingWheel (must be a power of two)
+     */
+    public static final int TIMING_WHEEL_SLOTS = 512;
+
+    /**
+     * Default time that clients have to send their first event (ms)
+     */
+    public static final int DEFAULT_HANDSHAKE_TIMEOUT = 10000;
+
+    /**
+     * Default time that acknowledgements for batches can be held back (ms)
+     */
+    public static final int DEFAULT_ACK_INTERVAL = 100;
+
+    /**
+     * How long an acknowledgement can take to write before the client is disconnected (ms)
+     */
+    public static final int ACK_WRITE_TIMEOUT = 1000;
+
+    /**
+     * Default type of the TLS keystore
+     */
+    public static final String DEFAULT_TLS_KEYSTORE_TYPE = "PKCS12";
+
+    /**
+     * Default number of TLS sessions kept for resumption
+     */
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 10000;
+
+    /**
+     * Default time that TLS sessions can be resumed for (s)
+     */
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT = 86400;
+
+    /**
+     * Maximum number of buffers of each type kept for reuse by TLS connections
+     */
+    public static final int TLS_MAX_POOLED_BUFFERS = 256;
+
+    /**
+     * Default path of the Unix domain socket
+     */
+    public static final String DEFAULT_UNIX_SOCKET_PATH = "mirrorlog.sock";
+
+    /**
+     * Default permissions of the Unix domain socket (only the server's user can connect)
+     */
+    public static final String DEFAULT_UNIX_SOCKET_PERMISSIONS = "rw-------";
+
     /**
      * Size of the event buffer for ServerThreads
      */
     public static final int EVENT_BUFFER_SIZE = 4096;
 
     /**
-     * The date and time format of log events.
+     * Size of the read buffer for ServerThreads
+     */
+    public static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum number of distinct component names that are given ids
+     */
+    public static final int COMPONENT_DICTIONARY_SIZE = 4096;
+
+    /**
+     * Size of the write buffer for each open log file
+     */
+    public static final int FILE_BUFFER_SIZE = 8192;
+
+    /**
+     * Default for the maximum number of log files that can be open at once
+     */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /**
+     * Default length of the dedup window (ms)
+     */
+    public static final int DEFAULT_DEDUP_WINDOW = 10000;
+
+    /**
+     * Default number of entries in the dedup table
+     */
+    public static final int DEFAULT_DEDUP_TABLE_SIZE = 4096;
+
+    /**
+     * Largest allowed dedup table
+     */
+    public static final int MAX_DEDUP_TABLE_SIZE = 1 << 20;
+
+    /**
+     * How often Deduplicator checks for dedup windows that have ended (ms)
+     */
+    public static final int DEDUP_SWEEP_INTERVAL = 1000;
+
+    /**
+     * Maximum number of attributes a structured (JSON) event may carry
+     */
+    public static final int MAX_EVENT_ATTRIBUTES = 64;
+
+    /**
+     * Number of events in each block of an archive file
+     */
+    public static final int ARCHIVE_BLOCK_SIZE = 8192;
+
+    /**
+     * File extension of archive files
+     */
+    public static final String ARCHIVE_EXTENSION = "mla";
+
+    /**
+     * Magic number at the start and end of archive files ("MLA1")
+     */
+    public static final int ARCHIVE_MAGIC = 0x4D4C4131;
+
+    /**
+     * File extension of index files, which are written next to the file they index ("<name>.idx")
+     */
+    public static final String INDEX_EXTENSION = "idx";
+
+    /**
+     * Magic number at the start of index files ("MLI1")
+     */
+    public static final int INDEX_MAGIC = 0x4D4C4931;
+
+    /**
+     * Default number of bytes of a text log file covered by each block of its index
+     */
+    public static final int DEFAULT_INDEX_BLOCK_SIZE = 65536;
+
+    /**
+     * Smallest number of bytes of a text log file that each block of its index can cover
+     */
+    public static final int MIN_INDEX_BLOCK_SIZE = 1024;
+
+    /**
+     * Default false positive rate of each block's Bloom filter
+     */
+    public static final double DEFAULT_INDEX_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * How often the OverloadController checks the output queue (ms)
+     */
+    public static final int OVERLOAD_CHECK_INTERVAL = 250;
+
+    /**
+     * How long the output queue must stay calm before the admission level is lowered a step (ms)
+     */
+    public static final int OVERLOAD_RECOVERY_DELAY = 5000;
+
+    /**
+     * Default number of queued events above which the server is overloaded
+     */
+    public static final int DEFAULT_OVERLOAD_QUEUE_LIMIT = 100000;
+
+    /**
+     * Default time events can wait in the output queue before the server is overloaded (ms)
+     */
+    public static final int DEFAULT_OVERLOAD_LATENCY_LIMIT = 2000;
+
+    /**
+     * Default rate that events are sampled at while overloaded (1 in N are kept)
+     */
+    public static final int DEFAULT_OVERLOAD_SAMPLE_RATE = 10;
+
+    /**
+     * Number of rows in each count-min sketch used by EventStats
+     */
+    public static final int STATS_SKETCH_DEPTH = 4;
+
+    /**
+     * Number of cells in each row of the count-min sketches used by EventStats (a power of 2)
+     */
+    public static final int STATS_SKETCH_WIDTH = 1024;
+
+    /**
+     * Number of buckets that each of EventStats' sliding windows is split into
+     */
+    public static final int STATS_WINDOW_BUCKETS = 12;
+
+    /**
+     * Number of stripes that EventStats splits recording threads between (must be a power of two)
+     */
+    public static final int STATS_STRIPES = 16;
+
+    /**
+     * Number of distinct components and clients a stripe can hold before it is merged early
+     */
+    public static final int STATS_STRIPE_KEYS = 1024;
+
+    /**
+     * How often EventStats merges its stripes into its windows (ms)
+     */
+    public static final int STATS_FLUSH_INTERVAL = 100;
+
+    /**
+     * Default number of components and clients reported for each of EventStats' windows
+     */
+    public static final int DEFAULT_STATS_TOP_N = 10;
+
+    /**
+     * Largest number of components and clients that can be reported for each of EventStats' windows
+     */
+    public static final int MAX_STATS_TOP_N = 1000;
+
+    /**
+     * Default number of slowest traced events logged each interval
+     */
+    public static final int DEFAULT_LATENCY_TRACE_COUNT = 5;
+
+    /**
+     * Largest number of slowest traced events that can be logged each interval
+     */
+    public static final int MAX_LATENCY_TRACE_COUNT = 100;
+
+    /**
+     * Number of traced events that can wait for a flush before the log files are flushed early
+     */
+    public static final int MAX_PENDING_TRACES = 4096;
+
+    /**
+     * Default size of each thread's staging buffer in MirrorLogClient (bytes)
+     */
+    public static final int CLIENT_BUFFER_SIZE = 65536;
+
+    /**
+     * Size of the buffer that MirrorLogClient coalesces events into before writing them (bytes)
+     */
+    public static final int CLIENT_WRITE_BUFFER_SIZE = 262144;
+
+    /**
+     * How often MirrorLogClient's flusher checks for new events when it is idle (ms)
+     */
+    public static final int CLIENT_FLUSH_INTERVAL = 5;
+
+    /**
+     * How long MirrorLogClient waits before its first reconnection attempt (ms)
+     */
+    public static final int CLIENT_MIN_BACKOFF = 100;
+
+    /**
+     * Longest that MirrorLogClient waits between reconnection attempts (ms)
+     */
+    public static final int CLIENT_MAX_BACKOFF = 30000;
+
+    /**
+     * How long MirrorLogClient waits for a connection to be established (ms)
+     */
+    public static final int CLIENT_CONNECT_TIMEOUT = 5000;
+
+    /**
+     * How long MirrorLogClient.close() waits for buffered events to be sent (ms)
+     */
+    public static final int CLIENT_CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The date and time pattern of log events.
+     */
+    public static final String LOG_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    /**
+     * The date and time format of log events. (Only used by the OutputController thread)
      */
-    public static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    public static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat(LOG_DATE_PATTERN);
 
     /**
      * Color and header of messages with severity 0
@@ -0,0 +1,36 @@
+package org.lavajuno.mirrorlog.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Metrics registers MirrorLog's MXBeans with the platform MBean server,
+ * so that they can be read with JMX tools such as jconsole or VisualVM.
+ * Beans are registered as "org.lavajuno.mirrorlog:type=[type]".
+ */
+public class Metrics {
+    /**
+     * The JMX domain that MirrorLog's beans are registered under
+     */
+    public static final String DOMAIN = "org.lavajuno.mirrorlog";
+
+    private Metrics() {}
+
+    /**
+     * Registers an MXBean, replacing any bean already registered with the same type.
+     * @param type Type of the bean (the "type" key of its ObjectName)
+     * @param bean Bean to register
+     */
+    public static void register(String type, Object bean) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+            if(server.isRegistered(name)) { server.unregisterMBean(name); }
+            server.registerMBean(bean, name);
+        } catch(JMException e) {
+            System.err.println("Failed to register \"" + type + "\" metrics. (" + e.getClass().getSimpleName() + ")");
+        }
+    }
+}
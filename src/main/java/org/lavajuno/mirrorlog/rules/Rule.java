@@ -0,0 +1,184 @@
+package org.lavajuno.mirrorlog.rules;
+
+import org.lavajuno.lucidjson.*;
+import org.lavajuno.mirrorlog.io.LogFormat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Rule stores a single routing/filtering rule from the configuration file.
+ * A rule matches events by component name (exact, prefix, or glob) and severity,
+ * and decides what should be done with matching events.
+ */
+@SuppressWarnings("unused")
+public class Rule {
+    /**
+     * How a Rule's component pattern is matched against component names
+     */
+    public enum Match { EXACT, PREFIX, GLOB }
+
+    private final String component;
+    private final Match match;
+    private final int severity_mask;
+    private final RuleAction action;
+    private final int rate;
+    private final String target;
+    private final LogFormat format;
+    private final Pattern glob_pattern;
+    private final AtomicLong sample_counter = new AtomicLong();
+
+    /**
+     * Creates a Rule from its entry in the configuration file.
+     * @param o Rule entry to parse
+     * @return The new Rule
+     * @throws IllegalArgumentException If the entry is missing a value or has an invalid value
+     */
+    public static Rule fromJsonObject(JsonObject o) throws IllegalArgumentException { return new Rule(o); }
+
+    /**
+     * Constructs a Rule from its entry in the configuration file.
+     * @param o Rule entry to parse
+     * @throws IllegalArgumentException If the entry is missing a value or has an invalid value
+     */
+    private Rule(JsonObject o) throws IllegalArgumentException {
+        component = ((JsonString) o.get("component")).value();
+        match = o.get("match") == null ? Match.EXACT : switch(((JsonString) o.get("match")).value()) {
+            case "exact" -> Match.EXACT;
+            case "prefix" -> Match.PREFIX;
+            case "glob" -> Match.GLOB;
+            default -> throw new IllegalArgumentException("Unknown rule match \"" + o.get("match").toJsonString() + "\".");
+        };
+        if(o.get("severity") == null) {
+            severity_mask = 0b1111;
+        } else {
+            int mask = 0;
+            for(JsonEntity i : ((JsonArray) o.get("severity")).values()) {
+                int severity = ((JsonNumber) i).toInt();
+                if(severity < 0 || severity > 3) {
+                    throw new IllegalArgumentException("Rule severities must be between 0 and 3.");
+                }
+                mask |= 1 << severity;
+            }
+            severity_mask = mask;
+        }
+        action = RuleAction.fromName(((JsonString) o.get("action")).value());
+        rate = action == RuleAction.SAMPLE ? ((JsonNumber) o.get("rate")).toInt() : 1;
+        if(rate < 1) { throw new IllegalArgumentException("Rule sample rate must be at least 1."); }
+        target = action == RuleAction.ROUTE ? ((JsonString) o.get("target")).value() : null;
+        if(target != null && !target.matches("^[0-9A-Za-z_-]{1,64}$")) {
+            throw new IllegalArgumentException("Rule target \"" + target + "\" is not a valid file name.");
+        }
+        format = action == RuleAction.ROUTE && o.get("format") != null ?
+                LogFormat.fromName(((JsonString) o.get("format")).value()) : null;
+        glob_pattern = match == Match.GLOB ? compileGlob(component) : null;
+    }
+
+    /**
+     * The component name or pattern this Rule matches
+     * @return The value of "component"
+     */
+    public String getComponent() { return component; }
+
+    /**
+     * How this Rule's component pattern is matched
+     * @return The value of "match"
+     */
+    public Match getMatch() { return match; }
+
+    /**
+     * The severities this Rule matches, as a bitmask (bit n set for severity n)
+     * @return The value of "severity" as a bitmask
+     */
+    public int getSeverityMask() { return severity_mask; }
+
+    /**
+     * The action taken on matching events
+     * @return The value of "action"
+     */
+    public RuleAction getAction() { return action; }
+
+    /**
+     * The name of the output file that matching events are routed to
+     * @return The value of "target", or null if this is not a routing rule
+     */
+    public String getTarget() { return target; }
+
+    /**
+     * The format of the output file that matching events are routed to
+     * @return The value of "format", or null if this is not a routing rule or it uses the default format
+     */
+    public LogFormat getFormat() { return format; }
+
+    /**
+     * Checks if the next matching event should be kept by a sampling rule.
+     * Keeps the first out of every "rate" events.
+     * @return True if the event should be kept
+     */
+    public boolean sample() {
+        return sample_counter.getAndIncrement() % rate == 0;
+    }
+
+    /**
+     * Gets the literal part of this Rule's component pattern.
+     * For glob rules, this is everything before the first wildcard.
+     * @return Literal prefix of the component pattern
+     */
+    String literalPrefix() {
+        if(match != Match.GLOB) { return component; }
+        int end = 0;
+        while(end < component.length() && component.charAt(end) != '*' && component.charAt(end) != '?') {
+            end++;
+        }
+        return component.substring(0, end);
+    }
+
+    /**
+     * Checks if a component name matches this Rule's glob pattern.
+     * @param component_name Component name to check
+     * @return True if the component name matches
+     */
+    boolean matchesGlob(String component_name) {
+        return glob_pattern.matcher(component_name).matches();
+    }
+
+    /**
+     * Compiles a glob pattern ('*' for any run of characters, '?' for one character) to a regex.
+     * @param glob Glob pattern to compile
+     * @return Compiled pattern
+     */
+    private static Pattern compileGlob(String glob) {
+        StringBuilder sb = new StringBuilder();
+        int literal_start = 0;
+        for(int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if(c == '*' || c == '?') {
+                if(i > literal_start) { sb.append(Pattern.quote(glob.substring(literal_start, i))); }
+                sb.append(c == '*' ? ".*" : ".");
+                literal_start = i + 1;
+            }
+        }
+        if(literal_start < glob.length()) { sb.append(Pattern.quote(glob.substring(literal_start))); }
+        return Pattern.compile(sb.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Saves this Rule into a new JSON object, in the layout of its configuration file entry.
+     * @return JSON object created from this Rule
+     */
+    public JsonObject toJsonObject() {
+        JsonObject o = new JsonObject();
+        o.put("component", new JsonString(component));
+        o.put("match", new JsonString(match.name().toLowerCase()));
+        JsonArray severities = new JsonArray();
+        for(int i = 0; i < 4; i++) {
+            if((severity_mask & (1 << i)) != 0) { severities.add(new JsonNumber(i)); }
+        }
+        o.put("severity", severities);
+        o.put("action", new JsonString(action.name().toLowerCase()));
+        if(action == RuleAction.SAMPLE) { o.put("rate", new JsonNumber(rate)); }
+        if(action == RuleAction.ROUTE) { o.put("target", new JsonString(target)); }
+        if(format != null) { o.put("format", new JsonString(format.name().toLowerCase())); }
+        return o;
+    }
+}
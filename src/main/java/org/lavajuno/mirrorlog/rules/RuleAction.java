@@ -0,0 +1,42 @@
+package org.lavajuno.mirrorlog.rules;
+
+/**
+ * RuleAction lists the actions that a Rule can take on a matching event.
+ */
+public enum RuleAction {
+    /**
+     * Discard the event.
+     */
+    DROP,
+
+    /**
+     * Keep one out of every N matching events, and discard the rest.
+     */
+    SAMPLE,
+
+    /**
+     * Write the event to a named output file instead of the main log file.
+     */
+    ROUTE,
+
+    /**
+     * Print the event to the console, but do not write it to any file.
+     */
+    CONSOLE;
+
+    /**
+     * Parses a RuleAction from its name in the configuration file.
+     * @param name Name of the action ("drop", "sample", "route", or "console")
+     * @return The matching RuleAction
+     * @throws IllegalArgumentException If the name does not match any action
+     */
+    public static RuleAction fromName(String name) throws IllegalArgumentException {
+        return switch(name) {
+            case "drop" -> DROP;
+            case "sample" -> SAMPLE;
+            case "route" -> ROUTE;
+            case "console" -> CONSOLE;
+            default -> throw new IllegalArgumentException("Unknown rule action \"" + name + "\".");
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package org.lavajuno.mirrorlog.rules;
+
+import org.lavajuno.mirrorlog.io.ComponentDictionary;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * RuleSet is a compiled list of Rules.
+ * Rules are compiled into a trie on component names, where each node stores
+ * the first exact and prefix rule ending there for each severity. Finding the
+ * rule for an event takes one walk down the trie, however many rules there are.
+ * Glob rules are attached to the node for their literal prefix, and their results
+ * are cached by ComponentDictionary id so that they are only evaluated once per component.
+ * Components without an id (the dictionary is full) evaluate the globs for one severity per event.
+ * When several rules match an event, the one listed first in the configuration wins.
+ */
+public class RuleSet {
+    /**
+     * A RuleSet with no rules
+     */
+    public static final RuleSet EMPTY = new RuleSet(List.of());
+
+    /**
+     * Rule index meaning "no rule"
+     */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * A single node in the component name trie.
+     */
+    private static class Node {
+        /**
+         * Characters leading to each child of this node
+         */
+        char[] keys = new char[0];
+
+        /**
+         * Children of this node
+         */
+        Node[] children = new Node[0];
+
+        /**
+         * First exact rule for a component name ending at this node, by severity
+         */
+        final int[] exact = { NONE, NONE, NONE, NONE };
+
+        /**
+         * First prefix rule for a prefix ending at this node, by severity
+         */
+        final int[] prefix = { NONE, NONE, NONE, NONE };
+
+        /**
+         * Glob rules with a literal prefix ending at this node
+         */
+        int[] globs = new int[0];
+
+        /**
+         * @param c Next character
+         * @return The child for the given character, or null if there is none
+         */
+        Node child(char c) {
+            for(int i = 0; i < keys.length; i++) {
+                if(keys[i] == c) { return children[i]; }
+            }
+            return null;
+        }
+
+        /**
+         * @param c Next character
+         * @return The child for the given character, created if it does not exist
+         */
+        Node getOrAddChild(char c) {
+            Node child = child(c);
+            if(child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    private final Rule[] rules;
+    private final Node root = new Node();
+    private final boolean has_globs;
+
+    /**
+     * Matching rule for each severity, indexed by component id (null if there are no glob rules)
+     */
+    private final AtomicReferenceArray<Rule[]> glob_cache;
+
+    /**
+     * Compiles a RuleSet.
+     * @param rules Rules to compile, in order of priority
+     */
+    public RuleSet(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        boolean globs = false;
+        for(int i = 0; i < this.rules.length; i++) {
+            final Rule rule = this.rules[i];
+            Node node = root;
+            final String literal = rule.literalPrefix();
+            for(int j = 0; j < literal.length(); j++) { node = node.getOrAddChild(literal.charAt(j)); }
+            if(rule.getMatch() == Rule.Match.GLOB) {
+                node.globs = Arrays.copyOf(node.globs, node.globs.length + 1);
+                node.globs[node.globs.length - 1] = i;
+                globs = true;
+                continue;
+            }
+            final int[] slots = rule.getMatch() == Rule.Match.EXACT ? node.exact : node.prefix;
+            for(int s = 0; s < 4; s++) {
+                if((rule.getSeverityMask() & (1 << s)) != 0 && slots[s] == NONE) { slots[s] = i; }
+            }
+        }
+        has_globs = globs;
+        glob_cache = globs ? new AtomicReferenceArray<>(LogMap.COMPONENT_DICTIONARY_SIZE) : null;
+    }
+
+    /**
+     * Gets the rules in this RuleSet.
+     * @return Rules in order of priority
+     */
+    public List<Rule> getRules() { return List.of(rules); }
+
+    /**
+     * Finds the rule that applies to an event.
+     * @param component_name Component name of the event
+     * @param severity Severity of the event
+     * @return The first rule that matches the event, or null if no rules match
+     */
+    public Rule match(String component_name, int severity) {
+        if(rules.length == 0) { return null; }
+        severity &= 3;
+        if(has_globs) {
+            final int id = ComponentDictionary.getInstance().lookup(component_name);
+            if(id != ComponentDictionary.NO_ID) {
+                Rule[] decision = glob_cache.get(id);
+                if(decision == null) {
+                    decision = new Rule[4];
+                    for(int s = 0; s < 4; s++) {
+                        final int i = find(component_name, s, true);
+                        decision[s] = i == NONE ? null : rules[i];
+                    }
+                    glob_cache.set(id, decision);
+                }
+                return decision[severity];
+            }
+        }
+        final int i = find(component_name, severity, has_globs);
+        return i == NONE ? null : rules[i];
+    }
+
+    /**
+     * Walks the trie to find the first rule that applies to an event.
+     * @param component_name Component name of the event
+     * @param severity Severity of the event
+     * @param check_globs True if glob rules should be evaluated
+     * @return Index of the first matching rule, or NONE if no rules match
+     */
+    private int find(String component_name, int severity, boolean check_globs) {
+        int best = NONE;
+        Node node = root;
+        int depth = 0;
+        while(true) {
+            best = Math.min(best, node.prefix[severity]);
+            if(check_globs) {
+                for(int g : node.globs) {
+                    if(g < best && (rules[g].getSeverityMask() & (1 << severity)) != 0
+                            && rules[g].matchesGlob(component_name)) {
+                        best = g;
+                    }
+                }
+            }
+            if(depth == component_name.length()) {
+                return Math.min(best, node.exact[severity]);
+            }
+            node = node.child(component_name.charAt(depth));
+            if(node == null) { return best; }
+            depth++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.io.OutputController;
+import org.lavajuno.mirrorlog.jfr.ConnectionAcceptEvent;
+
+import jdk.net.ExtendedSocketOptions;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Acceptor accepts incoming connections on a listening socket and assigns
+ * them to ServerThreads in the thread pool. Several Acceptors can share one
+ * socket, or each have their own socket bound to the same port with SO_REUSEPORT.
+ * An Acceptor on the Unix domain socket skips the firewall, because access to
+ * the socket is controlled by its file permissions.
+ */
+public class Acceptor extends Thread {
+    private final ServerSocketChannel socket;
+    private final ExecutorService threadPool;
+    private final OutputController outputController;
+    private final ConnectionRegistry registry;
+    private final TimingWheel timing_wheel;
+    private final TlsContext tls_context;
+    private final AckWriter ack_writer;
+
+    /**
+     * Constructs an Acceptor.
+     * @param socket Listening channel to accept connections from (TCP or Unix domain socket)
+     * @param threadPool Thread pool to assign connections to
+     * @param outputController OutputController to pass to ServerThreads
+     * @param registry ConnectionRegistry to register connections with
+     * @param timing_wheel TimingWheel to schedule idle timeouts with
+     * @param tls_context TlsContext to serve connections over TLS with (null for plaintext)
+     * @param ack_writer AckWriter to pass to ServerThreads
+     * @param index Index of this Acceptor (used in its thread name)
+     */
+    public Acceptor(ServerSocketChannel socket, ExecutorService threadPool, OutputController outputController,
+                    ConnectionRegistry registry, TimingWheel timing_wheel, TlsContext tls_context,
+                    AckWriter ack_writer, int index) {
+        this.socket = socket;
+        this.threadPool = threadPool;
+        this.outputController = outputController;
+        this.registry = registry;
+        this.timing_wheel = timing_wheel;
+        this.tls_context = tls_context;
+        this.ack_writer = ack_writer;
+        setName("Acceptor-" + index);
+    }
+
+    /**
+     * Acceptor's thread.
+     */
+    @Override
+    public void run() {
+        while(true) {
+            ServerThread connection = null;
+            try {
+                final SocketChannel client = socket.accept();
+                final String address;
+                final boolean allowed;
+                if(client.getRemoteAddress() instanceof InetSocketAddress remote) {
+                    // Reject unauthorized clients before they take up a thread
+                    final ApplicationConfig config = ApplicationConfig.getInstance();
+                    address = remote.getAddress().getHostAddress();
+                    allowed = !config.isRestricted() || config.getAddressFilter().allows(remote.getAddress());
+                } else {
+                    address = getPeerName(client);
+                    allowed = true;
+                }
+                final ConnectionAcceptEvent event = new ConnectionAcceptEvent();
+                if(event.shouldCommit()) {
+                    event.clientAddress = address;
+                    event.allowed = allowed;
+                    event.commit();
+                }
+                if(!allowed) {
+                    client.close();
+                    continue;
+                }
+                connection = new ServerThread(client, address, outputController, registry, timing_wheel, tls_context, ack_writer);
+                registry.register(connection);
+                connection.startTimeout(); // Starts before the connection is served, in case the pool is busy
+                threadPool.submit(connection);
+            } catch(IOException e) {
+                if (!socket.isOpen()) { return; }
+                System.err.println("Failed to accept a connection. (IOException)");
+            } catch(RejectedExecutionException e) {
+                System.err.println("Failed to accept a connection. (Thread pool is full)");
+                registry.deregister(connection);
+                connection.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Names the client on the other end of a Unix domain socket, by the user it runs as
+     * ("unix:[user]"), or "unix" if the platform can't tell.
+     * @param client Connection to name
+     * @return Name of the client, as it appears in the log
+     */
+    private static String getPeerName(SocketChannel client) {
+        try {
+            return "unix:" + client.getOption(ExtendedSocketOptions.SO_PEERCRED).user().getName();
+        } catch(IOException | UnsupportedOperationException e) {
+            return "unix";
+        }
+    }
+}
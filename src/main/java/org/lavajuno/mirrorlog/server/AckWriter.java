@@ -0,0 +1,43 @@
+package org.lavajuno.mirrorlog.server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * AckWriter sends batch acknowledgements to clients. They are written on this
+ * thread instead of the OutputController's, so that a client that is slow to
+ * read can never hold up the output queue. Acknowledgements are cumulative, so
+ * a connection that is acknowledged several times before AckWriter gets to it
+ * is only sent the latest one.
+ * Writes are timed: a client that stops reading is disconnected once an
+ * acknowledgement has been blocked for LogMap.ACK_WRITE_TIMEOUT, so it can only
+ * hold up the other connections' acknowledgements for that long.
+ */
+public class AckWriter extends Thread {
+    private final LinkedBlockingQueue<ServerThread> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Constructs an AckWriter.
+     */
+    public AckWriter() {
+        setName("AckWriter");
+        setDaemon(true);
+    }
+
+    /**
+     * Queues a connection to have its latest acknowledgement sent.
+     * @param connection Connection to send an acknowledgement to
+     */
+    public void submit(ServerThread connection) { queue.add(connection); }
+
+    /**
+     * AckWriter's thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true) { queue.take().sendAck(); }
+        } catch(InterruptedException e) {
+            System.out.println("Stopped sending acknowledgements.");
+        }
+    }
+}
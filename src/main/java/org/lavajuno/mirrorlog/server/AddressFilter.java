@@ -0,0 +1,154 @@
+package org.lavajuno.mirrorlog.server;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+
+/**
+ * AddressFilter decides whether a client address is allowed to connect.
+ * Allowed addresses and CIDR ranges (IPv4 and IPv6) are compiled into
+ * binary prefix tries over the raw address bytes, so a lookup costs at
+ * most one step per address bit regardless of how many ranges are allowed.
+ */
+public class AddressFilter {
+    /**
+     * A single node in a binary prefix trie.
+     */
+    private static class Node {
+        /**
+         * Children for the next bit being 0 or 1
+         */
+        final Node[] children = new Node[2];
+
+        /**
+         * True if a range ends at this node (every address below it is allowed)
+         */
+        boolean terminal;
+    }
+
+    /**
+     * Root of the trie for 4-byte (IPv4) addresses
+     */
+    private final Node root_v4 = new Node();
+
+    /**
+     * Root of the trie for 16-byte (IPv6) addresses
+     */
+    private final Node root_v6 = new Node();
+
+    /**
+     * Constructs an AddressFilter from a collection of addresses and CIDR ranges.
+     * Entries may be plain addresses ("127.0.0.1", "::1") or ranges ("10.0.0.0/8", "fd00::/8").
+     * IPv4-mapped IPv6 ranges ("::ffff:10.0.0.0/104") are treated as the IPv4 range they contain.
+     * @param ranges Addresses and ranges to allow
+     * @throws IllegalArgumentException If an entry is not a valid address or range
+     */
+    public AddressFilter(Collection<String> ranges) throws IllegalArgumentException {
+        for(String i : ranges) { insert(i); }
+    }
+
+    /**
+     * Checks if an address is allowed by this AddressFilter.
+     * @param address Address to check
+     * @return True if the address falls within an allowed range
+     */
+    public boolean allows(InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        Node node = bytes.length == 4 ? root_v4 : root_v6;
+        final int bits = bytes.length * 8;
+        for(int i = 0; i < bits; i++) {
+            if(node.terminal) { return true; }
+            node = node.children[(bytes[i >>> 3] >>> (7 - (i & 7))) & 1];
+            if(node == null) { return false; }
+        }
+        return node.terminal;
+    }
+
+    /**
+     * Parses a single address or CIDR range and inserts it into the matching trie.
+     * @param range Address or range to insert
+     * @throws IllegalArgumentException If the entry is not a valid address or range
+     */
+    private void insert(String range) throws IllegalArgumentException {
+        final String[] fragments = range.trim().split("/", 2);
+        byte[] bytes = parseLiteral(fragments[0]);
+        // IPv4-mapped IPv6 literals ("::ffff:10.0.0.0") are parsed to 4 bytes, but their prefix counts all 128 bits
+        final boolean mapped = bytes.length == 4 && fragments[0].indexOf(':') != -1;
+        final int bits = mapped ? 128 : bytes.length * 8;
+        int prefix = bits;
+        if(fragments.length == 2) {
+            try {
+                prefix = Integer.parseInt(fragments[1]);
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length in \"" + range + "\".");
+            }
+            if(prefix < 0 || prefix > bits) {
+                throw new IllegalArgumentException("Prefix length out of range in \"" + range + "\".");
+            }
+        }
+        if(mapped) {
+            if(prefix >= 96) {
+                // Clients connecting from mapped addresses are seen as IPv4, so match them in the IPv4 trie
+                prefix -= 96;
+            } else {
+                // The range reaches past the mapped block, so keep it in the IPv6 trie
+                final byte[] expanded = new byte[16];
+                expanded[10] = (byte) 0xff;
+                expanded[11] = (byte) 0xff;
+                System.arraycopy(bytes, 0, expanded, 12, 4);
+                bytes = expanded;
+            }
+        }
+        Node node = bytes.length == 4 ? root_v4 : root_v6;
+        for(int i = 0; i < prefix; i++) {
+            if(node.terminal) { return; } // Already covered by a shorter range
+            final int bit = (bytes[i >>> 3] >>> (7 - (i & 7))) & 1;
+            if(node.children[bit] == null) { node.children[bit] = new Node(); }
+            node = node.children[bit];
+        }
+        node.terminal = true;
+        node.children[0] = null; // Everything below this node is now covered
+        node.children[1] = null;
+    }
+
+    /**
+     * Parses an IP address literal without performing any name lookups.
+     * IPv4 addresses must be in dotted-quad form, and IPv6 addresses must contain a ':'.
+     * @param literal Address literal to parse
+     * @return Raw bytes of the address (4 for IPv4, 16 for IPv6)
+     * @throws IllegalArgumentException If the input is not an IP address literal
+     */
+    private static byte[] parseLiteral(String literal) throws IllegalArgumentException {
+        if(literal.indexOf(':') == -1) { return parseIPv4(literal); }
+        // InetAddress never falls back to DNS for names containing a ':'
+        if(!literal.matches("^[0-9A-Fa-f:.]+$")) {
+            throw new IllegalArgumentException("\"" + literal + "\" is not an IP address.");
+        }
+        try {
+            return InetAddress.getByName(literal).getAddress();
+        } catch(UnknownHostException e) {
+            throw new IllegalArgumentException("\"" + literal + "\" is not an IP address.");
+        }
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address ("192.168.0.1").
+     * @param literal Address literal to parse
+     * @return Raw bytes of the address
+     * @throws IllegalArgumentException If the input is not a dotted-quad IPv4 address
+     */
+    private static byte[] parseIPv4(String literal) throws IllegalArgumentException {
+        final String[] parts = literal.split("\\.", -1);
+        if(parts.length != 4) {
+            throw new IllegalArgumentException("\"" + literal + "\" is not an IP address.");
+        }
+        final byte[] bytes = new byte[4];
+        for(int i = 0; i < 4; i++) {
+            if(!parts[i].matches("^[0-9]{1,3}$") || Integer.parseInt(parts[i]) > 255) {
+                throw new IllegalArgumentException("\"" + literal + "\" is not an IP address.");
+            }
+            bytes[i] = (byte) Integer.parseInt(parts[i]);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,57 @@
+package org.lavajuno.mirrorlog.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferPool hands out direct ByteBuffers of a fixed size, and keeps released
+ * buffers for reuse, so that connections don't allocate (and later have to free)
+ * direct memory each time they open. At most max_pooled buffers are kept.
+ */
+public class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int buffer_size;
+    private final int max_pooled;
+
+    /**
+     * Constructs an empty BufferPool.
+     * @param buffer_size Size of each buffer (bytes)
+     * @param max_pooled Maximum number of buffers to keep for reuse
+     */
+    public BufferPool(int buffer_size, int max_pooled) {
+        this.buffer_size = buffer_size;
+        this.max_pooled = max_pooled;
+    }
+
+    /**
+     * Gets the size of this pool's buffers.
+     * @return Size of each buffer (bytes)
+     */
+    public int getBufferSize() { return buffer_size; }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty.
+     * @return A cleared buffer
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        if(buffer == null) { return ByteBuffer.allocateDirect(buffer_size); }
+        pooled.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     * @param buffer Buffer to return (ignored if null)
+     */
+    public void release(ByteBuffer buffer) {
+        if(buffer == null || buffer.capacity() != buffer_size) { return; }
+        if(pooled.incrementAndGet() > max_pooled) {
+            pooled.decrementAndGet();
+            return; // Pool is full, let the buffer be garbage collected
+        }
+        buffers.add(buffer);
+    }
+}
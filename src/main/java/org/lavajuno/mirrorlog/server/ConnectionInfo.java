@@ -0,0 +1,56 @@
+package org.lavajuno.mirrorlog.server;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * ConnectionInfo is a snapshot of the statistics of a single connection.
+ */
+public class ConnectionInfo {
+    private final String client_address;
+    private final long connected_at;
+    private final long bytes_received;
+    private final long events_received;
+    private final long bad_events;
+
+    /**
+     * Constructs a ConnectionInfo.
+     * @param clientAddress Address of the client
+     * @param connectedAt When the client connected (ms since the epoch)
+     * @param bytesReceived Number of bytes received from the client
+     * @param eventsReceived Number of valid events received from the client
+     * @param badEvents Number of malformed events received from the client
+     */
+    @ConstructorParameters({ "clientAddress", "connectedAt", "bytesReceived", "eventsReceived", "badEvents" })
+    public ConnectionInfo(String clientAddress, long connectedAt, long bytesReceived, long eventsReceived, long badEvents) {
+        this.client_address = clientAddress;
+        this.connected_at = connectedAt;
+        this.bytes_received = bytesReceived;
+        this.events_received = eventsReceived;
+        this.bad_events = badEvents;
+    }
+
+    /**
+     * @return Address of the client
+     */
+    public String getClientAddress() { return client_address; }
+
+    /**
+     * @return When the client connected (ms since the epoch)
+     */
+    public long getConnectedAt() { return connected_at; }
+
+    /**
+     * @return Number of bytes received from the client
+     */
+    public long getBytesReceived() { return bytes_received; }
+
+    /**
+     * @return Number of valid events received from the client
+     */
+    public long getEventsReceived() { return events_received; }
+
+    /**
+     * @return Number of malformed events received from the client
+     */
+    public long getBadEvents() { return bad_events; }
+}
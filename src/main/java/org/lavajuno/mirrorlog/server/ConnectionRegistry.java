@@ -0,0 +1,90 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionRegistry keeps track of every open connection, so that they can be
+ * listed while the server is running and closed together when it shuts down.
+ * Connections are registered when they are accepted and deregistered when they close.
+ */
+public class ConnectionRegistry implements ConnectionRegistryMXBean {
+    private final Set<ServerThread> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong total_connections = new AtomicLong();
+
+    /**
+     * Constructs a ConnectionRegistry and registers its metrics.
+     */
+    public ConnectionRegistry() {
+        Metrics.register("Connections", this);
+    }
+
+    /**
+     * Registers a connection.
+     * @param connection Connection to register
+     */
+    public void register(ServerThread connection) {
+        connections.add(connection);
+        total_connections.incrementAndGet();
+    }
+
+    /**
+     * Deregisters a connection.
+     * @param connection Connection to deregister
+     */
+    public void deregister(ServerThread connection) {
+        connections.remove(connection);
+    }
+
+    @Override
+    public int getLiveConnections() { return connections.size(); }
+
+    @Override
+    public long getTotalConnections() { return total_connections.get(); }
+
+    @Override
+    public List<ConnectionInfo> getConnections() {
+        ArrayList<ConnectionInfo> info = new ArrayList<>(connections.size());
+        for(ServerThread i : connections) { info.add(i.getInfo()); }
+        return info;
+    }
+
+    /**
+     * Closes every registered connection in parallel, waiting at most
+     * LogMap.CONNECTION_SHUTDOWN_TIMEOUT for them all to close.
+     */
+    public void closeAll() {
+        final List<ServerThread> open = new ArrayList<>(connections);
+        if(open.isEmpty()) { return; }
+        System.out.println("Closing " + open.size() + " connection(s)...");
+        final ExecutorService closers = Executors.newFixedThreadPool(
+                Math.min(open.size(), LogMap.CONNECTION_SHUTDOWN_THREADS)
+        );
+        final List<Callable<Void>> tasks = new ArrayList<>(open.size());
+        for(ServerThread i : open) {
+            tasks.add(() -> {
+                i.interrupt();
+                return null;
+            });
+        }
+        try {
+            int timed_out = 0;
+            for(Future<Void> i : closers.invokeAll(tasks, LogMap.CONNECTION_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if(i.isCancelled()) { timed_out++; }
+            }
+            if(timed_out > 0) {
+                System.err.println("Timed out closing " + timed_out + " connection(s).");
+            }
+        } catch(InterruptedException e) {
+            System.err.println("Interrupted while closing connections.");
+        } finally {
+            closers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.lavajuno.mirrorlog.server;
+
+import java.util.List;
+
+/**
+ * Connection statistics exposed through JMX.
+ */
+public interface ConnectionRegistryMXBean {
+    /**
+     * @return Number of open connections
+     */
+    int getLiveConnections();
+
+    /**
+     * @return Number of connections accepted since the server started
+     */
+    long getTotalConnections();
+
+    /**
+     * @return Statistics for each open connection
+     */
+    List<ConnectionInfo> getConnections();
+}
@@ -0,0 +1,178 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.lavajuno.lucidjson.JsonReader;
+import org.lavajuno.lucidjson.JsonToken;
+import org.lavajuno.lucidjson.error.JsonParseException;
+import org.lavajuno.mirrorlog.io.EventAttributes;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JsonEventParser parses structured events sent as a single line of JSON:
+ * {"component": "...", "severity": 0-3, "message": "...", "attributes": {...}}
+ * Events are read with a streaming JsonReader, so no JSON tree is built.
+ * Unknown top-level fields are ignored. Control characters decoded from escapes in the
+ * message and attributes (such as "\n") are replaced with spaces, so that an event can't
+ * break the log's one-line-per-event layout or forge lines. A JsonEventParser is reused for
+ * every event on a connection, and is not thread-safe.
+ */
+public class JsonEventParser {
+    private final JsonReader reader = new JsonReader();
+    private final String[] entries = new String[LogMap.MAX_EVENT_ATTRIBUTES * 2];
+    private String component_name;
+    private int severity;
+    private String message;
+    private EventAttributes attributes;
+
+    /**
+     * Parses an event. If this returns true, the getters return the parsed event.
+     * @param input Buffer containing the event
+     * @param length Length of the event
+     * @return True if the event is valid
+     */
+    public boolean parse(byte[] input, int length) {
+        component_name = null;
+        severity = -1;
+        message = null;
+        attributes = null;
+        reader.reset(input, 0, length);
+        try {
+            if(reader.next() != JsonToken.BEGIN_OBJECT) { return false; }
+            while(reader.next() == JsonToken.NAME) {
+                if(reader.textEquals("component")) {
+                    if(reader.next() != JsonToken.STRING) { return false; }
+                    component_name = reader.getString();
+                } else if(reader.textEquals("severity")) {
+                    if(reader.next() != JsonToken.NUMBER) { return false; }
+                    severity = reader.getInt();
+                } else if(reader.textEquals("message")) {
+                    if(reader.next() != JsonToken.STRING) { return false; }
+                    message = sanitize(reader.getString());
+                } else if(reader.textEquals("attributes")) {
+                    if(!parseAttributes(input)) { return false; }
+                } else {
+                    reader.skipValue();
+                }
+            }
+            if(reader.next() != JsonToken.END_DOCUMENT) { return false; }
+        } catch(JsonParseException | NumberFormatException e) {
+            return false;
+        }
+        return component_name != null && component_name.matches("^[0-9A-Za-z_ -]{1,128}$") &&
+                severity >= 0 && severity <= 3 && message != null;
+    }
+
+    /**
+     * @return Component name of the last parsed event
+     */
+    public String getComponentName() { return component_name; }
+
+    /**
+     * @return Severity of the last parsed event
+     */
+    public int getSeverity() { return severity; }
+
+    /**
+     * @return Message of the last parsed event
+     */
+    public String getMessage() { return message; }
+
+    /**
+     * @return Attributes of the last parsed event, or null if it had none
+     */
+    public EventAttributes getAttributes() { return attributes; }
+
+    /**
+     * Parses the value of the "attributes" field.
+     * String values are decoded, and all other values are kept as raw JSON.
+     * @param input Buffer containing the event
+     * @return True if the attributes are valid
+     * @throws JsonParseException If the input is not valid JSON
+     */
+    private boolean parseAttributes(byte[] input) throws JsonParseException {
+        if(reader.next() != JsonToken.BEGIN_OBJECT) { return false; }
+        int size = 0;
+        long raw = 0;
+        while(reader.next() == JsonToken.NAME) {
+            if(size == LogMap.MAX_EVENT_ATTRIBUTES) { return false; }
+            entries[size * 2] = sanitize(reader.getString());
+            final JsonToken value = reader.next();
+            switch(value) {
+                case STRING:
+                    entries[size * 2 + 1] = sanitize(reader.getString());
+                    break;
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    final int start = reader.valueStart();
+                    skipContainer();
+                    entries[size * 2 + 1] = new String(
+                            input, start, reader.valueEnd() - start, StandardCharsets.UTF_8
+                    );
+                    raw |= 1L << size;
+                    break;
+                case TRUE:
+                case FALSE:
+                case NULL:
+                    entries[size * 2 + 1] = value == JsonToken.NULL ? "null" : String.valueOf(value == JsonToken.TRUE);
+                    raw |= 1L << size;
+                    break;
+                default:
+                    entries[size * 2 + 1] = reader.getNumber();
+                    raw |= 1L << size;
+                    break;
+            }
+            size++;
+        }
+        if(size > 0) { attributes = new EventAttributes(entries, size, raw); }
+        return true;
+    }
+
+    /**
+     * Replaces control characters (other than tab) with spaces.
+     * Returns the input without copying it if it has none.
+     * @param s Decoded string
+     * @return String without control characters
+     */
+    private static String sanitize(String s) {
+        int i = 0;
+        while(i < s.length() && !isControl(s.charAt(i))) { i++; }
+        if(i == s.length()) { return s; }
+        final char[] chars = s.toCharArray();
+        for(; i < chars.length; i++) {
+            if(isControl(chars[i])) { chars[i] = ' '; }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param c Character to check
+     * @return True if the character is a control character other than tab
+     */
+    private static boolean isControl(char c) {
+        return (c < 0x20 && c != '\t') || c == 0x7F;
+    }
+
+    /**
+     * Skips to the end of the container that was just opened.
+     * (The reader never returns END_DOCUMENT inside a container, it throws instead.)
+     * @throws JsonParseException If the input is not valid JSON
+     */
+    private void skipContainer() throws JsonParseException {
+        int depth = 1;
+        while(depth > 0) {
+            switch(reader.next()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -1,25 +1,58 @@
 package org.lavajuno.mirrorlog.server;
 
 import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.config.ConfigWatcher;
 import org.lavajuno.mirrorlog.io.OutputController;
 import org.lavajuno.mirrorlog.main.LogMap;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
 import java.text.ParseException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
- * ServerController accepts incoming connections and assigns
- * them to ServerThreads in the thread pool.
+ * ServerController starts the Acceptors that accept incoming connections
+ * and assign them to ServerThreads in the thread pool.
+ * When there is more than one Acceptor and the platform supports SO_REUSEPORT,
+ * each Acceptor gets its own listening socket on the same port, so that the
+ * kernel spreads incoming connections between them. Otherwise, the Acceptors
+ * share a single listening socket.
+ * Listening sockets are opened through ServerSocketChannel, so that accepted
+ * connections have a SocketChannel for TLS to use.
+ * When "unix_socket" is enabled, one more Acceptor listens on a Unix domain socket,
+ * which serves the same line protocol without TLS or the firewall. Who can connect
+ * to it is controlled by the socket file's permissions instead.
  */
 public class ServerController extends Thread {
     /**
-     * The socket that the server listens on
+     * The sockets that the server listens on (one per Acceptor, or a single shared one)
      */
-    private final ServerSocket socket;
+    private final ServerSocketChannel[] sockets;
+
+    /**
+     * The Unix domain socket that the server listens on (null if it is disabled)
+     */
+    private final ServerSocketChannel unix_socket;
+
+    /**
+     * The threads accepting connections
+     */
+    private final Acceptor[] acceptors;
 
     /**
      * The thread pool that connections are assigned to
@@ -32,44 +65,109 @@ public class ServerController extends Thread {
      */
     final OutputController output_controller;
 
+    /**
+     * Keeps track of open connections
+     */
+    private final ConnectionRegistry connection_registry;
+
+    /**
+     * Disconnects idle clients
+     */
+    private final TimingWheel timing_wheel;
+
+    /**
+     * Reloads the configuration when it changes
+     */
+    private final ConfigWatcher config_watcher;
+
+    /**
+     * Sends batch acknowledgements to clients
+     */
+    private final AckWriter ack_writer;
+
+    /**
+     * TLS configuration shared by all connections (null if TLS is disabled)
+     */
+    private final TlsContext tls_context;
+
     /**
      * Instantiates a ServerController.
-     * @throws IOException if the socket cannot be created
+     * @throws IOException if the socket cannot be created, or TLS cannot be set up
      */
     public ServerController() throws IOException, ParseException {
         output_controller = new OutputController();
+        config_watcher = new ConfigWatcher(output_controller);
+        connection_registry = new ConnectionRegistry();
+        timing_wheel = new TimingWheel();
+        ack_writer = new AckWriter();
+        tls_context = ApplicationConfig.getInstance().isTlsEnabled() ? createTlsContext() : null;
         threadPool = Executors.newFixedThreadPool(ApplicationConfig.getInstance().getThreads());
-        socket = new ServerSocket(ApplicationConfig.getInstance().getPort());
+        final int n_acceptors = ApplicationConfig.getInstance().getAcceptors();
+        final boolean reuse_port = n_acceptors > 1 && supportsReusePort();
+        sockets = new ServerSocketChannel[reuse_port ? n_acceptors : 1];
+        ServerSocketChannel unix = null;
+        try {
+            for(int i = 0; i < sockets.length; i++) { sockets[i] = openSocket(reuse_port); }
+            if(ApplicationConfig.getInstance().isUnixSocketEnabled()) { unix = openUnixSocket(); }
+        } catch(IOException e) {
+            closeSockets();
+            throw e;
+        }
+        unix_socket = unix;
+        acceptors = new Acceptor[n_acceptors + (unix_socket == null ? 0 : 1)];
+        for(int i = 0; i < n_acceptors; i++) {
+            acceptors[i] = new Acceptor(
+                    sockets[i % sockets.length], threadPool, output_controller, connection_registry, timing_wheel, tls_context, ack_writer, i
+            );
+        }
+        if(unix_socket != null) {
+            acceptors[n_acceptors] = new Acceptor(
+                    unix_socket, threadPool, output_controller, connection_registry, timing_wheel, null, ack_writer, n_acceptors
+            );
+        }
+        System.out.println(
+                "Listening on port " + ApplicationConfig.getInstance().getPort() + " with " + n_acceptors +
+                (n_acceptors == 1 ? " acceptor." : reuse_port ? " acceptors. (SO_REUSEPORT)" : " acceptors. (Shared socket)") +
+                (tls_context != null ? " (TLS)" : "")
+        );
+        if(unix_socket != null) {
+            System.out.println("Listening on Unix domain socket \"" + ApplicationConfig.getInstance().getUnixSocketPath() + "\".");
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(this::interrupt));
     }
 
     @Override
     public void run() {
         output_controller.start();
+        config_watcher.start();
+        timing_wheel.start();
+        ack_writer.start();
         output_controller.submitEvent(
                 "Log Server",
                 0,
                 "Startup complete."
         );
-        while(true) {
-            try {
-                threadPool.submit(new ServerThread(socket.accept(), output_controller));
-            } catch(IOException e) {
-                if (socket.isClosed()) { return; }
-                System.err.println("Failed to accept a connection. (IOException)");
-            } catch(RejectedExecutionException e) {
-                System.err.println("Failed to accept a connection. (Thread pool is full)");
-            }
-        }
+        for(Acceptor i : acceptors) { i.start(); }
     }
 
     @Override
     public void interrupt() {
         System.out.println("Closing server socket...");
+        closeSockets();
+
+        config_watcher.interrupt();
+        timing_wheel.interrupt();
+        ack_writer.interrupt();
+
+        // Close connections so that their threads can report their disconnection and exit
+        connection_registry.closeAll();
+        threadPool.shutdown();
         try {
-            socket.close();
-        } catch(IOException e) {
-            System.err.println("Failed to close server socket. (IOException)");
+            if(!threadPool.awaitTermination(LogMap.CONNECTION_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                System.out.println("Still waiting on connections to close.");
+            }
+        } catch(InterruptedException e) {
+            System.err.println("Interrupted while closing connections. Skipping timeout.");
         }
 
         System.out.println("Shutting down output controller...");
@@ -84,4 +182,140 @@ public class ServerController extends Thread {
             System.err.println("Interrupted while shutting down output controller. Skipping timeout.");
         }
     }
+
+    /**
+     * Checks if listening sockets support SO_REUSEPORT on this platform.
+     * @return True if SO_REUSEPORT is supported
+     */
+    private static boolean supportsReusePort() {
+        try(ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a listening socket on the configured port.
+     * @param reuse_port Whether to set SO_REUSEPORT, so that other sockets can listen on the same port
+     * @return The listening socket
+     * @throws IOException If the socket cannot be created or bound
+     */
+    private static ServerSocketChannel openSocket(boolean reuse_port) throws IOException {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            if(reuse_port) { channel.setOption(StandardSocketOptions.SO_REUSEPORT, true); }
+            channel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Creates a listening Unix domain socket at the configured path, and sets its permissions.
+     * The socket is bound inside a private temporary directory and given its permissions there,
+     * then renamed into place, so nobody can connect to it before its permissions are set.
+     * A socket left behind by a previous run is replaced, but a socket that is still accepting
+     * connections (another running server) and any other file at the path are not.
+     * @return The listening socket
+     * @throws IOException If the socket cannot be created, bound, or given its permissions
+     */
+    private static ServerSocketChannel openUnixSocket() throws IOException {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        final Path path = Path.of(config.getUnixSocketPath());
+        if(Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if(!Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+                throw new IOException("\"" + path + "\" already exists and is not a socket.");
+            }
+            if(isListening(path)) {
+                throw new IOException("\"" + path + "\" is in use by another server.");
+            }
+        }
+        final Path parent = path.getParent() == null ? Path.of("") : path.getParent();
+        final Path dir;
+        try {
+            dir = Files.createTempDirectory(parent, ".mirrorlog",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch(UnsupportedOperationException e) {
+            throw new IOException("File permissions cannot be set on \"" + path + "\".", e);
+        }
+        final Path temp = dir.resolve(path.getFileName());
+        final ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(temp), config.getBacklog());
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString(config.getUnixSocketPermissions()));
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+                Files.delete(dir);
+            } catch(IOException e) {
+                System.err.println("Failed to remove \"" + dir + "\".");
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Checks if a Unix domain socket is accepting connections.
+     * @param path Path of the socket file
+     * @return True if a connection was accepted, false if it was refused (the socket is stale)
+     * @throws IOException If the socket cannot be checked
+     */
+    private static boolean isListening(Path path) throws IOException {
+        try(SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(path));
+            return true;
+        } catch(ConnectException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the TlsContext from the configured keystore.
+     * @return The TlsContext
+     * @throws IOException If the keystore cannot be read, or TLS cannot be set up
+     */
+    private static TlsContext createTlsContext() throws IOException {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        try {
+            return new TlsContext(
+                    config.getTlsKeystore(),
+                    config.getTlsKeystoreType(),
+                    config.getTlsKeystorePassword(),
+                    config.getTlsSessionCacheSize(),
+                    config.getTlsSessionTimeout(),
+                    LogMap.TLS_MAX_POOLED_BUFFERS
+            );
+        } catch(GeneralSecurityException e) {
+            throw new IOException("Failed to set up TLS: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes every listening socket, which stops the Acceptors, and removes the Unix domain socket's file.
+     */
+    private void closeSockets() {
+        for(ServerSocketChannel i : sockets) {
+            if(i == null) { continue; }
+            try {
+                i.close();
+            } catch(IOException e) {
+                System.err.println("Failed to close server socket. (IOException)");
+            }
+        }
+        if(unix_socket == null) { return; }
+        try {
+            unix_socket.close();
+            Files.deleteIfExists(Path.of(ApplicationConfig.getInstance().getUnixSocketPath()));
+        } catch(IOException e) {
+            System.err.println("Failed to close Unix domain socket. (IOException)");
+        }
+    }
 }
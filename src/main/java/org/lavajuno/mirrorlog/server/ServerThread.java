@@ -1,74 +1,289 @@
 package org.lavajuno.mirrorlog.server;
 
 import java.io.*;
-import java.net.Socket;
 import java.net.SocketException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLException;
 
 import org.lavajuno.mirrorlog.config.ApplicationConfig;
+import org.lavajuno.mirrorlog.io.BatchSource;
+import org.lavajuno.mirrorlog.io.ComponentDictionary;
 import org.lavajuno.mirrorlog.io.OutputController;
+import org.lavajuno.mirrorlog.jfr.ConnectionCloseEvent;
 import org.lavajuno.mirrorlog.main.LogMap;
 
 /**
  * ServerThread serves a single client and queues events
- * for the OutputController to process.
+ * for the OutputController to process. Idle clients are
+ * disconnected by the TimingWheel.
+ * Clients can end a batch of events with "#batch <sequence>", and are sent
+ * "#ack <sequence>" once every event up to that point has been durably written.
+ * Connections can come from the TCP listener or the Unix domain socket listener,
+ * and both use the same line protocol.
  */
-public class ServerThread extends Thread {
-    private final Socket socket;
+public class ServerThread extends Thread implements TimingWheel.Timeout, BatchSource {
+    private static final byte[] BATCH_PREFIX = "#batch ".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
     private final OutputController outputController;
-    private final ApplicationConfig application_config;
     private final String client_address;
+    private final JsonEventParser json_parser = new JsonEventParser();
+    private final ConnectionRegistry registry;
+    private final TimingWheel timing_wheel;
+    private final TlsContext tls_context;
+    private TlsChannel tls_channel;
+    private final AckWriter ack_writer;
+    private final AtomicBoolean ack_queued = new AtomicBoolean();
+    private volatile OutputStream outToClient;
+
+    /*
+     * Sequence numbers of batches: the last one received (this connection's thread),
+     * the last one acknowledged (OutputController thread), and the last acknowledgement
+     * sent to the client (AckWriter thread).
+     */
+    private long last_batch = -1;
+    private volatile long acked_batch = -1;
+    private long sent_batch = -1;
+    private volatile boolean batch_failed;
+    private volatile boolean batched;
+    private volatile boolean events_shed;
+
+    /**
+     * Disconnects the client if an acknowledgement is still being written after LogMap.ACK_WRITE_TIMEOUT.
+     * A client that stops reading fills its socket's send buffer, and would otherwise
+     * block the AckWriter (and every other connection's acknowledgements) forever.
+     */
+    private final TimingWheel.Timeout ack_timeout = new TimingWheel.Timeout() {
+        @Override
+        public long getDeadline() { return ack_started + LogMap.ACK_WRITE_TIMEOUT; }
+
+        @Override
+        public void expire() {
+            ack_timed_out = true;
+            try {
+                channel.close(); // Unblocks the write
+            } catch(IOException e) {
+                System.err.println("Failed to close connection to " + client_address);
+            }
+        }
+    };
+    private volatile long ack_started;
+    private volatile boolean ack_timed_out;
+    private final long connected_at;
+    private TimingWheel.Handle timeout_handle;
+
+    /*
+     * Written by this connection's thread, and read by the TimingWheel thread.
+     */
+    private volatile long last_activity;
+    private volatile boolean handshake_done;
+    private volatile boolean timed_out;
+
+    /*
+     * Statistics for this connection. Only written by this connection's thread,
+     * and volatile so that they can be read by the metrics thread.
+     */
+    private volatile long bytes_received;
+    private volatile long events_received;
+    private volatile long bad_events;
+
+    /*
+     * When the read that delivered the events being queued finished (System.nanoTime(),
+     * or 0 when latency tracing is disabled). Only used by this connection's thread.
+     */
+    private long read_nanos;
 
     /**
      * Instantiates a ServerThread.
-     * @param socket Socket to communicate with client over
+     * @param channel Channel to communicate with client over (TCP or Unix domain socket)
+     * @param client_address Address of the client, as it appears in the log
      * @param outputController OutputController to queue events in
+     * @param registry ConnectionRegistry that this connection is registered with
+     * @param timing_wheel TimingWheel that disconnects this client when it is idle
+     * @param tls_context TlsContext to serve the client over TLS with (null for plaintext)
+     * @param ack_writer AckWriter to send batch acknowledgements with
      */
-    public ServerThread(Socket socket, OutputController outputController) {
-        this.socket = socket;
-        client_address = socket.getInetAddress().toString().split("/", 2)[1];
+    public ServerThread(SocketChannel channel, String client_address, OutputController outputController,
+                        ConnectionRegistry registry, TimingWheel timing_wheel, TlsContext tls_context,
+                        AckWriter ack_writer) {
+        this.channel = channel;
+        this.client_address = client_address;
         this.outputController = outputController;
-        this.application_config = ApplicationConfig.getInstance();
-        Runtime.getRuntime().addShutdownHook(new Thread(this::interrupt));
+        this.registry = registry;
+        this.timing_wheel = timing_wheel;
+        this.tls_context = tls_context;
+        this.ack_writer = ack_writer;
+        connected_at = System.currentTimeMillis();
+        last_activity = connected_at;
+    }
+
+    /**
+     * Starts the idle timeout for this connection. The client must send its first
+     * event (including the TLS handshake) within "handshake_timeout", and then be idle for no longer than "timeout".
+     */
+    public void startTimeout() { timeout_handle = timing_wheel.schedule(this); }
+
+    @Override
+    public long getDeadline() {
+        final ApplicationConfig config = ApplicationConfig.getInstance();
+        if(!handshake_done && config.getHandshakeTimeout() > 0) {
+            return connected_at + config.getHandshakeTimeout();
+        }
+        return config.getTimeout() == 0 ? Long.MAX_VALUE : last_activity + config.getTimeout();
+    }
+
+    @Override
+    public void expire() {
+        timed_out = true;
+        try {
+            channel.close();
+        } catch(IOException e) {
+            System.err.println("Failed to close connection to " + client_address);
+        }
+    }
+
+    @Override
+    public void acknowledge(long sequence) {
+        if(events_shed) { // Some of the batch's events were never written
+            fail(sequence);
+            return;
+        }
+        acked_batch = sequence; // Batches are acknowledged in the order they were sent
+        if(ack_queued.compareAndSet(false, true)) { ack_writer.submit(this); }
+    }
+
+    @Override
+    public void fail(long sequence) {
+        batch_failed = true;
+        try {
+            channel.close(); // Disconnect, so that the client resends everything that was not acknowledged
+        } catch(IOException e) {
+            System.err.println("Failed to close connection to " + client_address);
+        }
+    }
+
+    @Override
+    public boolean isBatched() { return batched; }
+
+    @Override
+    public void shed() { events_shed = true; }
+
+    /**
+     * Sends the latest acknowledgement to the client, if it has not been sent already.
+     * Called by the AckWriter thread. If the write does not finish within
+     * LogMap.ACK_WRITE_TIMEOUT, the connection is closed so that the AckWriter can move on.
+     */
+    public void sendAck() {
+        ack_queued.set(false);
+        final long sequence = acked_batch;
+        final OutputStream out = outToClient;
+        if(sequence <= sent_batch || out == null || batch_failed || ack_timed_out) { return; }
+        ack_started = System.currentTimeMillis();
+        final TimingWheel.Handle deadline = timing_wheel.schedule(ack_timeout);
+        try {
+            out.write(("#ack " + sequence + "\n").getBytes(StandardCharsets.US_ASCII));
+            sent_batch = sequence;
+        } catch(IOException e) {
+            // The connection is closing, and its thread will report it
+        } finally {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the statistics for this connection.
+     * @return Statistics for this connection
+     */
+    public ConnectionInfo getInfo() {
+        return new ConnectionInfo(client_address, connected_at, bytes_received, events_received, bad_events);
     }
 
     @Override
     public void run() {
         try {
-            // Ignore unauthorized clients
-            if(application_config.isRestricted() &&
-                    !application_config.getAllowedAddresses().contains(client_address)) {
-                socket.close();
-                return;
+            serve();
+        } finally {
+            if(timeout_handle != null) { timeout_handle.cancel(); }
+            if(tls_channel != null) { tls_channel.close(); }
+            registry.deregister(this);
+            final ConnectionCloseEvent event = new ConnectionCloseEvent();
+            if(event.shouldCommit()) {
+                event.clientAddress = client_address;
+                event.connectedFor = System.currentTimeMillis() - connected_at;
+                event.bytesReceived = bytes_received;
+                event.eventsReceived = events_received;
+                event.badEvents = bad_events;
+                event.commit();
             }
-            // Set up socket, input stream, and buffers
-            socket.setSoTimeout(application_config.getTimeout());
-            InputStream inFromClient = socket.getInputStream();
-            byte[] in_buf = new byte[LogMap.EVENT_BUFFER_SIZE];
-            int in_buf_idx = 0;
+        }
+    }
 
+    /**
+     * Reads events from the client until it disconnects.
+     */
+    private void serve() {
+        try {
             outputController.submitEvent(
                     "Log Server",
                     0,
                     "Client at " + client_address + " connected."
             );
 
-            // Read from stream (break on event buffer overflow)
-            while(in_buf_idx < LogMap.EVENT_BUFFER_SIZE) {
-                int b = inFromClient.read();
-                if(b == -1) { break; } // End of stream, break
-                if(b == '\n') { // Line break, queue event
-                    queueEvent(new String(in_buf, 0, in_buf_idx, StandardCharsets.UTF_8));
-                    in_buf_idx = 0;
-                } else if(b != '\r') { // Read into event buffer
-                    in_buf[in_buf_idx] = (byte) b;
-                    in_buf_idx++;
+            // Set up input stream and buffers
+            InputStream inFromClient;
+            if(tls_context != null) {
+                tls_channel = new TlsChannel(channel, tls_context);
+                tls_channel.handshake();
+                inFromClient = tls_channel.getInputStream();
+                outToClient = tls_channel.getOutputStream();
+            } else if(channel.getRemoteAddress() instanceof UnixDomainSocketAddress) {
+                inFromClient = getInputStream(channel);
+                outToClient = getOutputStream(channel);
+            } else {
+                inFromClient = channel.socket().getInputStream();
+                outToClient = channel.socket().getOutputStream();
+            }
+            byte[] in_buf = new byte[LogMap.EVENT_BUFFER_SIZE];
+            int in_buf_idx = 0;
+
+            // Read from stream in chunks (stop on event buffer overflow)
+            byte[] read_buf = new byte[LogMap.READ_BUFFER_SIZE];
+            read:
+            while(true) {
+                int n = inFromClient.read(read_buf);
+                if(n == -1) { break; } // End of stream, break
+                read_nanos = ApplicationConfig.getInstance().isLatencyEnabled() ? System.nanoTime() : 0;
+                bytes_received += n;
+                last_activity = timing_wheel.now();
+                for(int i = 0; i < n; i++) {
+                    byte b = read_buf[i];
+                    if(b == '\n') { // Line break, queue event
+                        handshake_done = true;
+                        if(in_buf_idx > 0 && in_buf[0] == '{') {
+                            queueJsonEvent(in_buf, in_buf_idx);
+                        } else if(in_buf_idx > 0 && in_buf[0] == '#') {
+                            queueBatchEnd(in_buf, in_buf_idx);
+                        } else {
+                            queueEvent(in_buf, in_buf_idx);
+                        }
+                        in_buf_idx = 0;
+                    } else if(b != '\r') { // Read into event buffer
+                        if(in_buf_idx == LogMap.EVENT_BUFFER_SIZE) { break read; }
+                        in_buf[in_buf_idx] = b;
+                        in_buf_idx++;
+                    }
                 }
             }
 
             // Clean up
             inFromClient.close();
-            socket.close();
+            channel.close();
             outputController.submitEvent(
                     "Log Server",
                     0,
@@ -78,46 +293,202 @@ public class ServerThread extends Thread {
             outputController.submitEvent(
                     "Log Server",
                     2,
-                    "Client at " + client_address + " disconnected. (SocketException)"
+                    "Client at " + client_address + " disconnected. (" + getDisconnectReason("SocketException") + ")"
+            );
+        } catch(SSLException e) {
+            outputController.submitEvent(
+                    "Log Server",
+                    2,
+                    "Client at " + client_address + " disconnected. (" + getDisconnectReason("TLS error") + ")"
             );
         } catch(IOException e) {
             outputController.submitEvent(
                     "Log Server",
                     2,
-                    "Client at " + client_address + " disconnected. (IOException)"
+                    "Client at " + client_address + " disconnected. (" + getDisconnectReason("IOException") + ")"
             );
         }
     }
 
+    /**
+     * Gets an InputStream that reads from a Unix domain socket channel.
+     * Channels.newInputStream() can't be used, because it holds the channel's blocking lock
+     * while it reads, which would stop acknowledgements from being written.
+     * @param channel Channel to read from
+     * @return InputStream for the channel
+     */
+    private static InputStream getInputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    return channel.read(ByteBuffer.wrap(b, off, len));
+                } catch(ClosedChannelException e) {
+                    throw new SocketException("Socket closed"); // Same as TCP sockets
+                }
+            }
+
+            @Override
+            public void close() throws IOException { channel.close(); }
+        };
+    }
+
+    /**
+     * Gets an OutputStream that writes to a Unix domain socket channel.
+     * @param channel Channel to write to
+     * @return OutputStream for the channel
+     */
+    private static OutputStream getOutputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException { write(new byte[] { (byte) b }, 0, 1); }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                final ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                while(buf.hasRemaining()) { channel.write(buf); }
+            }
+
+            @Override
+            public void close() throws IOException { channel.close(); }
+        };
+    }
+
+    /**
+     * Gets the reason to report for a connection ending with an exception.
+     * Timeouts close the socket from another thread, which shows up here as an exception.
+     * @param fallback Reason to report if the connection did not time out
+     * @return Reason that the connection ended
+     */
+    private String getDisconnectReason(String fallback) {
+        if(batch_failed) { return events_shed ? "Events shed while overloaded" : "Failed to write events"; }
+        if(ack_timed_out) { return "Acknowledgement timeout"; }
+        if(!timed_out) { return fallback; }
+        return handshake_done ? "Idle timeout" : "Handshake timeout";
+    }
+
     @Override
     public void interrupt() {
         try {
             System.out.println("Connection to " + client_address + " terminated. (Shutdown)");
-            this.socket.close();
+            channel.close();
         } catch(IOException e) {
             System.err.println("Failed to close connection to " + client_address);
         }
     }
 
     /**
-     * Queues the given event to be logged. If it is malformed,
+     * Queues the given event ("@component@severity message") to be logged.
+     * If it is malformed, it will instead queue a warning that this is the case.
+     * The component name is looked up in the ComponentDictionary straight from the
+     * buffer, so known components don't allocate a new String.
+     * @param buf Buffer containing the event
+     * @param length Length of the event
+     */
+    private void queueEvent(byte[] buf, int length) {
+        if(length < 3 || buf[0] != '@') {
+            reportBadEvent();
+            return;
+        }
+        int end = 1;
+        while(end < length && end <= 128 && isComponentByte(buf[end])) { end++; }
+        if(end == 1 || end + 1 >= length || buf[end] != '@' || buf[end + 1] < '0' || buf[end + 1] > '3') {
+            reportBadEvent();
+            return;
+        }
+        final ComponentDictionary components = ComponentDictionary.getInstance();
+        final int id = components.lookup(buf, 1, end - 1);
+        outputController.submitEvent( // Queue event
+                id == ComponentDictionary.NO_ID ?
+                        new String(buf, 1, end - 1, StandardCharsets.US_ASCII) : components.getName(id),
+                buf[end + 1] - '0',
+                new String(buf, end + 2, length - end - 2, StandardCharsets.UTF_8),
+                null,
+                client_address,
+                read_nanos,
+                this
+        );
+        events_received++;
+    }
+
+    /**
+     * Checks if a byte can be part of a component name ([0-9A-Za-z_ -]).
+     * @param b Byte to check
+     * @return True if the byte is allowed in component names
+     */
+    private static boolean isComponentByte(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') ||
+                b == '_' || b == ' ' || b == '-';
+    }
+
+    /**
+     * Queues the given structured (JSON) event to be logged. If it is malformed,
      * it will instead queue a warning that this is the case.
-     * @param event Event to queue (represented as a String)
+     * @param buf Buffer containing the event
+     * @param length Length of the event
      */
-    private void queueEvent(String event) {
-        if(event.matches("^@[0-9A-Za-z_ -]{1,128}@[0-3].*$")) {
-            String[] fragments = event.split("@", 3);
+    private void queueJsonEvent(byte[] buf, int length) {
+        if(json_parser.parse(buf, length)) {
             outputController.submitEvent( // Queue event
-                    fragments[1],
-                    Integer.parseInt(fragments[2].substring(0, 1)),
-                    fragments[2].substring(1)
+                    json_parser.getComponentName(),
+                    json_parser.getSeverity(),
+                    json_parser.getMessage(),
+                    json_parser.getAttributes(),
+                    client_address,
+                    read_nanos,
+                    this
             );
+            events_received++;
         } else {
-            outputController.submitEvent( // Report bad event
-                    "Log Server",
-                    1,
-                    "Received bad event from " + client_address
-            );
+            reportBadEvent();
         }
     }
+
+    /**
+     * Queues the end of a batch ("#batch <sequence>"). Sequence numbers must increase.
+     * If the line is malformed or its sequence number does not increase,
+     * it will instead queue a warning that this is the case.
+     * @param buf Buffer containing the line
+     * @param length Length of the line
+     */
+    private void queueBatchEnd(byte[] buf, int length) {
+        final int start = BATCH_PREFIX.length;
+        if(length <= start || length > start + 18 || !Arrays.equals(buf, 0, start, BATCH_PREFIX, 0, start)) {
+            reportBadEvent();
+            return;
+        }
+        long sequence = 0;
+        for(int i = start; i < length; i++) {
+            if(buf[i] < '0' || buf[i] > '9') {
+                reportBadEvent();
+                return;
+            }
+            sequence = sequence * 10 + (buf[i] - '0');
+        }
+        if(sequence <= last_batch) {
+            reportBadEvent();
+            return;
+        }
+        last_batch = sequence;
+        batched = true;
+        outputController.submitBatchEnd(this, sequence);
+    }
+
+    /**
+     * Queues a warning that a malformed event was received.
+     */
+    private void reportBadEvent() {
+        bad_events++;
+        outputController.submitEvent(
+                "Log Server",
+                1,
+                "Received bad event from " + client_address
+        );
+    }
 }
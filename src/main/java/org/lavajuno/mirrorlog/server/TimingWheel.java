@@ -0,0 +1,146 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TimingWheel expires idle connections. Each scheduled Timeout is kept in one of
+ * LogMap.TIMING_WHEEL_SLOTS buckets, chosen by its deadline. Every tick, the
+ * wheel looks at a single bucket: expired entries are collected and expired together,
+ * and the rest are moved to the bucket for their new deadline.
+ * Deadlines are read lazily when a bucket is checked, so recording activity only costs
+ * a single write by the connection, and timeout changes in the configuration apply to
+ * open connections (within one turn of the wheel). Entries whose deadline is more than
+ * one turn away are simply checked again after a full turn.
+ */
+public class TimingWheel extends Thread {
+    /**
+     * Something that can time out.
+     */
+    public interface Timeout {
+        /**
+         * Gets when this should expire. Called by the TimingWheel thread.
+         * @return Deadline (ms since the epoch), or Long.MAX_VALUE if there is none
+         */
+        long getDeadline();
+
+        /**
+         * Expires this Timeout. Called by the TimingWheel thread.
+         */
+        void expire();
+    }
+
+    /**
+     * A scheduled Timeout.
+     */
+    public static class Handle {
+        private final Timeout timeout;
+        private volatile boolean cancelled;
+
+        private Handle(Timeout timeout) { this.timeout = timeout; }
+
+        /**
+         * Cancels the Timeout. It will be dropped from the wheel the next time its bucket is checked.
+         */
+        public void cancel() { cancelled = true; }
+    }
+
+    private final ArrayList<Handle>[] buckets;
+    private final ConcurrentLinkedQueue<Handle> pending = new ConcurrentLinkedQueue<>();
+    private final ArrayList<Handle> expired = new ArrayList<>();
+    private volatile long now;
+    private long tick;
+
+    /**
+     * Constructs a TimingWheel.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel() {
+        buckets = new ArrayList[LogMap.TIMING_WHEEL_SLOTS];
+        for(int i = 0; i < buckets.length; i++) { buckets[i] = new ArrayList<>(); }
+        now = System.currentTimeMillis();
+        tick = now / LogMap.TIMING_WHEEL_TICK;
+        setDaemon(true);
+        setName("Timing Wheel");
+    }
+
+    /**
+     * Gets the time of the wheel's last tick. This is cheaper than System.currentTimeMillis(),
+     * and is accurate to within LogMap.TIMING_WHEEL_TICK.
+     * @return Current time (ms since the epoch)
+     */
+    public long now() { return now; }
+
+    /**
+     * Schedules a Timeout.
+     * @param timeout Timeout to schedule
+     * @return Handle that can be used to cancel the Timeout
+     */
+    public Handle schedule(Timeout timeout) {
+        final Handle handle = new Handle(timeout);
+        pending.add(handle);
+        return handle;
+    }
+
+    /**
+     * TimingWheel's thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                Thread.sleep(LogMap.TIMING_WHEEL_TICK);
+                advance(System.currentTimeMillis());
+            }
+        } catch(InterruptedException e) {
+            System.out.println("Stopped checking for idle connections.");
+        }
+    }
+
+    /**
+     * Moves the wheel forward to the given time, checking every bucket passed along the way.
+     * @param time Current time (ms since the epoch)
+     */
+    private void advance(long time) {
+        now = time;
+        Handle handle;
+        while((handle = pending.poll()) != null) { insert(handle); }
+        final long target = time / LogMap.TIMING_WHEEL_TICK;
+        // If the thread fell behind, check each missed bucket (at most one full turn)
+        long next = Math.max(tick + 1, target - buckets.length + 1);
+        for(; next <= target; next++) {
+            final ArrayList<Handle> bucket = buckets[(int) (next & (buckets.length - 1))];
+            if(bucket.isEmpty()) { continue; }
+            final Handle[] entries = bucket.toArray(new Handle[0]);
+            bucket.clear();
+            tick = next;
+            for(Handle i : entries) {
+                if(i.cancelled) { continue; }
+                if(i.timeout.getDeadline() <= time) {
+                    expired.add(i);
+                } else {
+                    insert(i);
+                }
+            }
+        }
+        tick = target;
+        for(Handle i : expired) {
+            if(!i.cancelled) { i.timeout.expire(); }
+        }
+        expired.clear();
+    }
+
+    /**
+     * Puts a Timeout in the bucket for its deadline (at most one turn ahead).
+     * @param handle Handle of the Timeout
+     */
+    private void insert(Handle handle) {
+        final long deadline = handle.timeout.getDeadline();
+        long ticks = deadline == Long.MAX_VALUE ?
+                buckets.length : (deadline - now + LogMap.TIMING_WHEEL_TICK - 1) / LogMap.TIMING_WHEEL_TICK;
+        ticks = Math.max(1, Math.min(ticks, buckets.length));
+        buckets[(int) ((tick + ticks) & (buckets.length - 1))].add(handle);
+    }
+}
@@ -0,0 +1,293 @@
+package org.lavajuno.mirrorlog.server;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * TlsChannel runs TLS over a SocketChannel using an SSLEngine.
+ * Encrypted data moves between the channel and pooled direct buffers,
+ * so it never has to be copied onto the heap before it is decrypted.
+ * The channel is used in blocking mode, since each connection has its own thread.
+ * One thread may read from a TlsChannel while another writes to it. Reads must
+ * only come from one thread, which is also the thread that closes it.
+ */
+public class TlsChannel {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final TlsContext context;
+
+    /**
+     * Encrypted data read from the channel (kept in write mode)
+     */
+    private ByteBuffer net_in;
+
+    /**
+     * Encrypted data to write to the channel
+     */
+    private ByteBuffer net_out;
+
+    /**
+     * Decrypted data not yet read by the caller (kept in read mode)
+     */
+    private ByteBuffer app_in;
+
+    /**
+     * Held while using net_out, since both the reading and the writing thread can need to wrap
+     */
+    private final Object write_lock = new Object();
+
+    private boolean closed;
+
+    /**
+     * Constructs a TlsChannel. The handshake is done by handshake(), or by the first read or write.
+     * @param channel Connected channel to run TLS over
+     * @param context TlsContext to create the SSLEngine and take buffers from
+     */
+    public TlsChannel(SocketChannel channel, TlsContext context) {
+        this.channel = channel;
+        this.context = context;
+        engine = context.createEngine();
+        net_in = context.getPacketBuffers().acquire();
+        net_out = context.getPacketBuffers().acquire();
+        app_in = context.getApplicationBuffers().acquire().flip();
+    }
+
+    /**
+     * Performs the TLS handshake.
+     * @throws IOException If the handshake fails, or the client disconnects before it completes
+     */
+    public void handshake() throws IOException {
+        // Writes are already coalesced into whole records, so holding them back only adds latency
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        engine.beginHandshake();
+        runHandshake(engine.getHandshakeStatus(), true);
+    }
+
+    /**
+     * Reads decrypted data from the channel. Blocks until at least one byte is available.
+     * @param b Buffer to read into
+     * @param off Offset in the buffer to read to
+     * @param len Maximum number of bytes to read
+     * @return Number of bytes read, or -1 at the end of the stream
+     * @throws IOException If the data cannot be read or decrypted
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) { return 0; }
+        while(!app_in.hasRemaining()) {
+            final SSLEngineResult result = unwrap();
+            switch(result.getStatus()) {
+                case OK -> runHandshake(result.getHandshakeStatus(), true);
+                case BUFFER_UNDERFLOW -> {
+                    if(readChannel() == -1) { return -1; }
+                }
+                case CLOSED -> { return -1; }
+                case BUFFER_OVERFLOW -> throw new SSLException("Record too large for application buffer.");
+            }
+        }
+        final int n = Math.min(len, app_in.remaining());
+        app_in.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * Encrypts data and writes it to the channel.
+     * @param b Buffer containing the data
+     * @param off Offset of the data in the buffer
+     * @param len Length of the data
+     * @throws IOException If the data cannot be encrypted or written
+     */
+    public void write(byte[] b, int off, int len) throws IOException {
+        final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+        while(src.hasRemaining()) {
+            final SSLEngineResult result;
+            synchronized(write_lock) {
+                if(closed) { throw new SSLException("Connection is closed."); }
+                result = wrap(src);
+                flush();
+            }
+            if(result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("Connection is closed.");
+            }
+            runHandshake(result.getHandshakeStatus(), false);
+        }
+    }
+
+    /**
+     * Sends close_notify (if possible), closes the channel, and returns the buffers to their pools.
+     * Must be called by the thread that reads from this TlsChannel.
+     */
+    public void close() {
+        synchronized(write_lock) {
+            if(closed) { return; }
+            closed = true;
+            try {
+                if(channel.isOpen()) {
+                    engine.closeOutbound();
+                    while(!engine.isOutboundDone()) { wrap(EMPTY); }
+                    flush();
+                }
+            } catch(IOException e) {
+                // The peer is gone, there is nobody to notify
+            }
+            try {
+                channel.close();
+            } catch(IOException e) {
+                System.err.println("Failed to close TLS channel.");
+            }
+            context.getPacketBuffers().release(net_in);
+            context.getPacketBuffers().release(net_out);
+            context.getApplicationBuffers().release(app_in);
+            net_in = null;
+            net_out = null;
+            app_in = null;
+        }
+    }
+
+    /**
+     * Gets an InputStream that reads decrypted data from this TlsChannel.
+     * Closing the stream closes the TlsChannel.
+     * @return InputStream for this TlsChannel
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return TlsChannel.this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return TlsChannel.this.read(b, off, len);
+            }
+
+            @Override
+            public void close() { TlsChannel.this.close(); }
+        };
+    }
+
+    /**
+     * Gets an OutputStream that encrypts data and writes it to this TlsChannel.
+     * Closing the stream closes the TlsChannel.
+     * @return OutputStream for this TlsChannel
+     */
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                TlsChannel.this.write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                TlsChannel.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() { TlsChannel.this.close(); }
+        };
+    }
+
+    /**
+     * Steps the handshake until the engine no longer needs anything from us.
+     * @param status Current handshake status
+     * @param reading Whether this is the reading thread (otherwise, anything that needs unwrapping is left to it)
+     * @throws IOException If the handshake fails, or the client disconnects before it completes
+     */
+    private void runHandshake(SSLEngineResult.HandshakeStatus status, boolean reading) throws IOException {
+        while(true) {
+            switch(status) {
+                case NEED_WRAP -> {
+                    final SSLEngineResult result;
+                    synchronized(write_lock) {
+                        if(closed) { throw new SSLException("Connection is closed."); }
+                        result = wrap(EMPTY);
+                        if(result.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_WRAP) { flush(); }
+                    }
+                    if(result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("Connection closed during handshake.");
+                    }
+                    status = result.getHandshakeStatus();
+                }
+                case NEED_UNWRAP, NEED_UNWRAP_AGAIN -> {
+                    if(!reading) { return; }
+                    final SSLEngineResult result = unwrap();
+                    if(result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                        if(readChannel() == -1) { throw new EOFException("Connection closed during handshake."); }
+                    } else if(result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("Connection closed during handshake.");
+                    }
+                    status = engine.getHandshakeStatus();
+                }
+                case NEED_TASK -> {
+                    Runnable task;
+                    while((task = engine.getDelegatedTask()) != null) { task.run(); }
+                    status = engine.getHandshakeStatus();
+                }
+                default -> { return; } // FINISHED or NOT_HANDSHAKING
+            }
+        }
+    }
+
+    /**
+     * Decrypts as much of net_in as possible into app_in.
+     * @return Result of the unwrap
+     * @throws SSLException If the data cannot be decrypted
+     */
+    private SSLEngineResult unwrap() throws SSLException {
+        net_in.flip();
+        app_in.compact();
+        try {
+            return engine.unwrap(net_in, app_in);
+        } finally {
+            net_in.compact();
+            app_in.flip();
+        }
+    }
+
+    /**
+     * Encrypts data from src into net_out. The result is not written until flush() is called,
+     * so that consecutive handshake messages go out together instead of being held back by Nagle's algorithm.
+     * @param src Data to encrypt
+     * @return Result of the wrap
+     * @throws IOException If the data cannot be encrypted or written
+     */
+    private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+        SSLEngineResult result = engine.wrap(src, net_out);
+        if(result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+            flush(); // Make room and try again
+            result = engine.wrap(src, net_out);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the contents of net_out to the channel.
+     * @throws IOException If the channel cannot be written
+     */
+    private void flush() throws IOException {
+        net_out.flip();
+        while(net_out.hasRemaining()) { channel.write(net_out); }
+        net_out.clear();
+    }
+
+    /**
+     * Reads encrypted data from the channel into net_in.
+     * @return Number of bytes read, or -1 at the end of the stream
+     * @throws IOException If the channel cannot be read
+     */
+    private int readChannel() throws IOException {
+        if(!net_in.hasRemaining()) { throw new SSLException("Record too large for packet buffer."); }
+        return channel.read(net_in);
+    }
+}
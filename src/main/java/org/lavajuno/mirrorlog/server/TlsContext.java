@@ -0,0 +1,77 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * TlsContext holds the server's TLS configuration: an SSLContext built from
+ * the configured keystore, and the buffer pools shared by every TLS connection.
+ * The SSLContext's session cache is what allows returning clients to resume
+ * their sessions instead of doing a full handshake.
+ */
+public class TlsContext {
+    private final SSLContext ssl_context;
+    private final BufferPool packet_buffers;
+    private final BufferPool application_buffers;
+
+    /**
+     * Constructs a TlsContext.
+     * @param keystore Path of the keystore containing the server's certificate and private key
+     * @param keystore_type Type of the keystore (e.g. "PKCS12")
+     * @param password Password of the keystore and its key
+     * @param session_cache_size Maximum number of sessions to keep for resumption (0 for no limit)
+     * @param session_timeout How long sessions can be resumed for (seconds)
+     * @param max_pooled Maximum number of buffers of each type to keep for reuse
+     * @throws IOException If the keystore cannot be read
+     * @throws GeneralSecurityException If the keystore is invalid, or TLS cannot be set up
+     */
+    public TlsContext(String keystore, String keystore_type, String password,
+                      int session_cache_size, int session_timeout, int max_pooled)
+            throws IOException, GeneralSecurityException {
+        final KeyStore key_store = KeyStore.getInstance(keystore_type);
+        try(InputStream in = Files.newInputStream(Path.of(keystore))) {
+            key_store.load(in, password.toCharArray());
+        }
+        final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(key_store, password.toCharArray());
+        ssl_context = SSLContext.getInstance("TLS");
+        ssl_context.init(kmf.getKeyManagers(), null, null);
+        final SSLSessionContext sessions = ssl_context.getServerSessionContext();
+        sessions.setSessionCacheSize(session_cache_size);
+        sessions.setSessionTimeout(session_timeout);
+
+        // Size the pools from a throwaway engine, since buffer sizes depend on the protocols enabled
+        final SSLSession session = ssl_context.createSSLEngine().getSession();
+        packet_buffers = new BufferPool(session.getPacketBufferSize(), max_pooled);
+        application_buffers = new BufferPool(
+                Math.max(session.getApplicationBufferSize(), LogMap.READ_BUFFER_SIZE), max_pooled
+        );
+    }
+
+    /**
+     * Creates an SSLEngine for a new server-side connection.
+     * @return SSLEngine in server mode
+     */
+    public SSLEngine createEngine() {
+        final SSLEngine engine = ssl_context.createSSLEngine();
+        engine.setUseClientMode(false);
+        return engine;
+    }
+
+    /**
+     * @return Pool of buffers for encrypted data
+     */
+    public BufferPool getPacketBuffers() { return packet_buffers; }
+
+    /**
+     * @return Pool of buffers for decrypted data
+     */
+    public BufferPool getApplicationBuffers() { return application_buffers; }
+}
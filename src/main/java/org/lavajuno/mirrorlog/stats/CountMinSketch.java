@@ -0,0 +1,102 @@
+package org.lavajuno.mirrorlog.stats;
+
+import java.util.Arrays;
+
+/**
+ * CountMinSketch estimates how many times each key has been counted, in a fixed amount
+ * of memory no matter how many distinct keys there are. Each key is counted in one cell
+ * of every row, and its estimate is the smallest of those cells, so estimates are never
+ * too low and are too high by at most a small fraction of the total count.
+ * Sketches of the same size can be added and subtracted cell by cell, which is how
+ * SlidingWindow keeps a running total over its buckets.
+ */
+public class CountMinSketch {
+    private final long[] cells;
+    private final int depth;
+    private final int width_mask;
+
+    /**
+     * Constructs an empty CountMinSketch.
+     * @param depth Number of rows
+     * @param width Number of cells in each row (a power of 2)
+     */
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width_mask = width - 1;
+        cells = new long[depth * width];
+    }
+
+    /**
+     * Hashes a key (64-bit FNV-1a over its characters, then mixed).
+     * @param key Key to hash
+     * @return Hash of the key
+     */
+    public static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < key.length(); i++) { h = (h ^ key.charAt(i)) * 0x100000001B3L; }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Counts a key once.
+     * @param hash Hash of the key (from hash())
+     * @return Estimated count of the key, including this one
+     */
+    public long add(long hash) { return add(hash, 1); }
+
+    /**
+     * Counts a key several times.
+     * @param hash Hash of the key (from hash())
+     * @param count Number of times to count the key
+     * @return Estimated count of the key, including these
+     */
+    public long add(long hash, long count) {
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < depth; i++) {
+            final int cell = cell(hash, i);
+            cells[cell] += count;
+            min = Math.min(min, cells[cell]);
+        }
+        return min;
+    }
+
+    /**
+     * Estimates how many times a key has been counted.
+     * @param hash Hash of the key (from hash())
+     * @return Estimated count (never lower than the real count)
+     */
+    public long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < depth; i++) { min = Math.min(min, cells[cell(hash, i)]); }
+        return min;
+    }
+
+    /**
+     * Finds the cell that a key is counted in on one row. Each row remixes the hash
+     * with its own constant, so that two keys which share a cell on one row are
+     * unlikely to share a cell on any other.
+     * @param hash Hash of the key
+     * @param row Row of the cell
+     * @return Index of the cell
+     */
+    private int cell(long hash, int row) {
+        long h = hash + (row + 1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return row * (width_mask + 1) + ((int) (h >>> 32) & width_mask);
+    }
+
+    /**
+     * Subtracts every count in another sketch of the same size from this one.
+     * @param other Sketch to subtract
+     */
+    public void subtract(CountMinSketch other) {
+        for(int i = 0; i < cells.length; i++) { cells[i] -= other.cells[i]; }
+    }
+
+    /**
+     * Resets every count to 0.
+     */
+    public void clear() { Arrays.fill(cells, 0); }
+}
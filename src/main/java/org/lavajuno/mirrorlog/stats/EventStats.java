@@ -0,0 +1,227 @@
+package org.lavajuno.mirrorlog.stats;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EventStats counts events by component, client, and severity over sliding windows of
+ * the last minute, 5 minutes, and hour, and tracks the busiest components and clients in each.
+ * Counts by component and client are kept in count-min sketches, so memory use stays the
+ * same no matter how many distinct components and clients there are.
+ * Events are recorded by the threads that submit them, before rules and overload shedding
+ * are applied. To keep those threads from contending on the sketches, each one counts into
+ * one of LogMap.STATS_STRIPES stripes of plain counters, and the stripes are merged into the
+ * windows every LogMap.STATS_FLUSH_INTERVAL by the OutputController thread (or early, by the
+ * recording thread, when a stripe fills up). Statistics can be queried at any time through JMX.
+ */
+public class EventStats implements EventStatsMXBean {
+    private static final String[] SEVERITY_NAMES = { "INFO", "WARN", "ERROR", "FATAL" };
+
+    /**
+     * Counts recorded by a group of threads since the stripe was last merged.
+     */
+    private static class Stripe {
+        HashMap<String, long[]> components = new HashMap<>();
+        HashMap<String, long[]> clients = new HashMap<>();
+        final long[] severities = new long[4];
+        boolean empty = true;
+    }
+
+    private final SlidingWindow[] windows = new SlidingWindow[3];
+    private final Stripe[] stripes = new Stripe[LogMap.STATS_STRIPES];
+    private final int top_n;
+    private long next_flush;
+
+    /**
+     * Constructs an EventStats and registers its metrics.
+     * @param top_n Number of components and clients to report for each window
+     */
+    public EventStats(int top_n) {
+        this.top_n = top_n;
+        // Keep extra candidates so that keys near the cut-off are not lost while their counts change
+        windows[0] = new SlidingWindow("1m", 60000, 2 * top_n);
+        windows[1] = new SlidingWindow("5m", 300000, 2 * top_n);
+        windows[2] = new SlidingWindow("1h", 3600000, 2 * top_n);
+        for(int i = 0; i < stripes.length; i++) { stripes[i] = new Stripe(); }
+        Metrics.register("EventStats", this);
+    }
+
+    /**
+     * Gets the number of components and clients reported for each window.
+     * @return The value of "stats.top_n" when this EventStats was created
+     */
+    public int getTopN() { return top_n; }
+
+    /**
+     * Counts an event in the calling thread's stripe. It is added to the windows when the stripe is next merged.
+     * @param component Component name of the event
+     * @param client Address of the client that sent the event, or null for server events
+     * @param severity Severity of the event
+     */
+    public void record(String component, String client, int severity) {
+        final Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        final boolean full;
+        synchronized(stripe) {
+            stripe.components.computeIfAbsent(component, k -> new long[1])[0]++;
+            if(client != null) { stripe.clients.computeIfAbsent(client, k -> new long[1])[0]++; }
+            stripe.severities[severity]++;
+            stripe.empty = false;
+            full = stripe.components.size() + stripe.clients.size() >= LogMap.STATS_STRIPE_KEYS;
+        }
+        if(full) {
+            synchronized(this) { merge(stripe, System.currentTimeMillis()); }
+        }
+    }
+
+    /**
+     * Merges every stripe into the windows, if LogMap.STATS_FLUSH_INTERVAL has passed since they were last merged.
+     * Called by the OutputController thread.
+     * @param now Current time (ms since the epoch)
+     */
+    public synchronized void flush(long now) {
+        if(now < next_flush) { return; }
+        mergeAll(now);
+    }
+
+    /**
+     * Merges every stripe into the windows. The caller must hold this EventStats' lock.
+     * @param now Current time (ms since the epoch)
+     */
+    private void mergeAll(long now) {
+        next_flush = now + LogMap.STATS_FLUSH_INTERVAL;
+        for(Stripe i : stripes) { merge(i, now); }
+    }
+
+    /**
+     * Takes the counts from a stripe and adds them to every window. The stripe is only
+     * locked while its maps are swapped out, so recording threads are not held up by the
+     * sketches. The caller must hold this EventStats' lock.
+     * @param stripe Stripe to merge
+     * @param now Current time (ms since the epoch)
+     */
+    private void merge(Stripe stripe, long now) {
+        final HashMap<String, long[]> components;
+        final HashMap<String, long[]> clients;
+        final long[] severities;
+        synchronized(stripe) {
+            if(stripe.empty) { return; }
+            components = stripe.components;
+            clients = stripe.clients;
+            severities = stripe.severities.clone();
+            stripe.components = new HashMap<>();
+            stripe.clients = new HashMap<>();
+            Arrays.fill(stripe.severities, 0);
+            stripe.empty = true;
+        }
+        for(Map.Entry<String, long[]> i : components.entrySet()) {
+            final long hash = CountMinSketch.hash(i.getKey());
+            for(SlidingWindow j : windows) { j.recordComponent(now, i.getKey(), hash, i.getValue()[0]); }
+        }
+        for(Map.Entry<String, long[]> i : clients.entrySet()) {
+            final long hash = CountMinSketch.hash(i.getKey());
+            for(SlidingWindow j : windows) { j.recordClient(now, i.getKey(), hash, i.getValue()[0]); }
+        }
+        for(int i = 0; i < severities.length; i++) {
+            if(severities[i] == 0) { continue; }
+            for(SlidingWindow j : windows) { j.recordSeverity(now, i, severities[i]); }
+        }
+    }
+
+    /**
+     * Summarizes the window that best matches a reporting interval: the shortest
+     * window that covers the interval, or the longest window if none do.
+     * @param now Current time (ms since the epoch)
+     * @param interval Time since the last report (ms)
+     * @return Lines to log, or an empty list if there were no events in the window
+     */
+    public synchronized List<String> report(long now, long interval) {
+        SlidingWindow window = windows[windows.length - 1];
+        for(SlidingWindow i : windows) {
+            if(i.getSpan() >= interval) {
+                window = i;
+                break;
+            }
+        }
+        mergeAll(now);
+        window.advance(now);
+        final ArrayList<String> lines = new ArrayList<>();
+        final long[] severities = window.getSeverityCounts();
+        if(severities[0] + severities[1] + severities[2] + severities[3] == 0) { return lines; }
+        lines.add("Events in the last " + window.getName() + ": " + severities[0] + " INFO, " + severities[1] +
+                " WARN, " + severities[2] + " ERROR, " + severities[3] + " FATAL.");
+        lines.add("Busiest components in the last " + window.getName() + ": " + join(window.getTopComponents(top_n)));
+        final List<HeavyHitter> clients = window.getTopClients(top_n);
+        if(!clients.isEmpty()) {
+            lines.add("Busiest clients in the last " + window.getName() + ": " + join(clients));
+        }
+        return lines;
+    }
+
+    @Override
+    public List<String> getWindows() {
+        final ArrayList<String> names = new ArrayList<>();
+        for(SlidingWindow i : windows) { names.add(i.getName()); }
+        return names;
+    }
+
+    @Override
+    public synchronized List<HeavyHitter> topComponents(String window) {
+        return getWindow(window).getTopComponents(top_n);
+    }
+
+    @Override
+    public synchronized List<HeavyHitter> topClients(String window) {
+        return getWindow(window).getTopClients(top_n);
+    }
+
+    @Override
+    public synchronized Map<String, Long> severityCounts(String window) {
+        final long[] counts = getWindow(window).getSeverityCounts();
+        final LinkedHashMap<String, Long> map = new LinkedHashMap<>();
+        for(int i = 0; i < counts.length; i++) { map.put(SEVERITY_NAMES[i], counts[i]); }
+        return map;
+    }
+
+    @Override
+    public synchronized long componentEvents(String component, String window) {
+        return getWindow(window).estimateComponent(component);
+    }
+
+    /**
+     * Finds a window by name, merges the stripes, and expires any buckets that have fallen out of the window.
+     * @param name Name of the window
+     * @return The window
+     * @throws IllegalArgumentException If there is no window with the name
+     */
+    private SlidingWindow getWindow(String name) throws IllegalArgumentException {
+        for(SlidingWindow i : windows) {
+            if(i.getName().equals(name)) {
+                mergeAll(System.currentTimeMillis());
+                i.advance(System.currentTimeMillis());
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown window \"" + name + "\". (Use 1m, 5m, or 1h)");
+    }
+
+    /**
+     * Formats a list of heavy hitters for a report.
+     * @param hitters Heavy hitters to format
+     * @return "name (events), ..."
+     */
+    private static String join(List<HeavyHitter> hitters) {
+        final StringBuilder sb = new StringBuilder();
+        for(HeavyHitter i : hitters) {
+            if(sb.length() > 0) { sb.append(", "); }
+            sb.append(i.getName().stripTrailing()).append(" (").append(i.getEvents()).append(')');
+        }
+        return sb.toString();
+    }
+}
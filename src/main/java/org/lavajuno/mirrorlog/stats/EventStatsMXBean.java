@@ -0,0 +1,40 @@
+package org.lavajuno.mirrorlog.stats;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event statistics exposed through JMX.
+ * Each query takes the name of a window: "1m", "5m", or "1h".
+ */
+public interface EventStatsMXBean {
+    /**
+     * @return Names of the windows that can be queried
+     */
+    List<String> getWindows();
+
+    /**
+     * @param window Name of the window
+     * @return The busiest components in the window, busiest first
+     */
+    List<HeavyHitter> topComponents(String window);
+
+    /**
+     * @param window Name of the window
+     * @return The busiest clients in the window, busiest first
+     */
+    List<HeavyHitter> topClients(String window);
+
+    /**
+     * @param window Name of the window
+     * @return Number of events of each severity (INFO, WARN, ERROR, FATAL) in the window
+     */
+    Map<String, Long> severityCounts(String window);
+
+    /**
+     * @param component Component name
+     * @param window Name of the window
+     * @return Estimated number of events from the component in the window
+     */
+    long componentEvents(String component, String window);
+}
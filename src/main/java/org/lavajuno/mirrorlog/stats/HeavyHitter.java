@@ -0,0 +1,32 @@
+package org.lavajuno.mirrorlog.stats;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * HeavyHitter is a snapshot of one of the busiest components or clients in a window.
+ */
+public class HeavyHitter {
+    private final String name;
+    private final long events;
+
+    /**
+     * Constructs a HeavyHitter.
+     * @param name Component name or client address
+     * @param events Estimated number of events in the window
+     */
+    @ConstructorParameters({ "name", "events" })
+    public HeavyHitter(String name, long events) {
+        this.name = name;
+        this.events = events;
+    }
+
+    /**
+     * @return Component name or client address
+     */
+    public String getName() { return name; }
+
+    /**
+     * @return Estimated number of events in the window
+     */
+    public long getEvents() { return events; }
+}
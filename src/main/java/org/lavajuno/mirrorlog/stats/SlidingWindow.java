@@ -0,0 +1,152 @@
+package org.lavajuno.mirrorlog.stats;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SlidingWindow counts events by component, client, and severity over a fixed span of time.
+ * The span is split into buckets, each with its own sketches. A running total of every
+ * bucket is kept up to date as events arrive, and when a bucket expires its counts are
+ * subtracted from the total and it is reused, so queries never have to add up buckets.
+ * SlidingWindow is not thread-safe.
+ */
+public class SlidingWindow {
+    /**
+     * Counts for one bucket of the window.
+     */
+    private static class Bucket {
+        final CountMinSketch components = new CountMinSketch(LogMap.STATS_SKETCH_DEPTH, LogMap.STATS_SKETCH_WIDTH);
+        final CountMinSketch clients = new CountMinSketch(LogMap.STATS_SKETCH_DEPTH, LogMap.STATS_SKETCH_WIDTH);
+        final long[] severities = new long[4];
+
+        /**
+         * Resets every count to 0.
+         */
+        void clear() {
+            components.clear();
+            clients.clear();
+            Arrays.fill(severities, 0);
+        }
+    }
+
+    private final String name;
+    private final long bucket_span;
+    private final Bucket[] buckets = new Bucket[LogMap.STATS_WINDOW_BUCKETS];
+    private final Bucket total = new Bucket();
+    private final TopKeys top_components;
+    private final TopKeys top_clients;
+    private long current_bucket;
+
+    /**
+     * Constructs an empty SlidingWindow.
+     * @param name Name of the window ("1m", "5m", or "1h")
+     * @param span Length of the window (ms)
+     * @param candidates Number of candidates to keep for the busiest components and clients
+     */
+    public SlidingWindow(String name, long span, int candidates) {
+        this.name = name;
+        bucket_span = span / buckets.length;
+        for(int i = 0; i < buckets.length; i++) { buckets[i] = new Bucket(); }
+        top_components = new TopKeys(candidates);
+        top_clients = new TopKeys(candidates);
+    }
+
+    /**
+     * Gets the name of this window.
+     * @return Name of the window ("1m", "5m", or "1h")
+     */
+    public String getName() { return name; }
+
+    /**
+     * Gets the length of this window.
+     * @return Length of the window (ms)
+     */
+    public long getSpan() { return bucket_span * buckets.length; }
+
+    /**
+     * Counts events from a component.
+     * @param now Current time (ms since the epoch)
+     * @param component Component name of the events
+     * @param hash Hash of the component name
+     * @param count Number of events
+     */
+    public void recordComponent(long now, String component, long hash, long count) {
+        advance(now);
+        buckets[(int) (current_bucket % buckets.length)].components.add(hash, count);
+        top_components.offer(component, hash, total.components.add(hash, count));
+    }
+
+    /**
+     * Counts events from a client.
+     * @param now Current time (ms since the epoch)
+     * @param client Address of the client that sent the events
+     * @param hash Hash of the client address
+     * @param count Number of events
+     */
+    public void recordClient(long now, String client, long hash, long count) {
+        advance(now);
+        buckets[(int) (current_bucket % buckets.length)].clients.add(hash, count);
+        top_clients.offer(client, hash, total.clients.add(hash, count));
+    }
+
+    /**
+     * Counts events of a severity.
+     * @param now Current time (ms since the epoch)
+     * @param severity Severity of the events
+     * @param count Number of events
+     */
+    public void recordSeverity(long now, int severity, long count) {
+        advance(now);
+        buckets[(int) (current_bucket % buckets.length)].severities[severity] += count;
+        total.severities[severity] += count;
+    }
+
+    /**
+     * Expires every bucket that has fallen out of the window.
+     * @param now Current time (ms since the epoch)
+     */
+    public void advance(long now) {
+        final long bucket = now / bucket_span;
+        if(bucket <= current_bucket) { return; }
+        final long expired = Math.min(bucket - current_bucket, buckets.length);
+        for(long i = 1; i <= expired; i++) {
+            final Bucket old = buckets[(int) ((current_bucket + i) % buckets.length)];
+            total.components.subtract(old.components);
+            total.clients.subtract(old.clients);
+            for(int j = 0; j < 4; j++) { total.severities[j] -= old.severities[j]; }
+            old.clear();
+        }
+        current_bucket = bucket;
+        top_components.refresh(total.components);
+        top_clients.refresh(total.clients);
+    }
+
+    /**
+     * Gets the busiest components in this window.
+     * @param n Number of components to get
+     * @return Up to n components, busiest first
+     */
+    public List<HeavyHitter> getTopComponents(int n) { return top_components.top(n); }
+
+    /**
+     * Gets the busiest clients in this window.
+     * @param n Number of clients to get
+     * @return Up to n clients, busiest first
+     */
+    public List<HeavyHitter> getTopClients(int n) { return top_clients.top(n); }
+
+    /**
+     * Gets the number of events of each severity in this window.
+     * @return Number of events, indexed by severity
+     */
+    public long[] getSeverityCounts() { return total.severities.clone(); }
+
+    /**
+     * Estimates the number of events from a component in this window.
+     * @param component Component name
+     * @return Estimated number of events (never lower than the real number)
+     */
+    public long estimateComponent(String component) { return total.components.estimate(CountMinSketch.hash(component)); }
+}
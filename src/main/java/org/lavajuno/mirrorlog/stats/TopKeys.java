@@ -0,0 +1,151 @@
+package org.lavajuno.mirrorlog.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * TopKeys tracks the keys with the highest estimated counts in a CountMinSketch.
+ * Candidates are kept in a min-heap, so a key only displaces the least frequent
+ * candidate once its estimate is higher. Each candidate knows its place in the heap,
+ * so a candidate whose count grows is sifted down in place instead of being removed
+ * and re-added. The heap holds more candidates than are reported, so that keys near
+ * the cut-off are not lost while their counts change.
+ */
+public class TopKeys {
+    /**
+     * A candidate and its estimated count.
+     */
+    private static class Entry {
+        final String key;
+        final long hash;
+        long count;
+        int index;
+
+        /**
+         * Constructs an Entry.
+         * @param key Key of the candidate
+         * @param hash Hash of the key
+         * @param count Estimated count of the key
+         */
+        Entry(String key, long hash, long count) {
+            this.key = key;
+            this.hash = hash;
+            this.count = count;
+        }
+    }
+
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final Entry[] heap;
+    private int size;
+
+    /**
+     * Constructs an empty TopKeys.
+     * @param capacity Number of candidates to keep
+     */
+    public TopKeys(int capacity) {
+        heap = new Entry[capacity];
+    }
+
+    /**
+     * Offers a key that was just counted.
+     * @param key Key that was counted
+     * @param hash Hash of the key
+     * @param count Estimated count of the key, including this one
+     */
+    public void offer(String key, long hash, long count) {
+        if(size == heap.length && count <= heap[0].count) { return; } // Cannot displace the least frequent candidate
+        final Entry entry = entries.get(key);
+        if(entry != null) {
+            entry.count = count;
+            siftDown(entry.index);
+        } else if(size < heap.length) {
+            final Entry added = new Entry(key, hash, count);
+            entries.put(key, added);
+            heap[size] = added;
+            added.index = size;
+            siftUp(size++);
+        } else {
+            entries.remove(heap[0].key);
+            final Entry added = new Entry(key, hash, count);
+            entries.put(key, added);
+            heap[0] = added;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Re-estimates every candidate after counts have been removed from the sketch,
+     * and drops candidates that no longer have any events.
+     * @param sketch Sketch the counts come from
+     */
+    public void refresh(CountMinSketch sketch) {
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            final Entry entry = heap[i];
+            entry.count = sketch.estimate(entry.hash);
+            if(entry.count > 0) {
+                heap[kept++] = entry;
+            } else {
+                entries.remove(entry.key);
+            }
+        }
+        for(int i = kept; i < size; i++) { heap[i] = null; }
+        size = kept;
+        for(int i = 0; i < size; i++) { heap[i].index = i; }
+        for(int i = size / 2 - 1; i >= 0; i--) { siftDown(i); }
+    }
+
+    /**
+     * Gets the keys with the highest counts.
+     * @param n Number of keys to get
+     * @return Up to n keys, busiest first
+     */
+    public List<HeavyHitter> top(int n) {
+        final ArrayList<Entry> sorted = new ArrayList<>(Arrays.asList(heap).subList(0, size));
+        sorted.sort(Comparator.comparingLong((Entry e) -> e.count).reversed());
+        final ArrayList<HeavyHitter> top = new ArrayList<>();
+        for(int i = 0; i < sorted.size() && i < n; i++) {
+            top.add(new HeavyHitter(sorted.get(i).key, sorted.get(i).count));
+        }
+        return top;
+    }
+
+    /**
+     * Moves a candidate towards the root of the heap until its parent has a lower count.
+     * @param i Index of the candidate
+     */
+    private void siftUp(int i) {
+        final Entry entry = heap[i];
+        while(i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if(heap[parent].count <= entry.count) { break; }
+            heap[i] = heap[parent];
+            heap[i].index = i;
+            i = parent;
+        }
+        heap[i] = entry;
+        entry.index = i;
+    }
+
+    /**
+     * Moves a candidate away from the root of the heap until its children have higher counts.
+     * @param i Index of the candidate
+     */
+    private void siftDown(int i) {
+        final Entry entry = heap[i];
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= size) { break; }
+            if(child + 1 < size && heap[child + 1].count < heap[child].count) { child++; }
+            if(heap[child].count >= entry.count) { break; }
+            heap[i] = heap[child];
+            heap[i].index = i;
+            i = child;
+        }
+        heap[i] = entry;
+        entry.index = i;
+    }
+}
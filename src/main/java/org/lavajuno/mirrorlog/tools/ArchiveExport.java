@@ -0,0 +1,81 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.archive.ArchiveReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+
+/**
+ * ArchiveExport prints the events in an archive file in the text log layout.
+ * Usage: ArchiveExport [-c component]... [-s severity]... [--count] [--info] archive.mla
+ */
+public class ArchiveExport {
+    /**
+     * Runs ArchiveExport.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        HashSet<String> components = null;
+        int severity_mask = 0;
+        boolean count = false;
+        boolean info = false;
+        String path = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-c":
+                    if(++i == args.length) { usage(); }
+                    if(components == null) { components = new HashSet<>(); }
+                    components.add(args[i]);
+                    break;
+                case "-s":
+                    if(++i == args.length || !args[i].matches("^[0-3]$")) { usage(); }
+                    severity_mask |= 1 << Integer.parseInt(args[i]);
+                    break;
+                case "--count":
+                    count = true;
+                    break;
+                case "--info":
+                    info = true;
+                    break;
+                default:
+                    if(path != null || args[i].startsWith("-")) { usage(); }
+                    path = args[i];
+            }
+        }
+        if(path == null) { usage(); }
+        if(severity_mask == 0) { severity_mask = 0b1111; }
+
+        try(ArchiveReader reader = new ArchiveReader(Path.of(path))) {
+            if(info) {
+                System.out.println("Events:     " + reader.getEventCount());
+                System.out.println("Blocks:     " + reader.getBlockCount());
+                System.out.println("Components: " + String.join(", ", reader.getComponentNames()));
+            } else if(count) {
+                System.out.println(reader.count(components, severity_mask));
+            } else {
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 65536);
+                reader.export(out, components, severity_mask);
+                out.flush();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to read archive: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: ArchiveExport [-c component]... [-s severity]... [--count] [--info] archive.mla");
+        System.err.println("  -c component  Only include events from this component (can be repeated)");
+        System.err.println("  -s severity   Only include events with this severity, 0-3 (can be repeated)");
+        System.err.println("  --count       Print the number of matching events instead of the events");
+        System.err.println("  --info        Print a summary of the archive");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,206 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.client.ComponentLogger;
+import org.lavajuno.mirrorlog.client.MirrorLogClient;
+import org.lavajuno.mirrorlog.client.OverflowPolicy;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ClientBenchmark measures how long a log call takes for the calling thread, comparing
+ * MirrorLogClient with writing each event to the socket synchronously (what a simple
+ * hand-written client does). By default it sends events to an in-process listener that
+ * discards them, so that only the client side is measured.
+ * Usage: ClientBenchmark [-t threads] [-n events] [--block] [host port]
+ */
+public class ClientBenchmark {
+    private static final String MESSAGE = "GET /api/v1/invoices/12345 200 OK (took 12 ms)";
+
+    /**
+     * Logs one event. Implemented by each client being compared.
+     */
+    private interface LogCall {
+        void log(String message) throws IOException;
+    }
+
+    /**
+     * Runs ClientBenchmark.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int threads = 4;
+        int events = 200000;
+        OverflowPolicy policy = OverflowPolicy.DROP;
+        String host = null;
+        int port = 0;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-t":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    threads = Integer.parseInt(args[i]);
+                    break;
+                case "-n":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    events = Integer.parseInt(args[i]);
+                    break;
+                case "--block":
+                    policy = OverflowPolicy.BLOCK;
+                    break;
+                default:
+                    if(args[i].startsWith("-")) { usage(); }
+                    if(host == null) {
+                        host = args[i];
+                    } else if(port == 0 && args[i].matches("^[1-9][0-9]*$")) {
+                        port = Integer.parseInt(args[i]);
+                    } else {
+                        usage();
+                    }
+            }
+        }
+        if(host != null && port == 0) { usage(); }
+
+        try {
+            if(host == null) {
+                host = InetAddress.getLoopbackAddress().getHostAddress();
+                port = startDiscardServer();
+            }
+
+            // Synchronous: one socket, one write per event, shared by every thread
+            final Socket socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            final OutputStream out = socket.getOutputStream();
+            final LogCall sync_call = message -> {
+                final byte[] line = ("@Benchmark@0" + message + "\n").getBytes(StandardCharsets.UTF_8);
+                synchronized(out) { out.write(line); }
+            };
+            run("Synchronous", sync_call, threads, events / 10); // Warmup
+            report("Synchronous", run("Synchronous", sync_call, threads, events), threads, events);
+            socket.close();
+
+            // MirrorLogClient
+            final MirrorLogClient client = new MirrorLogClient(host, port, LogMap.CLIENT_BUFFER_SIZE, policy);
+            final ComponentLogger logger = client.getLogger("Benchmark");
+            run("MirrorLogClient", logger::info, threads, events / 10);
+            final long dropped_before = client.getDroppedCount();
+            report("MirrorLogClient", run("MirrorLogClient", logger::info, threads, events), threads, events);
+            System.out.println("  Dropped: " + (client.getDroppedCount() - dropped_before) + " (" + policy + ")");
+            client.close();
+        } catch(IOException | InterruptedException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Logs events from several threads, timing each call.
+     * @param name Name of the client (used in thread names)
+     * @param call Log call to time
+     * @param threads Number of threads
+     * @param events Number of events per thread
+     * @return Latency of every call (ns), sorted
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    private static long[] run(String name, LogCall call, int threads, int events) throws InterruptedException {
+        final long[][] latencies = new long[threads][events];
+        final Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final long[] samples = latencies[i];
+            workers[i] = new Thread(() -> {
+                try {
+                    for(int j = 0; j < samples.length; j++) {
+                        final long start = System.nanoTime();
+                        call.log(MESSAGE);
+                        samples[j] = System.nanoTime() - start;
+                    }
+                } catch(IOException e) {
+                    System.err.println("Log call failed: " + e.getMessage());
+                }
+            }, name + "-" + i);
+            workers[i].start();
+        }
+        for(Thread i : workers) { i.join(); }
+        final long[] all = new long[threads * events];
+        for(int i = 0; i < threads; i++) { System.arraycopy(latencies[i], 0, all, i * events, events); }
+        Arrays.sort(all);
+        return all;
+    }
+
+    /**
+     * Prints latency percentiles and throughput.
+     * @param name Name of the client
+     * @param latencies Latency of every call (ns), sorted
+     * @param threads Number of threads
+     * @param events Number of events per thread
+     */
+    private static void report(String name, long[] latencies, int threads, int events) {
+        long total = 0;
+        for(long i : latencies) { total += i; }
+        System.out.println(name + " (" + threads + " threads, " + events + " events each):");
+        System.out.printf(
+                "  p50 %,d ns  p90 %,d ns  p99 %,d ns  p99.9 %,d ns  max %,d ns  mean %,d ns%n",
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1], total / latencies.length
+        );
+    }
+
+    /**
+     * Gets a percentile of sorted samples.
+     * @param sorted Sorted samples
+     * @param p Percentile (0-1)
+     * @return Value at the percentile
+     */
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    /**
+     * Starts a loopback listener that reads and discards everything sent to it.
+     * @return Port of the listener
+     * @throws IOException If the listener cannot be created
+     */
+    private static int startDiscardServer() throws IOException {
+        final ServerSocket listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(() -> {
+            while(true) {
+                try {
+                    final Socket client = listener.accept();
+                    final Thread t = new Thread(() -> {
+                        try(client; InputStream in = client.getInputStream()) {
+                            final byte[] buf = new byte[65536];
+                            while(in.read(buf) != -1) { }
+                        } catch(IOException e) {
+                            // Client disconnected
+                        }
+                    });
+                    t.setDaemon(true);
+                    t.start();
+                } catch(IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return listener.getLocalPort();
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: ClientBenchmark [-t threads] [-n events] [--block] [host port]");
+        System.err.println("  -t threads  Number of threads logging at once (default 4)");
+        System.err.println("  -n events   Number of events logged by each thread (default 200000)");
+        System.err.println("  --block     Wait for room instead of dropping events when a buffer is full");
+        System.err.println("  host port   Send events to a running server instead of an in-process listener");
+        System.exit(2);
+    }
+}
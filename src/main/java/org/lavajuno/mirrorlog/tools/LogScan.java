@@ -0,0 +1,517 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+/**
+ * LogScan searches text log files for events in a time range, from certain components,
+ * with certain severities, or with messages that contain a literal or match a regex.
+ * Each file is memory-mapped and split on line boundaries into pieces that are scanned
+ * in parallel with fork-join. Lines are parsed in place from the mapped bytes, so nothing
+ * is allocated for lines that do not match. Matches from every file are merged in timestamp order.
+ * Usage: LogScan [--from time] [--to time] [-c component]... [-s severity]... [-m text | -e regex]
+ *        [-j threads] [--stats] path...
+ */
+public class LogScan {
+    /**
+     * Pieces of a file larger than this are split in two (bytes)
+     */
+    private static final int SPLIT_SIZE = 4 << 20;
+
+    /**
+     * Largest region of a file that is mapped at once (bytes)
+     */
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    /**
+     * Length of the date at the start of each line ("yyyy-MM-dd HH:mm:ss")
+     */
+    private static final int DATE_LENGTH = LogMap.LOG_DATE_PATTERN.length();
+
+    /**
+     * Severity headers, indexed by severity (all the same length)
+     */
+    private static final byte[][] SEVERITY_HEADERS = {
+            LogMap.SEVERITY_INFO.getBytes(StandardCharsets.UTF_8),
+            LogMap.SEVERITY_WARN.getBytes(StandardCharsets.UTF_8),
+            LogMap.SEVERITY_ERROR.getBytes(StandardCharsets.UTF_8),
+            LogMap.SEVERITY_FATAL.getBytes(StandardCharsets.UTF_8)
+    };
+
+    /**
+     * A matching line, located in a mapped region.
+     */
+    private static class Match {
+        final long time;
+        final ByteBuffer region;
+        final int offset;
+        final int length;
+
+        /**
+         * Constructs a Match.
+         * @param time Date of the line, as a yyyyMMddHHmmss number
+         * @param region Region the line is in
+         * @param offset Offset of the line in the region
+         * @param length Length of the line, without the line break
+         */
+        Match(long time, ByteBuffer region, int offset, int length) {
+            this.time = time;
+            this.region = region;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Filters that every matching line must pass.
+     */
+    private static class Filter {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        int severity_mask = 0b1111;
+        final ArrayList<byte[]> components = new ArrayList<>();
+        byte[] literal;
+        Pattern pattern;
+    }
+
+    /**
+     * Scans a piece of a mapped region, splitting it in two on a line boundary while it is larger than SPLIT_SIZE.
+     */
+    private static class ScanTask extends RecursiveTask<List<Match>> {
+        private static final long serialVersionUID = 1L;
+        private final ByteBuffer region;
+        private final int start;
+        private final int end;
+        private final Filter filter;
+
+        /**
+         * Constructs a ScanTask.
+         * @param region Mapped region to scan
+         * @param start Offset of the first line of the piece
+         * @param end Offset after the last line of the piece
+         * @param filter Filters that matching lines must pass
+         */
+        ScanTask(ByteBuffer region, int start, int end, Filter filter) {
+            this.region = region;
+            this.start = start;
+            this.end = end;
+            this.filter = filter;
+        }
+
+        @Override
+        protected List<Match> compute() {
+            if(end - start > SPLIT_SIZE) {
+                final int middle = nextLine(region, start + (end - start) / 2, end);
+                if(middle < end) {
+                    final ScanTask left = new ScanTask(region, start, middle, filter);
+                    left.fork();
+                    final List<Match> right = new ScanTask(region, middle, end, filter).compute();
+                    final List<Match> matches = left.join();
+                    matches.addAll(right);
+                    return matches;
+                }
+            }
+            return new LineScanner(region, filter).scan(start, end);
+        }
+    }
+
+    /**
+     * Parses and filters the lines of a piece of a mapped region.
+     * One LineScanner is used by a single thread, and reuses its buffers for every line.
+     */
+    private static class LineScanner {
+        private final ByteBuffer region;
+        private final ByteBuffer view;
+        private final Filter filter;
+        private final Matcher matcher;
+        private final CharsetDecoder decoder;
+        private CharBuffer chars;
+
+        /**
+         * Constructs a LineScanner.
+         * @param region Mapped region to scan
+         * @param filter Filters that matching lines must pass
+         */
+        LineScanner(ByteBuffer region, Filter filter) {
+            this.region = region;
+            this.filter = filter;
+            view = region.duplicate();
+            matcher = filter.pattern == null ? null : filter.pattern.matcher("");
+            decoder = filter.pattern == null ? null : StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = filter.pattern == null ? null : CharBuffer.allocate(1024);
+        }
+
+        /**
+         * Scans every line in a range of the region.
+         * @param start Offset of the first line
+         * @param end Offset after the last line
+         * @return Matching lines, in the order they appear
+         */
+        List<Match> scan(int start, int end) {
+            final ArrayList<Match> matches = new ArrayList<>();
+            int line_start = start;
+            while(line_start < end) {
+                int line_end = line_start;
+                while(line_end < end && region.get(line_end) != '\n') { line_end++; }
+                final long time = match(line_start, line_end);
+                if(time >= 0) { matches.add(new Match(time, region, line_start, line_end - line_start)); }
+                line_start = line_end + 1;
+            }
+            return matches;
+        }
+
+        /**
+         * Parses a line in the text log layout and checks it against the filters.
+         * @param start Offset of the line
+         * @param end Offset of the line's line break (or the end of the piece)
+         * @return Date of the line as a yyyyMMddHHmmss number, or -1 if the line does not match
+         */
+        private long match(int start, int end) {
+            if(end - start < DATE_LENGTH + SEVERITY_HEADERS[0].length + 3) { return -1; }
+            final long time = parseTime(start);
+            if(time < 0 || time < filter.from || time > filter.to) { return -1; }
+
+            final int header = start + DATE_LENGTH;
+            int severity = -1;
+            for(int i = 0; i < SEVERITY_HEADERS.length && severity < 0; i++) {
+                if(region.get(header + 2) == SEVERITY_HEADERS[i][2] && regionEquals(header, SEVERITY_HEADERS[i])) {
+                    severity = i;
+                }
+            }
+            if(severity < 0 || (filter.severity_mask >>> severity & 1) == 0) { return -1; }
+
+            // Component names cannot contain ':', so the first " : " ends the component
+            final int component_start = header + SEVERITY_HEADERS[0].length;
+            int separator = component_start;
+            while(separator + 3 <= end && !(region.get(separator) == ' ' && region.get(separator + 1) == ':' &&
+                    region.get(separator + 2) == ' ')) {
+                separator++;
+            }
+            if(separator + 3 > end) { return -1; }
+            if(!filter.components.isEmpty()) {
+                int component_end = separator;
+                while(component_end > component_start && region.get(component_end - 1) == ' ') { component_end--; }
+                boolean found = false;
+                for(byte[] i : filter.components) {
+                    if(i.length == component_end - component_start && regionEquals(component_start, i)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if(!found) { return -1; }
+            }
+
+            final int message_start = separator + 3;
+            if(filter.literal != null && indexOf(message_start, end, filter.literal) < 0) { return -1; }
+            if(matcher != null && !matcher.reset(decode(message_start, end)).find()) { return -1; }
+            return time;
+        }
+
+        /**
+         * Parses the date at the start of a line.
+         * @param start Offset of the line
+         * @return Date as a yyyyMMddHHmmss number, or -1 if the line does not start with a date
+         */
+        private long parseTime(int start) {
+            long time = 0;
+            for(int i = 0; i < DATE_LENGTH; i++) {
+                final byte b = region.get(start + i);
+                if(i == 4 || i == 7) {
+                    if(b != '-') { return -1; }
+                } else if(i == 10) {
+                    if(b != ' ') { return -1; }
+                } else if(i == 13 || i == 16) {
+                    if(b != ':') { return -1; }
+                } else {
+                    if(b < '0' || b > '9') { return -1; }
+                    time = time * 10 + (b - '0');
+                }
+            }
+            return time;
+        }
+
+        /**
+         * Checks if the region contains a run of bytes at an offset.
+         * @param offset Offset to check at
+         * @param bytes Bytes to check for
+         * @return True if they match
+         */
+        private boolean regionEquals(int offset, byte[] bytes) {
+            for(int i = 0; i < bytes.length; i++) {
+                if(region.get(offset + i) != bytes[i]) { return false; }
+            }
+            return true;
+        }
+
+        /**
+         * Finds a run of bytes in a range of the region.
+         * @param start Offset to start at
+         * @param end Offset to stop at
+         * @param bytes Bytes to find
+         * @return Offset of the first match, or -1 if there is none
+         */
+        private int indexOf(int start, int end, byte[] bytes) {
+            final byte first = bytes[0];
+            for(int i = start; i <= end - bytes.length; i++) {
+                if(region.get(i) == first && regionEquals(i, bytes)) { return i; }
+            }
+            return -1;
+        }
+
+        /**
+         * Decodes a range of the region into this LineScanner's reusable character buffer.
+         * @param start Offset to start at
+         * @param end Offset to stop at
+         * @return Decoded characters
+         */
+        private CharBuffer decode(int start, int end) {
+            if(chars.capacity() < end - start) { chars = CharBuffer.allocate(Integer.highestOneBit(end - start) * 2); }
+            chars.clear();
+            decoder.reset();
+            view.limit(end).position(start);
+            decoder.decode(view, chars, true);
+            decoder.flush(chars);
+            return chars.flip();
+        }
+    }
+
+    /**
+     * Runs LogScan.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        final Filter filter = new Filter();
+        final ArrayList<Path> paths = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean stats = false;
+        int severity_mask = 0;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--from":
+                    if(++i == args.length) { usage(); }
+                    filter.from = parseTimeArgument(args[i], false);
+                    break;
+                case "--to":
+                    if(++i == args.length) { usage(); }
+                    filter.to = parseTimeArgument(args[i], true);
+                    break;
+                case "-c":
+                    if(++i == args.length) { usage(); }
+                    filter.components.add(args[i].getBytes(StandardCharsets.UTF_8));
+                    break;
+                case "-s":
+                    if(++i == args.length || !args[i].matches("^[0-3]$")) { usage(); }
+                    severity_mask |= 1 << Integer.parseInt(args[i]);
+                    break;
+                case "-m":
+                    if(++i == args.length || args[i].isEmpty() || filter.pattern != null) { usage(); }
+                    filter.literal = args[i].getBytes(StandardCharsets.UTF_8);
+                    break;
+                case "-e":
+                    if(++i == args.length || filter.literal != null) { usage(); }
+                    try {
+                        filter.pattern = Pattern.compile(args[i]);
+                    } catch(PatternSyntaxException e) {
+                        System.err.println("Invalid regex: " + e.getDescription());
+                        System.exit(2);
+                    }
+                    break;
+                case "-j":
+                    if(++i == args.length || !args[i].matches("^[0-9]{1,4}$") || Integer.parseInt(args[i]) < 1) { usage(); }
+                    threads = Integer.parseInt(args[i]);
+                    break;
+                case "--stats":
+                    stats = true;
+                    break;
+                default:
+                    if(args[i].startsWith("-")) { usage(); }
+                    paths.add(Path.of(args[i]));
+            }
+        }
+        if(paths.isEmpty()) { usage(); }
+        if(severity_mask != 0) { filter.severity_mask = severity_mask; }
+
+        final long start_time = System.nanoTime();
+        final ArrayList<FileChannel> channels = new ArrayList<>();
+        try {
+            final ArrayList<Path> files = new ArrayList<>();
+            for(Path i : paths) {
+                if(Files.isDirectory(i)) {
+                    try(Stream<Path> walk = Files.walk(i)) {
+                        walk.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().matches("^[0-9]{10}\\.log$"))
+                                .sorted()
+                                .forEach(files::add);
+                    }
+                } else {
+                    files.add(i);
+                }
+            }
+
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            final ArrayList<ScanTask> tasks = new ArrayList<>();
+            long bytes = 0;
+            for(Path i : files) {
+                if(!mayOverlap(i, filter)) { continue; }
+                final FileChannel channel = FileChannel.open(i, StandardOpenOption.READ);
+                channels.add(channel);
+                for(ByteBuffer region : mapRegions(channel)) {
+                    final ScanTask task = new ScanTask(region, 0, region.limit(), filter);
+                    pool.execute(task);
+                    tasks.add(task);
+                    bytes += region.limit();
+                }
+            }
+            final ArrayList<Match> matches = new ArrayList<>();
+            for(ScanTask i : tasks) { matches.addAll(i.join()); }
+            pool.shutdown();
+            // Each file is already close to sorted, so this is mostly a merge of sorted runs
+            matches.sort(Comparator.comparingLong(m -> m.time));
+
+            final OutputStream out = new BufferedOutputStream(System.out, 65536);
+            final byte[] line = new byte[65536];
+            for(Match i : matches) {
+                int written = 0;
+                while(written < i.length) {
+                    final int n = Math.min(line.length, i.length - written);
+                    i.region.get(i.offset + written, line, 0, n);
+                    out.write(line, 0, n);
+                    written += n;
+                }
+                out.write('\n');
+            }
+            out.flush();
+            if(stats) {
+                final double seconds = (System.nanoTime() - start_time) / 1e9;
+                System.err.printf(
+                        "Scanned %d files (%.1f MiB) in %.3f s (%.1f MiB/s) with %d threads, %d matches.%n",
+                        channels.size(), bytes / 1048576.0, seconds, bytes / 1048576.0 / seconds, threads, matches.size()
+                );
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to scan: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            for(FileChannel i : channels) {
+                try {
+                    i.close();
+                } catch(IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Checks if a log file could contain events in the time range, from the date tag in its name.
+     * @param file Path of the log file
+     * @param filter Filters with the time range
+     * @return False if the file was started after the end of the range
+     */
+    private static boolean mayOverlap(Path file, Filter filter) {
+        final String name = file.getFileName().toString();
+        if(!name.matches("^[0-9]{10}\\..*")) { return true; }
+        return Long.parseLong(name.substring(0, 10)) * 10000 <= filter.to;
+    }
+
+    /**
+     * Maps a file into regions of at most MAX_REGION_SIZE bytes that end on line boundaries.
+     * @param channel Channel of the file
+     * @return Mapped regions, in order
+     * @throws IOException If the file cannot be mapped
+     */
+    private static List<ByteBuffer> mapRegions(FileChannel channel) throws IOException {
+        final ArrayList<ByteBuffer> regions = new ArrayList<>();
+        final long size = channel.size();
+        long position = 0;
+        while(position < size) {
+            final MappedByteBuffer map = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_REGION_SIZE, size - position)
+            );
+            int length = map.limit();
+            if(position + length < size) {
+                // Stop after the last line break, so that the next region starts on a new line
+                while(length > 0 && map.get(length - 1) != '\n') { length--; }
+                if(length == 0) { throw new IOException("Line longer than " + MAX_REGION_SIZE + " bytes"); }
+            }
+            regions.add(map.slice(0, length));
+            position += length;
+        }
+        return regions;
+    }
+
+    /**
+     * Finds the start of the first line at or after an offset.
+     * @param region Region to search
+     * @param offset Offset to start at
+     * @param end Offset to stop at
+     * @return Offset after the next line break, or end if there is none
+     */
+    private static int nextLine(ByteBuffer region, int offset, int end) {
+        while(offset < end && region.get(offset - 1) != '\n') { offset++; }
+        return offset;
+    }
+
+    /**
+     * Parses a time from the command line into a yyyyMMddHHmmss number.
+     * The time of day, or its trailing fields, may be left out ("2023-10-16" or "2023-10-16 10:30").
+     * @param argument Time in the log layout ("yyyy-MM-dd HH:mm:ss")
+     * @param end True to fill in left out fields with their latest value, false for their earliest
+     * @return The time as a yyyyMMddHHmmss number
+     */
+    private static long parseTimeArgument(String argument, boolean end) {
+        final SimpleDateFormat format = new SimpleDateFormat(LogMap.LOG_DATE_PATTERN);
+        format.setLenient(false);
+        String full = argument;
+        try {
+            if(argument.length() < 10 || argument.length() > DATE_LENGTH) { throw new ParseException(argument, 0); }
+            full = argument + (end ? " 23:59:59" : " 00:00:00").substring(argument.length() - 10);
+            format.parse(full);
+        } catch(ParseException e) {
+            System.err.println("Invalid time \"" + argument + "\". (Use " + LogMap.LOG_DATE_PATTERN + ")");
+            System.exit(2);
+        }
+        return Long.parseLong(full.replaceAll("[^0-9]", ""));
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: LogScan [--from time] [--to time] [-c component]... [-s severity]...");
+        System.err.println("               [-m text | -e regex] [-j threads] [--stats] path...");
+        System.err.println("  --from time   Only include events at or after this time (yyyy-MM-dd HH:mm:ss)");
+        System.err.println("  --to time     Only include events at or before this time");
+        System.err.println("  -c component  Only include events from this component (can be repeated)");
+        System.err.println("  -s severity   Only include events with this severity, 0-3 (can be repeated)");
+        System.err.println("  -m text       Only include events whose message contains this text");
+        System.err.println("  -e regex      Only include events whose message matches this regex");
+        System.err.println("  -j threads    Number of threads to scan with (default: number of cores)");
+        System.err.println("  --stats       Print how much was scanned, and how fast");
+        System.err.println("  path          A text log file, or a directory to search for text log files");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,188 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.archive.ArchiveReader;
+import org.lavajuno.mirrorlog.index.IndexReader;
+import org.lavajuno.mirrorlog.index.Tokens;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * LogSearch prints the lines of log files (text, NDJSON, or archives) that contain a string.
+ * Files with an up-to-date index only have the blocks that may contain the string's tokens read.
+ * Usage: LogSearch [-i] [-w] [--stats] query path...
+ */
+public class LogSearch {
+    private static boolean ignore_case = false;
+    private static boolean whole_words = false;
+    private static boolean stats = false;
+    private static String query;
+    private static long[] hashes;
+    private static Writer out;
+
+    /**
+     * Runs LogSearch.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        final ArrayList<Path> paths = new ArrayList<>();
+        for(String i : args) {
+            switch(i) {
+                case "-i":
+                    ignore_case = true;
+                    break;
+                case "-w":
+                    whole_words = true;
+                    break;
+                case "--stats":
+                    stats = true;
+                    break;
+                default:
+                    if(query == null) {
+                        query = i;
+                    } else {
+                        paths.add(Path.of(i));
+                    }
+            }
+        }
+        if(query == null || query.isEmpty() || paths.isEmpty()) { usage(); }
+        hashes = Tokens.required(query, whole_words, ignore_case);
+        if(ignore_case) { query = query.toLowerCase(Locale.ROOT); }
+
+        try {
+            final ArrayList<Path> files = new ArrayList<>();
+            for(Path i : paths) {
+                if(Files.isDirectory(i)) {
+                    final File[] contents = i.toFile().listFiles();
+                    if(contents == null) { continue; }
+                    Arrays.sort(contents);
+                    for(File j : contents) {
+                        if(j.isFile() && j.getName().matches("^[0-9]{10}\\.(log|ndjson|" + LogMap.ARCHIVE_EXTENSION + ")$")) {
+                            files.add(j.toPath());
+                        }
+                    }
+                } else {
+                    files.add(i);
+                }
+            }
+            out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 65536);
+            for(Path i : files) { search(i, files.size() > 1 ? i.getFileName() + ":" : ""); }
+            out.flush();
+        } catch(IOException e) {
+            System.err.println("Failed to search: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Searches a single log file.
+     * @param file Path of the log file
+     * @param prefix Printed before each matching line
+     * @throws IOException If the file cannot be read
+     */
+    private static void search(Path file, String prefix) throws IOException {
+        final IndexReader index = IndexReader.isCurrent(file) ? new IndexReader(IndexReader.indexPath(file)) : null;
+        final boolean[] blocks = index == null ? null : index.candidates(hashes);
+        int searched = 0;
+        int total = 0;
+        if(file.getFileName().toString().endsWith("." + LogMap.ARCHIVE_EXTENSION)) {
+            try(ArchiveReader reader = new ArchiveReader(file)) {
+                final StringBuilder text = new StringBuilder();
+                total = reader.getBlockCount();
+                for(int i = 0; i < total; i++) {
+                    if(blocks != null && !blocks[i]) { continue; }
+                    text.setLength(0);
+                    reader.exportBlock(i, text);
+                    searchText(text.toString(), prefix);
+                    searched++;
+                }
+            }
+        } else if(index != null) {
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                total = index.getBlockCount();
+                for(int i = 0; i < total; i++) {
+                    if(!blocks[i]) { continue; }
+                    final ByteBuffer buf = ByteBuffer.allocate(index.getBlockLength(i));
+                    while(buf.hasRemaining()) {
+                        if(channel.read(buf, index.getBlockOffset(i) + buf.position()) < 0) {
+                            throw new IOException("Unexpected end of \"" + file + "\".");
+                        }
+                    }
+                    searchText(new String(buf.array(), StandardCharsets.UTF_8), prefix);
+                    searched++;
+                }
+            }
+        } else {
+            try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    if(matches(line)) { out.append(prefix).append(line).append('\n'); }
+                }
+            }
+        }
+        if(stats) {
+            System.err.println(file.getFileName() + ": " + (index == null ?
+                    "no index, searched all lines" :
+                    "searched " + searched + " of " + total + " blocks" + (index.isInverted() ? " (inverted)" : "")));
+        }
+    }
+
+    /**
+     * Prints the lines of a block of text that match the query.
+     * @param text Text of the block
+     * @param prefix Printed before each matching line
+     * @throws IOException If printing fails
+     */
+    private static void searchText(String text, String prefix) throws IOException {
+        int start = 0;
+        while(start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if(end < 0) { end = text.length(); }
+            final String line = text.substring(start, end);
+            if(matches(line)) { out.append(prefix).append(line).append('\n'); }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Checks if a line matches the query.
+     * @param line Line to check
+     * @return True if the line contains the query (at token boundaries, with -w)
+     */
+    private static boolean matches(String line) {
+        if(ignore_case) { line = line.toLowerCase(Locale.ROOT); }
+        int i = line.indexOf(query);
+        while(i >= 0) {
+            if(!whole_words) { return true; }
+            final int end = i + query.length();
+            final boolean start_bounded = i == 0 || !Tokens.isTokenChar(line.charAt(i - 1)) ||
+                    !Tokens.isTokenChar(query.charAt(0));
+            final boolean end_bounded = end == line.length() || !Tokens.isTokenChar(line.charAt(end)) ||
+                    !Tokens.isTokenChar(query.charAt(query.length() - 1));
+            if(start_bounded && end_bounded) { return true; }
+            i = line.indexOf(query, i + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: LogSearch [-i] [-w] [--stats] query path...");
+        System.err.println("  -i       Ignore case");
+        System.err.println("  -w       Only match whole words (lets the index narrow down more searches)");
+        System.err.println("  --stats  Print how many blocks of each file were searched");
+        System.err.println("  path     A log file (.log, .ndjson, or .mla), or a directory of log files");
+        System.exit(2);
+    }
+}
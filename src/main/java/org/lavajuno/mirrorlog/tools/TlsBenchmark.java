@@ -0,0 +1,308 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.main.LogMap;
+import org.lavajuno.mirrorlog.server.TlsChannel;
+import org.lavajuno.mirrorlog.server.TlsContext;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TlsBenchmark compares TLS and plaintext ingest over loopback. It measures the rate of
+ * new connections (plaintext, full TLS handshakes, and resumed TLS handshakes) and the
+ * rate that events can be pushed through each kind of connection.
+ * The server side uses the same TlsContext and TlsChannel as the log server, but discards
+ * events instead of logging them, so that only the transport is measured.
+ * Usage: TlsBenchmark [-t seconds] [-c connections] [--type type] keystore password
+ */
+public class TlsBenchmark {
+    private static final byte[] EVENT = "@Benchmark@0The quick brown fox jumps over the lazy dog. 0123456789\n"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int EVENTS_PER_WRITE = 64;
+
+    /**
+     * Events counted by the server side
+     */
+    private static final AtomicLong events = new AtomicLong();
+
+    /**
+     * Connections that the server side has not finished serving
+     */
+    private static final AtomicInteger open_connections = new AtomicInteger();
+
+    /**
+     * Runs TlsBenchmark.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int seconds = 5;
+        int connections = 1;
+        String type = LogMap.DEFAULT_TLS_KEYSTORE_TYPE;
+        String keystore = null;
+        String password = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-t":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    seconds = Integer.parseInt(args[i]);
+                    break;
+                case "-c":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    connections = Integer.parseInt(args[i]);
+                    break;
+                case "--type":
+                    if(++i == args.length) { usage(); }
+                    type = args[i];
+                    break;
+                default:
+                    if(args[i].startsWith("-")) { usage(); }
+                    if(keystore == null) {
+                        keystore = args[i];
+                    } else if(password == null) {
+                        password = args[i];
+                    } else {
+                        usage();
+                    }
+            }
+        }
+        if(password == null) { usage(); }
+
+        try {
+            final TlsContext server_context = new TlsContext(
+                    keystore, type, password,
+                    LogMap.DEFAULT_TLS_SESSION_CACHE_SIZE, LogMap.DEFAULT_TLS_SESSION_TIMEOUT,
+                    LogMap.TLS_MAX_POOLED_BUFFERS
+            );
+            final ServerSocketChannel plain_listener = listen(null);
+            final ServerSocketChannel tls_listener = listen(server_context);
+            final int plain_port = plain_listener.socket().getLocalPort();
+            final int tls_port = tls_listener.socket().getLocalPort();
+            final SSLContext client_context = SSLContext.getInstance("TLS");
+            client_context.init(null, new TrustManager[] { new TrustAll() }, null);
+            final SSLSocketFactory factory = client_context.getSocketFactory();
+
+            final long duration = seconds * 1_000_000_000L;
+            warmup(factory, plain_port, tls_port);
+            System.out.println("Connections per second (1 client, " + seconds + "s each):");
+            report("  Plaintext", connect(null, plain_port, false, duration));
+            report("  TLS (full handshake)", connect(factory, tls_port, false, duration));
+            report("  TLS (resumed)", connect(factory, tls_port, true, duration));
+            System.out.println("Events per second (" + connections + " connection(s), " + seconds + "s each):");
+            report("  Plaintext", stream(null, plain_port, connections, duration));
+            report("  TLS", stream(factory, tls_port, connections, duration));
+            plain_listener.close();
+            tls_listener.close();
+        } catch(IOException | GeneralSecurityException | InterruptedException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Opens a loopback listener and starts a thread serving it.
+     * @param context TlsContext to serve connections with (null for plaintext)
+     * @return The listening channel
+     * @throws IOException If the listener cannot be opened
+     */
+    private static ServerSocketChannel listen(TlsContext context) throws IOException {
+        final ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        final Thread acceptor = new Thread(() -> {
+            while(true) {
+                try {
+                    final SocketChannel client = listener.accept();
+                    open_connections.incrementAndGet();
+                    final Thread t = new Thread(() -> serve(client, context));
+                    t.setDaemon(true);
+                    t.start();
+                } catch(IOException e) {
+                    return; // Listener closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return listener;
+    }
+
+    /**
+     * Serves one benchmark connection. The server writes a single byte when it is ready
+     * (after the handshake), then counts events until the client disconnects.
+     * @param client Connection to serve
+     * @param context TlsContext to serve the connection with (null for plaintext)
+     */
+    private static void serve(SocketChannel client, TlsContext context) {
+        TlsChannel tls = null;
+        try {
+            final InputStream in;
+            final OutputStream out;
+            if(context != null) {
+                tls = new TlsChannel(client, context);
+                tls.handshake();
+                in = tls.getInputStream();
+                out = tls.getOutputStream();
+            } else {
+                in = client.socket().getInputStream();
+                out = client.socket().getOutputStream();
+            }
+            out.write('\n');
+            final byte[] buf = new byte[LogMap.READ_BUFFER_SIZE];
+            long n_events = 0;
+            int n;
+            while((n = in.read(buf, 0, buf.length)) != -1) {
+                for(int i = 0; i < n; i++) {
+                    if(buf[i] == '\n') { n_events++; }
+                }
+            }
+            events.addAndGet(n_events);
+        } catch(IOException e) {
+            // Client disconnected
+        } finally {
+            if(tls != null) { tls.close(); }
+            try {
+                client.close();
+            } catch(IOException e) {
+                System.err.println("Failed to close benchmark connection.");
+            }
+            open_connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a client connection and waits for the server to be ready.
+     * @param factory Factory to create TLS sockets with (null for plaintext)
+     * @param port Port to connect to
+     * @return The connected socket
+     * @throws IOException If the connection fails
+     */
+    private static Socket open(SSLSocketFactory factory, int port) throws IOException {
+        final Socket socket = factory == null ?
+                new Socket(InetAddress.getLoopbackAddress(), port) :
+                factory.createSocket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        if(socket.getInputStream().read() == -1) { throw new IOException("Server closed the connection."); }
+        return socket;
+    }
+
+    /**
+     * Warms up both listeners, so that class loading and JIT don't count against the first measurement.
+     * @param factory Factory to create TLS sockets with
+     * @param plain_port Port of the plaintext listener
+     * @param tls_port Port of the TLS listener
+     * @throws IOException If a connection fails
+     */
+    private static void warmup(SSLSocketFactory factory, int plain_port, int tls_port) throws IOException {
+        for(int i = 0; i < 200; i++) {
+            open(null, plain_port).close();
+            open(factory, tls_port).close();
+        }
+    }
+
+    /**
+     * Opens and closes connections one after another.
+     * @param factory Factory to create TLS sockets with (null for plaintext)
+     * @param port Port to connect to
+     * @param resume Whether TLS sessions should be resumed (otherwise each connection does a full handshake)
+     * @param duration How long to run for (ns)
+     * @return Connections opened per second
+     * @throws IOException If a connection fails
+     */
+    private static double connect(SSLSocketFactory factory, int port, boolean resume, long duration) throws IOException {
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        long n = 0;
+        while(System.nanoTime() < end) {
+            final Socket socket = open(factory, port);
+            if(socket instanceof SSLSocket s && !resume) { s.getSession().invalidate(); }
+            socket.close();
+            n++;
+        }
+        return n * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Streams events through several connections at once. The measurement ends
+     * when the server side has counted every event sent.
+     * @param factory Factory to create TLS sockets with (null for plaintext)
+     * @param port Port to connect to
+     * @param connections Number of connections
+     * @param duration How long to run for (ns)
+     * @return Events counted by the server per second
+     * @throws IOException If a connection fails
+     * @throws InterruptedException If interrupted while waiting for the clients or the server
+     */
+    private static double stream(SSLSocketFactory factory, int port, int connections, long duration)
+            throws IOException, InterruptedException {
+        final byte[] batch = new byte[EVENT.length * EVENTS_PER_WRITE];
+        for(int i = 0; i < EVENTS_PER_WRITE; i++) {
+            System.arraycopy(EVENT, 0, batch, i * EVENT.length, EVENT.length);
+        }
+        final Socket[] sockets = new Socket[connections];
+        for(int i = 0; i < connections; i++) { sockets[i] = open(factory, port); }
+        final long before = events.get();
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        final Thread[] clients = new Thread[connections];
+        for(int i = 0; i < connections; i++) {
+            final Socket socket = sockets[i];
+            clients[i] = new Thread(() -> {
+                try(socket) {
+                    final OutputStream out = socket.getOutputStream();
+                    while(System.nanoTime() < end) { out.write(batch); }
+                } catch(IOException e) {
+                    System.err.println("Benchmark client failed: " + e.getMessage());
+                }
+            });
+            clients[i].start();
+        }
+        for(Thread i : clients) { i.join(); }
+        while(open_connections.get() > 0) { Thread.sleep(1); }
+        return (events.get() - before) * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Prints a rate.
+     * @param label Label for the rate
+     * @param rate Operations per second
+     */
+    private static void report(String label, double rate) {
+        System.out.printf("%-24s %,12.0f/s%n", label + ":", rate);
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: TlsBenchmark [-t seconds] [-c connections] [--type type] keystore password");
+        System.err.println("  -t seconds      Duration of each measurement (default 5)");
+        System.err.println("  -c connections  Number of connections to stream events over (default 1)");
+        System.err.println("  --type type     Keystore type (default " + LogMap.DEFAULT_TLS_KEYSTORE_TYPE + ")");
+        System.exit(2);
+    }
+
+    /**
+     * Trusts any certificate. Only suitable for benchmarking against a known local listener.
+     */
+    private static class TrustAll implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String auth_type) { }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String auth_type) { }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+    }
+}
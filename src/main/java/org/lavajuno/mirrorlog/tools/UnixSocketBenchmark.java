@@ -0,0 +1,341 @@
+package org.lavajuno.mirrorlog.tools;
+
+import org.lavajuno.mirrorlog.latency.LatencyHistogram;
+import org.lavajuno.mirrorlog.main.LogMap;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UnixSocketBenchmark compares TCP loopback and Unix domain socket ingest. For each transport
+ * it measures the round-trip latency of single events, and the rate and CPU time per event
+ * when events are streamed through one or more connections.
+ * The server side reads events the same way for both transports, but discards them instead
+ * of logging them, so that only the transport is measured. CPU time is for the whole process
+ * (client and server), including time spent in the kernel.
+ * Usage: UnixSocketBenchmark [-t seconds] [-c connections] [-p path]
+ */
+public class UnixSocketBenchmark {
+    private static final byte[] EVENT = "@Benchmark@0The quick brown fox jumps over the lazy dog. 0123456789\n"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int EVENTS_PER_WRITE = 64;
+
+    /**
+     * Events counted by the server side
+     */
+    private static final AtomicLong events = new AtomicLong();
+
+    /**
+     * Connections that the server side has not finished serving
+     */
+    private static final AtomicInteger open_connections = new AtomicInteger();
+
+    /**
+     * Runs UnixSocketBenchmark.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int seconds = 5;
+        int connections = 1;
+        Path path = Path.of(System.getProperty("java.io.tmpdir"), "mirrorlog-benchmark.sock");
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-t":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    seconds = Integer.parseInt(args[i]);
+                    break;
+                case "-c":
+                    if(++i == args.length || !args[i].matches("^[1-9][0-9]*$")) { usage(); }
+                    connections = Integer.parseInt(args[i]);
+                    break;
+                case "-p":
+                    if(++i == args.length) { usage(); }
+                    path = Path.of(args[i]);
+                    break;
+                default:
+                    usage();
+            }
+        }
+
+        try {
+            final ServerSocketChannel tcp_listener = ServerSocketChannel.open();
+            tcp_listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+            Files.deleteIfExists(path);
+            final ServerSocketChannel unix_listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            unix_listener.bind(UnixDomainSocketAddress.of(path), 1024);
+            listen(tcp_listener);
+            listen(unix_listener);
+            final SocketAddress tcp = tcp_listener.getLocalAddress();
+            final SocketAddress unix = unix_listener.getLocalAddress();
+
+            final long duration = seconds * 1_000_000_000L;
+            warmup(tcp);
+            warmup(unix);
+            System.out.println("Round trip of one event (1 connection, " + seconds + "s each):");
+            report("  TCP loopback", ping(tcp, duration));
+            report("  Unix domain socket", ping(unix, duration));
+            System.out.println("Streamed events (" + connections + " connection(s), " + seconds + "s each):");
+            report("  TCP loopback", stream(tcp, connections, duration));
+            report("  Unix domain socket", stream(unix, connections, duration));
+            tcp_listener.close();
+            unix_listener.close();
+            Files.deleteIfExists(path);
+        } catch(IOException | InterruptedException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts a thread serving a listener.
+     * @param listener Listener to accept connections from
+     */
+    private static void listen(ServerSocketChannel listener) {
+        final Thread acceptor = new Thread(() -> {
+            while(true) {
+                try {
+                    final SocketChannel client = listener.accept();
+                    open_connections.incrementAndGet();
+                    final Thread t = new Thread(() -> serve(client));
+                    t.setDaemon(true);
+                    t.start();
+                } catch(IOException e) {
+                    return; // Listener closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Serves one benchmark connection. The server counts events until the client disconnects.
+     * A client that starts with '?' is sent a byte back for every event, so it can time round trips.
+     * @param client Connection to serve
+     */
+    private static void serve(SocketChannel client) {
+        try(client) {
+            final ByteBuffer in = ByteBuffer.allocate(LogMap.READ_BUFFER_SIZE);
+            final ByteBuffer reply = ByteBuffer.allocate(LogMap.READ_BUFFER_SIZE);
+            boolean echo = false;
+            boolean first = true;
+            long n_events = 0;
+            while(client.read(in) != -1) {
+                in.flip();
+                if(first && in.hasRemaining()) {
+                    echo = in.get(0) == '?';
+                    first = false;
+                }
+                int replies = 0;
+                while(in.hasRemaining()) {
+                    if(in.get() == '\n') { replies++; }
+                }
+                in.clear();
+                n_events += replies;
+                if(echo && replies > 0) {
+                    reply.clear().position(Math.min(replies, reply.capacity())).flip();
+                    while(reply.hasRemaining()) { client.write(reply); }
+                }
+            }
+            events.addAndGet(n_events);
+        } catch(IOException e) {
+            // Client disconnected
+        } finally {
+            open_connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a client connection.
+     * @param address Address to connect to
+     * @return The connected channel
+     * @throws IOException If the connection fails
+     */
+    private static SocketChannel open(SocketAddress address) throws IOException {
+        final SocketChannel channel = SocketChannel.open(address);
+        if(address instanceof InetSocketAddress) { channel.setOption(StandardSocketOptions.TCP_NODELAY, true); }
+        return channel;
+    }
+
+    /**
+     * Warms up a listener, so that class loading and JIT don't count against the first measurement.
+     * @param address Address of the listener
+     * @throws IOException If a connection fails
+     */
+    private static void warmup(SocketAddress address) throws IOException {
+        try(SocketChannel channel = open(address)) {
+            final ByteBuffer event = ByteBuffer.wrap(EVENT);
+            final ByteBuffer reply = ByteBuffer.allocate(1);
+            channel.write(ByteBuffer.wrap(new byte[] { '?', '\n' }));
+            channel.read(reply);
+            for(int i = 0; i < 20000; i++) {
+                event.rewind();
+                while(event.hasRemaining()) { channel.write(event); }
+                reply.clear();
+                if(channel.read(reply) == -1) { throw new IOException("Server closed the connection."); }
+            }
+        }
+    }
+
+    /**
+     * Sends single events and waits for each one to be answered.
+     * @param address Address to connect to
+     * @param duration How long to run for (ns)
+     * @return Results of the measurement
+     * @throws IOException If the connection fails
+     */
+    private static Result ping(SocketAddress address, long duration) throws IOException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long cpu_before = getCpuTime();
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        try(SocketChannel channel = open(address)) {
+            final ByteBuffer event = ByteBuffer.wrap(EVENT);
+            final ByteBuffer reply = ByteBuffer.allocate(1);
+            channel.write(ByteBuffer.wrap(new byte[] { '?', '\n' }));
+            channel.read(reply);
+            long now = System.nanoTime();
+            while(now < end) {
+                event.rewind();
+                while(event.hasRemaining()) { channel.write(event); }
+                reply.clear();
+                if(channel.read(reply) == -1) { throw new IOException("Server closed the connection."); }
+                final long sent = now;
+                now = System.nanoTime();
+                histogram.record(now - sent);
+            }
+        }
+        return new Result(histogram.getCount(), System.nanoTime() - start, cpuSince(cpu_before), histogram);
+    }
+
+    /**
+     * Streams events through several connections at once. The measurement ends
+     * when the server side has counted every event sent.
+     * @param address Address to connect to
+     * @param connections Number of connections
+     * @param duration How long to run for (ns)
+     * @return Results of the measurement
+     * @throws IOException If a connection fails
+     * @throws InterruptedException If interrupted while waiting for the clients or the server
+     */
+    private static Result stream(SocketAddress address, int connections, long duration)
+            throws IOException, InterruptedException {
+        final byte[] batch = new byte[EVENT.length * EVENTS_PER_WRITE];
+        for(int i = 0; i < EVENTS_PER_WRITE; i++) {
+            System.arraycopy(EVENT, 0, batch, i * EVENT.length, EVENT.length);
+        }
+        final SocketChannel[] channels = new SocketChannel[connections];
+        for(int i = 0; i < connections; i++) { channels[i] = open(address); }
+        final long before = events.get();
+        final long cpu_before = getCpuTime();
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        final Thread[] clients = new Thread[connections];
+        for(int i = 0; i < connections; i++) {
+            final SocketChannel channel = channels[i];
+            clients[i] = new Thread(() -> {
+                try(channel) {
+                    final ByteBuffer buf = ByteBuffer.wrap(batch);
+                    while(System.nanoTime() < end) {
+                        buf.rewind();
+                        while(buf.hasRemaining()) { channel.write(buf); }
+                    }
+                } catch(IOException e) {
+                    System.err.println("Benchmark client failed: " + e.getMessage());
+                }
+            });
+            clients[i].start();
+        }
+        for(Thread i : clients) { i.join(); }
+        while(open_connections.get() > 0) { Thread.sleep(1); }
+        return new Result(events.get() - before, System.nanoTime() - start, cpuSince(cpu_before), null);
+    }
+
+    /**
+     * Gets the CPU time used by the whole process so far.
+     * @return CPU time (ns), or -1 if the JVM can't report it
+     */
+    private static long getCpuTime() {
+        if(ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the CPU time used by the whole process since an earlier reading.
+     * @param before Earlier reading (from getCpuTime())
+     * @return CPU time (ns), or -1 if the JVM can't report it
+     */
+    private static long cpuSince(long before) {
+        return before < 0 ? -1 : getCpuTime() - before;
+    }
+
+    /**
+     * Results of one measurement.
+     */
+    private static class Result {
+        final long events;
+        final long elapsed;
+        final long cpu;
+        final LatencyHistogram latency;
+
+        /**
+         * Constructs a Result.
+         * @param events Events sent
+         * @param elapsed Time taken (ns)
+         * @param cpu CPU time used by the process (ns), or a negative number if it is unknown
+         * @param latency Round-trip latencies, or null if they were not measured
+         */
+        Result(long events, long elapsed, long cpu, LatencyHistogram latency) {
+            this.events = events;
+            this.elapsed = elapsed;
+            this.cpu = cpu;
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * Prints the results of a measurement.
+     * @param label Label for the measurement
+     * @param result Results of the measurement
+     */
+    private static void report(String label, Result result) {
+        final StringBuilder sb = new StringBuilder(String.format("%-22s %,12.0f events/s", label + ":",
+                result.events * 1e9 / result.elapsed));
+        if(result.cpu >= 0 && result.events > 0) {
+            sb.append(String.format("  %,8.0f ns CPU/event", (double) result.cpu / result.events));
+        }
+        if(result.latency != null) {
+            sb.append(String.format("  p50 %.1f us  p99 %.1f us  p99.9 %.1f us",
+                    result.latency.getPercentile(50) / 1e3, result.latency.getPercentile(99) / 1e3,
+                    result.latency.getPercentile(99.9) / 1e3));
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * Prints usage information and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: UnixSocketBenchmark [-t seconds] [-c connections] [-p path]");
+        System.err.println("  -t seconds      Duration of each measurement (default 5)");
+        System.err.println("  -c connections  Number of connections to stream events over (default 1)");
+        System.err.println("  -p path         Path of the Unix domain socket (default in the temporary directory)");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,26 @@
+package org.lavajuno.lucidjson;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Regression tests for streaming JSON serialization.
+ */
+public class JsonWriterTest {
+    @Test
+    public void rejectsNonFiniteNumbers() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        final JsonWriter writer = new JsonWriter(sb);
+        writer.beginArray();
+        for(double i : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }) {
+            assertThrows(IllegalArgumentException.class, () -> writer.value(i));
+        }
+        // The rejected values must not leave the writer in a bad state
+        writer.value(1.5);
+        writer.value(-2.0);
+        writer.endArray();
+        assertEquals("[1.5,-2.0]", sb.toString());
+    }
+}
@@ -0,0 +1,61 @@
+package org.lavajuno.lucidjson.util;
+
+import org.junit.jupiter.api.Test;
+import org.lavajuno.lucidjson.error.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Regression tests for decoding escaped UTF-8 JSON strings.
+ */
+public class StringUtilsTest {
+    /**
+     * Decodes bytes with StringUtils.unescape().
+     * @param bytes String to decode (without its quotes)
+     * @return Decoded string
+     */
+    private static String unescape(int... bytes) throws JsonParseException {
+        final byte[] input = new byte[bytes.length];
+        for(int i = 0; i < bytes.length; i++) { input[i] = (byte) bytes[i]; }
+        return StringUtils.unescape(input, 0, input.length);
+    }
+
+    @Test
+    public void decodesValidSequences() throws JsonParseException {
+        final byte[] input = "\\n\u00e9\u20ac\uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+        assertEquals("\n\u00e9\u20ac\uD83D\uDE00", StringUtils.unescape(input, 0, input.length));
+    }
+
+    @Test
+    public void replacesCodePointsAboveUnicodeRange() throws JsonParseException {
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xF7, 0xBF, 0xBF, 0xBF));
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xF4, 0x90, 0x80, 0x80));
+    }
+
+    @Test
+    public void replacesOverlongForms() throws JsonParseException {
+        assertEquals("\n\uFFFD\uFFFD", unescape('\\', 'n', 0xC0, 0xAF));
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xE0, 0x80, 0xAF));
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xF0, 0x80, 0x80, 0xAF));
+    }
+
+    @Test
+    public void replacesSurrogates() throws JsonParseException {
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xED, 0xA0, 0x80));
+    }
+
+    @Test
+    public void replacesBadContinuationBytes() throws JsonParseException {
+        assertEquals("\n\uFFFDa", unescape('\\', 'n', 0xE2, 0x82, 'a'));
+        assertEquals("\n\uFFFD\uFFFD", unescape('\\', 'n', 0x80, 0xFF));
+        assertEquals("\n\uFFFD", unescape('\\', 'n', 0xE2, 0x82));
+    }
+
+    @Test
+    public void rejectsTrailingBackslash() {
+        assertThrows(JsonParseException.class, () -> unescape('a', '\\'));
+    }
+}
@@ -0,0 +1,55 @@
+package org.lavajuno.mirrorlog.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression tests for encoding events longer than the server accepts.
+ */
+public class EventFormatterTest {
+    /**
+     * Encodes an event and drains it from the buffer.
+     * @param message Message of the event
+     * @return Encoded event
+     */
+    private static byte[] encode(String message) {
+        final StagingBuffer buffer = new StagingBuffer(Thread.currentThread(), 65536);
+        EventFormatter.encode(buffer, EventFormatter.encodePrefix("Test"), 0, message);
+        buffer.publish();
+        final byte[] drained = new byte[65536];
+        final int n = buffer.drainTo(drained, 0);
+        final byte[] event = new byte[n];
+        System.arraycopy(drained, 0, event, 0, n);
+        return event;
+    }
+
+    @Test
+    public void keepsEventsThatFit() {
+        final String message = "a".repeat(EventFormatter.MAX_EVENT_LENGTH - 8);
+        assertEquals(EventFormatter.MAX_EVENT_LENGTH, EventFormatter.encodedLength(EventFormatter.encodePrefix("Test"), message));
+        assertEquals(EventFormatter.MAX_EVENT_LENGTH, encode(message).length);
+    }
+
+    @Test
+    public void truncatesLongEvents() {
+        final byte[] event = encode("a".repeat(100000));
+        assertEquals(EventFormatter.MAX_EVENT_LENGTH, event.length);
+        assertEquals('\n', event[event.length - 1]);
+    }
+
+    @Test
+    public void truncatesAtCharacterBoundaries() {
+        final String message = "\u20ac".repeat(5000) + "\uD83D\uDE00".repeat(5000);
+        final byte[] event = encode(message);
+        assertTrue(event.length <= EventFormatter.MAX_EVENT_LENGTH);
+        assertEquals('\n', event[event.length - 1]);
+        final String decoded = new String(event, 0, event.length - 1, StandardCharsets.UTF_8);
+        assertTrue(decoded.startsWith("@Test@0\u20ac"));
+        assertFalse(decoded.contains("\uFFFD"));
+    }
+}
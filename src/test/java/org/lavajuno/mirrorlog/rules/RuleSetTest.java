@@ -0,0 +1,31 @@
+package org.lavajuno.mirrorlog.rules;
+
+import org.junit.jupiter.api.Test;
+import org.lavajuno.lucidjson.JsonObject;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Regression tests for matching events to rules.
+ */
+public class RuleSetTest {
+    @Test
+    public void matchesGlobsForEverySeverity() throws Exception {
+        final Rule drop_info = Rule.fromJsonObject(JsonObject.from(
+                "{\"component\": \"Web\", \"match\": \"prefix\", \"severity\": [0], \"action\": \"drop\"}"));
+        final Rule console = Rule.fromJsonObject(JsonObject.from(
+                "{\"component\": \"We?*\", \"match\": \"glob\", \"action\": \"console\"}"));
+        final RuleSet rules = new RuleSet(List.of(drop_info, console));
+        // The first lookup for a component caches all four severities, so ask in both orders
+        assertSame(console, rules.match("WebServer", 1));
+        assertSame(drop_info, rules.match("WebServer", 0));
+        assertSame(drop_info, rules.match("WebClient", 0));
+        assertSame(console, rules.match("WebClient", 3));
+        assertSame(console, rules.match("Weather", 0));
+        assertNull(rules.match("W", 0));
+        assertNull(rules.match("Database", 2));
+    }
+}
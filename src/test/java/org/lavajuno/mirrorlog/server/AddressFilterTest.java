@@ -0,0 +1,43 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression tests for parsing allowed addresses.
+ */
+public class AddressFilterTest {
+    @Test
+    public void rejectsHostNames() {
+        // All of these only contain hex digits and dots, and must not be looked up
+        for(String i : List.of("cafe", "bad", "beef.cafe", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1..2.3", "")) {
+            assertThrows(IllegalArgumentException.class, () -> new AddressFilter(List.of(i)), i);
+        }
+    }
+
+    @Test
+    public void parsesLiterals() throws Exception {
+        final AddressFilter filter = new AddressFilter(List.of("10.0.0.0/8", "192.168.1.7", "fd00::/8"));
+        assertTrue(filter.allows(InetAddress.getByName("10.200.3.4")));
+        assertTrue(filter.allows(InetAddress.getByName("192.168.1.7")));
+        assertFalse(filter.allows(InetAddress.getByName("192.168.1.8")));
+        assertTrue(filter.allows(InetAddress.getByName("fd12::1")));
+        assertFalse(filter.allows(InetAddress.getByName("fe80::1")));
+    }
+
+    @Test
+    public void parsesMappedLiterals() throws Exception {
+        final AddressFilter filter = new AddressFilter(List.of("::ffff:10.0.0.0/104", "::ffff:192.168.1.7"));
+        assertTrue(filter.allows(InetAddress.getByName("10.200.3.4")));
+        assertTrue(filter.allows(InetAddress.getByName("192.168.1.7")));
+        assertFalse(filter.allows(InetAddress.getByName("192.168.1.8")));
+        assertFalse(filter.allows(InetAddress.getByName("11.0.0.1")));
+        assertThrows(IllegalArgumentException.class, () -> new AddressFilter(List.of("::ffff:10.0.0.0/129")));
+    }
+}
@@ -0,0 +1,53 @@
+package org.lavajuno.mirrorlog.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression tests for parsing structured events.
+ */
+public class JsonEventParserTest {
+    /**
+     * Parses an event.
+     * @param parser Parser to use
+     * @param event Event to parse
+     * @return True if the event is valid
+     */
+    private static boolean parse(JsonEventParser parser, String event) {
+        final byte[] input = event.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(input, input.length);
+    }
+
+    @Test
+    public void replacesEscapedLineBreaks() {
+        final JsonEventParser parser = new JsonEventParser();
+        assertTrue(parse(parser, "{\"component\":\"Web\",\"severity\":0," +
+                "\"message\":\"a\\n2026-01-01 00:00:00 [ FATAL ] forged\\r\"," +
+                "\"attributes\":{\"k\\n\":\"v\\u001b\\t\"}}"));
+        assertEquals("a 2026-01-01 00:00:00 [ FATAL ] forged ", parser.getMessage());
+        assertEquals("k ", parser.getAttributes().getKey(0));
+        assertEquals("v \t", parser.getAttributes().getValue(0));
+    }
+
+    @Test
+    public void survivesMalformedUtf8AfterEscape() {
+        final JsonEventParser parser = new JsonEventParser();
+        final byte[] prefix = "{\"component\":\"Web\",\"severity\":0,\"message\":\"\\n".getBytes(StandardCharsets.US_ASCII);
+        final byte[] input = new byte[prefix.length + 6];
+        System.arraycopy(prefix, 0, input, 0, prefix.length);
+        input[prefix.length] = (byte) 0xF7;
+        input[prefix.length + 1] = (byte) 0xBF;
+        input[prefix.length + 2] = (byte) 0xBF;
+        input[prefix.length + 3] = (byte) 0xBF;
+        input[prefix.length + 4] = '"';
+        input[prefix.length + 5] = '}';
+        assertTrue(parser.parse(input, input.length));
+        assertEquals(" \uFFFD", parser.getMessage());
+        assertFalse(parse(parser, "{\"component\":\"Web\",\"severity\":0,\"message\":\"a\\"));
+    }
+}
@@ -0,0 +1,30 @@
+package org.lavajuno.mirrorlog.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Regression tests for counting events.
+ */
+public class EventStatsTest {
+    @Test
+    public void countsEventsFromEveryThread() throws Exception {
+        final EventStats stats = new EventStats(2);
+        final Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for(int j = 0; j < 1000; j++) { stats.record("Flood", "10.0.0.1", 0); }
+                stats.record("Other", null, 2);
+            });
+            threads[i].start();
+        }
+        for(Thread i : threads) { i.join(); }
+        final List<String> lines = stats.report(System.currentTimeMillis(), 60000);
+        assertEquals("Events in the last 1m: 4000 INFO, 0 WARN, 4 ERROR, 0 FATAL.", lines.get(0));
+        assertEquals("Busiest components in the last 1m: Flood (4000), Other (4)", lines.get(1));
+        assertEquals("Busiest clients in the last 1m: 10.0.0.1 (4000)", lines.get(2));
+    }
+}